@@ -0,0 +1,67 @@
+package ide.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Expanding a folder in the explorer (DirectoryLoader.listNow: list and sort,
+// as loadFilesIntoTree does on its loader thread) and walking a whole project
+// (ProjectFiles.walk, as the indexes do), by the number of entries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryScanBenchmark {
+
+    private static final MethodHandle LIST_NOW = Ide.staticMethod("DirectoryLoader", "listNow", List.class,
+            Path.class);
+    private static final MethodHandle WALK = Ide.staticMethod("ProjectFiles", "walk", List.class, Path.class,
+            Predicate.class);
+    private static final Predicate<Path> JAVA_FILES = path -> path.toString().endsWith(".java");
+
+    @Param({ "100", "1000", "10000" })
+    public int treeSize;
+
+    private Path folder;
+    private Path project;
+
+    @Setup(Level.Trial)
+    public void createTrees() throws IOException {
+        folder = Fixtures.flatFolder(treeSize);
+        project = Fixtures.tree(treeSize, 50);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTrees() throws IOException {
+        Fixtures.delete(folder);
+        Fixtures.delete(project);
+    }
+
+    @Benchmark
+    public Object listFolder() throws Throwable {
+        return (List<?>) LIST_NOW.invoke(folder);
+    }
+
+    @Benchmark
+    public Object walkProject() throws Throwable {
+        return (List<?>) WALK.invoke(project, JAVA_FILES);
+    }
+}
@@ -0,0 +1,58 @@
+package ide.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+// The work behind every keystroke in a tab: the PieceTable edit and the
+// ModificationTracker deciding whether the tab is dirty (hash and length
+// against the saved text), by file size. Typing a char and deleting it again
+// makes the tracker compare its way back to clean each time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirtyCheckBenchmark {
+
+    private static final MethodHandle NEW_TABLE = Ide.constructor("PieceTable", String.class);
+    private static final MethodHandle NEW_TRACKER = Ide.constructor("ModificationTracker", Ide.type("PieceTable"));
+    private static final MethodHandle INSERT = Ide.method("PieceTable", "insert", void.class, int.class,
+            String.class);
+    private static final MethodHandle DELETE = Ide.method("PieceTable", "delete", void.class, int.class, int.class);
+    private static final MethodHandle IS_DIRTY = Ide.method("ModificationTracker", "isDirty", boolean.class);
+
+    @Param({ "16384", "1048576", "16777216" })
+    public int fileSize;
+
+    private Object document;
+    private Object tracker;
+    private int offset;
+
+    @Setup(Level.Trial)
+    public void openDocument() throws Throwable {
+        document = NEW_TABLE.invoke(Fixtures.javaSource(fileSize));
+        tracker = NEW_TRACKER.invoke(document);
+        offset = fileSize / 2;
+    }
+
+    @Benchmark
+    public boolean typeAndDelete() throws Throwable {
+        INSERT.invoke(document, offset, "x");
+        boolean dirty = (boolean) IS_DIRTY.invoke(tracker);
+        DELETE.invoke(document, offset, 1);
+        return dirty != (boolean) IS_DIRTY.invoke(tracker);
+    }
+}
@@ -0,0 +1,72 @@
+package ide.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Opening a file: FileLoader.read decodes it in chunks (charset and BOM
+// detection, line breaks normalized) and each chunk is appended to the
+// tab's PieceTable, as openFile does, by file size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileOpenBenchmark {
+
+    private static final Class<?> LOAD = Ide.type("FileLoader$Load");
+    private static final MethodHandle NEW_LOAD = Ide.constructor("FileLoader$Load");
+    private static final MethodHandle READ = Ide.staticMethod("FileLoader", "read", Ide.type("TextEncoding"),
+            Path.class, LOAD, Consumer.class);
+    private static final MethodHandle NEW_TABLE = Ide.constructor("PieceTable");
+    private static final MethodHandle INSERT = Ide.method("PieceTable", "insert", void.class, int.class,
+            String.class);
+    private static final MethodHandle LENGTH = Ide.method("PieceTable", "length", int.class);
+
+    @Param({ "16384", "1048576", "16777216" })
+    public int fileSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("ide-bench", ".java");
+        Files.writeString(file, Fixtures.javaSource(fileSize).replace("\n", "\r\n")); // Normalized on read
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int open() throws Throwable {
+        Object table = NEW_TABLE.invoke();
+        Consumer<String> append = chunk -> {
+            try {
+                INSERT.invoke(table, (int) LENGTH.invoke(table), chunk);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        READ.invoke(file, NEW_LOAD.invoke(), append);
+        return (int) LENGTH.invoke(table);
+    }
+}
@@ -0,0 +1,80 @@
+package ide.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Inputs shaped like a Java project: source text and folder trees
+final class Fixtures {
+
+    private static final String[] LINES = {
+        "package com.example.service;",
+        "",
+        "import java.util.List;",
+        "import java.util.Map;",
+        "",
+        "// Keeps the orders of one customer and their totals",
+        "public class OrderService {",
+        "    private final Map<String, List<Order>> ordersByCustomer = new HashMap<>();",
+        "",
+        "    public long total(String customer) {",
+        "        long sum = 0;",
+        "        for (Order order : ordersByCustomer.getOrDefault(customer, List.of())) {",
+        "            sum += order.amount() * order.quantity(); // In cents",
+        "        }",
+        "        return sum;",
+        "    }",
+        "}",
+    };
+
+    private Fixtures() {
+    }
+
+    // About chars of Java source, lines separated by \n
+    static String javaSource(int chars) {
+        StringBuilder text = new StringBuilder(chars + 128);
+        for (int i = 0; text.length() < chars; i++) {
+            text.append(LINES[i % LINES.length]).append('\n');
+        }
+        return text.toString();
+    }
+
+    // files .java files of 2 KB, perFolder to a folder, folders nested two deep
+    static Path tree(int files, int perFolder) throws IOException {
+        Path root = Files.createTempDirectory("ide-bench");
+        String source = javaSource(2048);
+        for (int i = 0; i < files; i++) {
+            int folder = i / perFolder;
+            Path dir = root.resolve("pkg" + folder / 16).resolve("sub" + folder % 16);
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("Class" + i + ".java"), source);
+        }
+        return root;
+    }
+
+    // entries in one folder, one in ten a sub folder, which is what a listing reads
+    static Path flatFolder(int entries) throws IOException {
+        Path root = Files.createTempDirectory("ide-bench");
+        for (int i = 0; i < entries; i++) {
+            if (i % 10 == 0) {
+                Files.createDirectory(root.resolve("pkg" + i));
+            } else {
+                Files.createFile(root.resolve("Class" + i + ".java"));
+            }
+        }
+        return root;
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
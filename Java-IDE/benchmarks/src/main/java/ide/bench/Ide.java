@@ -0,0 +1,57 @@
+package ide.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// The IDE's classes are in the unnamed package, which Java code in a package
+// cannot import, and JMH only takes benchmarks in a package. So benchmarks
+// reach the IDE through method handles kept in static final fields: the JIT
+// treats those as constants and inlines through them like direct calls.
+final class Ide {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private Ide() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("IDE class not on the classpath: " + name, e);
+        }
+    }
+
+    static MethodHandle constructor(String owner, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(type(owner), MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + " constructor", e);
+        }
+    }
+
+    static MethodHandle method(String owner, String name, Class<?> returns, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(type(owner), name, MethodType.methodType(returns, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    static MethodHandle staticMethod(String owner, String name, Class<?> returns, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(type(owner), name, MethodType.methodType(returns, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    static Object staticField(String owner, String name) {
+        try {
+            return type(owner).getField(name).get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ide.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Saving a tab: SaveService.write encodes a document snapshot into a temp
+// file, forces it and moves it over the target, as saveFileFromTab does on
+// the save thread, by file size. Dominated by the disk's fsync for small files
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveBenchmark {
+
+    private static final MethodHandle NEW_TABLE = Ide.constructor("PieceTable", String.class);
+    private static final MethodHandle SNAPSHOT = Ide.method("PieceTable", "snapshot",
+            Ide.type("PieceTable$Snapshot"));
+    private static final MethodHandle WRITE = Ide.staticMethod("SaveService", "write", long.class, Path.class,
+            Ide.type("PieceTable$Snapshot"), Ide.type("TextEncoding"));
+    private static final Object ENCODING = Ide.staticField("TextEncoding", "DEFAULT");
+
+    @Param({ "16384", "1048576", "16777216" })
+    public int fileSize;
+
+    private Path folder;
+    private Path file;
+    private Object snapshot;
+
+    @Setup(Level.Trial)
+    public void createDocument() throws Throwable {
+        folder = Files.createTempDirectory("ide-bench");
+        file = folder.resolve("Saved.java");
+        snapshot = SNAPSHOT.invoke(NEW_TABLE.invoke(Fixtures.javaSource(fileSize)));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFolder() throws IOException {
+        Fixtures.delete(folder);
+    }
+
+    @Benchmark
+    public long save() throws Throwable {
+        return (long) WRITE.invoke(file, snapshot, ENCODING);
+    }
+}
@@ -0,0 +1,49 @@
+package ide.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+// Terminal output: appendToTerminal hands each chunk of process output to the
+// TerminalBuffer, which splits it into lines in a bounded ring, by chunk size.
+// Throughput, so the score reads as chunks per millisecond
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerminalAppendBenchmark {
+
+    private static final MethodHandle NEW_BUFFER = Ide.constructor("TerminalBuffer", int.class);
+    private static final MethodHandle APPEND = Ide.method("TerminalBuffer", "append", void.class, String.class,
+            String.class);
+
+    @Param({ "80", "4096", "65536" })
+    public int chunkSize;
+
+    private Object buffer;
+    private String chunk;
+
+    @Setup(Level.Trial)
+    public void createBuffer() throws Throwable {
+        buffer = NEW_BUFFER.invoke(10_000);
+        chunk = Fixtures.javaSource(chunkSize).substring(0, chunkSize);
+    }
+
+    @Benchmark
+    public void append() throws Throwable {
+        APPEND.invoke(buffer, chunk, "#c9d1d9");
+    }
+}
@@ -0,0 +1,561 @@
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.event.Event;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Stage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Replays a SessionScript against the real IDE without a screen (Monocle's
+// headless glass) and reports the latency of each step: count and p50 / p95 /
+// p99 / max, and the peak heap used. Steps go through the UI as a user would:
+// double clicks on the explorer, key events on the editor, Ctrl+S, commands
+// in the terminal field; each is timed until the UI shows its result. Exits
+// with 1 if a budget of the script is exceeded, 2 if the script is wrong or
+// a step times out, so it can gate a build:
+//
+//   java -jar replay/target/replay.jar replay/sessions/smoke.session
+//
+// The IDE runs with a throwaway home folder, so the user's workspace,
+// journal and undo histories are not touched.
+public class SessionReplay {
+
+    private static final long POLL_MILLIS = 2;
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+    private static final int TERMINAL_TAIL_LINES = 50; // Searched for the end marker of a command
+    // How the JVM and JavaFX report a native library that did not load
+    private static final Pattern MISSING_LIBRARY = Pattern.compile("([\\w.+-]+\\.so[\\w.]*): cannot open shared object");
+    private static final Pattern NOT_LOADED = Pattern.compile("no (\\w+) in java\\.library\\.path");
+
+    // Typed by "type", over and over
+    private static final String CODE = """
+            private int total(List<Integer> values) {
+                int sum = 0;
+                for (int value : values) {
+                    sum += value * 2;
+                }
+                return sum;
+            }
+            """;
+
+    private final SessionScript script;
+    private final Map<String, PerfMonitor.Histogram> histograms = new LinkedHashMap<>();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final Set<TreeItem<String>> opened = new HashSet<>();
+    private final List<Path> temporary = new ArrayList<>();
+    private long timeoutNanos = TimeUnit.SECONDS.toNanos(60);
+    private int typed;
+    private int commands;
+    private Path project;
+    private App app;
+    private Scene scene;
+
+    // A step could not be replayed: the script is wrong or the IDE never showed the result
+    static class ReplayException extends Exception {
+        ReplayException(String message) {
+            super(message);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: java -jar replay.jar <session file>");
+            System.exit(2);
+        }
+        // Before any JavaFX or IDE class is loaded
+        setDefault("glass.platform", "Monocle");
+        setDefault("monocle.platform", "Headless");
+        setDefault("prism.order", "sw");
+        setDefault("java.awt.headless", "true");
+
+        int status;
+        SessionReplay replay = null;
+        try {
+            replay = new SessionReplay(SessionScript.read(Path.of(args[0])));
+            replay.run();
+            status = replay.report();
+        } catch (IOException | ReplayException e) {
+            System.err.println("Replay failed: " + e.getMessage());
+            status = 2;
+        } catch (Exception e) {
+            StackTraceElement[] frames = e.getStackTrace();
+            System.err.println("Replay failed: " + e + (frames.length > 0 ? " at " + frames[0] : ""));
+            if (Boolean.getBoolean("ide.replay.stackTraces")) {
+                e.printStackTrace();
+            }
+            status = 2;
+        } finally {
+            if (replay != null) {
+                replay.shutDown();
+            }
+        }
+        System.exit(status);
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    // Why the IDE did not start, for the reader: when a JavaFX native library
+    // would not load, the system library it is missing (JavaFX itself only
+    // says it is not in java.library.path)
+    private static String startupFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            String message = String.valueOf(cause.getMessage());
+            Matcher missing = MISSING_LIBRARY.matcher(message);
+            if (missing.find()) {
+                return "the system library " + missing.group(1) + " is missing (see the prerequisites in the README)";
+            }
+            Matcher notLoaded = NOT_LOADED.matcher(message);
+            if (notLoaded.find()) {
+                String needs = missingDependency(notLoaded.group(1));
+                return "JavaFX could not load its native library " + notLoaded.group(1)
+                        + (needs != null ? ", the system library " + needs + " is missing" : "")
+                        + " (see the prerequisites in the README)";
+            }
+        }
+        return failure.toString();
+    }
+
+    // Load the copy JavaFX unpacked into its cache once more, to hear what it needs
+    private static String missingDependency(String library) {
+        Path unpacked = Path.of(System.getProperty("javafx.cachedir"), System.mapLibraryName(library));
+        if (!Files.isRegularFile(unpacked)) {
+            return null;
+        }
+        try {
+            System.load(unpacked.toString());
+            return null;
+        } catch (UnsatisfiedLinkError e) {
+            Matcher missing = MISSING_LIBRARY.matcher(String.valueOf(e.getMessage()));
+            return missing.find() ? missing.group(1) : null;
+        }
+    }
+
+    SessionReplay(SessionScript script) throws IOException {
+        this.script = script;
+        // JavaFX unpacks its native libraries into the home folder; keep that in the real one
+        setDefault("javafx.cachedir", Path.of(System.getProperty("user.home"), ".openjfx", "cache").toString());
+        Path home = Files.createTempDirectory("ide-replay-home");
+        temporary.add(home);
+        System.setProperty("user.home", home.toString());
+    }
+
+    private void run() throws Exception {
+        Thread heapSampler = new Thread(this::sampleHeap, "replay-heap");
+        heapSampler.setDaemon(true);
+        heapSampler.start();
+
+        for (SessionScript.Step step : script.steps()) {
+            if (app == null && !List.of("project", "timeout", "open-directory").contains(step.kind())) {
+                throw new ReplayException("Line " + step.line() + ": '" + step.kind() + "' before open-directory");
+            }
+            switch (step.kind()) {
+                case "project" -> project(step);
+                case "timeout" -> timeoutNanos = TimeUnit.SECONDS.toNanos(number(step));
+                case "open-directory" -> openDirectory(step);
+                case "expand" -> expand(step, number(step));
+                case "open" -> open(step, number(step));
+                case "type" -> type(step, number(step));
+                case "save" -> save(step);
+                case "terminal" -> terminal(step);
+                default -> throw new ReplayException("Line " + step.line() + ": unknown step " + step.kind());
+            }
+        }
+        sampleHeapOnce();
+    }
+
+    // "generate N" makes a project of N Java files, anything else is an existing folder
+    private void project(SessionScript.Step step) throws IOException, ReplayException {
+        if (app != null) {
+            throw new ReplayException("Line " + step.line() + ": project after open-directory");
+        }
+        String[] parts = step.argument().split("\\s+");
+        if (parts.length == 2 && parts[0].equals("generate") && parts[1].matches("\\d+")) {
+            project = generateProject(Integer.parseInt(parts[1]));
+            temporary.add(project);
+        } else {
+            project = Path.of(step.argument()).toAbsolutePath();
+            if (!Files.isDirectory(project)) {
+                throw new ReplayException("Line " + step.line() + ": no folder " + project);
+            }
+        }
+    }
+
+    // Start the IDE on the project through its workspace restore, which
+    // opens the stored directory instead of asking for one
+    private void openDirectory(SessionScript.Step step) throws Exception {
+        if (project == null) {
+            throw new ReplayException("Line " + step.line() + ": open-directory without a project");
+        }
+        if (app != null) {
+            throw new ReplayException("Line " + step.line() + ": open-directory twice");
+        }
+        new WorkspaceSnapshot(project, List.of(), List.of(), -1).write(WorkspaceSnapshot.FILE);
+
+        CountDownLatch started = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        long start = System.nanoTime();
+        Platform.startup(() -> {
+            try {
+                app = new App();
+                Stage stage = new Stage();
+                app.start(stage);
+                scene = stage.getScene();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+            started.countDown();
+        });
+        started.await();
+        if (failure[0] != null) {
+            throw new ReplayException("The IDE did not start: " + startupFailure(failure[0]));
+        }
+        waitFor(step, () -> {
+            TreeItem<String> root = treeView().getRoot();
+            return root != null && !root.getChildren().isEmpty() && listed(root);
+        });
+        record(step, System.nanoTime() - start);
+    }
+
+    // Expand every folder down to depth, one at a time, each timed until it is listed
+    private void expand(SessionScript.Step step, int depth) throws Exception {
+        Deque<TreeItem<String>> level = new ArrayDeque<>(fx(() -> List.of(treeView().getRoot())));
+        for (int d = 1; d <= depth && !level.isEmpty(); d++) {
+            Deque<TreeItem<String>> next = new ArrayDeque<>();
+            for (TreeItem<String> parent : level) {
+                for (TreeItem<String> folder : fx(() -> folders(parent))) {
+                    long start = System.nanoTime();
+                    fx(() -> {
+                        folder.setExpanded(true);
+                        return null;
+                    });
+                    waitFor(step, () -> listed(folder));
+                    record(step, System.nanoTime() - start);
+                    next.add(folder);
+                }
+            }
+            level = next;
+        }
+    }
+
+    // Double click the next count files of the tree not opened yet, each
+    // timed until its tab shows the loaded file
+    private void open(SessionScript.Step step, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            TreeItem<String> file = fx(() -> nextFile(treeView().getRoot()));
+            if (file == null) {
+                throw new ReplayException("Line " + step.line() + ": only " + i + " more files in the expanded tree");
+            }
+            if (fx(() -> selectedTab().getText().endsWith(" ●"))) {
+                throw new ReplayException("Line " + step.line() + ": the open tab has unsaved edits, save first");
+            }
+            opened.add(file);
+            String loaded = "📄 " + file.getValue().substring(file.getValue().indexOf(' ') + 1);
+            long start = System.nanoTime();
+            fx(() -> {
+                TreeView<String> tree = treeView();
+                tree.getSelectionModel().select(file);
+                Event.fireEvent(tree, new MouseEvent(MouseEvent.MOUSE_CLICKED, 0, 0, 0, 0, MouseButton.PRIMARY, 2,
+                        false, false, false, false, false, false, false, true, false, true, null));
+                return null;
+            });
+            waitFor(step, () -> selectedTab().getText().equals(loaded));
+            record(step, System.nanoTime() - start);
+        }
+    }
+
+    // Type count chars into the selected editor, each timed until the pulse that paints it
+    private void type(SessionScript.Step step, int count) throws Exception {
+        CodeEditor editor = fx(() -> find(selectedTab().getContent(), CodeEditor.class, e -> true));
+        if (editor == null) {
+            throw new ReplayException("Line " + step.line() + ": no editor in the selected tab");
+        }
+        for (int i = 0; i < count; i++) {
+            char c = CODE.charAt(typed++ % CODE.length());
+            CountDownLatch painted = new CountDownLatch(1);
+            Runnable pulse = painted::countDown;
+            long start = System.nanoTime();
+            fx(() -> {
+                KeyEvent key = c == '\n'
+                        ? new KeyEvent(KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, "", KeyCode.ENTER,
+                                false, false, false, false)
+                        : new KeyEvent(KeyEvent.KEY_TYPED, String.valueOf(c), "", KeyCode.UNDEFINED,
+                                false, false, false, false);
+                Event.fireEvent(editor, key);
+                scene.addPostLayoutPulseListener(pulse);
+                Platform.requestNextPulse();
+                return null;
+            });
+            boolean done = painted.await(timeoutNanos, TimeUnit.NANOSECONDS);
+            long elapsed = System.nanoTime() - start;
+            fx(() -> {
+                scene.removePostLayoutPulseListener(pulse);
+                return null;
+            });
+            if (!done) {
+                throw new ReplayException("Line " + step.line() + ": no pulse after a keystroke");
+            }
+            record(step, elapsed);
+        }
+    }
+
+    // Ctrl+S, timed until the tab no longer shows unsaved changes
+    private void save(SessionScript.Step step) throws Exception {
+        long start = System.nanoTime();
+        fx(() -> {
+            scene.getAccelerators().get(new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN)).run();
+            return null;
+        });
+        waitFor(step, () -> !selectedTab().getText().endsWith(" ●"));
+        record(step, System.nanoTime() - start);
+    }
+
+    // Run a command in the terminal, timed until a marker echoed after it is shown
+    private void terminal(SessionScript.Step step) throws Exception {
+        String marker = "__replay_done_" + ++commands;
+        long start = System.nanoTime();
+        fx(() -> {
+            TextField input = (TextField) scene.lookup(".terminal-input");
+            input.setText(step.argument() + "; echo " + marker);
+            input.fireEvent(new ActionEvent());
+            return null;
+        });
+        waitFor(step, () -> {
+            TerminalBuffer buffer = ((TerminalView) scene.lookup(".terminal-scroll")).getBuffer();
+            long from = Math.max(buffer.getFirstLine(), buffer.getEndLine() - TERMINAL_TAIL_LINES);
+            for (long line = from; line < buffer.getEndLine(); line++) {
+                if (buffer.getText(line).trim().equals(marker)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        record(step, System.nanoTime() - start);
+    }
+
+    // Print the latency of each step and the peak heap, then check the
+    // budgets; 0 if all are met, 1 if not
+    private int report() throws ReplayException {
+        System.out.printf("%-16s %6s %9s %9s %9s %9s%n", "", "n", "p50", "p95", "p99", "max");
+        for (Map.Entry<String, PerfMonitor.Histogram> entry : histograms.entrySet()) {
+            PerfMonitor.Histogram histogram = entry.getValue();
+            System.out.printf("%-16s %6d %9s %9s %9s %9s%n", entry.getKey(), histogram.getCount(),
+                    millis(histogram.percentileNanos(50)), millis(histogram.percentileNanos(95)),
+                    millis(histogram.percentileNanos(99)), millis(histogram.getMaxNanos()));
+        }
+        double heapMegabytes = peakHeap.get() / (1024.0 * 1024);
+        System.out.printf("Peak heap used: %.1f MB%n", heapMegabytes);
+
+        int status = 0;
+        for (SessionScript.Budget budget : script.budgets()) {
+            double actual;
+            if (budget.step().equals("heap")) {
+                actual = heapMegabytes;
+            } else {
+                PerfMonitor.Histogram histogram = histograms.get(budget.step());
+                if (histogram == null) {
+                    throw new ReplayException("Budget for '" + budget.step() + "', which the session never ran");
+                }
+                long nanos = budget.statistic().equals("max") ? histogram.getMaxNanos()
+                        : histogram.percentileNanos(Double.parseDouble(budget.statistic().substring(1)));
+                actual = nanos / 1_000_000.0;
+            }
+            if (actual > budget.limit()) {
+                System.out.printf("Over budget: %s %s is %.1f, the limit is %.1f%n",
+                        budget.step(), budget.statistic(), actual, budget.limit());
+                status = 1;
+            }
+        }
+        System.out.println(status == 0 ? "All budgets met" : "Budgets exceeded");
+        return status;
+    }
+
+    private static String millis(long nanos) {
+        return nanos == 0 ? "-" : String.format("%.1f ms", nanos / 1_000_000.0);
+    }
+
+    // Stop the IDE as on exit and delete the generated project and home folder
+    private void shutDown() {
+        if (app != null) {
+            try {
+                fx(() -> {
+                    app.stop();
+                    return null;
+                });
+            } catch (Exception e) {
+                System.err.println("Stopping the IDE failed: " + e);
+            }
+            Platform.exit();
+        }
+        for (Path path : temporary) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                for (Path each : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(each);
+                }
+            } catch (IOException e) {
+                // Left in the temp folder
+            }
+        }
+    }
+
+    private void record(SessionScript.Step step, long nanos) {
+        histograms.computeIfAbsent(step.kind(), k -> new PerfMonitor.Histogram()).record(nanos);
+        sampleHeapOnce();
+    }
+
+    private void sampleHeap() {
+        while (true) {
+            sampleHeapOnce();
+            try {
+                Thread.sleep(HEAP_SAMPLE_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sampleHeapOnce() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    private static int number(SessionScript.Step step) throws ReplayException {
+        try {
+            return Integer.parseInt(step.argument());
+        } catch (NumberFormatException e) {
+            throw new ReplayException("Line " + step.line() + ": '" + step.kind() + "' needs a number");
+        }
+    }
+
+    // Run on the FX thread and wait for the result, as long as a step may take
+    private <T> T fx(Callable<T> action) throws Exception {
+        FutureTask<T> task = new FutureTask<>(action);
+        Platform.runLater(task);
+        try {
+            return task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ReplayException("The FX thread did not answer for "
+                    + TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + " s");
+        }
+    }
+
+    // Poll condition on the FX thread until it holds or the step times out
+    private void waitFor(SessionScript.Step step, Callable<Boolean> condition) throws Exception {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!fx(condition)) {
+            if (System.nanoTime() > deadline) {
+                throw new ReplayException("Line " + step.line() + ": '" + step.kind() + " " + step.argument()
+                        + "' timed out after " + TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + " s");
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    private TreeView<String> treeView() {
+        @SuppressWarnings("unchecked")
+        TreeView<String> tree = (TreeView<String>) scene.lookup(".tree-view");
+        return tree;
+    }
+
+    // The editor tabs: the tab pane holding the file tabs
+    private Tab selectedTab() {
+        TabPane tabs = find(scene.getRoot(), TabPane.class,
+                pane -> pane.getTabs().stream().anyMatch(tab -> tab.getText().startsWith("📄 ")
+                        || tab.getText().startsWith("⏳ ")));
+        return tabs == null ? new Tab("") : tabs.getSelectionModel().getSelectedItem();
+    }
+
+    // Every entry of a folder is listed (no "⏳ Loading..." placeholder left)
+    private static boolean listed(TreeItem<String> folder) {
+        return folder.getChildren().stream().noneMatch(child -> child.getValue().startsWith("⏳"));
+    }
+
+    private static List<TreeItem<String>> folders(TreeItem<String> parent) {
+        return parent.getChildren().stream().filter(child -> child.getValue().startsWith("📁 ")).toList();
+    }
+
+    // The first file of the expanded tree, in the order shown, not opened yet
+    private TreeItem<String> nextFile(TreeItem<String> item) {
+        for (TreeItem<String> child : item.getChildren()) {
+            if (child.getValue().startsWith("📁 ")) {
+                TreeItem<String> file = child.isExpanded() ? nextFile(child) : null;
+                if (file != null) {
+                    return file;
+                }
+            } else if (!child.getValue().startsWith("⏳") && !opened.contains(child)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static <T extends Node> T find(Node node, Class<T> type, Predicate<T> match) {
+        if (type.isInstance(node) && match.test(type.cast(node))) {
+            return type.cast(node);
+        }
+        if (node instanceof Parent parent) {
+            for (Node child : parent.getChildrenUnmodifiable()) {
+                T found = find(child, type, match);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    // files Java sources of about 100 lines, 10 to a package, 5 packages to a module
+    private static Path generateProject(int files) throws IOException {
+        Path root = Files.createTempDirectory("ide-replay-project");
+        for (int i = 0; i < files; i++) {
+            Path folder = root.resolve("module" + i / 50).resolve("pkg" + i / 10 % 5);
+            Files.createDirectories(folder);
+            StringBuilder source = new StringBuilder("package pkg;\n\nimport java.util.List;\n\n")
+                    .append("public class Source").append(i).append(" {\n\n");
+            for (int m = 0; m < 12; m++) {
+                source.append("    // Sums the values, twice each\n")
+                        .append(CODE.replace("total(", "total" + m + "(").indent(4)).append('\n');
+            }
+            Files.writeString(folder.resolve("Source" + i + ".java"), source.append("}\n"));
+        }
+        return root;
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// A recorded session for SessionReplay, one step per line:
+//
+//   project generate 400      a generated project of 400 Java files (or: project /some/folder)
+//   open-directory            start the IDE on the project (the workspace restore path)
+//   expand 2                  expand every folder down to depth 2 of the explorer
+//   open 8                    open the first 8 files of the expanded tree, by double click
+//   type 300                  type 300 chars of code into the selected tab, one key event each
+//   save                      Ctrl+S
+//   terminal "seq 1 200000"   run a command in the terminal, until its output is all in
+//   timeout 60                seconds any later step may take before the replay gives up
+//   budget open p95 500       fail if that step's p95 (p50, p95, p99, max) is over 500 ms
+//   budget heap 768           fail if the heap used ever goes over 768 MB
+//
+// Blank lines and lines starting with # are skipped
+public record SessionScript(List<Step> steps, List<Budget> budgets) {
+
+    public record Step(String kind, String argument, int line) {
+    }
+
+    // Limit for a step's percentile ("p95", ...) or "max", in ms; step "heap" is MB
+    public record Budget(String step, String statistic, double limit) {
+    }
+
+    public static SessionScript read(Path file) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        List<Budget> budgets = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String kind = space < 0 ? line : line.substring(0, space);
+            String argument = space < 0 ? "" : unquote(line.substring(space + 1).strip());
+            switch (kind) {
+                case "budget" -> budgets.add(budget(argument, i + 1));
+                case "project", "open-directory", "expand", "open", "type", "save", "terminal", "timeout" ->
+                        steps.add(new Step(kind, argument, i + 1));
+                default -> throw new IOException("Line " + (i + 1) + ": unknown step '" + kind + "'");
+            }
+        }
+        return new SessionScript(steps, budgets);
+    }
+
+    private static Budget budget(String argument, int line) throws IOException {
+        String[] parts = argument.split("\\s+");
+        try {
+            if (parts.length == 2 && parts[0].equals("heap")) {
+                return new Budget("heap", "max", Double.parseDouble(parts[1]));
+            }
+            if (parts.length == 3 && parts[1].matches("p\\d{1,2}(\\.\\d+)?|max")) {
+                return new Budget(parts[0], parts[1], Double.parseDouble(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException("Line " + line + ": expected 'budget <step> <p50|p95|p99|max> <ms>' or 'budget heap <MB>'");
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+}
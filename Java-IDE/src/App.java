@@ -4,8 +4,10 @@ import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.control.*;
 import javafx.stage.DirectoryChooser;
+import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.geometry.Orientation;
 import javafx.application.Platform;
@@ -13,68 +15,134 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import javax.swing.text.AbstractDocument.Content;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 import javafx.scene.input.KeyEvent;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 
 public class App extends Application {
 
+    // Lines of terminal output kept for scrolling back (-Dide.terminal.scrollback=lines)
+    private static final int TERMINAL_SCROLLBACK = Integer.getInteger("ide.terminal.scrollback", 10_000);
+
+    // Files above this size open read-only in large file mode (-Dide.largeFileThreshold=bytes)
+    private static final long LARGE_FILE_THRESHOLD = Long.getLong("ide.largeFileThreshold", 64L * 1024 * 1024);
+
+    // Reopen the last workspace on start and store it on exit (-Dide.restoreWorkspace=false to start empty)
+    private static final boolean RESTORE_WORKSPACE = Boolean.parseBoolean(
+            System.getProperty("ide.restoreWorkspace", "true"));
+
     // Store UI components
     private TreeView<String> treeView;
     private TreeItem<String> rootItem;
-    private TextArea textArea;
+    private CodeEditor editor;
     private Label editorLabel;
     private File currentFile; // Currently opened file
-    private String originalContent; // Original file content to track changes
-    private boolean isModified = false; // Track if file has unsaved changes
     private Stage mainStage; // Main application window
 
     // Terminal variables
     private VBox terminalBox;
-    private TextFlow terminalOutput;
+    private TerminalView terminalView;
     private TextField terminalInput;
-    private ScrollPane terminalScrollPane;
+    private ShellSession shellSession; // Long-lived shell, started by the first command
+    private ProcessManager processManager = new ProcessManager(); // Every child process of the IDE
+    private CompileService compileService = new CompileService();
+    private RunnerPool runnerPool = new RunnerPool(processManager, this::appendToTerminal); // Warm JVMs for Run
+    private RunnerPool.Job runnerJob; // Program running on a warm JVM, gets the terminal's input
     private String currentDirectory;
+    private File projectDirectory; // Folder opened in the explorer
     private boolean terminalVisible = false;
     private SplitPane editorTerminalSplitPane;
     private TabPane editorTabPane;
     private Map<Tab, File> tabFileMap = new HashMap<>(); // Maps tabs to files
-    private Map<Tab, String> tabOriginalContentMap = new HashMap<>();
-    private Map<Tab, TextArea> tabTextAreaMap = new HashMap<>();
+    private Map<Tab, ModificationTracker> tabTrackerMap = new HashMap<>(); // Dirty state against the saved text
+    private Map<Tab, CodeEditor> tabEditorMap = new HashMap<>();
+    private Map<Tab, LargeFileView> tabLargeFileMap = new HashMap<>(); // Read-only tabs of huge files
+    private Map<Tab, FileLoader.Load> tabLoadMap = new HashMap<>(); // Files still streaming into their tab
+    private Map<Tab, TextEncoding> tabEncodingMap = new HashMap<>(); // Charset, BOM and line separator on disk
+    private FileLoader fileLoader = new FileLoader();
+    private SaveService saveService = new SaveService();
+    private Label statusLabel = new Label(); // Save results and other non-blocking messages
+    private TrigramIndex searchIndex = new TrigramIndex(message -> statusLabel.setText(message));
+    private SearchView searchView;
+    private PathIndex pathIndex = new PathIndex(); // Every project path, for Quick Open
+    private QuickOpen quickOpen = new QuickOpen(pathIndex, path -> openFile(path.toFile()));
+    private SymbolIndex symbolIndex = new SymbolIndex(message -> statusLabel.setText(message));
+    private SymbolView symbolView; // Outline, definitions and usages
+    private CompletionEngine completionEngine = new CompletionEngine(symbolIndex);
+    private SplitPane mainSplitPane;
+    private VBox fileExplorer;
+    private Map<Tab, Runnable> tabLoadedActionMap = new HashMap<>(); // Runs once the file is in the tab
+    private Map<Tab, Integer> tabJournalMap = new HashMap<>(); // Ids of tabs in the edit journal
+    private Set<Path> workspaceHistories = new HashSet<>(); // Files of this workspace with a stored undo history
+    private EditJournal editJournal = new EditJournal(EditJournal.FOLDER, this::journalBuffers,
+            this::reportStoreError);
+    private TabLifecycleManager tabLifecycle = new TabLifecycleManager(); // Hibernates tabs past the heap budget
+    private PerfMonitor perfMonitor = new PerfMonitor(); // Latencies, FX thread stalls and JFR events
+    private PerfOverlay perfOverlay = new PerfOverlay(perfMonitor);
     private Map<TreeItem<String>, File> treeItemFileMap = new HashMap<>();
+    private Set<TreeItem<String>> loadedTreeItems = new HashSet<>(); // Folders whose children are listed
+    private DirectoryLoader directoryLoader = new DirectoryLoader();
+    private DirectoryWatcher directoryWatcher; // Null if the OS offers no watch service
+    private Map<File, TreeItem<String>> watchedFolderMap = new HashMap<>(); // Expanded folders being watched
 
     @Override
     public void start(Stage primaryStage) {
         this.mainStage = primaryStage;
 
+        // Keep the explorer in sync with changes made outside the IDE
+        try {
+            directoryWatcher = new DirectoryWatcher(this::applyWatchBatch);
+        } catch (IOException e) {
+            directoryWatcher = null;
+        }
+
         // Create and show the window first
+        long startTime = System.nanoTime();
         createWindow(primaryStage);
 
-        // Wait 2 seconds then show directory chooser
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000);
+        // Come back to the last workspace, or ask for a directory once the window is up
+        WorkspaceSnapshot snapshot = RESTORE_WORKSPACE ? WorkspaceSnapshot.read(WorkspaceSnapshot.FILE) : null;
+        if (snapshot != null && Files.isDirectory(snapshot.directory())) {
+            restoreWorkspace(snapshot, startTime);
+        } else {
+            Platform.runLater(() -> openDirectoryChooser(primaryStage));
+        }
 
-                // Run on JavaFX thread
-                Platform.runLater(() -> {
-                    openDirectoryChooser(primaryStage);
-                });
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
+        // Bring back edits that were not saved when the IDE last went down
+        recoverUnsavedEdits(editJournal.recover());
+    }
+
+    @Override
+    public void stop() {
+        saveWorkspace(); // While the tree and tabs are still there
+        boolean unsavedEdits = tabTrackerMap.values().stream().anyMatch(ModificationTracker::isDirty)
+                || !tabLifecycle.dirtyTabs().isEmpty();
+        editJournal.close(unsavedEdits); // Kept for the next start only if something is unsaved
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
+        }
+        closeShellSession();
+        runnerPool.shutdown();
+        processManager.shutdown(); // No orphans left behind
+        searchIndex.close(); // Stored for the next start
+        symbolIndex.close();
+        completionEngine.shutdown();
+        perfMonitor.close();
+        saveService.shutdown(); // Let pending saves reach the disk
     }
 
     // Create main window with menu, file explorer, and editor
@@ -92,17 +160,64 @@ public class App extends Application {
         SplitPane splitPane = createSplitPane();
         root.setCenter(splitPane);
 
-        Scene scene = new Scene(root, 1400, 900);
+        // Status bar at bottom
+        statusLabel.getStyleClass().add("status-bar");
+        statusLabel.setMaxWidth(Double.MAX_VALUE);
+        root.setBottom(statusLabel);
+
+        // Performance overlay floats over the top right corner
+        StackPane layers = new StackPane(root, perfOverlay);
+        StackPane.setAlignment(perfOverlay, Pos.TOP_RIGHT);
+        StackPane.setMargin(perfOverlay, new Insets(40, 24, 0, 0));
+
+        Scene scene = new Scene(layers, 1400, 900);
         scene.getStylesheets().add(getClass().getResource("dark-theme.css").toExternalForm());
+        perfMonitor.install(scene);
 
         // Add Ctrl+S keyboard shortcut for saving
         scene.getAccelerators().put(
                 new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN),
                 () -> saveFile());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.S, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> saveAllFiles());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> showSearch());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.E, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> showSidePanel(fileExplorer));
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.P, KeyCombination.CONTROL_DOWN),
+                () -> quickOpen.show(stage, ""));
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.P, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> quickOpen.show(stage, ">"));
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F12),
+                () -> goToDefinition());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F12, KeyCombination.SHIFT_DOWN),
+                () -> findUsages());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.O, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> showOutline());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F5),
+                () -> runJava(false));
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F5, KeyCombination.CONTROL_DOWN),
+                () -> runJava(true));
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.F5, KeyCombination.SHIFT_DOWN),
+                () -> stopRunning());
+        scene.getAccelerators().put(
+                new KeyCodeCombination(KeyCode.M, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN),
+                () -> perfOverlay.toggle());
 
         // Handle window close - check for unsaved changes
         stage.setOnCloseRequest(event -> {
-            if (isModified) {
+            if (isModified()) {
                 event.consume(); // Prevent closing
                 showUnsavedChangesDialog(stage);
             }
@@ -125,6 +240,9 @@ public class App extends Application {
         MenuItem saveItem = new MenuItem("Save              Ctrl+S");
         saveItem.setOnAction(e -> saveFile());
 
+        MenuItem saveAllItem = new MenuItem("Save All          Ctrl+Shift+S");
+        saveAllItem.setOnAction(e -> saveAllFiles());
+
         MenuItem closeItem = new MenuItem("Close File        Ctrl+W");
         closeItem.setOnAction(e -> closeFile());
 
@@ -132,33 +250,83 @@ public class App extends Application {
                 new MenuItem("New File          Ctrl+N"),
                 openDirItem,
                 saveItem,
+                saveAllItem,
                 closeItem,
                 new MenuItem("Exit              Alt+F4"));
 
         // Edit Menu
         Menu editMenu = new Menu("Edit");
+        MenuItem findInFilesItem = new MenuItem("Find in Files     Ctrl+Shift+F");
+        findInFilesItem.setOnAction(e -> showSearch());
+        MenuItem definitionItem = new MenuItem("Go to Definition  F12");
+        definitionItem.setOnAction(e -> goToDefinition());
+        MenuItem usagesItem = new MenuItem("Find Usages       Shift+F12");
+        usagesItem.setOnAction(e -> findUsages());
+        MenuItem outlineItem = new MenuItem("Outline           Ctrl+Shift+O");
+        outlineItem.setOnAction(e -> showOutline());
+        MenuItem undoItem = new MenuItem("Undo              Ctrl+Z");
+        undoItem.setOnAction(e -> {
+            CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+            if (selectedEditor != null) {
+                selectedEditor.undo();
+            }
+        });
+        MenuItem redoItem = new MenuItem("Redo              Ctrl+Y");
+        redoItem.setOnAction(e -> {
+            CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+            if (selectedEditor != null) {
+                selectedEditor.redo();
+            }
+        });
+        editMenu.setOnShowing(e -> {
+            // Only the selected tab's editor; the welcome, large file and hibernated tabs have none
+            CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+            undoItem.setDisable(selectedEditor == null || !selectedEditor.canUndo());
+            redoItem.setDisable(selectedEditor == null || !selectedEditor.canRedo());
+        });
         editMenu.getItems().addAll(
-                new MenuItem("Undo              Ctrl+Z"),
-                new MenuItem("Redo              Ctrl+Y"),
+                undoItem,
+                redoItem,
                 new MenuItem("Cut               Ctrl+X"),
                 new MenuItem("Copy              Ctrl+C"),
-                new MenuItem("Paste             Ctrl+V"));
+                new MenuItem("Paste             Ctrl+V"),
+                new SeparatorMenuItem(),
+                findInFilesItem,
+                definitionItem,
+                usagesItem,
+                outlineItem);
 
         // View Menu
         Menu terminalMenu = new Menu("Terminal");
         MenuItem terminalItem = new MenuItem("Terminal          Ctrl+`");
         terminalItem.setOnAction(e -> toggleTerimal());
+        MenuItem explorerItem = new MenuItem("Explorer          Ctrl+Shift+E");
+        explorerItem.setOnAction(e -> showSidePanel(fileExplorer));
+        MenuItem quickOpenItem = new MenuItem("Quick Open        Ctrl+P");
+        quickOpenItem.setOnAction(e -> quickOpen.show(stage, ""));
+        MenuItem paletteItem = new MenuItem("Command Palette   Ctrl+Shift+P");
+        paletteItem.setOnAction(e -> quickOpen.show(stage, ">"));
+        MenuItem perfItem = new MenuItem("Performance       Ctrl+Shift+M");
+        perfItem.setOnAction(e -> perfOverlay.toggle());
         terminalMenu.getItems().addAll(
-                new MenuItem("Command Palette   Ctrl+Shift+P"),
-                new MenuItem("Explorer          Ctrl+Shift+E"),
-                terminalItem);
+                quickOpenItem,
+                paletteItem,
+                explorerItem,
+                terminalItem,
+                perfItem);
 
         // Run Menu
         Menu runMenu = new Menu("Run");
+        MenuItem runFileItem = new MenuItem("Run File          F5");
+        runFileItem.setOnAction(e -> runJava(false));
+        MenuItem runProjectItem = new MenuItem("Run Project       Ctrl+F5");
+        runProjectItem.setOnAction(e -> runJava(true));
+        MenuItem stopItem = new MenuItem("Stop              Shift+F5");
+        stopItem.setOnAction(e -> stopRunning());
         runMenu.getItems().addAll(
-                new MenuItem("Run File          F5"),
-                new MenuItem("Run Project       Ctrl+F5"),
-                new MenuItem("Stop              Shift+F5"));
+                runFileItem,
+                runProjectItem,
+                stopItem);
 
         // Help Menu
         Menu helpMenu = new Menu("Help");
@@ -168,6 +336,22 @@ public class App extends Application {
 
         menuBar.getMenus().addAll(fileMenu, editMenu, terminalMenu, runMenu, helpMenu);
 
+        // Everything the command palette can do
+        quickOpen.addCommand("Open Directory", () -> openDirectoryChooser(stage));
+        quickOpen.addCommand("Save", () -> saveFile());
+        quickOpen.addCommand("Save All", () -> saveAllFiles());
+        quickOpen.addCommand("Close File", () -> closeFile());
+        quickOpen.addCommand("Find in Files", () -> showSearch());
+        quickOpen.addCommand("Go to Definition", () -> goToDefinition());
+        quickOpen.addCommand("Find Usages", () -> findUsages());
+        quickOpen.addCommand("Outline", () -> showOutline());
+        quickOpen.addCommand("Show Explorer", () -> showSidePanel(fileExplorer));
+        quickOpen.addCommand("Toggle Terminal", () -> toggleTerimal());
+        quickOpen.addCommand("Toggle Performance Overlay", () -> perfOverlay.toggle());
+        quickOpen.addCommand("Run File", () -> runJava(false));
+        quickOpen.addCommand("Run Project", () -> runJava(true));
+        quickOpen.addCommand("Stop", () -> stopRunning());
+
         return menuBar;
     }
 
@@ -177,7 +361,11 @@ public class App extends Application {
         splitPane.setOrientation(Orientation.HORIZONTAL);
         splitPane.setDividerPositions(0.25); // 25% left, 75% right
 
-        VBox fileExplorer = createFileExplorer();
+        fileExplorer = createFileExplorer();
+        searchView = new SearchView(searchIndex, this::openBuffers,
+                match -> openAt(match.file().toFile(), match.line(), match.column(), match.length()));
+        symbolView = new SymbolView(
+                place -> openAt(place.file().toFile(), place.line(), place.column(), place.length()));
 
         // Create vertical split pane for editor and terminal
         editorTerminalSplitPane = new SplitPane();
@@ -191,6 +379,7 @@ public class App extends Application {
 
         editorTerminalSplitPane.getItems().addAll(editor, terminalBox);
         splitPane.getItems().addAll(fileExplorer, editorTerminalSplitPane); // Fixed this line!
+        mainSplitPane = splitPane;
 
         return splitPane;
     }
@@ -205,14 +394,9 @@ public class App extends Application {
         Label terminalLabel = new Label("TERMINAL");
         terminalLabel.getStyleClass().add("terminal-title");
 
-        // terminal output area
-        terminalOutput = new TextFlow();
-        terminalOutput.getStyleClass().add("terminal-output");
-
-        terminalScrollPane = new ScrollPane(terminalOutput);
-        terminalScrollPane.getStyleClass().add("terminal-scroll");
-        terminalScrollPane.setFitToWidth(true);
-        terminalScrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
+        // terminal output area (only the visible rows have nodes)
+        terminalView = new TerminalView(TERMINAL_SCROLLBACK);
+        terminalView.getStyleClass().add("terminal-scroll");
 
         // Terminal input field
         terminalInput = new TextField();
@@ -222,8 +406,22 @@ public class App extends Application {
         // Handle command execution on enter key
         terminalInput.setOnAction(e -> executeCommand(terminalInput.getText()));
 
-        terminal.getChildren().addAll(terminalLabel, terminalScrollPane, terminalInput);
-        VBox.setVgrow(terminalScrollPane, javafx.scene.layout.Priority.ALWAYS);
+        // Ctrl+F searches the scrollback, also while typing a command;
+        // Ctrl+C stops the running command unless there is text to copy
+        terminal.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.isShortcutDown() && e.getCode() == KeyCode.F) {
+                terminalView.showSearch();
+                e.consume();
+            } else if (e.isControlDown() && e.getCode() == KeyCode.C && shellSession != null
+                    && shellSession.isBusy() && terminalInput.getSelectedText().isEmpty()) {
+                appendToTerminal("^C\n", "#ffa657");
+                shellSession.interrupt();
+                e.consume();
+            }
+        });
+
+        terminal.getChildren().addAll(terminalLabel, terminalView, terminalInput);
+        VBox.setVgrow(terminalView, javafx.scene.layout.Priority.ALWAYS);
 
         return terminal;
     }
@@ -240,19 +438,35 @@ public class App extends Application {
         }
     }
 
-    // Append text to terminal with color
+    // Append text to terminal with color (the view follows the output while at the bottom)
     private void appendToTerminal(String message, String color) {
-        Text text = new Text(message);
-        text.setStyle("-fx-fill: " + color + ";");
-        terminalOutput.getChildren().add(text);
-
-        // Auto scroll to bottom
-        Platform.runLater(() -> terminalScrollPane.setVvalue(1.0));
+        terminalView.append(message, color);
     }
 
-    // Execute terminal Command
-    // Execute terminal command (uses Linux commands on all systems)
+    // Execute terminal command in the shell session (uses Linux commands on all systems)
     private void executeCommand(String command) {
+        // While a program or command runs, typed lines are its input
+        if (runnerJob != null && runnerJob.isRunning()) {
+            terminalInput.clear();
+            appendToTerminal(command + "\n", "#c9d1d9");
+            try {
+                runnerJob.sendInput(command);
+            } catch (IOException e) {
+                appendToTerminal("Error: " + e.getMessage() + "\n", "#ff7b72");
+            }
+            return;
+        }
+        if (shellSession != null && shellSession.isAlive() && shellSession.isBusy()) {
+            terminalInput.clear();
+            appendToTerminal(command + "\n", "#c9d1d9");
+            try {
+                shellSession.sendInput(command);
+            } catch (IOException e) {
+                appendToTerminal("Error: " + e.getMessage() + "\n", "#ff7b72");
+            }
+            return;
+        }
+
         if (command.trim().isEmpty()) {
             return;
         }
@@ -264,90 +478,273 @@ public class App extends Application {
         terminalInput.clear();
 
         // Handle special commands
-        if (command.startsWith("cd ")) {
-            handleCdCommand(command.substring(3).trim());
+        if (command.trim().equals("clear") || command.trim().equals("cls")) {
+            terminalView.clear();
             return;
         }
 
-        // Execute system command using bash/sh
+        PerfMonitor.Timer spawnTimer = perfMonitor.start(PerfMonitor.Operation.COMMAND_SPAWN, command);
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder();
-
-            // Set working directory
-            if (currentDirectory != null) {
-                processBuilder.directory(new File(currentDirectory));
+            if (shellSession == null || !shellSession.isAlive()) {
+                shellSession = createShellSession();
             }
+            shellSession.run(command);
+            spawnTimer.end();
+            terminalInput.setPromptText("Input for the running command... (Ctrl+C to stop)");
+        } catch (IOException e) {
+            appendToTerminal("Error executing command: " + e.getMessage() + "\n", "#ff7b72");
+            appendToTerminal("Note: On Windows, install Git Bash or WSL to use Linux commands\n", "#ffa657");
+        }
+    }
 
-            // Use bash/sh for all systems (requires Git Bash, WSL, or similar on Windows)
-            String os = System.getProperty("os.name").toLowerCase();
-            if (os.contains("win")) {
-                // For Windows, try Git Bash first, then WSL
-                File gitBash = new File("C:\\Program Files\\Git\\bin\\bash.exe");
-                if (gitBash.exists()) {
-                    processBuilder.command(gitBash.getAbsolutePath(), "-c", command);
-                } else {
-                    // Try WSL
-                    processBuilder.command("wsl", "bash", "-c", command);
+    // Start the shell behind the terminal in the current directory
+    private ShellSession createShellSession() throws IOException {
+        File directory = currentDirectory != null ? new File(currentDirectory) : null;
+        return new ShellSession(processManager, directory, this::appendToTerminal, new ShellSession.Listener() {
+            @Override
+            public void commandFinished(ProcessManager.Result result, String directory) {
+                appendToTerminal("[" + result.describe() + "]\n", result.exitCode() == 0 ? "#6e7681" : "#ffa657");
+                // Follow cd in the shell (the path may not exist here when it runs in WSL)
+                if (directory != null && new File(directory).isDirectory()) {
+                    currentDirectory = directory;
                 }
-            } else {
-                // Linux/Mac - use bash directly
-                processBuilder.command("bash", "-c", command);
+                terminalInput.setPromptText(currentDirectory != null ? currentDirectory + " $" : "Enter command...");
             }
 
-            Process process = processBuilder.start();
-
-            // Read output in separate thread
-            new Thread(() -> {
-                try {
-                    BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(process.getInputStream()));
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        String output = line + "\n";
-                        Platform.runLater(() -> appendToTerminal(output, "#a5d6ff"));
+            @Override
+            public void shellExited(int exitCode) {
+                if (shellSession != null && shellSession.wasKilled()) { // To stop a command that would not stop
+                    try {
+                        shellSession = createShellSession();
+                        appendToTerminal("Shell restarted to stop the command (variables and aliases are reset)\n",
+                                "#ffa657");
+                    } catch (IOException e) {
+                        shellSession = null;
                     }
+                } else if (shellSession != null && !shellSession.isAlive()) { // Not closed on purpose
+                    appendToTerminal("Shell exited (" + exitCode + "), the next command starts a new one\n", "#ffa657");
+                    terminalInput.setPromptText("Enter command...");
+                    shellSession = null;
+                }
+            }
+        });
+    }
 
-                    // Read error output
-                    BufferedReader errorReader = new BufferedReader(
-                            new InputStreamReader(process.getErrorStream()));
-                    while ((line = errorReader.readLine()) != null) {
-                        String error = line + "\n";
-                        Platform.runLater(() -> appendToTerminal(error, "#ff7b72"));
-                    }
+    // Compile the project in process (open tabs as they are, unsaved) and run
+    // the current file's main class, or the project's (F5 / Ctrl+F5)
+    private void runJava(boolean wholeProject) {
+        if (projectDirectory == null) {
+            showError("Open a directory first");
+            return;
+        }
+        File file = tabFileMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+        if (!wholeProject && (file == null || !file.getName().endsWith(".java"))) {
+            showError("Run File needs a .java file in the editor");
+            return;
+        }
+        if (!terminalVisible) {
+            toggleTerimal();
+        }
 
-                    process.waitFor();
+        Map<Path, PieceTable.Snapshot> buffers = openBuffers();
+        buffers.keySet().removeIf(path -> !path.toString().endsWith(".java"));
 
-                } catch (Exception e) {
-                    Platform.runLater(() -> appendToTerminal("Error: " + e.getMessage() + "\n", "#ff7b72"));
+        Path root = projectDirectory.toPath().toAbsolutePath();
+        statusLabel.setText("🔨 Compiling…");
+        compileService.compile(root, buffers).thenAccept(result -> Platform.runLater(() -> {
+            for (String message : result.messages()) {
+                appendToTerminal(message + "\n", message.contains("error: ") ? "#ff7b72" : "#ffa657");
+            }
+            if (!result.success()) {
+                statusLabel.setText("❌ Build failed");
+                return;
+            }
+            statusLabel.setText("🔨 Compiled " + result.compiled() + " file(s), " + result.reused()
+                    + " unchanged, in " + result.millis() + " ms");
+            CompletableFuture<String> mainClass = wholeProject
+                    ? compileService.projectMainClass()
+                    : compileService.mainClassOf(file.toPath().toAbsolutePath());
+            mainClass.thenAccept(name -> Platform.runLater(() -> {
+                if (name == null) {
+                    showError(wholeProject ? "No class with a main method in the project"
+                            : "No main method in " + file.getName());
+                } else {
+                    launchJava(name, result);
                 }
-            }).start();
+            }));
+        }));
+    }
 
-        } catch (Exception e) {
-            appendToTerminal("Error executing command: " + e.getMessage() + "\n", "#ff7b72");
-            appendToTerminal("Note: On Windows, install Git Bash or WSL to use Linux commands\n", "#ffa657");
+    // Run a compiled main class on a warm JVM of the pool, or else in a JVM of its own
+    private void launchJava(String mainClass, CompileService.Result compiled) {
+        RunnerPool.Job job = runnerPool.run(mainClass, compiled.classes(), compiled.classpath());
+        if (job != null) {
+            runnerJob = job;
+            appendToTerminal("▶ " + mainClass + " (warm)\n", "#7ee787");
+            job.result().thenAccept(result -> Platform.runLater(() -> {
+                appendToTerminal("[" + mainClass + ": " + result.describe() + "]\n", "#6e7681");
+                if (runnerJob == job) {
+                    runnerJob = null;
+                }
+            }));
+            return;
+        }
+
+        String classpath = compiled.classpath();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath, mainClass);
+        builder.directory(projectDirectory);
+        appendToTerminal("▶ " + mainClass + "\n", "#7ee787");
+        try {
+            processManager.start(mainClass, builder, this::appendToTerminal, null, true).result()
+                    .whenComplete((result, error) -> Platform.runLater(() -> appendToTerminal(error == null
+                            ? "[" + mainClass + ": " + result.describe() + "]\n"
+                            : "Error: " + error.getMessage() + "\n", error == null ? "#6e7681" : "#ff7b72")));
+        } catch (IOException e) {
+            appendToTerminal("Error: " + e.getMessage() + "\n", "#ff7b72");
         }
     }
 
-    // Handle cd (change directory) command
-    private void handleCdCommand(String path) {
-        File newDir;
+    // The text of every open file, unsaved changes included. Snapshots are
+    // immutable, so background threads read them while typing goes on.
+    private Map<Path, PieceTable.Snapshot> openBuffers() {
+        Map<Path, PieceTable.Snapshot> buffers = new HashMap<>();
+        for (Map.Entry<Tab, CodeEditor> entry : tabEditorMap.entrySet()) {
+            File tabFile = tabFileMap.get(entry.getKey());
+            if (tabFile != null && !tabLoadMap.containsKey(entry.getKey())) {
+                buffers.put(tabFile.toPath().toAbsolutePath().normalize(), entry.getValue().getDocument().snapshot());
+            }
+        }
+        return buffers;
+    }
 
-        if (path.equals("..")) {
-            // Go up one directory
-            newDir = new File(currentDirectory).getParentFile();
-        } else if (path.startsWith("/") || path.matches("[A-Za-z]:.*")) {
-            // Absolute path
-            newDir = new File(path);
-        } else {
-            // Relative path
-            newDir = new File(currentDirectory, path);
+    // Put the explorer or the search panel on the left
+    private void showSidePanel(javafx.scene.Node panel) {
+        if (mainSplitPane.getItems().get(0) != panel) {
+            double[] dividers = mainSplitPane.getDividerPositions();
+            mainSplitPane.getItems().set(0, panel);
+            mainSplitPane.setDividerPositions(dividers);
         }
+    }
 
-        if (newDir != null && newDir.exists() && newDir.isDirectory()) {
-            currentDirectory = newDir.getAbsolutePath();
-            appendToTerminal("Changed directory to: " + currentDirectory + "\n", "#7ee787");
+    // Find in Files (Ctrl+Shift+F), starting from the editor's selection
+    private void showSearch() {
+        showSidePanel(searchView);
+        CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+        searchView.focusQuery(selectedEditor != null ? selectedEditor.getSelectedText() : null);
+    }
+
+    // Jump to the declaration of the name at the caret (F12); a list if there are several
+    private void goToDefinition() {
+        String name = nameAtCaret();
+        if (name == null) {
+            return;
+        }
+        CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+        symbolIndex.definitions(currentFile.toPath(), name, selectedEditor.getCaretLine(), symbols -> {
+            if (symbols.isEmpty()) {
+                statusLabel.setText("No declaration of " + name + " found");
+            } else if (symbols.size() == 1) {
+                SymbolIndex.Symbol symbol = symbols.get(0);
+                openAt(symbol.file().toFile(), symbol.line(), symbol.column(), symbol.name().length());
+            } else {
+                showSidePanel(symbolView);
+                symbolView.showDefinitions(name, symbols);
+            }
+        });
+    }
+
+    // List the usages of the name at the caret (Shift+F12)
+    private void findUsages() {
+        String name = nameAtCaret();
+        if (name == null) {
+            return;
+        }
+        CodeEditor selectedEditor = tabEditorMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+        symbolIndex.usages(currentFile.toPath(), name, selectedEditor.getCaretLine(), usages -> {
+            showSidePanel(symbolView);
+            symbolView.showUsages(name, usages);
+        });
+    }
+
+    // Types and members of the current file (Ctrl+Shift+O)
+    private void showOutline() {
+        Tab tab = editorTabPane.getSelectionModel().getSelectedItem();
+        File file = tabFileMap.get(tab);
+        if (file == null || !file.getName().endsWith(".java")) {
+            statusLabel.setText("The outline is for Java files");
+            return;
+        }
+        symbolIndex.outline(file.toPath(), symbols -> {
+            showSidePanel(symbolView);
+            symbolView.showOutline(file.toPath(), symbols);
+        });
+    }
+
+    // The Java identifier the caret is in or next to, or null (with a status message)
+    private String nameAtCaret() {
+        Tab tab = editorTabPane.getSelectionModel().getSelectedItem();
+        CodeEditor selectedEditor = tabEditorMap.get(tab);
+        File file = tabFileMap.get(tab);
+        if (selectedEditor == null || file == null || !file.getName().endsWith(".java")) {
+            statusLabel.setText("Code navigation is for Java files");
+            return null;
+        }
+        PieceTable document = selectedEditor.getDocument();
+        int start = selectedEditor.getCaretPosition();
+        int end = start;
+        while (start > 0 && Character.isJavaIdentifierPart(document.charAt(start - 1))) {
+            start--;
+        }
+        while (end < document.length() && Character.isJavaIdentifierPart(document.charAt(end))) {
+            end++;
+        }
+        if (start == end || !Character.isJavaIdentifierStart(document.charAt(start))) {
+            statusLabel.setText("No name at the caret");
+            return null;
+        }
+        return document.getText(start, end);
+    }
+
+    // Open a file and select a range in it, once it is loaded
+    private void openAt(File file, int line, int column, int length) {
+        openFile(file);
+        Tab tab = editorTabPane.getSelectionModel().getSelectedItem();
+        CodeEditor fileEditor = tabEditorMap.get(tab);
+        if (fileEditor == null || !file.equals(tabFileMap.get(tab))) {
+            return; // Large file view or the file could not be opened
+        }
+        Runnable select = () -> {
+            PieceTable document = fileEditor.getDocument();
+            int start = Math.min(document.getLineStart(Math.min(line, document.getLineCount() - 1)) + column,
+                    document.length());
+            fileEditor.goToLine(line);
+            fileEditor.selectRange(start, Math.min(start + length, document.length()));
+            fileEditor.requestFocus();
+        };
+        if (tabLoadMap.containsKey(tab)) {
+            tabLoadedActionMap.put(tab, select);
         } else {
-            appendToTerminal("Directory not found: " + path + "\n", "#ff7b72");
+            select.run();
+        }
+    }
+
+    // Stop running processes and the command in the terminal (Shift+F5)
+    private void stopRunning() {
+        int stopped = processManager.cancelAll() + runnerPool.cancelAll();
+        if (shellSession != null && shellSession.isBusy()) {
+            appendToTerminal("^C\n", "#ffa657");
+            shellSession.interrupt();
+            stopped++;
+        }
+        statusLabel.setText(stopped == 0 ? "Nothing is running" : "⏹ Stopped " + stopped + " running process(es)");
+    }
+
+    // Stop the shell; the next command starts a new one
+    private void closeShellSession() {
+        if (shellSession != null) {
+            shellSession.close();
+            shellSession = null;
         }
     }
 
@@ -421,11 +818,8 @@ public class App extends Application {
             try {
                 File newFile = new File(parentDir, fileName);
                 if (newFile.createNewFile()) {
-                    // Add to tree
-                    TreeItem<String> newItem = new TreeItem<>("📄 " + fileName);
-                    treeItemFileMap.put(newItem, newFile);
-                    selectedItem.getChildren().add(newItem);
-                    selectedItem.setExpanded(true);
+                    addCreatedItem(selectedItem, newFile, false);
+                    pathIndex.fileAdded(newFile.toPath());
                     showInfo("File created successfully!");
                 } else {
                     showError("File already exists!");
@@ -460,11 +854,7 @@ public class App extends Application {
         result.ifPresent(folderName -> {
             File newFolder = new File(parentDir, folderName);
             if (newFolder.mkdir()) {
-                // Add to tree
-                TreeItem<String> newItem = new TreeItem<>("📁 " + folderName);
-                treeItemFileMap.put(newItem, newFolder);
-                selectedItem.getChildren().add(newItem);
-                selectedItem.setExpanded(true);
+                addCreatedItem(selectedItem, newFolder, true);
                 showInfo("Folder created successfully!");
             } else {
                 showError("Folder already exists or cannot be created!");
@@ -494,8 +884,9 @@ public class App extends Application {
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
             if (file.delete()) {
+                pathIndex.fileRemoved(file.toPath()); // Folders can only be deleted when empty
                 selectedItem.getParent().getChildren().remove(selectedItem);
-                treeItemFileMap.remove(selectedItem);
+                forgetTreeItem(selectedItem);
                 showInfo("Deleted successfully!");
             } else {
                 showError("Could not delete file/folder!");
@@ -503,6 +894,19 @@ public class App extends Application {
         }
     }
 
+    // Add a newly created file or folder under the folder of the selected item
+    private void addCreatedItem(TreeItem<String> selectedItem, File file, boolean directory) {
+        TreeItem<String> folderItem = treeItemFileMap.get(selectedItem).isDirectory()
+                ? selectedItem
+                : selectedItem.getParent();
+
+        // A folder that was never expanded lists the new entry when it loads
+        if (loadedTreeItems.contains(folderItem)) {
+            folderItem.getChildren().add(createTreeItem(file, directory));
+        }
+        folderItem.setExpanded(true);
+    }
+
     // Get directory for tree item (file's parent or folder itself)
     private File getDirectoryForItem(TreeItem<String> item) {
         File file = treeItemFileMap.get(item);
@@ -543,12 +947,8 @@ public class App extends Application {
     private Tab createWelcomeTab() {
         Tab tab = new Tab("📄 Untitled-1");
 
-        TextArea textArea = new TextArea();
-        textArea.getStyleClass().add("text-editor");
-        textArea.setText("// Welcome to IDE-My\n// Please select a directory to start working\n\n");
-        textArea.setWrapText(false);
-
-        tab.setContent(textArea);
+        editor = new CodeEditor("// Welcome to IDE-My\n// Please select a directory to start working\n\n");
+        tab.setContent(editor);
 
         return tab;
     }
@@ -557,26 +957,47 @@ public class App extends Application {
     private Tab createFileTab(File file, String content) {
         Tab tab = new Tab("📄 " + file.getName());
         tab.setClosable(true);
+        tabJournalMap.put(tab, editJournal.newId());
+        attachEditor(tab, file, content);
+        return tab;
+    }
 
-        TextArea textArea = new TextArea(content);
-        textArea.getStyleClass().add("text-editor");
-        textArea.setWrapText(false);
+    // Give a file tab a new editor holding content (when opened, or woken from hibernation)
+    private CodeEditor attachEditor(Tab tab, File file, String content) {
+        CodeEditor fileEditor = new CodeEditor(content);
+        Lexer lexer = Lexer.forFileName(file.getName());
+        fileEditor.setLexer(lexer);
+        if (lexer != null) {
+            new CompletionPopup(fileEditor, completionEngine, file.getName().endsWith(".java"));
+        }
+        if (file.getName().endsWith(".java")) {
+            // Navigation follows unsaved edits too
+            fileEditor.getDocument().addListener((offset, removed, inserted) -> {
+                if (!tabLoadMap.containsKey(tab)) {
+                    symbolIndex.bufferChanged(file.toPath(), fileEditor.getDocument().snapshot());
+                }
+            });
+        }
 
         // Track changes for this tab
-        textArea.textProperty().addListener((obs, oldVal, newVal) -> {
-            String originalContent = tabOriginalContentMap.get(tab);
-            if (originalContent != null && !newVal.equals(originalContent)) {
-                if (!tab.getText().endsWith(" ●")) {
-                    tab.setText(tab.getText() + " ●");
-                }
-            } else {
-                tab.setText("📄 " + file.getName());
+        ModificationTracker tracker = new ModificationTracker(fileEditor.getDocument());
+        tracker.dirtyProperty().addListener((obs, wasDirty, dirty) -> {
+            if (!tabLoadMap.containsKey(tab)) { // Label shows ⏳ while content streams in
+                tab.setText("📄 " + file.getName() + (dirty ? " ●" : ""));
+            }
+        });
+
+        // Log every edit so it survives a crash
+        int journalId = tabJournalMap.get(tab);
+        fileEditor.getDocument().addListener((offset, removed, inserted) -> {
+            if (!tabLoadMap.containsKey(tab)) {
+                editJournal.edited(journalId, file.toPath(), tracker, offset, removed, inserted);
             }
         });
 
         // handle tab close request
         tab.setOnCloseRequest(e -> {
-            if (tab.getText().endsWith(" ●")) {
+            if (tracker.isDirty()) {
                 e.consume();
                 handleTabClose(tab);
             } else {
@@ -584,31 +1005,191 @@ public class App extends Application {
             }
         });
 
-        tab.setContent(textArea);
+        tab.setContent(fileEditor);
 
         // Store tab data
         tabFileMap.put(tab, file);
-        tabOriginalContentMap.put(tab, content);
-        tabTextAreaMap.put(tab, textArea);
+        tabTrackerMap.put(tab, tracker);
+        tabEditorMap.put(tab, fileEditor);
 
-        return tab;
+        return fileEditor;
     }
 
     // Update current file from selectedTab
     private void updateCurrentFileFromTab(Tab tab) {
         currentFile = tabFileMap.get(tab);
-        if (currentFile != null) {
-            textArea = tabTextAreaMap.get(tab);
-            originalContent = tabOriginalContentMap.get(tab);
-            isModified = tab.getText().endsWith(" ●");
+        if (tabLifecycle.isHibernated(tab)) {
+            wakeTab(tab);
+        }
+        if (currentFile != null && tabEditorMap.containsKey(tab)) {
+            editor = tabEditorMap.get(tab);
+            trimTabs(tab);
         }
     }
 
+    // Hibernate the least recently selected tabs while open text is over the heap budget
+    private void trimTabs(Tab selected) {
+        CodeEditor selectedEditor = tabEditorMap.get(selected);
+        if (selectedEditor != null) {
+            tabLifecycle.touched(selected, textBytes(selectedEditor));
+        }
+        for (Tab tab : tabLifecycle.overBudget(selected)) {
+            hibernateTab(tab);
+        }
+    }
+
+    private static long textBytes(CodeEditor fileEditor) {
+        return 2L * fileEditor.getDocument().length() + fileEditor.getUndoManager().getBytes();
+    }
+
+    // Drop a tab's editor and text, keeping its file, view and undo history;
+    // unsaved text goes to a spill file first, written in the background. A
+    // tab still loading stays as it is
+    private void hibernateTab(Tab tab) {
+        CodeEditor tabEditor = tabEditorMap.get(tab);
+        ModificationTracker tracker = tabTrackerMap.get(tab);
+        File file = tabFileMap.get(tab);
+        if (tabEditor == null || tracker == null || file == null || tabLoadMap.containsKey(tab)
+                || tabLifecycle.isSpilling(tab)) {
+            return;
+        }
+        PieceTable.Snapshot text = tabEditor.getDocument().snapshot();
+        if (!tracker.isDirty()) {
+            dropEditor(tab, file, tabEditor, tracker, text, null);
+            return;
+        }
+        tabLifecycle.spill(tab, text).whenComplete((spill, error) -> Platform.runLater(() -> {
+            // Only if the spill still holds the tab's text and the tab is not in use again
+            if (error == null && tabEditorMap.get(tab) == tabEditor && tabLifecycle.isSpilling(tab)
+                    && tabEditor.getDocument().getVersion() == text.getVersion()
+                    && editorTabPane.getSelectionModel().getSelectedItem() != tab) {
+                if (tracker.isDirty()) {
+                    dropEditor(tab, file, tabEditor, tracker, text, spill);
+                } else { // Saved meanwhile: the file has the text
+                    tabLifecycle.discardSpill(tab, spill);
+                    dropEditor(tab, file, tabEditor, tracker, text, null);
+                }
+            } else {
+                tabLifecycle.discardSpill(tab, spill); // On an error it stays in memory
+            }
+        }));
+    }
+
+    // Hibernate a tab whose unsaved text, if any, is in spill
+    private void dropEditor(Tab tab, File file, CodeEditor tabEditor, ModificationTracker tracker,
+            PieceTable.Snapshot text, Path spill) {
+        boolean dirty = spill != null;
+        tabLifecycle.hibernate(tab, file.toPath(), tabEditor.getCaretPosition(), tabEditor.getTopLine(),
+                tabEditor.getScrollLeft(), text, tracker.getSavedHash(), tracker.getSavedLength(),
+                tabEditor.getUndoManager(), spill);
+        tabEditor.setLexer(null); // Stops its highlighting
+        tabEditorMap.remove(tab);
+        tabTrackerMap.remove(tab);
+        tab.setContent(null);
+        tab.setOnCloseRequest(e -> {
+            if (dirty) {
+                e.consume();
+                wakeTab(tab);
+                handleTabClose(tab);
+            } else {
+                removeTabData(tab);
+            }
+        });
+    }
+
+    // Give a hibernated tab its editor back: unsaved text from its spill, else
+    // the file read again; view and undo history come back once the text is in
+    private void wakeTab(Tab tab) {
+        TabLifecycleManager.Hibernated state = tabLifecycle.wake(tab);
+        File file = tabFileMap.get(tab);
+        if (state == null || file == null) {
+            return;
+        }
+        if (!state.dirty()) {
+            attachEditor(tab, file, "");
+            loadFileIntoTab(tab, file); // Hands the state back when done
+            return;
+        }
+        String text;
+        try {
+            text = tabLifecycle.readSpill(state, true);
+        } catch (IOException e) {
+            text = null;
+        }
+        if (text == null) {
+            // The spill is gone: the journal still has the edits, the tab shows the file
+            tabLifecycle.finishWake(tab);
+            attachEditor(tab, file, "");
+            loadFileIntoTab(tab, file);
+            showError("Could not bring back unsaved changes of " + file.getName());
+            return;
+        }
+        CodeEditor fileEditor = attachEditor(tab, file, text);
+        tabTrackerMap.get(tab).markSaved(-1, state.savedHash(), state.savedLength()); // Dirty against the file
+        restoreTabState(fileEditor, tabLifecycle.finishWake(tab));
+    }
+
+    // Put back view and undo history of a woken tab, if its text is what it was
+    private void restoreTabState(CodeEditor fileEditor, TabLifecycleManager.Hibernated state) {
+        PieceTable document = fileEditor.getDocument();
+        if (state != null && state.restored()) { // The stored history only applies to the text it was stored with
+            UndoManager history = UndoManager.read(UndoManager.storeFor(state.file()), document.getHash(),
+                    document.length());
+            if (history != null) {
+                fileEditor.setUndoManager(history);
+            }
+            fileEditor.positionCaret(Math.min(state.caret(), document.length()));
+            fileEditor.scrollTo(state.topLine(), state.scrollLeft());
+            return;
+        }
+        if (state == null || document.getHash() != state.hash() || document.length() != state.length()) {
+            if (state != null) {
+                state.history().clear(); // Changed on disk meanwhile: the history no longer applies
+            }
+            return;
+        }
+        fileEditor.setUndoManager(state.history());
+        fileEditor.positionCaret(state.caret());
+        fileEditor.scrollTo(state.topLine(), state.scrollLeft());
+    }
+
+    // True if the selected tab has unsaved changes
+    private boolean isModified() {
+        ModificationTracker tracker = tabTrackerMap.get(editorTabPane.getSelectionModel().getSelectedItem());
+        return tracker != null && tracker.isDirty();
+    }
+
     // Remove tab data when closing
     private void removeTabData(Tab tab) {
+        TabLifecycleManager.Hibernated hibernated = tabLifecycle.get(tab);
+        if (hibernated != null) {
+            hibernated.history().clear();
+        }
+        tabLifecycle.removed(tab);
+        ModificationTracker tracker = tabTrackerMap.get(tab);
+        if (tracker != null && tracker.isDirty()) {
+            symbolIndex.fileSaved(tabFileMap.get(tab).toPath()); // Unsaved edits are gone: back to the file
+        }
+        LargeFileView largeFileView = tabLargeFileMap.remove(tab);
+        if (largeFileView != null) {
+            largeFileView.close();
+        }
+        FileLoader.Load load = tabLoadMap.remove(tab);
+        if (load != null) {
+            load.cancel();
+        }
+        Integer journalId = tabJournalMap.remove(tab);
+        if (journalId != null) {
+            editJournal.closed(journalId);
+        }
+        tabEncodingMap.remove(tab);
+        tabLoadedActionMap.remove(tab);
         tabFileMap.remove(tab);
-        tabOriginalContentMap.remove(tab);
-        tabTextAreaMap.remove(tab);
+        tabTrackerMap.remove(tab);
+        CodeEditor tabEditor = tabEditorMap.remove(tab);
+        if (tabEditor != null) {
+            tabEditor.clearUndoHistory(); // Its memory goes back to the other tabs' histories
+        }
     }
 
     // Handle Tab close with unsaved Changes
@@ -628,9 +1209,15 @@ public class App extends Application {
 
         if (result.isPresent()) {
             if (result.get() == saveButton) {
-                saveFileFromTab(tab);
-                editorTabPane.getTabs().remove(tab);
-                removeTabData(tab);
+                // Closed once the file is written; if the save fails the tab stays with its edits
+                saveFileFromTab(tab, () -> {
+                    ModificationTracker tracker = tabTrackerMap.get(tab);
+                    // Still open, and not edited again or hibernated while saving
+                    if (tracker != null && !tracker.isDirty() && editorTabPane.getTabs().contains(tab)) {
+                        editorTabPane.getTabs().remove(tab);
+                        removeTabData(tab);
+                    }
+                });
             } else if (result.get() == discardButton) {
                 editorTabPane.getTabs().remove(tab);
                 removeTabData(tab);
@@ -639,24 +1226,122 @@ public class App extends Application {
 
     }
 
-    // Save file from specific tab
+    // Save file from specific tab (written in the background, the editor stays usable)
     private void saveFileFromTab(Tab tab) {
-        File file = tabFileMap.get(tab);
-        TextArea ta = tabTextAreaMap.get(tab);
+        saveFileFromTab(tab, null);
+    }
 
-        if (file != null && ta != null) {
-            try {
-                FileWriter writer = new FileWriter(file);
-                writer.write(ta.getText());
-                writer.close();
+    // Same, then run afterSave on the FX thread if the file was written
+    private void saveFileFromTab(Tab tab, Runnable afterSave) {
+        SaveService.Request request = createSaveRequest(tab);
+        if (request == null) {
+            return;
+        }
+        statusLabel.setText("💾 Saving " + request.path().getFileName() + "…");
+        statusLabel.setTooltip(null);
+        PerfMonitor.Timer saveTimer = perfMonitor.start(PerfMonitor.Operation.SAVE,
+                request.path().getFileName().toString());
+        saveService.save(request).thenAccept(result -> Platform.runLater(() -> {
+            saveTimer.end();
+            if (result.succeeded()) {
+                markTabSaved(tab, result);
+                statusLabel.setText("✅ Saved " + result.path().getFileName() + " (" + formatBytes(result.bytes()) + ")");
+                if (afterSave != null) {
+                    afterSave.run();
+                }
+            } else {
+                statusLabel.setText("❌ Could not save " + result.path().getFileName());
+                showError("Error saving file: " + result.error().getMessage());
+            }
+        }));
+    }
 
-                tabOriginalContentMap.put(tab, ta.getText());
-                tab.setText("📄 " + file.getName());
-                showInfo("File saved successfully!");
-            } catch (IOException e) {
-                showError("Error saving file: " + e.getMessage());
+    // Save every tab with unsaved changes, a few files at a time
+    private void saveAllFiles() {
+        List<Tab> tabs = new ArrayList<>();
+        List<SaveService.Request> requests = new ArrayList<>();
+        for (Tab tab : tabLifecycle.dirtyTabs()) {
+            wakeTab(tab); // Its text is in a spill
+        }
+        for (Tab tab : editorTabPane.getTabs()) {
+            ModificationTracker tracker = tabTrackerMap.get(tab);
+            if (tracker != null && tracker.isDirty()) {
+                SaveService.Request request = createSaveRequest(tab);
+                if (request != null) {
+                    tabs.add(tab);
+                    requests.add(request);
+                }
             }
         }
+        if (requests.isEmpty()) {
+            statusLabel.setText("Nothing to save");
+            return;
+        }
+
+        statusLabel.setText("💾 Saving " + requests.size() + " files…");
+        PerfMonitor.Timer saveTimer = perfMonitor.start(PerfMonitor.Operation.SAVE, requests.size() + " files");
+        saveService.saveAll(requests).thenAccept(results -> Platform.runLater(() -> {
+            saveTimer.end();
+            int saved = 0;
+            StringBuilder failures = new StringBuilder();
+            for (int i = 0; i < results.size(); i++) {
+                SaveService.Result result = results.get(i);
+                if (result.succeeded()) {
+                    markTabSaved(tabs.get(i), result);
+                    saved++;
+                } else {
+                    failures.append(result.path().getFileName()).append(": ")
+                            .append(result.error().getMessage()).append('\n');
+                }
+            }
+            if (failures.length() == 0) {
+                statusLabel.setText("✅ Saved " + saved + " files");
+                statusLabel.setTooltip(null);
+            } else {
+                statusLabel.setText("❌ Saved " + saved + " files, " + (results.size() - saved)
+                        + " failed (hover for details)");
+                statusLabel.setTooltip(new Tooltip(failures.toString().trim()));
+            }
+        }));
+    }
+
+    // Snapshot a tab's document for saving, or null if it cannot be saved now
+    private SaveService.Request createSaveRequest(Tab tab) {
+        File file = tabFileMap.get(tab);
+        CodeEditor tabEditor = tabEditorMap.get(tab);
+        if (file == null || tabEditor == null) {
+            return null;
+        }
+        if (tabLoadMap.containsKey(tab)) {
+            statusLabel.setText("⏳ " + file.getName() + " is still loading");
+            return null;
+        }
+        TextEncoding encoding = tabEncodingMap.getOrDefault(tab, TextEncoding.DEFAULT);
+        return new SaveService.Request(file.toPath(), tabEditor.getDocument().snapshot(), encoding);
+    }
+
+    // Edits made while the file was being written keep the tab dirty
+    private void markTabSaved(Tab tab, SaveService.Result result) {
+        ModificationTracker tracker = tabTrackerMap.get(tab);
+        if (tracker != null) {
+            PieceTable.Snapshot snapshot = result.snapshot();
+            tracker.markSaved(snapshot.getVersion(), snapshot.getHash(), snapshot.length());
+            CodeEditor tabEditor = tabEditorMap.get(tab);
+            if (tabEditor != null) {
+                editJournal.saved(tabJournalMap.get(tab), snapshot, tabEditor.getDocument());
+            }
+        }
+        searchIndex.fileSaved(result.path());
+        symbolIndex.fileSaved(result.path());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        return bytes < 1024 * 1024
+                ? String.format("%.1f KB", bytes / 1024.0)
+                : String.format("%.1f MB", bytes / (1024.0 * 1024.0));
     }
 
     // Show directory chooser dialog
@@ -671,60 +1356,529 @@ public class App extends Application {
         }
     }
 
+    // Show the stored workspace at once: the tree from the stored listings,
+    // then the tabs. Only the selected tab is read now, the others are
+    // hibernated and read (and their view and history checked) when first
+    // selected; the folders are listed again in the background and the time
+    // until the selected tab is loaded is reported
+    private void restoreWorkspace(WorkspaceSnapshot snapshot, long startTime) {
+        Map<Path, List<DirectoryLoader.Entry>> listings = new HashMap<>();
+        for (WorkspaceSnapshot.Folder folder : snapshot.folders()) {
+            listings.put(folder.path(), folder.entries());
+        }
+        loadDirectory(snapshot.directory().toFile(), listings);
+        for (WorkspaceSnapshot.OpenTab openTab : snapshot.tabs()) {
+            workspaceHistories.add(openTab.file());
+        }
+
+        List<Tab> restoredTabs = new ArrayList<>();
+        int[] loading = { 0 };
+        Runnable report = () -> {
+            String message = "⚡ Workspace restored in " + (System.nanoTime() - startTime) / 1_000_000 + " ms ("
+                    + ManagementFactory.getRuntimeMXBean().getUptime() + " ms since launch): "
+                    + restoredTabs.size() + " tabs, " + listings.size() + " folders";
+            statusLabel.setText(message);
+            appendToTerminal(message + "\n", "#8b949e"); // Stays after the status bar moves on
+        };
+        WorkspaceSnapshot.OpenTab selected = snapshot.selectedTab() >= 0
+                && snapshot.selectedTab() < snapshot.tabs().size() ? snapshot.tabs().get(snapshot.selectedTab()) : null;
+        Tab selectedTab = null;
+        for (WorkspaceSnapshot.OpenTab openTab : snapshot.tabs()) {
+            File file = openTab.file().toFile();
+            if (!file.isFile() || tabFileMap.containsValue(file)) {
+                continue; // Deleted since, or listed twice
+            }
+            if (openTab != selected) {
+                Tab tab = createRestoredTab(openTab);
+                editorTabPane.getTabs().add(tab);
+                restoredTabs.add(tab);
+                continue;
+            }
+            openFile(file);
+            Tab tab = editorTabPane.getSelectionModel().getSelectedItem();
+            if (!file.equals(tabFileMap.get(tab)) || restoredTabs.contains(tab)) {
+                continue;
+            }
+            restoredTabs.add(tab);
+            selectedTab = tab;
+            CodeEditor fileEditor = tabEditorMap.get(tab);
+            if (fileEditor != null && tabLoadMap.containsKey(tab)) {
+                loading[0]++;
+                tabLoadedActionMap.put(tab, () -> {
+                    PieceTable document = fileEditor.getDocument();
+                    UndoManager history = UndoManager.read(UndoManager.storeFor(openTab.file()), document.getHash(),
+                            document.length());
+                    if (history != null) {
+                        fileEditor.setUndoManager(history);
+                    }
+                    fileEditor.positionCaret(openTab.caret());
+                    fileEditor.scrollTo(openTab.topLine(), openTab.scrollLeft());
+                    if (--loading[0] == 0) {
+                        report.run();
+                    }
+                });
+            }
+        }
+        if (selectedTab != null) {
+            editorTabPane.getSelectionModel().select(selectedTab);
+        }
+        if (loading[0] == 0) {
+            report.run();
+        }
+    }
+
+    // A tab for a file of the stored workspace, hibernated until it is first selected
+    private Tab createRestoredTab(WorkspaceSnapshot.OpenTab openTab) {
+        File file = openTab.file().toFile();
+        Tab tab = new Tab("📄 " + file.getName());
+        tab.setClosable(true);
+        tabJournalMap.put(tab, editJournal.newId());
+        tabFileMap.put(tab, file);
+        tabLifecycle.restored(tab, openTab.file(), openTab.caret(), openTab.topLine(), openTab.scrollLeft());
+        tab.setOnCloseRequest(e -> removeTabData(tab));
+        return tab;
+    }
+
+    // Open the files the edit journal has unsaved text for and put the text
+    // in once each is loaded (as an edit, so it can be undone); then the
+    // journal is compacted to these tabs
+    private void recoverUnsavedEdits(EditJournal.Recovery recovery) {
+        int[] loading = { 0 };
+        int[] recovered = { 0 };
+        Runnable done = () -> {
+            editJournal.compact();
+            int lost = recovery.lost() + recovery.buffers().size() - recovered[0];
+            if (recovered[0] > 0 || lost > 0) {
+                String message = "♻ Recovered unsaved changes in " + recovered[0] + " files"
+                        + (lost > 0 ? " (" + lost + " changed on disk since, not recovered)" : "");
+                statusLabel.setText(message);
+                appendToTerminal(message + "\n", "#8b949e");
+            }
+        };
+        for (EditJournal.Recovered buffer : recovery.buffers()) {
+            File file = buffer.file().toFile();
+            if (!file.isFile()) {
+                continue;
+            }
+            openFile(file);
+            Tab tab = editorTabPane.getSelectionModel().getSelectedItem();
+            CodeEditor fileEditor = tabEditorMap.get(tab);
+            if (!file.equals(tabFileMap.get(tab)) || fileEditor == null) {
+                continue; // Not opened, or too large to edit
+            }
+            recovered[0]++;
+            Runnable restore = () -> {
+                fileEditor.selectRange(0, fileEditor.getDocument().length());
+                fileEditor.replaceSelection(buffer.text());
+                fileEditor.positionCaret(0);
+            };
+            if (!tabLoadMap.containsKey(tab)) {
+                restore.run();
+                continue;
+            }
+            loading[0]++;
+            Runnable previous = tabLoadedActionMap.get(tab); // Caret and scroll of a restored tab
+            tabLoadedActionMap.put(tab, () -> {
+                restore.run();
+                if (previous != null) {
+                    previous.run();
+                }
+                if (--loading[0] == 0) {
+                    done.run();
+                }
+            });
+        }
+        if (loading[0] == 0) {
+            done.run();
+        }
+    }
+
+    // Every open tab as the edit journal compacts it
+    private Map<Integer, EditJournal.Buffer> journalBuffers() {
+        Map<Integer, EditJournal.Buffer> buffers = new HashMap<>();
+        for (Map.Entry<Tab, Integer> entry : tabJournalMap.entrySet()) {
+            Tab tab = entry.getKey();
+            ModificationTracker tracker = tabTrackerMap.get(tab);
+            CodeEditor tabEditor = tabEditorMap.get(tab);
+            if (tracker != null && tabEditor != null && !tabLoadMap.containsKey(tab)) {
+                buffers.put(entry.getValue(), new EditJournal.Buffer(tabFileMap.get(tab).toPath(),
+                        tracker.getSavedHash(), tracker.getSavedLength(), tabEditor.getDocument().snapshot()));
+            }
+        }
+        for (Tab tab : tabLifecycle.dirtyTabs()) { // Hibernated: their unsaved text is in a spill
+            TabLifecycleManager.Hibernated state = tabLifecycle.get(tab);
+            try {
+                buffers.put(tabJournalMap.get(tab), new EditJournal.Buffer(state.file(), state.savedHash(),
+                        state.savedLength(), new PieceTable(tabLifecycle.readSpill(state, false)).snapshot()));
+            } catch (IOException e) {
+                // Left out of the compacted journal
+            }
+        }
+        return buffers;
+    }
+
+    // Store the project, the expanded folders with their listings and the open tabs
+    private void saveWorkspace() {
+        if (!RESTORE_WORKSPACE || projectDirectory == null) {
+            return;
+        }
+        List<WorkspaceSnapshot.Folder> folders = new ArrayList<>();
+        collectExpandedFolders(rootItem, folders);
+        List<WorkspaceSnapshot.OpenTab> tabs = new ArrayList<>();
+        int selectedTab = -1;
+        clearStoredUndoHistories();
+        workspaceHistories.clear();
+        for (Tab tab : editorTabPane.getTabs()) {
+            File file = tabFileMap.get(tab);
+            if (file == null) {
+                continue; // The welcome tab
+            }
+            if (tab == editorTabPane.getSelectionModel().getSelectedItem()) {
+                selectedTab = tabs.size();
+            }
+            CodeEditor fileEditor = tabEditorMap.get(tab);
+            TabLifecycleManager.Hibernated hibernated = tabLifecycle.get(tab);
+            if (hibernated != null) {
+                tabs.add(new WorkspaceSnapshot.OpenTab(file.toPath(), hibernated.caret(), hibernated.topLine(),
+                        hibernated.scrollLeft()));
+                workspaceHistories.add(file.toPath());
+                if (hibernated.restored()) {
+                    continue; // Never read: its stored history stays as it is
+                }
+                try {
+                    hibernated.history().write(UndoManager.storeFor(file.toPath()), hibernated.hash(),
+                            hibernated.length());
+                } catch (IOException e) {
+                    reportStoreError("Could not store the undo history of " + file.getName() + ": "
+                            + e.getMessage());
+                }
+                continue;
+            }
+            if (fileEditor != null && (fileEditor.canUndo() || fileEditor.canRedo())) {
+                PieceTable document = fileEditor.getDocument();
+                try {
+                    fileEditor.getUndoManager().write(UndoManager.storeFor(file.toPath()), document.getHash(),
+                            document.length());
+                } catch (IOException e) {
+                    reportStoreError("Could not store the undo history of " + file.getName() + ": "
+                            + e.getMessage());
+                }
+            }
+            workspaceHistories.add(file.toPath());
+            tabs.add(fileEditor == null ? new WorkspaceSnapshot.OpenTab(file.toPath(), 0, 0, 0)
+                    : new WorkspaceSnapshot.OpenTab(file.toPath(), fileEditor.getCaretPosition(),
+                            fileEditor.getTopLine(), fileEditor.getScrollLeft()));
+        }
+        try {
+            new WorkspaceSnapshot(projectDirectory.toPath(), folders, tabs, selectedTab).write(WorkspaceSnapshot.FILE);
+        } catch (IOException e) {
+            reportStoreError("Could not store the workspace: " + e.getMessage());
+        }
+    }
+
+    // Shown in the status bar and kept in the terminal, like the restore report
+    private void reportStoreError(String message) {
+        statusLabel.setText("⚠ " + message);
+        appendToTerminal("⚠ " + message + "\n", "#ffa657");
+    }
+
+    // Histories of this workspace's tabs are stored again or, for tabs closed
+    // since, not wanted next time; other projects' histories are left alone
+    private void clearStoredUndoHistories() {
+        Set<Path> neverRead = new HashSet<>();
+        for (Tab tab : editorTabPane.getTabs()) {
+            TabLifecycleManager.Hibernated hibernated = tabLifecycle.get(tab);
+            if (hibernated != null && hibernated.restored()) {
+                neverRead.add(hibernated.file());
+            }
+        }
+        for (Path file : workspaceHistories) {
+            if (!neverRead.contains(file)) {
+                UndoManager.storeFor(file).toFile().delete();
+            }
+        }
+    }
+
+    // The root and every expanded folder below it whose children are listed
+    private void collectExpandedFolders(TreeItem<String> item, List<WorkspaceSnapshot.Folder> folders) {
+        File directory = treeItemFileMap.get(item);
+        if (directory == null || !loadedTreeItems.contains(item) || (item != rootItem && !item.isExpanded())) {
+            return;
+        }
+        List<DirectoryLoader.Entry> entries = new ArrayList<>();
+        for (TreeItem<String> child : item.getChildren()) {
+            File childFile = treeItemFileMap.get(child);
+            if (childFile != null) {
+                entries.add(new DirectoryLoader.Entry(childFile.toPath(), isFolderItem(child)));
+            }
+        }
+        folders.add(new WorkspaceSnapshot.Folder(directory.toPath(), entries));
+        for (TreeItem<String> child : item.getChildren()) {
+            collectExpandedFolders(child, folders);
+        }
+    }
+
+    // Folders are the items made with the folder icon (see createTreeItem)
+    private boolean isFolderItem(TreeItem<String> item) {
+        return item.getValue() != null && item.getValue().startsWith(getIcon("", true));
+    }
+
     // Load directory into file explorer
     private void loadDirectory(File directory) {
+        loadDirectory(directory, Map.of());
+    }
+
+    // Load directory into file explorer; folders with a stored listing show it
+    // at once and expanded, and are listed again in the background
+    private void loadDirectory(File directory, Map<Path, List<DirectoryLoader.Entry>> listings) {
+        directoryLoader.cancelAll(); // Drop listings of the previous project
         rootItem.getChildren().clear();
         treeItemFileMap.clear(); // Clear the map
+        loadedTreeItems.clear();
+        unwatchAllFolders();
         rootItem.setValue("📁 " + directory.getName());
+        treeItemFileMap.put(rootItem, directory);
 
-        // Load all files and folders
-        loadFilesIntoTree(directory, rootItem);
+        // Only the top level is listed now, sub folders load when expanded
+        if (listings.containsKey(directory.toPath())) {
+            showStoredListing(directory, rootItem, listings);
+            refreshTreeItem(directory, rootItem);
+        } else {
+            loadFilesIntoTree(directory, rootItem);
+        }
+        watchFolder(directory, rootItem);
 
-        textArea.setText(
+        editor.setText(
                 "// Directory loaded: " + directory.getAbsolutePath() + "\n// Double-click a file to edit\n\n");
 
-        // Set current directory for terminal
+        // Set current directory for terminal (a new project gets a new shell)
         currentDirectory = directory.getAbsolutePath();
+        projectDirectory = directory;
+        runnerPool.warmUp(); // Workers start while the project is being looked at
+        searchIndex.open(directory.toPath());
+        pathIndex.open(directory.toPath(), count -> statusLabel.setText("📂 " + count + " files in the project"));
+        searchView.setRoot(directory.toPath().toAbsolutePath().normalize());
+        symbolIndex.open(directory.toPath());
+        symbolView.setRoot(directory.toPath().toAbsolutePath().normalize());
+        closeShellSession();
     }
 
-    // Recursively load files and folders into tree
+    // List the children of a folder in the background and add them in batches
     private void loadFilesIntoTree(File directory, TreeItem<String> parentItem) {
-        File[] files = directory.listFiles();
-
-        if (files != null) {
-            for (File file : files) {
-                // Choose icon based on file type
-                String icon;
-                if (file.isDirectory()) {
-                    icon = "📁 ";
-                } else {
-                    String fileName = file.getName().toLowerCase();
-                    if (fileName.endsWith(".java")) {
-                        icon = "☕ ";
-                    } else if (fileName.endsWith(".css")) {
-                        icon = "🎨 ";
-                    } else if (fileName.endsWith(".xml") || fileName.endsWith(".fxml")) {
-                        icon = "📋 ";
-                    } else if (fileName.endsWith(".png") || fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
-                        icon = "🖼️ ";
-                    } else if (fileName.endsWith(".jar")) {
-                        icon = "📦 ";
+        loadedTreeItems.add(parentItem);
+        TreeItem<String> placeholder = new TreeItem<>("⏳ Loading...");
+        parentItem.getChildren().clear();
+        parentItem.getChildren().add(placeholder);
+
+        PerfMonitor.Timer expandTimer = perfMonitor.start(PerfMonitor.Operation.TREE_EXPAND, directory.getName());
+        directoryLoader.list(directory.toPath(), batch -> {
+            List<TreeItem<String>> items = new ArrayList<>(batch.size());
+            for (DirectoryLoader.Entry entry : batch) {
+                items.add(createTreeItem(entry.path().toFile(), entry.directory()));
+            }
+            parentItem.getChildren().remove(placeholder);
+            parentItem.getChildren().addAll(items);
+        }, () -> {
+            parentItem.getChildren().remove(placeholder);
+            expandTimer.end();
+        });
+    }
+
+    // Fill a folder from a stored listing, expanding the sub folders that have one
+    // (expanding a listed folder re-lists it in the background)
+    private void showStoredListing(File directory, TreeItem<String> item,
+            Map<Path, List<DirectoryLoader.Entry>> listings) {
+        List<TreeItem<String>> children = new ArrayList<>();
+        List<TreeItem<String>> expand = new ArrayList<>();
+        for (DirectoryLoader.Entry entry : listings.get(directory.toPath())) {
+            File childFile = entry.path().toFile();
+            TreeItem<String> child = createTreeItem(childFile, entry.directory());
+            children.add(child);
+            if (entry.directory() && listings.containsKey(entry.path())) {
+                showStoredListing(childFile, child, listings);
+                expand.add(child);
+            }
+        }
+        item.getChildren().setAll(children);
+        loadedTreeItems.add(item);
+        for (TreeItem<String> child : expand) {
+            child.setExpanded(true);
+        }
+    }
+
+    // Create tree item for a file or folder and store file reference in map
+    private TreeItem<String> createTreeItem(File file, boolean directory) {
+        TreeItem<String> item = new TreeItem<>(getIcon(file.getName(), directory) + file.getName());
+        treeItemFileMap.put(item, file);
+
+        if (directory) {
+            // Placeholder child keeps the expand arrow until the folder is listed
+            item.getChildren().add(new TreeItem<>("⏳ Loading..."));
+            item.expandedProperty().addListener((obs, wasExpanded, isExpanded) -> {
+                if (isExpanded) {
+                    if (!loadedTreeItems.contains(item)) {
+                        loadFilesIntoTree(file, item);
                     } else {
-                        icon = "📄 ";
+                        refreshTreeItem(file, item); // Catch up on changes missed while collapsed
                     }
+                    watchFolder(file, item);
+                } else {
+                    unwatchFolder(file);
                 }
+            });
+        }
+        return item;
+    }
+
+    // Watch an expanded folder for entries created or deleted outside the IDE
+    private void watchFolder(File directory, TreeItem<String> item) {
+        watchedFolderMap.put(directory, item);
+        if (directoryWatcher != null) {
+            directoryWatcher.watch(directory.toPath());
+        }
+    }
+
+    // Stop watching a collapsed or removed folder
+    private void unwatchFolder(File directory) {
+        watchedFolderMap.remove(directory);
+        if (directoryWatcher != null) {
+            directoryWatcher.unwatch(directory.toPath());
+        }
+    }
+
+    // Stop watching every folder of the current project
+    private void unwatchAllFolders() {
+        watchedFolderMap.clear();
+        if (directoryWatcher != null) {
+            directoryWatcher.unwatchAll();
+        }
+    }
 
-                // Create tree item and store file reference in map
-                TreeItem<String> item = new TreeItem<>(icon + file.getName());
-                treeItemFileMap.put(item, file);
-                parentItem.getChildren().add(item);
+    // Apply a debounced batch of file system changes to the affected folders only
+    private void applyWatchBatch(DirectoryWatcher.Batch batch) {
+        for (Path changed : batch.changed()) {
+            TreeItem<String> item = watchedFolderMap.get(changed.toFile());
+            if (item != null) {
+                refreshTreeItem(changed.toFile(), item);
+            }
+            searchIndex.folderChanged(changed);
+            pathIndex.folderChanged(changed);
+            symbolIndex.folderChanged(changed);
+        }
 
-                // If folder, load its contents recursively
-                if (file.isDirectory()) {
-                    loadFilesIntoTree(file, item);
+        // Edited by another program (git, a formatter, another editor); temp files are gone by now
+        for (Path modified : batch.modified()) {
+            if (Files.isRegularFile(modified) && !batch.changed().contains(modified.getParent())) {
+                searchIndex.fileSaved(modified);
+                if (!hasUnsavedEdits(modified.toFile())) { // Its symbols come from the buffer
+                    symbolIndex.fileSaved(modified);
                 }
             }
         }
+
+        // Events were lost: rescan the folder and every loaded folder below it
+        for (Path overflowed : batch.overflowed()) {
+            TreeItem<String> item = watchedFolderMap.get(overflowed.toFile());
+            if (item != null) {
+                refreshSubtree(item);
+            }
+        }
+        if (!batch.overflowed().isEmpty() && projectDirectory != null) {
+            pathIndex.open(projectDirectory.toPath(), count -> { }); // Cheaper than finding what was missed
+            symbolIndex.open(projectDirectory.toPath()); // Only files that changed are parsed again
+            searchIndex.open(projectDirectory.toPath()); // Only files that changed are read again
+        }
+    }
+
+    // True if the file is open in a tab with unsaved edits
+    private boolean hasUnsavedEdits(File file) {
+        for (Map.Entry<Tab, File> entry : tabFileMap.entrySet()) {
+            ModificationTracker tracker = tabTrackerMap.get(entry.getKey());
+            if (file.equals(entry.getValue()) && (tracker != null && tracker.isDirty()
+                    || tabLifecycle.dirtyTabs().contains(entry.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Re-list a loaded folder and every loaded folder below it
+    private void refreshSubtree(TreeItem<String> item) {
+        File directory = treeItemFileMap.get(item);
+        if (directory == null || !loadedTreeItems.contains(item)) {
+            return;
+        }
+        refreshTreeItem(directory, item);
+        for (TreeItem<String> child : item.getChildren()) {
+            refreshSubtree(child);
+        }
+    }
+
+    // Re-list a loaded folder in the background and patch its children in place,
+    // keeping existing items (and their expanded state) for unchanged entries
+    private void refreshTreeItem(File directory, TreeItem<String> item) {
+        directoryLoader.listAll(directory.toPath(), entries -> {
+            if (entries == null || !loadedTreeItems.contains(item)) {
+                return;
+            }
+
+            Map<File, TreeItem<String>> existing = new HashMap<>();
+            for (TreeItem<String> child : item.getChildren()) {
+                File childFile = treeItemFileMap.get(child);
+                if (childFile != null) {
+                    existing.put(childFile, child);
+                }
+            }
+
+            List<TreeItem<String>> children = new ArrayList<>(entries.size());
+            for (DirectoryLoader.Entry entry : entries) {
+                File childFile = entry.path().toFile();
+                TreeItem<String> child = existing.remove(childFile);
+                children.add(child != null ? child : createTreeItem(childFile, entry.directory()));
+            }
+
+            // Whatever is left was deleted on disk
+            for (TreeItem<String> removed : existing.values()) {
+                forgetTreeItem(removed);
+            }
+            if (!children.equals(item.getChildren())) {
+                item.getChildren().setAll(children);
+            }
+        });
+    }
+
+    // Drop bookkeeping for an item that left the tree, including its children
+    private void forgetTreeItem(TreeItem<String> item) {
+        File file = treeItemFileMap.remove(item);
+        if (loadedTreeItems.remove(item)) {
+            if (file != null && watchedFolderMap.get(file) == item) {
+                unwatchFolder(file);
+            }
+            for (TreeItem<String> child : item.getChildren()) {
+                forgetTreeItem(child);
+            }
+        }
+    }
+
+    // Choose icon based on file type
+    private String getIcon(String name, boolean directory) {
+        if (directory) {
+            return "📁 ";
+        }
+        String fileName = name.toLowerCase();
+        if (fileName.endsWith(".java")) {
+            return "☕ ";
+        } else if (fileName.endsWith(".css")) {
+            return "🎨 ";
+        } else if (fileName.endsWith(".xml") || fileName.endsWith(".fxml")) {
+            return "📋 ";
+        } else if (fileName.endsWith(".png") || fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
+            return "🖼️ ";
+        } else if (fileName.endsWith(".jar")) {
+            return "📦 ";
+        } else {
+            return "📄 ";
+        }
     }
 
     // Open file when tree item is double-clicked
@@ -732,7 +1886,7 @@ public class App extends Application {
         File file = treeItemFileMap.get(item);
         if (file != null && file.isFile()) {
             // Check for unsaved changes before opening new file
-            if (isModified) {
+            if (isModified()) {
                 showUnsavedChangesDialogBeforeOpen(file);
             } else {
                 openFile(file);
@@ -747,33 +1901,105 @@ public class App extends Application {
             for (Tab tab : editorTabPane.getTabs()) {
                 if (file.equals(tabFileMap.get(tab))) {
                     editorTabPane.getSelectionModel().select(tab);
+                    // Opening it again while it still loads restarts the read
+                    if (tabLoadMap.containsKey(tab)) {
+                        loadFileIntoTab(tab, file);
+                    }
                     return;
                 }
             }
 
-            // Read file content
-            String content = new String(Files.readAllBytes(file.toPath()));
+            // Huge files are memory mapped instead of read into the heap
+            if (file.length() > LARGE_FILE_THRESHOLD) {
+                openLargeFile(file);
+                return;
+            }
 
-            // Create new tab
-            Tab newTab = createFileTab(file, content);
+            // Show the tab right away, the content streams in from a background read
+            Tab newTab = createFileTab(file, "");
             editorTabPane.getTabs().add(newTab);
             editorTabPane.getSelectionModel().select(newTab);
 
             // Update current references
             currentFile = file;
-            textArea = tabTextAreaMap.get(newTab);
-            originalContent = content;
-            isModified = false;
+            editor = tabEditorMap.get(newTab);
+
+            loadFileIntoTab(newTab, file);
 
         } catch (IOException e) {
             showError("Error opening file: " + e.getMessage());
         }
     }
 
+    // Stream a file into its tab; the tab stays read-only until the read is done
+    private void loadFileIntoTab(Tab tab, File file) {
+        FileLoader.Load pending = tabLoadMap.remove(tab);
+        if (pending != null) {
+            pending.cancel();
+        }
+
+        CodeEditor fileEditor = tabEditorMap.get(tab);
+        if (fileEditor == null) {
+            return; // Hibernated: read when woken
+        }
+        PieceTable document = fileEditor.getDocument();
+        tabLoadMap.put(tab, null); // Mark as loading before the editor is cleared
+        fileEditor.setText("");
+        fileEditor.setEditable(false);
+        fileEditor.setRecordingUndo(false); // The chunks would be charged to the undo memory limits
+        tab.setText("⏳ " + file.getName());
+
+        PerfMonitor.Timer openTimer = perfMonitor.start(PerfMonitor.Operation.FILE_OPEN, file.getName());
+        FileLoader.Load load = fileLoader.load(file.toPath(),
+                chunk -> document.insert(document.length(), chunk),
+                encoding -> {
+                    openTimer.end();
+                    tabLoadMap.remove(tab);
+                    tabEncodingMap.put(tab, encoding);
+                    tabTrackerMap.get(tab).markSaved();
+                    editJournal.saved(tabJournalMap.get(tab), document.snapshot(), document); // Reloaded
+                    fileEditor.clearUndoHistory();
+                    fileEditor.setRecordingUndo(true);
+                    fileEditor.setEditable(true);
+                    tab.setText("📄 " + file.getName());
+                    restoreTabState(fileEditor, tabLifecycle.finishWake(tab));
+                    tabLifecycle.touched(tab, textBytes(fileEditor));
+                    trimTabs(editorTabPane.getSelectionModel().getSelectedItem());
+                    Runnable loadedAction = tabLoadedActionMap.remove(tab);
+                    if (loadedAction != null) {
+                        loadedAction.run();
+                    }
+                },
+                error -> {
+                    editorTabPane.getTabs().remove(tab);
+                    removeTabData(tab);
+                    showError("Error opening file: " + error.getMessage());
+                });
+        tabLoadMap.put(tab, load);
+    }
+
+    // Open a file above the size threshold in a read-only, memory mapped tab
+    private void openLargeFile(File file) throws IOException {
+        LargeFileView view = new LargeFileView(new MappedTextFile(file.toPath()));
+
+        Tab tab = new Tab("🔒 " + file.getName());
+        tab.setClosable(true);
+        tab.setContent(view);
+        tab.setOnCloseRequest(e -> removeTabData(tab));
+
+        tabFileMap.put(tab, file);
+        tabLargeFileMap.put(tab, view);
+        editorTabPane.getTabs().add(tab);
+        editorTabPane.getSelectionModel().select(tab);
+        view.start();
+    }
+
     // Save current file (Ctrl+S)
     private void saveFile() {
         Tab currentTab = editorTabPane.getSelectionModel().getSelectedItem();
-        if (currentTab != null && tabFileMap.containsKey(currentTab)) {
+        if (tabLargeFileMap.containsKey(currentTab)) {
+            showError("Large files are opened read-only");
+        } else if (currentTab != null && tabFileMap.containsKey(currentTab)) {
             saveFileFromTab(currentTab);
         } else {
             showError("No file is currently open");
@@ -782,7 +2008,7 @@ public class App extends Application {
 
     // Close current file
     private void closeFile() {
-        if (isModified) {
+        if (isModified()) {
             showUnsavedChangesDialog(mainStage);
         } else {
             resetEditor();
@@ -792,9 +2018,7 @@ public class App extends Application {
     // Reset editor to empty state
     private void resetEditor() {
         currentFile = null;
-        originalContent = null;
-        isModified = false;
-        textArea.setText("// Welcome to IDE-My\n// Double-click a file to edit\n\n");
+        editor.setText("// Welcome to IDE-My\n// Double-click a file to edit\n\n");
         editorLabel.setText("📄 Untitled-1");
     }
 
@@ -802,7 +2026,7 @@ public class App extends Application {
     private void updateEditorTitle() {
         if (currentFile != null) {
             String title = "📄 " + currentFile.getName();
-            if (isModified) {
+            if (isModified()) {
                 title += " ●"; // Dot shows unsaved changes
             }
             editorLabel.setText(title);
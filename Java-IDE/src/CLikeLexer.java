@@ -0,0 +1,121 @@
+import java.util.Set;
+
+// Lexer for the languages with C syntax: // and /* */ comments, quoted
+// strings, numbers and keywords. Java adds @annotations and """text
+// blocks"""; JavaScript adds `template strings`, which can span lines.
+public final class CLikeLexer implements Lexer {
+
+    private static final int BLOCK_COMMENT = 1;
+    private static final int TEXT_BLOCK = 2;
+    private static final int TEMPLATE = 3;
+
+    public static final CLikeLexer JAVA = new CLikeLexer(Set.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "var", "record", "yield", "sealed", "permits", "true",
+            "false", "null"), true, false);
+
+    public static final CLikeLexer JAVASCRIPT = new CLikeLexer(Set.of(
+            "async", "await", "break", "case", "catch", "class", "const", "continue", "debugger", "default",
+            "delete", "do", "else", "export", "extends", "finally", "for", "from", "function", "get", "if",
+            "import", "in", "instanceof", "let", "new", "of", "return", "set", "static", "super", "switch",
+            "this", "throw", "try", "typeof", "var", "void", "while", "with", "yield", "true", "false",
+            "null", "undefined"), false, true);
+
+    private final Set<String> keywords;
+    private final boolean java; // Annotations and text blocks
+    private final boolean templates;
+
+    private CLikeLexer(Set<String> keywords, boolean java, boolean templates) {
+        this.keywords = keywords;
+        this.java = java;
+        this.templates = templates;
+    }
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        int i = 0;
+
+        // Finish what the line before left open
+        if (state != 0) {
+            String close = state == BLOCK_COMMENT ? "*/" : state == TEXT_BLOCK ? "\"\"\"" : "`";
+            int end = Lexer.find(line, length, 0, close, state != BLOCK_COMMENT);
+            int style = state == BLOCK_COMMENT ? COMMENT : STRING;
+            if (end < 0) {
+                add(tokens, 0, length, style);
+                return state;
+            }
+            add(tokens, 0, end, style);
+            i = end;
+        }
+
+        while (i < length) {
+            char c = line[i];
+            if (c == '/' && i + 1 < length && line[i + 1] == '/') {
+                add(tokens, i, length, COMMENT);
+                return 0;
+            } else if (c == '/' && i + 1 < length && line[i + 1] == '*') {
+                int end = Lexer.find(line, length, i + 2, "*/", false);
+                if (end < 0) {
+                    add(tokens, i, length, COMMENT);
+                    return BLOCK_COMMENT;
+                }
+                add(tokens, i, end, COMMENT);
+                i = end;
+            } else if (java && c == '"' && Lexer.startsWith(line, length, i, "\"\"\"")) {
+                int end = Lexer.find(line, length, i + 3, "\"\"\"", true);
+                if (end < 0) {
+                    add(tokens, i, length, STRING);
+                    return TEXT_BLOCK;
+                }
+                add(tokens, i, end, STRING);
+                i = end;
+            } else if (templates && c == '`') {
+                int end = Lexer.find(line, length, i + 1, "`", true);
+                if (end < 0) {
+                    add(tokens, i, length, STRING);
+                    return TEMPLATE;
+                }
+                add(tokens, i, end, STRING);
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int end = Lexer.stringEnd(line, length, i + 1, c);
+                end = end < 0 ? length : end; // Unclosed: the string ends with the line
+                add(tokens, i, end, STRING);
+                i = end;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(line[i + 1]))) {
+                int end = Lexer.numberEnd(line, length, i);
+                add(tokens, i, end, NUMBER);
+                i = end;
+            } else if (java && c == '@' && i + 1 < length && Lexer.isIdentifierStart(line[i + 1])) {
+                int end = i + 1;
+                while (end < length && (Lexer.isIdentifierPart(line[end]) || line[end] == '.')) {
+                    end++;
+                }
+                add(tokens, i, end, ANNOTATION);
+                i = end;
+            } else if (Lexer.isIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < length && Lexer.isIdentifierPart(line[end])) {
+                    end++;
+                }
+                if (tokens != null && keywords.contains(new String(line, i, end - i))) {
+                    tokens.add(i, end, KEYWORD);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return 0;
+    }
+
+    private static void add(Tokens tokens, int start, int end, int style) {
+        if (tokens != null) {
+            tokens.add(start, end, style);
+        }
+    }
+}
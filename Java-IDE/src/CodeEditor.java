@@ -0,0 +1,775 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Bounds;
+import javafx.geometry.Orientation;
+import javafx.geometry.Point2D;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import javafx.util.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Code editor backed by a PieceTable. Only the lines that fit in the viewport
+// get scene graph nodes: scrolling re-fills a small pool of line nodes instead
+// of laying out the whole file like a TextArea does.
+public final class CodeEditor extends Region {
+
+    private static final String INDENT = "    "; // Inserted on TAB
+    private static final double GUTTER_PADDING = 10;
+
+    private final PieceTable document;
+    private final Pane gutter = new Pane(); // Line numbers
+    private final Pane textLayer = new Pane(); // Visible lines, selection and caret
+    private final Path selectionShape = new Path();
+    private final Path caret = new Path();
+    private final Text measure = new Text("X"); // Font metrics, styled by CSS
+    private final ScrollBar vbar = new ScrollBar();
+    private final ScrollBar hbar = new ScrollBar();
+    private final Rectangle gutterClip = new Rectangle();
+    private final Rectangle textClip = new Rectangle();
+    private final Timeline caretBlink;
+
+    // Pool of nodes for visible rows, and what each one currently shows
+    private final List<TextFlow> lineNodes = new ArrayList<>();
+    private final List<Text> numberNodes = new ArrayList<>();
+    private final List<Integer> renderedLines = new ArrayList<>();
+    private long renderedVersion = -1;
+
+    private int caretOffset;
+    private int anchorOffset; // Other end of the selection
+    private int preferredColumn = -1; // Kept while moving up and down
+    private boolean editable = true;
+    private double lineHeight = 17;
+    private double charWidth = 8;
+    private double maxLineWidth;
+    private double viewportHeight;
+    private double viewportWidth;
+    private int pendingTopLine = -1; // Scroll position to apply on the next layout
+    private double pendingScrollLeft;
+
+    private Highlighter highlighter; // Null for plain text
+
+    private UndoManager undoManager = new UndoManager();
+    private boolean undoing;
+    private boolean recordingUndo = true; // Off while a file streams in: those inserts are not edits
+
+    public CodeEditor() {
+        this("");
+    }
+
+    public CodeEditor(String text) {
+        document = new PieceTable(text);
+        getStyleClass().add("code-editor");
+        setFocusTraversable(true);
+
+        measure.getStyleClass().add("text");
+        measure.setVisible(false);
+        measure.setManaged(false);
+        measure.fontProperty().addListener((obs, oldFont, newFont) -> {
+            renderedVersion = -1;
+            requestLayout();
+        });
+
+        selectionShape.getStyleClass().add("selection");
+        selectionShape.setManaged(false);
+        caret.getStyleClass().add("caret");
+        caret.setManaged(false);
+        caret.setVisible(false);
+
+        gutter.getStyleClass().add("gutter");
+        gutter.setClip(gutterClip);
+        textLayer.setClip(textClip);
+        textLayer.getChildren().addAll(measure, selectionShape, caret);
+
+        vbar.setOrientation(Orientation.VERTICAL);
+        vbar.valueProperty().addListener((obs, oldValue, newValue) -> requestLayout());
+        hbar.valueProperty().addListener((obs, oldValue, newValue) -> requestLayout());
+        getChildren().addAll(gutter, textLayer, vbar, hbar);
+
+        caretBlink = new Timeline(new KeyFrame(Duration.millis(500),
+                e -> caret.setVisible(isFocused() && !caret.isVisible())));
+        caretBlink.setCycleCount(Timeline.INDEFINITE);
+        focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+            if (isFocused) {
+                restartBlink();
+            } else {
+                caretBlink.stop();
+                caret.setVisible(false);
+            }
+        });
+
+        document.addListener(this::documentChanged);
+        addEventHandler(KeyEvent.KEY_PRESSED, this::handleKeyPressed);
+        addEventHandler(KeyEvent.KEY_TYPED, this::handleKeyTyped);
+        addEventHandler(MouseEvent.MOUSE_PRESSED, this::handleMousePressed);
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, this::handleMouseDragged);
+        addEventHandler(ScrollEvent.SCROLL, this::handleScroll);
+    }
+
+    public PieceTable getDocument() {
+        return document;
+    }
+
+    // Highlight with a lexer (Lexer.forFileName), or show plain text for null
+    public void setLexer(Lexer lexer) {
+        if (highlighter != null) {
+            highlighter.dispose();
+        }
+        highlighter = lexer == null ? null : new Highlighter(document, lexer, () -> {
+            renderedVersion = -1; // New tokens: draw the visible lines again
+            requestLayout();
+        });
+        renderedVersion = -1;
+        requestLayout();
+    }
+
+    // Materialize the whole text (for saving); avoid on every keystroke
+    public String getText() {
+        return document.getText();
+    }
+
+    public void setText(String text) {
+        boolean recording = recordingUndo;
+        recordingUndo = false; // The history is cleared anyway
+        try {
+            document.setText(text);
+        } finally {
+            recordingUndo = recording;
+        }
+        caretOffset = 0;
+        anchorOffset = 0;
+        undoManager.clear();
+        vbar.setValue(0);
+        hbar.setValue(0);
+        maxLineWidth = 0;
+    }
+
+    public boolean isEditable() {
+        return editable;
+    }
+
+    public void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    public int getCaretPosition() {
+        return caretOffset;
+    }
+
+    public int getCaretLine() {
+        return document.getLineOfOffset(caretOffset);
+    }
+
+    // Screen bounds of the caret as last laid out (for popups), or null if not on screen
+    public Bounds getCaretScreenBounds() {
+        return caret.getElements().isEmpty() ? null : caret.localToScreen(caret.getBoundsInLocal());
+    }
+
+    public void positionCaret(int offset) {
+        selectRange(offset, offset);
+    }
+
+    public void selectRange(int anchor, int caretPosition) {
+        anchorOffset = clamp(anchor, 0, document.length());
+        caretOffset = clamp(caretPosition, 0, document.length());
+        preferredColumn = -1;
+        ensureCaretVisible();
+        restartBlink();
+        requestLayout();
+    }
+
+    public IndexRange getSelection() {
+        return new IndexRange(Math.min(anchorOffset, caretOffset), Math.max(anchorOffset, caretOffset));
+    }
+
+    public String getSelectedText() {
+        IndexRange selection = getSelection();
+        return document.getText(selection.getStart(), selection.getEnd());
+    }
+
+    // Replace the selection (or insert at the caret) as if typed
+    public void replaceSelection(String text) {
+        if (!editable) {
+            return;
+        }
+        IndexRange selection = getSelection();
+        document.replace(selection.getStart(), selection.getEnd(), text);
+        positionCaret(selection.getStart() + text.length());
+    }
+
+    // First line at the top of the view and the horizontal scroll, to restore the view later
+    public int getTopLine() {
+        return (int) (vbar.getValue() / lineHeight);
+    }
+
+    public double getScrollLeft() {
+        return hbar.getValue();
+    }
+
+    // Scroll to a saved view; applied on the next layout, when line sizes are known
+    public void scrollTo(int topLine, double scrollLeft) {
+        pendingTopLine = Math.max(0, topLine);
+        pendingScrollLeft = Math.max(0, scrollLeft);
+        requestLayout();
+    }
+
+    // Move the caret to the start of a line (0 based) and center it
+    public void goToLine(int line) {
+        line = clamp(line, 0, document.getLineCount() - 1);
+        positionCaret(document.getLineStart(line));
+        vbar.setValue(clamp(line * lineHeight - viewportHeight / 2, 0, vbar.getMax()));
+    }
+
+    public void selectAll() {
+        selectRange(0, document.length());
+    }
+
+    public void copy() {
+        IndexRange selection = getSelection();
+        if (selection.getLength() > 0) {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(getSelectedText());
+            Clipboard.getSystemClipboard().setContent(content);
+        }
+    }
+
+    public void cut() {
+        if (editable && getSelection().getLength() > 0) {
+            copy();
+            replaceSelection("");
+        }
+    }
+
+    public void paste() {
+        String text = Clipboard.getSystemClipboard().getString();
+        if (text != null) {
+            replaceSelection(text.replace("\r\n", "\n").replace('\r', '\n'));
+        }
+    }
+
+    // Record edits for undo or not (not while a file loads into the editor)
+    public void setRecordingUndo(boolean recordingUndo) {
+        this.recordingUndo = recordingUndo;
+    }
+
+    // Forget all undo steps (after a file finished loading)
+    public void clearUndoHistory() {
+        undoManager.clear();
+    }
+
+    // The history lives apart from the editor, so it can be kept or stored without it
+    public UndoManager getUndoManager() {
+        return undoManager;
+    }
+
+    public void setUndoManager(UndoManager undoManager) {
+        this.undoManager.clear();
+        this.undoManager = undoManager;
+    }
+
+    public boolean canUndo() {
+        return editable && undoManager.canUndo();
+    }
+
+    public boolean canRedo() {
+        return editable && undoManager.canRedo();
+    }
+
+    public void undo() {
+        if (!editable) {
+            return;
+        }
+        int caretAfter;
+        undoing = true;
+        try {
+            caretAfter = undoManager.undo(document);
+        } finally {
+            undoing = false;
+        }
+        if (caretAfter >= 0) {
+            positionCaret(caretAfter);
+        }
+    }
+
+    public void redo() {
+        if (!editable) {
+            return;
+        }
+        int caretAfter;
+        undoing = true;
+        try {
+            caretAfter = undoManager.redo(document);
+        } finally {
+            undoing = false;
+        }
+        if (caretAfter >= 0) {
+            positionCaret(caretAfter);
+        }
+    }
+
+    // Keep caret, selection and undo history in step with document edits
+    private void documentChanged(int offset, String removed, String inserted) {
+        caretOffset = shiftOffset(caretOffset, offset, removed.length(), inserted.length());
+        anchorOffset = shiftOffset(anchorOffset, offset, removed.length(), inserted.length());
+
+        if (!undoing && recordingUndo) {
+            undoManager.record(offset, removed, inserted); // Typing is merged into word-sized steps
+        }
+        requestLayout();
+    }
+
+    private static int shiftOffset(int position, int offset, int removed, int inserted) {
+        if (position <= offset) {
+            return position;
+        }
+        if (position < offset + removed) {
+            return offset;
+        }
+        return position - removed + inserted;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        Font font = measure.getFont();
+        lineHeight = Math.ceil(measure.getLayoutBounds().getHeight());
+        charWidth = measure.getLayoutBounds().getWidth();
+
+        int lineCount = document.getLineCount();
+        double gutterWidth = String.valueOf(lineCount).length() * charWidth + GUTTER_PADDING * 2;
+        double vbarWidth = vbar.prefWidth(-1);
+        double hbarHeight = hbar.prefHeight(-1);
+        viewportWidth = Math.max(0, width - gutterWidth - vbarWidth);
+        viewportHeight = Math.max(0, height - hbarHeight);
+
+        gutter.resizeRelocate(0, 0, gutterWidth, viewportHeight);
+        textLayer.resizeRelocate(gutterWidth, 0, viewportWidth, viewportHeight);
+        vbar.resizeRelocate(width - vbarWidth, 0, vbarWidth, viewportHeight);
+        hbar.resizeRelocate(gutterWidth, viewportHeight, viewportWidth, hbarHeight);
+        gutterClip.setWidth(gutterWidth);
+        gutterClip.setHeight(viewportHeight);
+        textClip.setWidth(viewportWidth);
+        textClip.setHeight(viewportHeight);
+
+        double contentHeight = lineCount * lineHeight;
+        vbar.setMax(Math.max(0, contentHeight - viewportHeight));
+        vbar.setVisibleAmount(contentHeight <= 0 ? 1 : viewportHeight / contentHeight * vbar.getMax());
+        vbar.setUnitIncrement(lineHeight);
+        vbar.setBlockIncrement(viewportHeight);
+        if (pendingTopLine >= 0) {
+            vbar.setValue(pendingTopLine * lineHeight);
+        }
+        if (vbar.getValue() > vbar.getMax()) {
+            vbar.setValue(vbar.getMax());
+        }
+
+        fillVisibleLines(font, lineCount, gutterWidth);
+
+        hbar.setMax(Math.max(0, maxLineWidth + charWidth - viewportWidth));
+        hbar.setVisibleAmount(maxLineWidth <= 0 ? 1 : viewportWidth / (maxLineWidth + charWidth) * hbar.getMax());
+        hbar.setUnitIncrement(charWidth * 4);
+        if (pendingTopLine >= 0) {
+            hbar.setValue(pendingScrollLeft);
+            pendingTopLine = -1;
+        }
+        if (hbar.getValue() > hbar.getMax()) {
+            hbar.setValue(hbar.getMax());
+        }
+    }
+
+    // Assign the visible lines to the pooled row nodes
+    private void fillVisibleLines(Font font, int lineCount, double gutterWidth) {
+        int first = (int) (vbar.getValue() / lineHeight);
+        double firstY = first * lineHeight - vbar.getValue();
+        int rows = (int) Math.ceil(viewportHeight / lineHeight) + 1;
+        boolean changed = renderedVersion != document.getVersion();
+        renderedVersion = document.getVersion();
+        if (highlighter != null) {
+            highlighter.setVisibleLines(first, Math.min(first + rows, lineCount) - 1);
+        }
+
+        while (lineNodes.size() < rows) {
+            TextFlow flow = new TextFlow();
+            flow.setTabSize(INDENT.length());
+            flow.setManaged(false);
+            Text number = new Text();
+            number.getStyleClass().add("lineno-text");
+            number.setManaged(false);
+            lineNodes.add(flow);
+            numberNodes.add(number);
+            renderedLines.add(-1);
+            textLayer.getChildren().add(textLayer.getChildren().size() - 1, flow); // Below the caret
+            gutter.getChildren().add(number);
+        }
+
+        for (int row = 0; row < lineNodes.size(); row++) {
+            TextFlow flow = lineNodes.get(row);
+            Text number = numberNodes.get(row);
+            int line = first + row;
+            if (row >= rows || line >= lineCount) {
+                flow.setVisible(false);
+                number.setVisible(false);
+                renderedLines.set(row, -1);
+                continue;
+            }
+
+            if (changed || renderedLines.get(row) != line) {
+                flow.getChildren().setAll(lineTexts(line, font));
+                renderedLines.set(row, line);
+
+                number.setText(String.valueOf(line + 1));
+                number.setFont(font);
+                maxLineWidth = Math.max(maxLineWidth, flow.prefWidth(-1));
+            }
+            double y = firstY + row * lineHeight;
+            flow.setVisible(true);
+            flow.resizeRelocate(-hbar.getValue(), y, Math.max(viewportWidth, maxLineWidth + charWidth), lineHeight);
+            number.setVisible(true);
+            number.relocate(gutterWidth - GUTTER_PADDING - number.getLayoutBounds().getWidth(), y);
+        }
+
+        updateCaretAndSelection(first);
+    }
+
+    // Text nodes of a line: the highlighter's tokens with plain runs between them
+    private List<Text> lineTexts(int line, Font font) {
+        String content = displayText(line);
+        int[] tokens = highlighter != null ? highlighter.getTokens(line) : null;
+        List<Text> texts = new ArrayList<>();
+        int position = 0;
+        for (int i = 0; tokens != null && i < tokens.length; i += 3) {
+            int start = Math.min(tokens[i], content.length());
+            int end = Math.min(tokens[i] + tokens[i + 1], content.length());
+            if (start < position || start == end) {
+                continue;
+            }
+            if (start > position) {
+                texts.add(lineText(content.substring(position, start), "text", font));
+            }
+            texts.add(lineText(content.substring(start, end), Lexer.STYLE_CLASSES[tokens[i + 2]], font));
+            position = end;
+        }
+        if (position < content.length() || texts.isEmpty()) {
+            texts.add(lineText(content.substring(position), "text", font));
+        }
+        return texts;
+    }
+
+    private static Text lineText(String content, String styleClass, Font font) {
+        Text text = new Text(content);
+        text.getStyleClass().add(styleClass);
+        text.setFont(font);
+        return text;
+    }
+
+    // Line text as shown (a trailing carriage return is hidden)
+    private String displayText(int line) {
+        String text = document.getLine(line);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private void updateCaretAndSelection(int first) {
+        IndexRange selection = getSelection();
+        List<PathElement> selectionElements = new ArrayList<>();
+        caret.getElements().clear();
+
+        for (int row = 0; row < lineNodes.size(); row++) {
+            int line = renderedLines.get(row);
+            if (line < 0) {
+                continue;
+            }
+            TextFlow flow = lineNodes.get(row);
+            int lineStart = document.getLineStart(line);
+            int lineEnd = document.getLineEnd(line);
+
+            if (caretOffset >= lineStart && caretOffset <= lineEnd) {
+                double x = flow.getLayoutX() + xOfColumn(flow, caretOffset - lineStart);
+                caret.getElements().setAll(
+                        new MoveTo(x, flow.getLayoutY()),
+                        new LineTo(x, flow.getLayoutY() + lineHeight));
+            }
+
+            int from = Math.max(selection.getStart(), lineStart);
+            int to = Math.min(selection.getEnd(), lineEnd);
+            boolean coversLineFeed = selection.getEnd() > lineEnd && selection.getStart() <= lineEnd;
+            if (from < to || coversLineFeed) {
+                double x1 = flow.getLayoutX() + xOfColumn(flow, from - lineStart);
+                double x2 = flow.getLayoutX() + xOfColumn(flow, Math.max(from, to) - lineStart)
+                        + (coversLineFeed ? charWidth / 2 : 0);
+                double y1 = flow.getLayoutY();
+                double y2 = y1 + lineHeight;
+                selectionElements.add(new MoveTo(x1, y1));
+                selectionElements.add(new LineTo(x2, y1));
+                selectionElements.add(new LineTo(x2, y2));
+                selectionElements.add(new LineTo(x1, y2));
+                selectionElements.add(new LineTo(x1, y1));
+            }
+        }
+        selectionShape.getElements().setAll(selectionElements);
+    }
+
+    // X position of a column inside a rendered line
+    private double xOfColumn(TextFlow flow, int column) {
+        PathElement[] shape = flow.caretShape(column, true);
+        if (shape.length > 0 && shape[0] instanceof MoveTo moveTo) {
+            return moveTo.getX();
+        }
+        return column * charWidth;
+    }
+
+    // Document offset under a point of the editor
+    private int offsetAt(double x, double y) {
+        int line = clamp((int) ((y + vbar.getValue()) / lineHeight), 0, document.getLineCount() - 1);
+        int lineStart = document.getLineStart(line);
+        int lineLength = document.getLineEnd(line) - lineStart;
+        for (int row = 0; row < lineNodes.size(); row++) {
+            if (renderedLines.get(row) == line) {
+                TextFlow flow = lineNodes.get(row);
+                Point2D local = textLayer.sceneToLocal(localToScene(x, y));
+                int column = flow.hitTest(new Point2D(local.getX() - flow.getLayoutX(), lineHeight / 2))
+                        .getInsertionIndex();
+                return lineStart + clamp(column, 0, lineLength);
+            }
+        }
+        return lineStart;
+    }
+
+    // Scroll so the caret line (and roughly its column) is in view
+    private void ensureCaretVisible() {
+        int line = document.getLineOfOffset(caretOffset);
+        double y = line * lineHeight;
+        if (y < vbar.getValue()) {
+            vbar.setValue(y);
+        } else if (y + lineHeight > vbar.getValue() + viewportHeight) {
+            vbar.setValue(Math.max(0, y + lineHeight - viewportHeight));
+        }
+
+        double x = (caretOffset - document.getLineStart(line)) * charWidth;
+        if (x < hbar.getValue()) {
+            hbar.setValue(Math.max(0, x - charWidth * 4));
+        } else if (x + charWidth > hbar.getValue() + viewportWidth) {
+            maxLineWidth = Math.max(maxLineWidth, x + charWidth);
+            hbar.setMax(Math.max(hbar.getMax(), x + charWidth * 4 - viewportWidth));
+            hbar.setValue(x + charWidth * 4 - viewportWidth);
+        }
+    }
+
+    private void restartBlink() {
+        if (isFocused()) {
+            caret.setVisible(true);
+            caretBlink.playFromStart();
+        }
+    }
+
+    private void handleKeyTyped(KeyEvent event) {
+        String character = event.getCharacter();
+        if (!editable || character.isEmpty() || character.equals(KeyEvent.CHAR_UNDEFINED)
+                || (event.isControlDown() && !event.isAltDown()) || event.isMetaDown()) {
+            return;
+        }
+        char c = character.charAt(0);
+        if (c < 0x20 || c == 0x7f) {
+            return; // Enter, Tab and Backspace are handled on KEY_PRESSED
+        }
+        replaceSelection(character);
+        event.consume();
+    }
+
+    private void handleKeyPressed(KeyEvent event) {
+        boolean shift = event.isShiftDown();
+        boolean shortcut = event.isShortcutDown();
+        int line = document.getLineOfOffset(caretOffset);
+        int lineStart = document.getLineStart(line);
+
+        if (!editable && isEditKey(event.getCode())) {
+            return;
+        }
+
+        switch (event.getCode()) {
+            case LEFT -> moveCaret(shortcut ? wordStart(caretOffset) : leftOf(shift), shift);
+            case RIGHT -> moveCaret(shortcut ? wordEnd(caretOffset) : rightOf(shift), shift);
+            case UP -> moveCaretToLine(line - 1, shift);
+            case DOWN -> moveCaretToLine(line + 1, shift);
+            case PAGE_UP -> moveCaretToLine(line - visibleRows(), shift);
+            case PAGE_DOWN -> moveCaretToLine(line + visibleRows(), shift);
+            case HOME -> moveCaret(shortcut ? 0 : lineStart, shift);
+            case END -> moveCaret(shortcut ? document.length() : document.getLineEnd(line), shift);
+            case BACK_SPACE -> {
+                if (getSelection().getLength() == 0 && caretOffset > 0) {
+                    anchorOffset = caretOffset - 1;
+                }
+                replaceSelection("");
+            }
+            case DELETE -> {
+                if (getSelection().getLength() == 0 && caretOffset < document.length()) {
+                    anchorOffset = caretOffset + 1;
+                }
+                replaceSelection("");
+            }
+            case ENTER -> replaceSelection("\n" + leadingWhitespace(line));
+            case TAB -> replaceSelection(INDENT);
+            default -> {
+                if (!shortcut || !handleShortcut(event.getCode(), shift)) {
+                    return; // Not ours: let accelerators (Ctrl+S, ...) see it
+                }
+            }
+        }
+        event.consume();
+    }
+
+    private static boolean isEditKey(KeyCode code) {
+        return code == KeyCode.BACK_SPACE || code == KeyCode.DELETE || code == KeyCode.ENTER || code == KeyCode.TAB;
+    }
+
+    private boolean handleShortcut(KeyCode code, boolean shift) {
+        switch (code) {
+            case A -> selectAll();
+            case C, INSERT -> copy();
+            case X -> cut();
+            case V -> paste();
+            case Z -> {
+                if (shift) {
+                    redo();
+                } else {
+                    undo();
+                }
+            }
+            case Y -> redo();
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int leftOf(boolean extend) {
+        IndexRange selection = getSelection();
+        if (!extend && selection.getLength() > 0) {
+            return selection.getStart();
+        }
+        return Math.max(0, caretOffset - 1);
+    }
+
+    private int rightOf(boolean extend) {
+        IndexRange selection = getSelection();
+        if (!extend && selection.getLength() > 0) {
+            return selection.getEnd();
+        }
+        return Math.min(document.length(), caretOffset + 1);
+    }
+
+    private void moveCaret(int offset, boolean extendSelection) {
+        undoManager.seal(); // Typing somewhere else is a new undo step
+        int anchor = extendSelection ? anchorOffset : offset;
+        selectRange(anchor, offset);
+    }
+
+    // Move up or down keeping the column the caret started from
+    private void moveCaretToLine(int line, boolean extendSelection) {
+        int current = document.getLineOfOffset(caretOffset);
+        int column = preferredColumn >= 0 ? preferredColumn : caretOffset - document.getLineStart(current);
+        line = clamp(line, 0, document.getLineCount() - 1);
+        int start = document.getLineStart(line);
+        moveCaret(Math.min(start + column, document.getLineEnd(line)), extendSelection);
+        preferredColumn = column;
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (int) (viewportHeight / lineHeight) - 1);
+    }
+
+    private String leadingWhitespace(int line) {
+        int start = document.getLineStart(line);
+        int end = Math.min(document.getLineEnd(line), caretOffset);
+        int i = start;
+        while (i < end && (document.charAt(i) == ' ' || document.charAt(i) == '\t')) {
+            i++;
+        }
+        return document.getText(start, i);
+    }
+
+    private int wordStart(int offset) {
+        int i = offset;
+        while (i > 0 && !Character.isJavaIdentifierPart(document.charAt(i - 1))) {
+            i--;
+        }
+        while (i > 0 && Character.isJavaIdentifierPart(document.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    private int wordEnd(int offset) {
+        int i = offset;
+        int length = document.length();
+        while (i < length && !Character.isJavaIdentifierPart(document.charAt(i))) {
+            i++;
+        }
+        while (i < length && Character.isJavaIdentifierPart(document.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private void handleMousePressed(MouseEvent event) {
+        requestFocus();
+        if (event.getButton() != MouseButton.PRIMARY || event.getX() >= getWidth() - vbar.getWidth()
+                || event.getY() >= viewportHeight) {
+            return;
+        }
+        int offset = offsetAt(event.getX(), event.getY());
+        if (event.getClickCount() == 2) {
+            int start = offset;
+            while (start > 0 && Character.isJavaIdentifierPart(document.charAt(start - 1))) {
+                start--;
+            }
+            int end = offset;
+            while (end < document.length() && Character.isJavaIdentifierPart(document.charAt(end))) {
+                end++;
+            }
+            selectRange(start, end);
+        } else {
+            moveCaret(offset, event.isShiftDown());
+        }
+        event.consume();
+    }
+
+    private void handleMouseDragged(MouseEvent event) {
+        if (event.getButton() == MouseButton.PRIMARY) {
+            moveCaret(offsetAt(event.getX(), event.getY()), true);
+            event.consume();
+        }
+    }
+
+    private void handleScroll(ScrollEvent event) {
+        vbar.setValue(clamp(vbar.getValue() - event.getDeltaY(), 0, vbar.getMax()));
+        hbar.setValue(clamp(hbar.getValue() - event.getDeltaX(), 0, hbar.getMax()));
+        event.consume();
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,493 @@
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.ModuleElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+// Compiles the Java sources of a project inside the IDE's JVM with
+// javax.tools. Class files are captured in memory and cached per source
+// file together with the hash of the text they came from, so a run only
+// recompiles the files that changed, plus the files that use a class declared
+// in them: while javac attributes a file, every class its names resolve to
+// (and the owners of the methods and fields it uses) is recorded as a
+// dependency. Open editor buffers are compiled as they are, unsaved.
+// The classes are also written to .ide/classes so they can be run.
+public class CompileService {
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+    private static final Pattern MAIN_METHOD = Pattern.compile("static\\s+(public\\s+)?void\\s+main\\s*\\(");
+
+    // One source file and what compiling it produced
+    private static final class Unit {
+        long hash; // PieceTable hash of the text the classes came from
+        FileTime modified; // Disk state the hash was read at (null for buffers)
+        long size;
+        String mainClass; // Binary name of the file's primary class
+        boolean hasMain;
+        Set<String> dependencies = Set.of(); // Binary names of the top-level project classes it uses
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+    }
+
+    // Outcome of a compile; classes holds every class of the project on success
+    // and classpath is what running them needs (.ide/classes and lib/*.jar)
+    public record Result(boolean success, List<String> messages, int compiled, int reused, long millis,
+            Map<String, byte[]> classes, String classpath) {
+    }
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the compiler thread
+    private Path projectRoot;
+    private final Map<Path, Unit> units = new HashMap<>();
+
+    public boolean isAvailable() {
+        return compiler != null;
+    }
+
+    // Compile the project in the background; buffers override the files on disk
+    public CompletableFuture<Result> compile(Path root, Map<Path, PieceTable.Snapshot> buffers) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return compileNow(root, buffers);
+            } catch (IOException e) {
+                return new Result(false, List.of("error: " + e.getMessage()), 0, 0, 0, Map.of(), null);
+            }
+        }, executor);
+    }
+
+    private Result compileNow(Path root, Map<Path, PieceTable.Snapshot> buffers) throws IOException {
+        long start = System.nanoTime();
+        if (compiler == null) {
+            throw new IOException("No Java compiler available, the IDE has to run on a JDK (not a JRE)");
+        }
+        if (!root.equals(projectRoot)) {
+            units.clear(); // Another project
+            projectRoot = root;
+        }
+        Path classesFolder = root.resolve(ProjectFiles.IDE_FOLDER).resolve("classes");
+        String classpath = classpath(root, classesFolder);
+
+        // Find what changed since the last compile
+        List<Path> files = ProjectFiles.walk(root, path -> path.toString().endsWith(".java"));
+        Map<Path, String> changed = new LinkedHashMap<>();
+        Set<Path> present = new HashSet<>();
+        for (Path file : files) {
+            present.add(file);
+            Unit unit = units.get(file);
+            PieceTable.Snapshot buffer = buffers.get(file);
+            if (buffer != null) {
+                if (unit == null || unit.hash != buffer.getHash()) {
+                    changed.put(file, buffer.getText());
+                }
+            } else if (unit == null || unit.modified == null
+                    || !unit.modified.equals(Files.getLastModifiedTime(file)) || unit.size != Files.size(file)) {
+                String text = readSource(file);
+                if (unit == null || unit.hash != PieceTable.hashOf(text)) {
+                    changed.put(file, text);
+                } else {
+                    unit.modified = Files.getLastModifiedTime(file); // Touched, not changed
+                    unit.size = Files.size(file);
+                }
+            }
+        }
+        List<Path> removed = new ArrayList<>();
+        for (Path file : units.keySet()) {
+            if (!present.contains(file)) {
+                removed.add(file);
+            }
+        }
+
+        // Files that use a class of a changed or removed file are compiled again too
+        Set<String> touchedClasses = new HashSet<>();
+        for (Map.Entry<Path, String> entry : changed.entrySet()) {
+            touchedClasses.add(packagePrefix(entry.getValue()) + simpleName(entry.getKey()));
+            Unit unit = units.get(entry.getKey());
+            if (unit != null) {
+                unit.classes.keySet().forEach(name -> touchedClasses.add(topLevelName(name)));
+            }
+        }
+        for (Path file : removed) {
+            units.get(file).classes.keySet().forEach(name -> touchedClasses.add(topLevelName(name)));
+        }
+        for (Map.Entry<Path, Unit> entry : units.entrySet()) {
+            Path file = entry.getKey();
+            if (present.contains(file) && !changed.containsKey(file)
+                    && !Collections.disjoint(entry.getValue().dependencies, touchedClasses)) {
+                PieceTable.Snapshot buffer = buffers.get(file);
+                changed.put(file, buffer != null ? buffer.getText() : readSource(file));
+            }
+        }
+
+        for (Path file : removed) {
+            deleteClasses(classesFolder, units.remove(file));
+        }
+        if (changed.isEmpty()) {
+            return new Result(true, List.of(), 0, units.size(), elapsed(start), allClasses(), classpath);
+        }
+
+        // Compile the changed files against the classes of the others
+        Files.createDirectories(classesFolder);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<Path, Map<String, byte[]>> output = new HashMap<>();
+        Map<Path, Set<String>> dependencies = new HashMap<>();
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (Map.Entry<Path, String> entry : changed.entrySet()) {
+            sources.add(new SourceFile(entry.getKey(), entry.getValue()));
+        }
+        List<String> options = List.of("-g", "-proc:none", "-implicit:none", "-Xlint:none",
+                "-classpath", classpath);
+        boolean success;
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, Locale.getDefault(),
+                StandardCharsets.UTF_8);
+                MemoryFileManager memory = new MemoryFileManager(standard, output)) {
+            JavacTask task = (JavacTask) compiler.getTask(null, memory, diagnostics, options, null, sources);
+            task.addTaskListener(new DependencyRecorder(task, dependencies));
+            success = task.call();
+        }
+
+        List<String> messages = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            messages.add(format(root, diagnostic));
+        }
+        if (!success) {
+            return new Result(false, messages, changed.size(), units.size() - changed.size(), elapsed(start),
+                    Map.of(), classpath);
+        }
+
+        // Keep the new classes, in memory and in .ide/classes
+        for (Map.Entry<Path, String> entry : changed.entrySet()) {
+            Path file = entry.getKey();
+            String text = entry.getValue();
+            Unit unit = units.remove(file);
+            deleteClasses(classesFolder, unit);
+            unit = new Unit();
+            unit.hash = PieceTable.hashOf(text);
+            if (!buffers.containsKey(file)) {
+                unit.modified = Files.getLastModifiedTime(file);
+                unit.size = Files.size(file);
+            }
+            unit.mainClass = packagePrefix(text) + simpleName(file);
+            unit.hasMain = MAIN_METHOD.matcher(text).find();
+            unit.dependencies = dependencies.getOrDefault(file, Set.of());
+            unit.classes.putAll(output.getOrDefault(file, Map.of()));
+            writeClasses(classesFolder, unit);
+            units.put(file, unit);
+        }
+        return new Result(true, messages, changed.size(), units.size() - changed.size(), elapsed(start),
+                allClasses(), classpath);
+    }
+
+    // Binary name of the primary class of a file if it has a main method (after a compile)
+    public CompletableFuture<String> mainClassOf(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            Unit unit = units.get(file);
+            return unit != null && unit.hasMain ? unit.mainClass : null;
+        }, executor);
+    }
+
+    // A main class for the whole project: Main or App first, else the first one found
+    public CompletableFuture<String> projectMainClass() {
+        return CompletableFuture.supplyAsync(() -> {
+            String found = null;
+            for (Unit unit : units.values()) {
+                if (unit.hasMain) {
+                    String simple = simpleClassName(unit.mainClass);
+                    if (simple.equals("Main") || simple.equals("App")) {
+                        return unit.mainClass;
+                    }
+                    if (found == null || unit.mainClass.compareTo(found) < 0) {
+                        found = unit.mainClass;
+                    }
+                }
+            }
+            return found;
+        }, executor);
+    }
+
+    private Map<String, byte[]> allClasses() {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (Unit unit : units.values()) {
+            classes.putAll(unit.classes);
+        }
+        return classes;
+    }
+
+    private static String readSource(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        FileLoader.read(file, new FileLoader.Load(), text::append);
+        return text.toString();
+    }
+
+    // .ide/classes plus any jars in the project's lib folder
+    private static String classpath(Path root, Path classesFolder) throws IOException {
+        StringBuilder classpath = new StringBuilder(classesFolder.toString());
+        Path lib = root.resolve("lib");
+        if (Files.isDirectory(lib)) {
+            for (Path jar : ProjectFiles.walk(lib, path -> path.toString().endsWith(".jar"))) {
+                classpath.append(File.pathSeparatorChar).append(jar);
+            }
+        }
+        return classpath.toString();
+    }
+
+    private static void writeClasses(Path classesFolder, Unit unit) throws IOException {
+        for (Map.Entry<String, byte[]> entry : unit.classes.entrySet()) {
+            Path target = classesFolder.resolve(entry.getKey().replace('.', '/') + ".class");
+            Files.createDirectories(target.getParent());
+            Files.write(target, entry.getValue());
+        }
+    }
+
+    private static void deleteClasses(Path classesFolder, Unit unit) throws IOException {
+        if (unit != null) {
+            for (String name : unit.classes.keySet()) {
+                Files.deleteIfExists(classesFolder.resolve(name.replace('.', '/') + ".class"));
+            }
+        }
+    }
+
+    // "a.b." for a file in package a.b, "" in the default package
+    private static String packagePrefix(String text) {
+        Matcher matcher = PACKAGE.matcher(text);
+        return matcher.find() ? matcher.group(1) + "." : "";
+    }
+
+    private static String simpleName(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - ".java".length());
+    }
+
+    // Top-level class of a binary name: a.b.C$D -> a.b.C
+    private static String topLevelName(String binaryName) {
+        int nested = binaryName.indexOf('$', binaryName.lastIndexOf('.') + 1);
+        return nested >= 0 ? binaryName.substring(0, nested) : binaryName;
+    }
+
+    // Outer class name of a binary name: a.b.C$D -> C
+    private static String simpleClassName(String binaryName) {
+        String name = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        int nested = name.indexOf('$');
+        return nested >= 0 ? name.substring(0, nested) : name;
+    }
+
+    private static String format(Path root, Diagnostic<? extends JavaFileObject> diagnostic) {
+        String where = "";
+        if (diagnostic.getSource() instanceof SourceFile source) {
+            where = root.relativize(source.path) + ":" + diagnostic.getLineNumber() + ": ";
+        }
+        return where + diagnostic.getKind().toString().toLowerCase(Locale.ROOT) + ": "
+                + diagnostic.getMessage(Locale.getDefault());
+    }
+
+    private static long elapsed(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // Source text handed to javac straight from memory
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final Path path;
+        private final String text;
+
+        SourceFile(Path path, String text) {
+            super(path.toUri(), Kind.SOURCE);
+            this.path = path;
+            this.text = text;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    // Class file javac writes into a byte array
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("mem:///" + className.replace('.', '/') + ".class"), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    // Records, for each source file javac has attributed, the top-level classes
+    // its names resolve to: types, the owners of methods, fields and
+    // constructors, and the types in the signatures of methods it calls (a
+    // lambda depends on the interface it is passed as). Classes of the JDK and
+    // other named modules are left out, they do not change between compiles
+    private static final class DependencyRecorder implements TaskListener {
+        private final Trees trees;
+        private final Elements elements;
+        private final Map<Path, Set<String>> dependencies;
+
+        DependencyRecorder(JavacTask task, Map<Path, Set<String>> dependencies) {
+            this.trees = Trees.instance(task);
+            this.elements = task.getElements();
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public void finished(TaskEvent event) {
+            if (event.getKind() != TaskEvent.Kind.ANALYZE || event.getTypeElement() == null) {
+                return;
+            }
+            TreePath path = trees.getPath(event.getTypeElement());
+            if (path == null) {
+                return;
+            }
+            // javac hands listeners a wrapper of the SourceFile; its URI is the path's
+            Path source = Path.of(event.getSourceFile().toUri());
+            Set<String> used = dependencies.computeIfAbsent(source, file -> new HashSet<>());
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitIdentifier(IdentifierTree tree, Void unused) {
+                    record(trees.getElement(getCurrentPath()), used);
+                    return super.visitIdentifier(tree, unused);
+                }
+
+                @Override
+                public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+                    record(trees.getElement(getCurrentPath()), used);
+                    return super.visitMemberSelect(tree, unused);
+                }
+
+                @Override
+                public Void visitMemberReference(MemberReferenceTree tree, Void unused) {
+                    record(trees.getElement(getCurrentPath()), used);
+                    return super.visitMemberReference(tree, unused);
+                }
+
+                @Override
+                public Void visitNewClass(NewClassTree tree, Void unused) {
+                    record(trees.getElement(getCurrentPath()), used);
+                    return super.visitNewClass(tree, unused);
+                }
+            }.scan(path, null);
+        }
+
+        private void record(Element element, Set<String> used) {
+            if (element == null) {
+                return;
+            }
+            if (element instanceof ExecutableElement method) {
+                for (VariableElement parameter : method.getParameters()) {
+                    recordType(parameter.asType(), used);
+                }
+                recordType(method.getReturnType(), used);
+            }
+            Element topLevel = null;
+            for (Element enclosing = element; enclosing != null && !(enclosing instanceof PackageElement);
+                    enclosing = enclosing.getEnclosingElement()) {
+                if (enclosing instanceof TypeElement) {
+                    topLevel = enclosing;
+                }
+            }
+            if (topLevel instanceof TypeElement type) {
+                ModuleElement module = elements.getModuleOf(type);
+                if (module == null || module.isUnnamed()) {
+                    used.add(elements.getBinaryName(type).toString());
+                }
+            }
+        }
+
+        private void recordType(TypeMirror type, Set<String> used) {
+            if (type instanceof DeclaredType declared) {
+                record(declared.asElement(), used);
+            }
+        }
+    }
+
+    // Sends class output to memory, grouped by the source file it came from
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<Path, Map<String, byte[]>> output;
+        private final Map<String, ClassFile> pending = new LinkedHashMap<>();
+        private final Map<String, Path> origins = new HashMap<>();
+
+        MemoryFileManager(JavaFileManager fileManager, Map<Path, Map<String, byte[]>> output) {
+            super(fileManager);
+            this.output = output;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            ClassFile file = new ClassFile(className);
+            pending.put(className, file);
+            if (sibling instanceof SourceFile source) {
+                origins.put(className, source.path);
+            }
+            return file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Map.Entry<String, ClassFile> entry : pending.entrySet()) {
+                Path origin = origins.get(entry.getKey());
+                if (origin != null) {
+                    output.computeIfAbsent(origin, path -> new LinkedHashMap<>())
+                            .put(entry.getKey(), entry.getValue().bytes.toByteArray());
+                }
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+import javafx.application.Platform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Completion candidates for the word being typed, from three sources: words
+// of the buffer around the caret, names declared in the project (from the
+// SymbolIndex) and public JDK classes and members (JdkNames, read once in
+// the background). Each source is a Vocabulary: its names sorted by their
+// lowercase form in packed char arrays, found by binary search over the
+// prefix (a flattened trie), plus the same for the camel-case humps, so
+// "ArrL" finds ArrayList and "gTe" getText. Lookups run on one background
+// thread; a request is dropped as soon as a newer one is made.
+public class CompletionEngine {
+
+    // Candidates offered at once (-Dide.completion.results=n)
+    private static final int MAX_RESULTS = Math.max(1, Integer.getInteger("ide.completion.results", 50));
+    private static final int BUFFER_WINDOW = 200_000; // Chars on each side of the caret searched for words
+
+    // How well a name matches what was typed, best last
+    public static final int NO_MATCH = 0;
+    public static final int HUMPS = 1;
+    public static final int PREFIX = 2;
+    public static final int EXACT_PREFIX = 3;
+
+    // A name to offer; detail is its package or enclosing type
+    public record Candidate(String name, SymbolIndex.Kind kind, String detail) {
+    }
+
+    private final SymbolIndex symbolIndex;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "completion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong latest = new AtomicLong(); // Id of the newest request
+
+    // JDK names: read on their own thread when first needed, lookups go on without them meanwhile
+    private volatile Vocabulary jdk;
+    private boolean jdkRequested; // Worker thread
+
+    // Worker thread: vocabularies rebuilt when their source changes
+    private SymbolIndex.Declarations projectSource;
+    private Vocabulary project = Vocabulary.EMPTY;
+    private PieceTable.Snapshot bufferSource; // What buffer was built from: text, caret and word left out
+    private int bufferCaret = -1;
+    private String bufferPrefix;
+    private Vocabulary buffer = Vocabulary.EMPTY;
+
+    public CompletionEngine(SymbolIndex symbolIndex) {
+        this.symbolIndex = symbolIndex;
+    }
+
+    // Look up completions for prefix, the word before the caret; onResult
+    // runs on the FX thread unless a newer request (or cancel) came first
+    public void complete(PieceTable.Snapshot snapshot, int caret, String prefix, boolean java,
+            Consumer<List<Candidate>> onResult) {
+        long id = latest.incrementAndGet();
+        worker.execute(() -> {
+            if (id != latest.get()) {
+                return; // Typing went on
+            }
+            List<Candidate> candidates = lookup(snapshot, caret, prefix, java, id);
+            if (candidates != null) {
+                Platform.runLater(() -> {
+                    if (id == latest.get()) {
+                        onResult.accept(candidates);
+                    }
+                });
+            }
+        });
+    }
+
+    // Drop the request in flight, if any
+    public void cancel() {
+        latest.incrementAndGet();
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // How name matches typed text: a prefix (same case or not) or one prefix per hump
+    public static int match(String name, String typed) {
+        if (name.length() < typed.length()) {
+            return NO_MATCH;
+        }
+        if (name.startsWith(typed)) {
+            return EXACT_PREFIX;
+        }
+        if (name.regionMatches(true, 0, typed, 0, typed.length())) {
+            return PREFIX;
+        }
+        return matchesHumps(name, typed) ? HUMPS : NO_MATCH;
+    }
+
+    // Worker thread: null if the request was overtaken
+    private List<Candidate> lookup(PieceTable.Snapshot snapshot, int caret, String prefix, boolean java, long id) {
+        if (java && !jdkRequested) {
+            jdkRequested = true;
+            Thread loader = new Thread(() -> jdk = Vocabulary.of(JdkNames.load()), "jdk-names");
+            loader.setDaemon(true);
+            loader.start();
+        }
+        if (snapshot != bufferSource || caret != bufferCaret || !prefix.equals(bufferPrefix)) {
+            bufferSource = snapshot;
+            bufferCaret = caret;
+            bufferPrefix = prefix;
+            buffer = Vocabulary.of(bufferWords(snapshot, caret, prefix));
+        }
+        if (id != latest.get()) {
+            return null;
+        }
+        List<Vocabulary> sources = new ArrayList<>();
+        sources.add(buffer);
+        if (java) {
+            SymbolIndex.Declarations declarations = symbolIndex.getDeclarations();
+            if (declarations != projectSource) {
+                projectSource = declarations;
+                project = Vocabulary.of(declarations);
+            }
+            sources.add(project);
+            if (jdk != null) {
+                sources.add(jdk);
+            }
+        }
+
+        // Rank by match, then source (buffer, project, JDK), then length; one entry per name
+        List<long[]> ranked = new ArrayList<>(); // {score, source, entry}
+        for (int source = 0; source < sources.size(); source++) {
+            Vocabulary vocabulary = sources.get(source);
+            int sourceIndex = source;
+            vocabulary.find(prefix, (entry, quality) -> {
+                long score = (long) quality << 40 | (long) (sources.size() - sourceIndex) << 32
+                        | (0xFFFF - Math.min(vocabulary.names[entry].length(), 0xFFFF));
+                ranked.add(new long[] { score, sourceIndex, entry });
+            });
+        }
+        ranked.sort(Comparator.comparingLong((long[] candidate) -> -candidate[0]));
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (long[] candidate : ranked) {
+            Vocabulary vocabulary = sources.get((int) candidate[1]);
+            int entry = (int) candidate[2];
+            String name = vocabulary.names[entry];
+            if (!name.equals(prefix) && seen.add(name)) {
+                candidates.add(new Candidate(name, SymbolIndex.Kind.values()[vocabulary.kinds[entry]],
+                        vocabulary.details[entry]));
+                if (candidates.size() == MAX_RESULTS) {
+                    break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Identifiers near the caret, except the one being typed
+    private static SymbolIndex.Declarations bufferWords(PieceTable.Snapshot snapshot, int caret, String prefix) {
+        int from = Math.max(0, caret - BUFFER_WINDOW);
+        int to = Math.min(snapshot.length(), caret + BUFFER_WINDOW);
+        int typedStart = caret - prefix.length();
+        Set<String> words = new HashSet<>();
+        StringBuilder word = new StringBuilder();
+        int wordStart = -1;
+        int offset = 0;
+        for (int piece = 0; piece < snapshot.getPieceCount() && offset < to; piece++) {
+            char[] chars = snapshot.pieceChars(piece);
+            int start = snapshot.pieceStart(piece);
+            int length = snapshot.pieceLength(piece);
+            if (offset + length <= from) {
+                offset += length;
+                continue;
+            }
+            for (int i = Math.max(0, from - offset); i < length && offset + i < to; i++) {
+                char c = chars[start + i];
+                if (Character.isJavaIdentifierPart(c) && c != 0) {
+                    if (wordStart < 0) {
+                        wordStart = offset + i;
+                    }
+                    word.append(c);
+                } else {
+                    addWord(words, word, wordStart, typedStart);
+                    wordStart = -1;
+                }
+            }
+            offset += length;
+        }
+        addWord(words, word, wordStart, typedStart);
+
+        String[] names = words.toArray(new String[0]);
+        byte[] kinds = new byte[names.length];
+        Arrays.fill(kinds, (byte) SymbolIndex.Kind.VARIABLE.ordinal());
+        String[] details = new String[names.length];
+        Arrays.fill(details, "");
+        return new SymbolIndex.Declarations(names, kinds, details);
+    }
+
+    private static void addWord(Set<String> words, StringBuilder word, int wordStart, int typedStart) {
+        if (word.length() > 1 && wordStart != typedStart && Character.isJavaIdentifierStart(word.charAt(0))) {
+            words.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    // Start of each hump: the first char, an upper case letter after a lower
+    // case one (or ending an acronym, the C of URLConnection) and the char
+    // after an underscore
+    private static boolean isHumpStart(String name, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char c = name.charAt(i);
+        char before = name.charAt(i - 1);
+        if (Character.isUpperCase(c)) {
+            return !Character.isUpperCase(before)
+                    || (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1)));
+        }
+        return before == '_' && c != '_';
+    }
+
+    // "gTe" matches getText: typed text split before its upper case letters,
+    // each part a prefix (ignoring case) of successive humps of the name
+    private static boolean matchesHumps(String name, String typed) {
+        int position = 0;
+        int part = 0;
+        while (part < typed.length()) {
+            int partEnd = part + 1;
+            while (partEnd < typed.length() && !Character.isUpperCase(typed.charAt(partEnd))) {
+                partEnd++;
+            }
+            while (position < name.length() && !isHumpStart(name, position)) {
+                position++;
+            }
+            if (position == name.length()
+                    || !name.regionMatches(true, position, typed, part, partEnd - part)) {
+                return false;
+            }
+            position += partEnd - part;
+            part = partEnd;
+        }
+        return true;
+    }
+
+    // The initials typed text asks for in humps mode, lower case; null if it has one part only
+    private static String typedHumps(String typed) {
+        StringBuilder initials = new StringBuilder().append(Character.toLowerCase(typed.charAt(0)));
+        for (int i = 1; i < typed.length(); i++) {
+            if (Character.isUpperCase(typed.charAt(i))) {
+                initials.append(Character.toLowerCase(typed.charAt(i)));
+            }
+        }
+        return initials.length() > 1 ? initials.toString() : null;
+    }
+
+    private static String humps(String name) {
+        StringBuilder initials = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            if (isHumpStart(name, i)) {
+                initials.append(Character.toLowerCase(name.charAt(i)));
+            }
+        }
+        return initials.toString();
+    }
+
+    // What a Vocabulary reports for each name found
+    private interface Hit {
+        void found(int entry, int quality);
+    }
+
+    // One source's names with two sorted key tables: the names and their humps, lower case
+    private static final class Vocabulary {
+        static final Vocabulary EMPTY = of(new SymbolIndex.Declarations(new String[0], new byte[0], new String[0]));
+
+        final String[] names;
+        final byte[] kinds;
+        final String[] details;
+        private final KeyTable byName;
+        private final KeyTable byHumps;
+
+        private Vocabulary(SymbolIndex.Declarations declarations) {
+            names = declarations.names();
+            kinds = declarations.kinds();
+            details = declarations.details();
+            String[] nameKeys = new String[names.length];
+            String[] humpKeys = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                nameKeys[i] = names[i].toLowerCase();
+                humpKeys[i] = humps(names[i]);
+            }
+            byName = new KeyTable(nameKeys);
+            byHumps = new KeyTable(humpKeys);
+        }
+
+        static Vocabulary of(SymbolIndex.Declarations declarations) {
+            return new Vocabulary(declarations);
+        }
+
+        // Names starting with typed (any case), then names whose humps match it
+        void find(String typed, Hit hit) {
+            String lower = typed.toLowerCase();
+            int[] range = byName.range(lower);
+            for (int i = range[0]; i < range[1]; i++) {
+                int entry = byName.entries[i];
+                hit.found(entry, names[entry].startsWith(typed) ? EXACT_PREFIX : PREFIX);
+            }
+            String initials = typedHumps(typed);
+            if (initials == null) {
+                return;
+            }
+            range = byHumps.range(initials);
+            for (int i = range[0]; i < range[1]; i++) {
+                int entry = byHumps.entries[i];
+                String name = names[entry];
+                if (!name.regionMatches(true, 0, typed, 0, typed.length()) && matchesHumps(name, typed)) {
+                    hit.found(entry, HUMPS);
+                }
+            }
+        }
+    }
+
+    // Keys sorted and packed into one char array; entries[i] is the name the i-th key belongs to
+    private static final class KeyTable {
+        final char[] chars;
+        final int[] starts; // Key i is chars[starts[i], starts[i + 1])
+        final int[] entries;
+
+        KeyTable(String[] keys) {
+            Integer[] order = new Integer[keys.length];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparing(i -> keys[i]));
+            entries = new int[keys.length];
+            starts = new int[keys.length + 1];
+            int total = 0;
+            for (String key : keys) {
+                total += key.length();
+            }
+            chars = new char[total];
+            int position = 0;
+            for (int i = 0; i < order.length; i++) {
+                String key = keys[order[i]];
+                entries[i] = order[i];
+                starts[i] = position;
+                key.getChars(0, key.length(), chars, position);
+                position += key.length();
+            }
+            starts[keys.length] = position;
+        }
+
+        // {first, end} of the keys starting with prefix
+        int[] range(String prefix) {
+            int first = lowerBound(prefix, false);
+            int end = lowerBound(prefix, true);
+            return new int[] { first, end };
+        }
+
+        // First key not below prefix; with pastPrefix, first key after every key starting with it
+        private int lowerBound(String prefix, boolean pastPrefix) {
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int compared = compare(mid, prefix);
+                if (compared < 0 || (pastPrefix && compared == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Key i against prefix, looking at no more than the prefix's length: 0 if it starts with it
+        private int compare(int i, String prefix) {
+            int start = starts[i];
+            int length = starts[i + 1] - start;
+            int common = Math.min(length, prefix.length());
+            for (int k = 0; k < common; k++) {
+                int difference = chars[start + k] - prefix.charAt(k);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length < prefix.length() ? -1 : 0;
+        }
+    }
+}
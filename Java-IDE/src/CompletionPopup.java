@@ -0,0 +1,203 @@
+import javafx.geometry.Bounds;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.stage.Popup;
+import java.util.ArrayList;
+import java.util.List;
+
+// The completion list of one CodeEditor. It opens as an identifier is typed
+// (or on Ctrl+Space) and follows the typing: on each keystroke the list
+// shown is first narrowed on the FX thread, so it changes in the same frame,
+// and then replaced by the CompletionEngine's answer. Up, Down, Enter, Tab
+// and Escape go to the list while it is open; the editor keeps the focus.
+public final class CompletionPopup {
+
+    private static final int VISIBLE_ROWS = 10;
+
+    private final CodeEditor editor;
+    private final CompletionEngine engine;
+    private final boolean java; // Project and JDK names too, not just the buffer's words
+    private final Popup popup = new Popup();
+    private final ListView<CompletionEngine.Candidate> list = new ListView<>();
+    private int wordStart = -1; // Where the word being completed starts
+    private String prefix = "";
+    private boolean inserting;
+
+    public CompletionPopup(CodeEditor editor, CompletionEngine engine, boolean java) {
+        this.editor = editor;
+        this.engine = engine;
+        this.java = java;
+
+        list.getStyleClass().add("completion-list");
+        list.setFocusTraversable(false);
+        list.setPrefWidth(420);
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(CompletionEngine.Candidate candidate, boolean empty) {
+                super.updateItem(candidate, empty);
+                setText(null);
+                if (empty || candidate == null) {
+                    setGraphic(null);
+                } else {
+                    Label name = new Label(candidate.kind().icon + " " + candidate.name());
+                    Label detail = new Label(candidate.detail());
+                    detail.getStyleClass().add("completion-detail");
+                    setGraphic(new HBox(10, name, detail));
+                }
+            }
+        });
+        list.addEventFilter(MouseEvent.MOUSE_CLICKED, e -> {
+            if (e.getClickCount() == 2) {
+                accept();
+            }
+        });
+        popup.getContent().add(list);
+        popup.setAutoHide(true);
+
+        editor.getDocument().addListener(this::documentChanged);
+        editor.addEventFilter(KeyEvent.KEY_PRESSED, this::keyPressed);
+        editor.addEventFilter(MouseEvent.MOUSE_PRESSED, e -> hide());
+        editor.focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+            if (!isFocused) {
+                hide();
+            }
+        });
+    }
+
+    public void hide() {
+        engine.cancel();
+        if (popup.isShowing()) {
+            popup.hide();
+        }
+        wordStart = -1;
+    }
+
+    // Typing an identifier char opens the list; while open every edit updates it
+    private void documentChanged(int offset, String removed, String inserted) {
+        if (inserting) {
+            return;
+        }
+        boolean typed = removed.isEmpty() && inserted.length() == 1
+                && Character.isJavaIdentifierPart(inserted.charAt(0));
+        if (typed || popup.isShowing()) {
+            update(offset + inserted.length());
+        }
+    }
+
+    private void keyPressed(KeyEvent e) {
+        if (e.getCode() == KeyCode.SPACE && e.isShortcutDown()) {
+            update(editor.getCaretPosition());
+            e.consume();
+            return;
+        }
+        if (!popup.isShowing()) {
+            return;
+        }
+        switch (e.getCode()) {
+            case UP -> move(-1);
+            case DOWN -> move(1);
+            case PAGE_UP -> move(-VISIBLE_ROWS);
+            case PAGE_DOWN -> move(VISIBLE_ROWS);
+            case ENTER, TAB -> accept();
+            case ESCAPE -> hide();
+            case LEFT, RIGHT, HOME, END -> {
+                hide();
+                return; // The editor moves the caret
+            }
+            default -> {
+                return;
+            }
+        }
+        e.consume();
+    }
+
+    // Show what the engine has for the word before caret
+    private void update(int caret) {
+        PieceTable document = editor.getDocument();
+        int start = caret;
+        while (start > 0 && Character.isJavaIdentifierPart(document.charAt(start - 1))) {
+            start--;
+        }
+        if (start == caret || !Character.isJavaIdentifierStart(document.charAt(start))) {
+            hide();
+            return;
+        }
+        String typed = document.getText(start, caret);
+        boolean sameWord = popup.isShowing() && start == wordStart;
+        wordStart = start;
+        prefix = typed;
+
+        // Narrow what is shown right away; the engine's answer follows
+        if (sameWord) {
+            List<CompletionEngine.Candidate> narrowed = new ArrayList<>();
+            for (CompletionEngine.Candidate candidate : list.getItems()) {
+                if (CompletionEngine.match(candidate.name(), typed) != CompletionEngine.NO_MATCH
+                        && !candidate.name().equals(typed)) {
+                    narrowed.add(candidate);
+                }
+            }
+            if (!narrowed.isEmpty()) {
+                show(narrowed);
+            }
+        }
+        int requestStart = start;
+        engine.complete(document.snapshot(), caret, typed, java, candidates -> {
+            if (requestStart == wordStart && typed.equals(prefix)) {
+                show(candidates);
+            }
+        });
+    }
+
+    private void show(List<CompletionEngine.Candidate> candidates) {
+        if (candidates.isEmpty()) {
+            hide();
+            return;
+        }
+        list.getItems().setAll(candidates);
+        list.getSelectionModel().selectFirst();
+        list.scrollTo(0);
+        list.setPrefHeight(Math.min(candidates.size(), VISIBLE_ROWS) * 24 + 4);
+        if (!popup.isShowing()) {
+            Bounds caret = editor.getCaretScreenBounds();
+            if (caret == null || editor.getScene() == null) {
+                return;
+            }
+            list.getStylesheets().setAll(editor.getScene().getStylesheets());
+            popup.show(editor, caret.getMinX(), caret.getMaxY() + 2);
+        }
+    }
+
+    private void move(int delta) {
+        int count = list.getItems().size();
+        if (count > 0) {
+            int selected = list.getSelectionModel().getSelectedIndex();
+            int next = Math.abs(delta) == 1 ? Math.floorMod(selected + delta, count) // Wraps around
+                    : Math.max(0, Math.min(count - 1, selected + delta));
+            list.getSelectionModel().select(next);
+            list.scrollTo(Math.max(0, next - VISIBLE_ROWS / 2));
+        }
+    }
+
+    // Replace the typed word with the chosen name
+    private void accept() {
+        CompletionEngine.Candidate candidate = list.getSelectionModel().getSelectedItem();
+        int caret = editor.getCaretPosition();
+        int start = wordStart;
+        hide();
+        if (candidate == null || start < 0 || start > caret) {
+            return;
+        }
+        inserting = true;
+        try {
+            editor.selectRange(start, caret);
+            editor.replaceSelection(candidate.name());
+        } finally {
+            inserting = false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// Lexer for CSS (and the JavaFX flavour in dark-theme.css): selectors are
+// keywords, property names annotations, values with numbers, #colors and
+// strings styled as such, and /* comments */ can span lines. The state
+// keeps the comment flag and how deep in { } the line ends.
+public final class CssLexer implements Lexer {
+
+    private static final int IN_COMMENT = 1;
+    private static final int MAX_DEPTH = 63;
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        boolean comment = (state & IN_COMMENT) != 0;
+        int depth = state >>> 1;
+        int i = 0;
+        if (comment) {
+            int end = Lexer.find(line, length, 0, "*/", false);
+            if (end < 0) {
+                add(tokens, 0, length, COMMENT);
+                return state;
+            }
+            add(tokens, 0, end, COMMENT);
+            i = end;
+        }
+
+        boolean value = false; // After "name:" inside a block, until ";" or "}"
+        while (i < length) {
+            char c = line[i];
+            if (c == '/' && i + 1 < length && line[i + 1] == '*') {
+                int end = Lexer.find(line, length, i + 2, "*/", false);
+                if (end < 0) {
+                    add(tokens, i, length, COMMENT);
+                    return depth << 1 | IN_COMMENT;
+                }
+                add(tokens, i, end, COMMENT);
+                i = end;
+            } else if (c == '{') {
+                depth = Math.min(depth + 1, MAX_DEPTH);
+                value = false;
+                i++;
+            } else if (c == '}') {
+                depth = Math.max(depth - 1, 0);
+                value = false;
+                i++;
+            } else if (c == ';') {
+                value = false;
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int end = Lexer.stringEnd(line, length, i + 1, c);
+                end = end < 0 ? length : end;
+                add(tokens, i, end, STRING);
+                i = end;
+            } else if (c == '@' && i + 1 < length && isNameChar(line[i + 1])) {
+                int end = nameEnd(line, length, i + 1);
+                add(tokens, i, end, ANNOTATION);
+                i = end;
+            } else if (value && (Character.isDigit(c) || c == '#'
+                    || (c == '.' && i + 1 < length && Character.isDigit(line[i + 1])))) {
+                int end = nameEnd(line, length, i + 1); // Units and hex digits
+                add(tokens, i, end, NUMBER);
+                i = end;
+            } else if (value && c == '!') {
+                int end = nameEnd(line, length, i + 1);
+                add(tokens, i, end, KEYWORD);
+                i = end;
+            } else if (isNameChar(c) || (!value && (c == '.' || c == '#' || c == ':'))) {
+                int end = nameEnd(line, length, i + 1);
+                if (depth > 0 && !value && isProperty(line, length, end)) {
+                    add(tokens, i, end, ANNOTATION);
+                    value = true;
+                    end = skipColon(line, length, end);
+                } else if (!value) {
+                    add(tokens, i, end, KEYWORD); // Selector
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return depth << 1;
+    }
+
+    // A name inside a block followed by ':' is a property; "a:hover" inside @media is not told apart
+    private static boolean isProperty(char[] line, int length, int i) {
+        while (i < length && line[i] == ' ') {
+            i++;
+        }
+        return i < length && line[i] == ':';
+    }
+
+    private static int skipColon(char[] line, int length, int i) {
+        while (i < length && line[i] != ':') {
+            i++;
+        }
+        return Math.min(i + 1, length);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    private static int nameEnd(char[] line, int length, int i) {
+        while (i < length && isNameChar(line[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void add(Tokens tokens, int start, int end, int style) {
+        if (tokens != null) {
+            tokens.add(start, end, style);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import javafx.application.Platform;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Lists folders on background threads and hands the entries to the JavaFX
+// thread in small batches, so opening a huge folder never freezes the UI
+public class DirectoryLoader {
+
+    // One child of a listed folder
+    public record Entry(Path path, boolean directory) {
+        public String name() {
+            return path.getFileName().toString();
+        }
+    }
+
+    // Folders first, then by name (case insensitive)
+    public static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry e) -> !e.directory())
+            .thenComparing(e -> e.name().toLowerCase());
+
+    private static final int BATCH_SIZE = 256; // Tree items added per FX pulse
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "directory-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Bumped by cancelAll() so results of older requests are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // List a folder in the background; onBatch and onDone run on the FX thread
+    public void list(Path directory, Consumer<List<Entry>> onBatch, Runnable onDone) {
+        int requestGeneration = generation.get();
+        executor.execute(() -> {
+            List<Entry> entries = listNow(directory);
+            if (entries == null || requestGeneration != generation.get()) {
+                Platform.runLater(() -> {
+                    if (requestGeneration == generation.get()) {
+                        onDone.run();
+                    }
+                });
+                return;
+            }
+
+            // Post one runLater per batch so the FX thread can paint in between
+            for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+                List<Entry> batch = entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()));
+                Platform.runLater(() -> {
+                    if (requestGeneration == generation.get()) {
+                        onBatch.accept(batch);
+                    }
+                });
+            }
+            Platform.runLater(() -> {
+                if (requestGeneration == generation.get()) {
+                    onDone.run();
+                }
+            });
+        });
+    }
+
+    // List a whole folder in the background and hand over the sorted entries
+    // at once on the FX thread (null if the folder cannot be read)
+    public void listAll(Path directory, Consumer<List<Entry>> onResult) {
+        int requestGeneration = generation.get();
+        executor.execute(() -> {
+            List<Entry> entries = listNow(directory);
+            Platform.runLater(() -> {
+                if (requestGeneration == generation.get()) {
+                    onResult.accept(entries);
+                }
+            });
+        });
+    }
+
+    // List a folder on the calling thread, sorted; null if it cannot be read
+    public static List<Entry> listNow(Path directory) {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                entries.add(new Entry(path, Files.isDirectory(path)));
+            }
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+        entries.sort(ORDER);
+        return entries;
+    }
+
+    // Drop the results of every request still in flight (new project opened)
+    public void cancelAll() {
+        generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,154 @@
+import javafx.application.Platform;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Watches the folders that are expanded in the explorer and reports which of
+// them changed, and which files in them were modified. Event storms (git checkout, builds) are coalesced into one
+// batch per folder that is delivered on the FX thread after things go quiet.
+public class DirectoryWatcher {
+
+    // Folders whose entries changed, files whose content changed (they may
+    // be gone again, like temp files) and folders whose events were lost
+    public record Batch(Set<Path> changed, Set<Path> modified, Set<Path> overflowed) {
+    }
+
+    private static final long QUIET_MS = 150; // Flush once no event came for this long
+    private static final long MAX_DELAY_MS = 1000; // ...or at the latest after this long
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedKeys = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedPaths = new ConcurrentHashMap<>();
+    private final Consumer<Batch> listener;
+
+    public DirectoryWatcher(Consumer<Batch> listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        Thread thread = new Thread(this::run, "directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Start watching a folder (only its direct entries, not the whole subtree)
+    public void watch(Path directory) {
+        if (watchedPaths.containsKey(directory)) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY); // Edits from other programs, for the indexes
+            watchedKeys.put(key, directory);
+            watchedPaths.put(directory, key);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Folder vanished or file system cannot be watched: tree just stays static
+        }
+    }
+
+    // Stop watching a folder (collapsed or deleted)
+    public void unwatch(Path directory) {
+        WatchKey key = watchedPaths.remove(directory);
+        if (key != null) {
+            key.cancel();
+            watchedKeys.remove(key);
+        }
+    }
+
+    // Stop watching everything (new project opened)
+    public void unwatchAll() {
+        for (Path directory : watchedPaths.keySet()) {
+            unwatch(directory);
+        }
+    }
+
+    // Background loop: collect events until quiet, then hand over one batch
+    private void run() {
+        Set<Path> changed = new HashSet<>();
+        Set<Path> modified = new HashSet<>();
+        Set<Path> overflowed = new HashSet<>();
+        long firstEventAt = 0;
+        long lastEventAt = 0;
+
+        try {
+            while (true) {
+                WatchKey key;
+                if (changed.isEmpty() && modified.isEmpty() && overflowed.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long now = System.currentTimeMillis();
+                    long wait = Math.min(lastEventAt + QUIET_MS, firstEventAt + MAX_DELAY_MS) - now;
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (key != null) {
+                    Path directory = watchedKeys.get(key);
+                    boolean added = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (directory == null) {
+                            continue; // Unwatched meanwhile: nothing to report
+                        }
+                        added = true;
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflowed.add(directory);
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+                            modified.add(directory.resolve((Path) event.context()));
+                        } else {
+                            changed.add(directory);
+                        }
+                    }
+                    if (!key.reset() && directory != null) {
+                        // Folder itself is gone; its parent reports the delete
+                        watchedKeys.remove(key);
+                        watchedPaths.remove(directory, key);
+                    }
+
+                    if (added) { // Only events in the batch start or extend its wait
+                        long now = System.currentTimeMillis();
+                        if (firstEventAt == 0) {
+                            firstEventAt = now;
+                        }
+                        lastEventAt = now;
+                    }
+                    continue;
+                }
+
+                // Quiet period over (or max delay hit): deliver the batch
+                if (!changed.isEmpty() || !modified.isEmpty() || !overflowed.isEmpty()) {
+                    changed.removeAll(overflowed);
+                    Set<Path> rescanned = overflowed;
+                    modified.removeIf(file -> rescanned.contains(file.getParent()));
+                    Batch batch = new Batch(changed, modified, overflowed);
+                    Platform.runLater(() -> listener.accept(batch));
+                    changed = new HashSet<>();
+                    modified = new HashSet<>();
+                    overflowed = new HashSet<>();
+                    firstEventAt = 0;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    // Stop the watcher thread and release the OS handles
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,524 @@
+import javafx.application.Platform;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+// Write-ahead log of unsaved edits, so a crash or kill does not lose them.
+// Every edit of a tab is appended as a delta (offset, removed length,
+// inserted text) after a record naming the file and the hash of its text on
+// disk. The FX thread only queues small records; a background thread writes
+// what has piled up and forces it to disk once per commit interval (group
+// commit). When the log grows it is compacted to one delta per dirty tab
+// against its file. On the next start the deltas are replayed over the
+// files, if they still hold the text the edits were made on. Each running
+// IDE writes its own log and holds a lock on it; a log nobody holds was left
+// by an IDE that went down, and the next one to start replays it as well.
+public class EditJournal {
+
+    public static final Path FOLDER = Path.of(System.getProperty("user.home"), ProjectFiles.IDE_FOLDER);
+
+    // IDEs that can journal at the same time: edits.journal, edits-2.journal, ...
+    private static final int SLOTS = 16;
+
+    // Pause before queued edits are written and forced to disk (-Dide.journal.commitMillis=ms)
+    private static final long COMMIT_MILLIS = Math.max(1, Long.getLong("ide.journal.commitMillis", 200));
+    // Log size that triggers a compaction (-Dide.journal.compactBytes=bytes)
+    private static final long COMPACT_BYTES = Long.getLong("ide.journal.compactBytes", 8L * 1024 * 1024);
+
+    private static final byte OPEN = 1; // id, path, base hash, base length (-1: starts empty)
+    private static final byte EDIT = 2; // id, offset, removed length, inserted text
+    private static final byte SAVED = 3; // id, hash, length: the file on disk is the new base
+    private static final byte CLOSED = 4; // id
+
+    // An open tab as compaction needs it: its file, the text on disk (hash and length) and now
+    public record Buffer(Path file, long baseHash, int baseLength, PieceTable.Snapshot snapshot) {
+    }
+
+    // Unsaved text of a file found in the log, and how many could not be replayed
+    public record Recovered(Path file, String text) {
+    }
+
+    public record Recovery(List<Recovered> buffers, int lost) {
+    }
+
+    // A record waiting to be written; compactions are queued in order with the edits
+    private record Entry(byte type, int id, Path file, long hash, int offset, int length, String text,
+            Map<Integer, Buffer> compaction) {
+    }
+
+    private final Path folder;
+    private final Supplier<Map<Integer, Buffer>> buffers; // FX thread: every open tab by journal id
+    private final Consumer<String> failed; // FX thread: the log could not be written
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+
+    // FX thread
+    private final Set<Integer> journaled = new HashSet<>(); // Tabs whose OPEN is in the log
+    private int nextId = 1;
+    private boolean compactionQueued;
+
+    // Taken by recover(): this IDE's log (null if every slot is held) and the
+    // logs of IDEs that went down, deleted once their text is compacted into it
+    private Path file;
+    private FileChannel lock;
+    private final Map<Path, FileChannel> adopted = new LinkedHashMap<>();
+
+    // Writer thread
+    private FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private boolean failing; // Reported once, until a commit goes through again
+
+    public EditJournal(Path folder, Supplier<Map<Integer, Buffer>> buffers, Consumer<String> failed) {
+        this.folder = folder;
+        this.buffers = buffers;
+        this.failed = failed;
+    }
+
+    // An id for a new tab
+    public int newId() {
+        return nextId++;
+    }
+
+    // Take a log and replay the ones left by the last run: the unsaved text of
+    // each file. Call before the first edit is journaled, then compact() once
+    // the text is back in tabs so the old records go
+    public Recovery recover() {
+        for (int slot = 1; slot <= SLOTS && lock == null; slot++) {
+            lock = tryLock(log(slot));
+            file = lock == null ? null : log(slot);
+        }
+        if (file == null) {
+            failed.accept("Every edit journal is held by another IDE: unsaved edits are not kept from a crash");
+        }
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            Path log = log(slot);
+            if (!log.equals(file) && Files.isRegularFile(log)) {
+                FileChannel held = tryLock(log);
+                if (held != null) {
+                    adopted.put(log, held);
+                }
+            }
+        }
+
+        List<Replay> replays = new ArrayList<>(); // Ids are per log
+        for (Path log : adopted.keySet()) {
+            replays.addAll(replay(log).values());
+        }
+        if (file != null) {
+            Map<Integer, Replay> own = replay(file);
+            for (int id : own.keySet()) {
+                nextId = Math.max(nextId, id + 1); // Its records stay until the compaction
+            }
+            replays.addAll(own.values());
+        }
+
+        Map<Path, Recovered> recovered = new LinkedHashMap<>(); // The newest tab of a file wins
+        int lost = 0;
+        for (Replay replay : replays) {
+            if (replay.edits.isEmpty()) {
+                continue;
+            }
+            String base = replay.baseLength < 0 ? "" : readText(replay.file);
+            if (base == null || (replay.baseLength >= 0
+                    && (base.length() != replay.baseLength || PieceTable.hashOf(base) != replay.baseHash))) {
+                lost++; // The file changed on disk since: the deltas no longer fit
+                continue;
+            }
+            PieceTable text = new PieceTable(base);
+            try {
+                for (Entry edit : replay.edits) {
+                    text.replace(edit.offset(), edit.offset() + edit.length(), edit.text());
+                }
+            } catch (RuntimeException e) {
+                lost++;
+                continue;
+            }
+            if (replay.baseLength < 0 || text.getHash() != replay.baseHash || text.length() != base.length()) {
+                recovered.put(replay.file, new Recovered(replay.file, text.getText()));
+            }
+        }
+        return new Recovery(new ArrayList<>(recovered.values()), lost);
+    }
+
+    private Path log(int slot) {
+        return folder.resolve(slot == 1 ? "edits.journal" : "edits-" + slot + ".journal");
+    }
+
+    // The lock of a log, or null if another IDE holds it (or it cannot be locked)
+    private static FileChannel tryLock(Path log) {
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(log.getParent());
+            channel = FileChannel.open(log.resolveSibling(log.getFileName() + ".lock"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            // Not this one
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // Nothing was locked
+        }
+        return null;
+    }
+
+    private static Map<Integer, Replay> replay(Path log) {
+        Map<Integer, Replay> replays = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            byte[] body;
+            while ((body = readRecord(in)) != null) {
+                apply(body, replays);
+            }
+        } catch (IOException e) {
+            // Whatever was read up to here is used
+        }
+        return replays;
+    }
+
+    // FX thread: a tab was edited; base is what its file holds (the tracker's saved state)
+    public void edited(int id, Path path, ModificationTracker base, int offset, String removed, String inserted) {
+        if (journaled.add(id)) {
+            enqueue(new Entry(OPEN, id, path, base.getSavedHash(), 0, base.getSavedLength(), null, null));
+        }
+        enqueue(new Entry(EDIT, id, null, 0, offset, removed.length(), inserted, null));
+    }
+
+    // FX thread: written is now in the tab's file; edits made while it was
+    // being written are logged again against it, as one replacement
+    public void saved(int id, PieceTable.Snapshot written, PieceTable document) {
+        if (!journaled.contains(id)) {
+            return;
+        }
+        enqueue(new Entry(SAVED, id, null, written.getHash(), 0, written.length(), null, null));
+        if (document.getVersion() != written.getVersion()) {
+            enqueue(new Entry(EDIT, id, null, 0, 0, written.length(), document.getText(), null));
+        }
+    }
+
+    // FX thread: the tab was closed (saved or not, its edits are no longer wanted)
+    public void closed(int id) {
+        if (journaled.remove(id)) {
+            enqueue(new Entry(CLOSED, id, null, 0, 0, 0, null, null));
+        }
+    }
+
+    // FX thread: rewrite the log as one delta per journaled tab, in order with the edits
+    public void compact() {
+        Map<Integer, Buffer> open = new LinkedHashMap<>(buffers.get());
+        open.keySet().retainAll(journaled);
+        journaled.retainAll(open.keySet()); // A tab left out (still loading) is opened again on its next edit
+        compactionQueued = true;
+        enqueue(new Entry((byte) 0, 0, null, 0, 0, 0, null, open));
+    }
+
+    // Write what is queued and stop; the log is deleted when no tab has unsaved edits
+    public void close(boolean unsavedEdits) {
+        writer.execute(() -> {
+            commit();
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (!unsavedEdits && file != null) {
+                    Files.deleteIfExists(file);
+                }
+                if (lock != null) {
+                    lock.close();
+                }
+                for (FileChannel held : adopted.values()) {
+                    held.close(); // Not compacted yet: replayed again next time
+                }
+            } catch (IOException e) {
+                // Replayed (and found to match the files) next time
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        if (file == null) {
+            return;
+        }
+        queue.add(entry);
+        if (commitScheduled.compareAndSet(false, true)) {
+            writer.schedule(this::commit, COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Writer thread: write everything queued in one go and force it to disk
+    private void commit() {
+        commitScheduled.set(false);
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        try {
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                if (entry.compaction() != null) {
+                    write(batch);
+                    batch.reset();
+                    rewrite(entry.compaction());
+                } else {
+                    batch.write(record(entry));
+                }
+            }
+            write(batch);
+            if (channel != null && channel.size() > COMPACT_BYTES) {
+                Platform.runLater(() -> {
+                    if (!compactionQueued) {
+                        compact();
+                    }
+                });
+            }
+            failing = false;
+        } catch (IOException e) {
+            if (!failing) {
+                failing = true;
+                String message = "Could not write the edit journal: " + e.getMessage()
+                        + " (unsaved edits are not kept from a crash)";
+                Platform.runLater(() -> failed.accept(message));
+            }
+        }
+    }
+
+    private void write(ByteArrayOutputStream batch) throws IOException {
+        if (batch.size() == 0) {
+            return;
+        }
+        if (channel == null) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    // Replace the log by a new one holding each tab's base and a single delta to its text
+    private void rewrite(Map<Integer, Buffer> open) throws IOException {
+        Platform.runLater(() -> compactionQueued = false);
+        ByteArrayOutputStream compacted = new ByteArrayOutputStream();
+        for (Map.Entry<Integer, Buffer> entry : open.entrySet()) {
+            int id = entry.getKey();
+            Buffer buffer = entry.getValue();
+            PieceTable.Snapshot snapshot = buffer.snapshot();
+            if (snapshot.getHash() == buffer.baseHash() && snapshot.length() == buffer.baseLength()) {
+                compacted.write(record(new Entry(OPEN, id, buffer.file(), buffer.baseHash(), 0,
+                        buffer.baseLength(), null, null)));
+                continue; // Nothing unsaved
+            }
+            String text = snapshot.getText();
+            String base = readText(buffer.file());
+            if (base == null || base.length() != buffer.baseLength() || PieceTable.hashOf(base) != buffer.baseHash()) {
+                base = ""; // The file no longer holds the base: keep the whole text
+                compacted.write(record(new Entry(OPEN, id, buffer.file(), 0, 0, -1, null, null)));
+            } else {
+                compacted.write(record(new Entry(OPEN, id, buffer.file(), buffer.baseHash(), 0,
+                        buffer.baseLength(), null, null)));
+            }
+            int prefix = 0;
+            int limit = Math.min(base.length(), text.length());
+            while (prefix < limit && base.charAt(prefix) == text.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < limit - prefix
+                    && base.charAt(base.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+                suffix++;
+            }
+            compacted.write(record(new Entry(EDIT, id, null, 0, prefix, base.length() - suffix - prefix,
+                    text.substring(prefix, text.length() - suffix), null)));
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = ByteBuffer.wrap(compacted.toByteArray());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (Map.Entry<Path, FileChannel> log : adopted.entrySet()) {
+            Files.deleteIfExists(log.getKey()); // What its tabs still need is in this log now
+            log.getValue().close();
+        }
+        adopted.clear();
+    }
+
+    // A record: body length, body, CRC32 of the body (a torn last record is ignored on replay)
+    private byte[] record(Entry entry) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(entry.type());
+        out.writeInt(entry.id());
+        switch (entry.type()) {
+            case OPEN -> {
+                writeString(out, entry.file().toString());
+                out.writeLong(entry.hash());
+                out.writeInt(entry.length());
+            }
+            case EDIT -> {
+                out.writeInt(entry.offset());
+                out.writeInt(entry.length());
+                writeString(out, entry.text());
+            }
+            case SAVED -> {
+                out.writeLong(entry.hash());
+                out.writeInt(entry.length());
+            }
+            default -> {
+                // CLOSED has the id only
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(bytes.length + 8);
+        DataOutputStream frame = new DataOutputStream(framed);
+        frame.writeInt(bytes.length);
+        frame.write(bytes);
+        crc.reset();
+        crc.update(bytes);
+        frame.writeInt((int) crc.getValue());
+        return framed.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Replay state of one tab
+    private static final class Replay {
+        Path file;
+        long baseHash;
+        int baseLength;
+        final List<Entry> edits = new ArrayList<>();
+    }
+
+    // The next record's body, or null at the end of the log or at a torn or corrupt record
+    private static byte[] readRecord(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > 1 << 30) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int stored = in.readInt();
+            CRC32 check = new CRC32();
+            check.update(body);
+            return (int) check.getValue() == stored ? body : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void apply(byte[] body, Map<Integer, Replay> replays) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        int id = in.readInt();
+        switch (type) {
+            case OPEN -> {
+                Replay replay = new Replay();
+                replay.file = Path.of(readString(in));
+                replay.baseHash = in.readLong();
+                replay.baseLength = in.readInt();
+                replays.put(id, replay);
+            }
+            case EDIT -> {
+                Replay replay = replays.get(id);
+                int offset = in.readInt();
+                int removed = in.readInt();
+                String inserted = readString(in);
+                if (replay != null) {
+                    replay.edits.add(new Entry(EDIT, id, null, 0, offset, removed, inserted, null));
+                }
+            }
+            case SAVED -> {
+                Replay replay = replays.get(id);
+                long hash = in.readLong();
+                int length = in.readInt();
+                if (replay != null) {
+                    replay.baseHash = hash;
+                    replay.baseLength = length;
+                    replay.edits.clear();
+                }
+            }
+            case CLOSED -> replays.remove(id);
+            default -> throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    // A file's text as the editor has it (line breaks normalized), or null if it cannot be read
+    private static String readText(Path path) {
+        try {
+            StringBuilder text = new StringBuilder();
+            FileLoader.read(path, new FileLoader.Load(), text::append);
+            return text.toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import javafx.application.Platform;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Reads text files on a background I/O thread and streams the decoded text
+// to the FX thread in chunks. The charset is detected from the first bytes
+// (BOM or heuristics) and line breaks are normalized to \n for the editor.
+public class FileLoader {
+
+    private static final int READ_SIZE = 64 * 1024;
+    private static final int CHUNK_CHARS = 256 * 1024; // Text handed to the editor per runLater
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "file-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A read in progress; cancel() drops everything not yet delivered
+    public static final class Load {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    // Start reading a file; all callbacks run on the FX thread
+    public Load load(Path path, Consumer<String> onChunk, Consumer<TextEncoding> onDone,
+            Consumer<IOException> onError) {
+        Load load = new Load();
+        executor.execute(() -> {
+            try {
+                TextEncoding encoding = read(path, load, chunk -> Platform.runLater(() -> {
+                    if (!load.isCancelled()) {
+                        onChunk.accept(chunk);
+                    }
+                }));
+                Platform.runLater(() -> {
+                    if (!load.isCancelled()) {
+                        onDone.accept(encoding);
+                    }
+                });
+            } catch (IOException e) {
+                Platform.runLater(() -> {
+                    if (!load.isCancelled()) {
+                        onError.accept(e);
+                    }
+                });
+            }
+        });
+        return load;
+    }
+
+    // Decode a file on the calling thread, handing over normalized chunks
+    public static TextEncoding read(Path path, Load load, Consumer<String> onChunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate(READ_SIZE);
+            while (bytes.hasRemaining() && channel.read(bytes) > 0) {
+                // Fill the first buffer for charset detection
+            }
+            bytes.flip();
+            boolean wholeFile = channel.position() >= channel.size();
+            TextEncoding encoding = TextEncoding.detect(bytes.array(), bytes.limit(), wholeFile);
+            bytes.position(encoding.bomBytes().length);
+
+            CharsetDecoder decoder = encoding.charset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer chars = CharBuffer.allocate(READ_SIZE);
+            StringBuilder chunk = new StringBuilder(CHUNK_CHARS);
+            boolean[] pendingReturn = { false }; // \r at the end of the last buffer
+
+            boolean endOfInput = false;
+            while (!load.isCancelled()) {
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                chars.flip();
+                appendNormalized(chars, chunk, pendingReturn);
+                chars.clear();
+                if (chunk.length() >= CHUNK_CHARS) {
+                    onChunk.accept(chunk.toString());
+                    chunk.setLength(0);
+                }
+                if (result.isOverflow()) {
+                    continue;
+                }
+                if (endOfInput) {
+                    break;
+                }
+
+                bytes.compact();
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+            }
+            if (load.isCancelled()) {
+                return encoding; // The decoder never saw the end of input, so it cannot be flushed
+            }
+
+            decoder.flush(chars);
+            chars.flip();
+            appendNormalized(chars, chunk, pendingReturn);
+            if (pendingReturn[0]) {
+                chunk.append('\n');
+            }
+            if (chunk.length() > 0 && !load.isCancelled()) {
+                onChunk.accept(chunk.toString());
+            }
+            return encoding;
+        }
+    }
+
+    // Copy chars turning \r\n and lone \r into \n (a \r at the end waits for the next buffer)
+    private static void appendNormalized(CharBuffer chars, StringBuilder out, boolean[] pendingReturn) {
+        while (chars.hasRemaining()) {
+            char c = chars.get();
+            if (pendingReturn[0]) {
+                pendingReturn[0] = false;
+                out.append('\n');
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (c == '\r') {
+                pendingReturn[0] = true;
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import javafx.application.Platform;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Syntax highlighting for one CodeEditor. A background thread keeps the
+// lexer state at the start of every line (the checkpoints). After an edit
+// it re-lexes from the changed line only until a line ends in the state it
+// ended in before, from where the old checkpoints still hold. Tokens are
+// made for the visible lines only and handed to the FX thread, which just
+// applies them; lines the FX thread has no tokens for yet show old ones.
+public class Highlighter {
+
+    private static final int SCAN_CHUNK = 5_000; // Lines lexed before looking for new edits again
+
+    // One thread lexes for every editor; each Highlighter's lexing state is only touched there
+    private static final ExecutorService LEXER_THREAD = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // An edit in lines: line feeds removed and added after the edited line, and the text after it
+    private record Edit(int line, int removedLines, int addedLines, PieceTable.Snapshot snapshot) {
+    }
+
+    private final PieceTable document;
+    private final Lexer lexer;
+    private final Runnable onUpdate;
+    private final PieceTable.Listener listener = this::documentChanged;
+
+    // FX thread: tokens of the lines last made visible
+    private Map<Integer, int[]> lineTokens = new HashMap<>();
+    private int visibleFirst = -1;
+    private int visibleLast = -1;
+    private volatile boolean disposed;
+
+    // Handed from the FX thread to the lexer thread
+    private final ConcurrentLinkedQueue<Edit> edits = new ConcurrentLinkedQueue<>();
+    private volatile long visibleRange = -1; // first << 32 | last
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Lexer thread: states[i] is the state line i starts in. states[0, valid)
+    // are right; states[valid, staleEnd) are from before an edit and right
+    // again once a line after dirtyTo ends in the state stored for the next.
+    private int[] states = new int[1024];
+    private int lineCount = 1;
+    private int valid = 1;
+    private int staleEnd;
+    private int dirtyTo = -1;
+    private PieceTable.Snapshot snapshot;
+    private long postedVersion = -1;
+    private long postedRange = -1;
+    private final Lexer.Tokens tokens = new Lexer.Tokens();
+    private char[] lineChars = new char[256];
+
+    public Highlighter(PieceTable document, Lexer lexer, Runnable onUpdate) {
+        this.document = document;
+        this.lexer = lexer;
+        this.onUpdate = onUpdate;
+        document.addListener(listener);
+        PieceTable.Snapshot initial = document.snapshot();
+        edits.add(new Edit(0, 0, initial.getLineCount() - 1, initial));
+        schedule();
+    }
+
+    // Stop following the document
+    public void dispose() {
+        disposed = true;
+        document.removeListener(listener);
+    }
+
+    // Tokens of a line as (start, length, style) triples, or null
+    public int[] getTokens(int line) {
+        return lineTokens.get(line);
+    }
+
+    // The lines on screen; tokens are made for these
+    public void setVisibleLines(int first, int last) {
+        if (first == visibleFirst && last == visibleLast) {
+            return;
+        }
+        visibleFirst = first;
+        visibleLast = last;
+        visibleRange = (long) first << 32 | (last & 0xFFFFFFFFL);
+        for (int line = first; line <= last; line++) {
+            if (!lineTokens.containsKey(line)) {
+                schedule();
+                return;
+            }
+        }
+    }
+
+    // Keep the tokens on screen in step until new ones come, and queue the edit
+    private void documentChanged(int offset, String removed, String inserted) {
+        int line = document.getLineOfOffset(offset);
+        int removedLines = countLines(removed);
+        int addedLines = countLines(inserted);
+        Map<Integer, int[]> shifted = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : lineTokens.entrySet()) {
+            int tokenLine = entry.getKey();
+            if (tokenLine < line) {
+                shifted.put(tokenLine, entry.getValue());
+            } else if (tokenLine == line && removedLines == 0 && addedLines == 0) {
+                int column = offset - document.getLineStart(line);
+                shifted.put(line, shiftTokens(entry.getValue(), column, removed.length(), inserted.length()));
+            } else if (tokenLine > line + removedLines) {
+                shifted.put(tokenLine - removedLines + addedLines, entry.getValue());
+            }
+        }
+        lineTokens = shifted;
+        edits.add(new Edit(line, removedLines, addedLines, document.snapshot()));
+        schedule();
+    }
+
+    // Move the tokens after an edit within a line; the one it falls in grows or shrinks
+    private static int[] shiftTokens(int[] tokens, int column, int removed, int inserted) {
+        int[] shifted = tokens.clone();
+        for (int i = 0; i < shifted.length; i += 3) {
+            int start = shifted[i];
+            int end = start + shifted[i + 1];
+            if (start >= column + removed) {
+                shifted[i] = start - removed + inserted;
+            } else if (end > column) {
+                shifted[i + 1] = Math.max(0, Math.max(end - removed, column) + inserted - start);
+            }
+        }
+        return shifted;
+    }
+
+    private static int countLines(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            LEXER_THREAD.execute(this::work);
+        }
+    }
+
+    // Lexer thread: apply edits, lex up to the visible lines and post their
+    // tokens, then keep lexing the rest of the file a chunk at a time
+    private void work() {
+        scheduled.set(false);
+        if (disposed) {
+            return;
+        }
+        Edit edit;
+        while ((edit = edits.poll()) != null) {
+            apply(edit);
+            snapshot = edit.snapshot();
+        }
+
+        long range = visibleRange;
+        int first = (int) (range >> 32);
+        int last = Math.min((int) range, lineCount - 1);
+        int budget = scan(last, SCAN_CHUNK);
+        if (valid > last) {
+            if (range >= 0 && (snapshot.getVersion() != postedVersion || range != postedRange)) {
+                postedVersion = snapshot.getVersion();
+                postedRange = range;
+                post(snapshot.getVersion(), first, tokenize(first, last));
+            }
+            scan(lineCount, budget);
+        }
+        if (valid <= lineCount) {
+            schedule(); // More to lex, after whatever came in meanwhile
+        }
+    }
+
+    // Shift the checkpoints for an edit and mark where lexing must restart
+    private void apply(Edit edit) {
+        int line = edit.line();
+        int delta = edit.addedLines() - edit.removedLines();
+        int tailStart = line + edit.removedLines() + 1; // First line after the edit, before it
+        if (lineCount + 1 + delta > states.length) {
+            states = Arrays.copyOf(states, Math.max(states.length * 2, lineCount + 1 + delta));
+        }
+        if (tailStart <= lineCount) {
+            System.arraycopy(states, tailStart, states, tailStart + delta, lineCount + 1 - tailStart);
+        }
+        Arrays.fill(states, line + 1, line + 1 + edit.addedLines(), -1);
+
+        int knownEnd = Math.max(valid, staleEnd);
+        staleEnd = knownEnd > tailStart ? knownEnd + delta : Math.min(knownEnd, line + 1);
+        if (dirtyTo >= tailStart) {
+            dirtyTo += delta;
+        }
+        dirtyTo = Math.max(dirtyTo, line + edit.addedLines());
+        valid = Math.min(valid, line + 1);
+        lineCount += delta;
+    }
+
+    // Lex until the state of line target is known or the budget runs out; returns what is left
+    private int scan(int target, int budget) {
+        if (valid > target || budget <= 0) {
+            return budget;
+        }
+        int offset = snapshot.getLineStart(valid - 1);
+        while (valid <= target && budget > 0) {
+            int length = readLine(offset);
+            int state = lexer.lex(lineChars, trimReturn(length), states[valid - 1], null);
+            offset += length + 1;
+            budget--;
+            if (valid > dirtyTo && valid < staleEnd && states[valid] == state) {
+                valid = staleEnd; // The old checkpoints hold from here on
+                if (valid <= target) {
+                    offset = snapshot.getLineStart(valid - 1);
+                }
+            } else {
+                states[valid++] = state;
+            }
+        }
+        return budget;
+    }
+
+    private int[][] tokenize(int first, int last) {
+        int[][] result = new int[Math.max(0, last - first + 1)][];
+        int offset = snapshot.getLineStart(first);
+        for (int line = first; line <= last; line++) {
+            int length = readLine(offset);
+            tokens.clear();
+            lexer.lex(lineChars, trimReturn(length), states[line], tokens);
+            result[line - first] = tokens.toArray();
+            offset += length + 1;
+        }
+        return result;
+    }
+
+    private int trimReturn(int length) {
+        return length > 0 && lineChars[length - 1] == '\r' ? length - 1 : length;
+    }
+
+    // Copy the line starting at offset into lineChars; returns its length without the line feed
+    private int readLine(int offset) {
+        int length = 0;
+        int piece = pieceAt(offset);
+        int position = offset - snapshot.pieceOffset(piece);
+        for (; piece < snapshot.getPieceCount(); piece++, position = 0) {
+            char[] chars = snapshot.pieceChars(piece);
+            int start = snapshot.pieceStart(piece);
+            for (int i = start + position; i < start + snapshot.pieceLength(piece); i++) {
+                char c = chars[i];
+                if (c == '\n') {
+                    return length;
+                }
+                if (length == lineChars.length) {
+                    lineChars = Arrays.copyOf(lineChars, length * 2);
+                }
+                lineChars[length++] = c;
+            }
+        }
+        return length;
+    }
+
+    // Piece that holds offset (binary search over the piece offsets)
+    private int pieceAt(int offset) {
+        int low = 0;
+        int high = snapshot.getPieceCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (snapshot.pieceOffset(mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(low, 0);
+    }
+
+    private void post(long version, int first, int[][] lines) {
+        Platform.runLater(() -> {
+            if (disposed || version != document.getVersion()) {
+                return; // A newer edit is queued; its tokens follow
+            }
+            Map<Integer, int[]> fresh = new HashMap<>();
+            for (int i = 0; i < lines.length; i++) {
+                fresh.put(first + i, lines[i]);
+            }
+            lineTokens = fresh;
+            onUpdate.run();
+        });
+    }
+}
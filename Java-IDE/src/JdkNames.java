@@ -0,0 +1,227 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Public class and member names of the JDK the IDE runs on, for completion.
+// They are read straight from the class files of the runtime image (no
+// class is loaded), for the packages the modules export, and cached in
+// ~/.ide so this happens once per JDK version.
+public final class JdkNames {
+
+    private static final int MAGIC = 0x4A444B31; // "JDK1"
+
+    // Access flags in class files
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+
+    private JdkNames() {
+    }
+
+    // The names from the cache, else from the runtime image (slow: seconds) and then cached
+    public static SymbolIndex.Declarations load() {
+        Path cache = Path.of(System.getProperty("user.home"), ProjectFiles.IDE_FOLDER,
+                "jdk-" + Runtime.version().toString().replaceAll("[^A-Za-z0-9.+-]", "_") + ".names");
+        try {
+            return read(cache);
+        } catch (IOException e) {
+            // Not cached yet (or unreadable): build it
+        }
+        SymbolIndex.Declarations names = scan();
+        try {
+            write(cache, names);
+        } catch (IOException e) {
+            // Built again next time
+        }
+        return names;
+    }
+
+    // Every exported package of the boot modules, one class file at a time
+    private static SymbolIndex.Declarations scan() {
+        Map<String, String> found = new LinkedHashMap<>(); // Kind ordinal char + name -> detail
+        FileSystem jrt;
+        try {
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (ProviderNotFoundException | FileSystemNotFoundException e) {
+            return toDeclarations(found); // Not a modular runtime
+        }
+        for (Module module : ModuleLayer.boot().modules()) {
+            ModuleDescriptor descriptor = module.getDescriptor();
+            for (ModuleDescriptor.Exports exports : descriptor.exports()) {
+                if (exports.isQualified()) {
+                    continue;
+                }
+                Path folder = jrt.getPath("/modules", descriptor.name(), exports.source().replace('.', '/'));
+                try (Stream<Path> classFiles = Files.list(folder)) {
+                    for (Path classFile : (Iterable<Path>) classFiles::iterator) {
+                        String name = classFile.getFileName().toString();
+                        if (name.endsWith(".class") && name.indexOf('$') < 0 && !name.startsWith("package-info")) {
+                            readClass(Files.readAllBytes(classFile), exports.source(), found);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Skip a package that cannot be read
+                }
+            }
+        }
+        return toDeclarations(found);
+    }
+
+    // Add a public class and its public fields and methods; a member's detail
+    // is its class, or empty when many classes have one of that name
+    private static void readClass(byte[] bytes, String packageName, Map<String, String> found) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) {
+            return;
+        }
+        in.readUnsignedShort(); // Minor and major version
+        in.readUnsignedShort();
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classNames = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 7 -> classNames[i] = in.readUnsignedShort();
+                case 8, 16, 19, 20 -> in.skipBytes(2);
+                case 15 -> in.skipBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                case 5, 6 -> {
+                    in.skipBytes(8);
+                    i++; // Takes two entries
+                }
+                default -> throw new IOException("Unknown constant " + tag);
+            }
+        }
+        int access = in.readUnsignedShort();
+        String thisClass = utf8[classNames[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        String superClass = superIndex == 0 ? null : utf8[classNames[superIndex]];
+        if ((access & ACC_PUBLIC) == 0 || (access & ACC_SYNTHETIC) != 0) {
+            return;
+        }
+        SymbolIndex.Kind kind = (access & ACC_ANNOTATION) != 0 ? SymbolIndex.Kind.ANNOTATION
+                : (access & ACC_INTERFACE) != 0 ? SymbolIndex.Kind.INTERFACE
+                : (access & ACC_ENUM) != 0 ? SymbolIndex.Kind.ENUM
+                : "java/lang/Record".equals(superClass) ? SymbolIndex.Kind.RECORD
+                : SymbolIndex.Kind.CLASS;
+        String simpleName = thisClass.substring(thisClass.lastIndexOf('/') + 1);
+        found.putIfAbsent(key(kind, simpleName), packageName);
+
+        in.skipBytes(2 * in.readUnsignedShort()); // Interfaces
+        for (int member = 0; member < 2; member++) { // Fields, then methods
+            int members = in.readUnsignedShort();
+            for (int m = 0; m < members; m++) {
+                int flags = in.readUnsignedShort();
+                String name = utf8[in.readUnsignedShort()];
+                in.skipBytes(2); // Descriptor
+                int attributes = in.readUnsignedShort();
+                for (int a = 0; a < attributes; a++) {
+                    in.skipBytes(2);
+                    in.skipBytes(in.readInt());
+                }
+                if ((flags & ACC_PUBLIC) == 0 || (flags & (ACC_SYNTHETIC | ACC_BRIDGE)) != 0
+                        || name.startsWith("<")) {
+                    continue;
+                }
+                SymbolIndex.Kind memberKind = member == 1 ? SymbolIndex.Kind.METHOD
+                        : (flags & (ACC_STATIC | ACC_FINAL)) == (ACC_STATIC | ACC_FINAL) ? SymbolIndex.Kind.CONSTANT
+                        : SymbolIndex.Kind.FIELD;
+                found.merge(key(memberKind, name), simpleName, (owner, other) -> owner.equals(other) ? owner : "");
+            }
+        }
+    }
+
+    private static String key(SymbolIndex.Kind kind, String name) {
+        return (char) kind.ordinal() + name;
+    }
+
+    private static SymbolIndex.Declarations toDeclarations(Map<String, String> found) {
+        String[] names = new String[found.size()];
+        byte[] kinds = new byte[found.size()];
+        String[] details = new String[found.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : found.entrySet()) {
+            kinds[i] = (byte) entry.getKey().charAt(0);
+            names[i] = entry.getKey().substring(1).intern();
+            details[i++] = entry.getValue().intern();
+        }
+        return new SymbolIndex.Declarations(names, kinds, details);
+    }
+
+    private static SymbolIndex.Declarations read(Path cache) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a name cache");
+            }
+            int count = in.readInt();
+            String[] names = new String[count];
+            byte[] kinds = new byte[count];
+            String[] details = new String[count];
+            List<String> detailTable = new ArrayList<>();
+            int detailCount = in.readInt();
+            for (int i = 0; i < detailCount; i++) {
+                detailTable.add(in.readUTF());
+            }
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF().intern();
+                kinds[i] = in.readByte();
+                details[i] = detailTable.get(in.readInt());
+            }
+            return new SymbolIndex.Declarations(names, kinds, details);
+        }
+    }
+
+    // Details repeat a lot (package and class names), so they are stored once
+    private static void write(Path cache, SymbolIndex.Declarations names) throws IOException {
+        Files.createDirectories(cache.getParent());
+        Map<String, Integer> detailIds = new LinkedHashMap<>();
+        for (String detail : names.details()) {
+            detailIds.putIfAbsent(detail, detailIds.size());
+        }
+        Path temp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(names.names().length);
+            out.writeInt(detailIds.size());
+            for (String detail : detailIds.keySet()) {
+                out.writeUTF(detail);
+            }
+            for (int i = 0; i < names.names().length; i++) {
+                out.writeUTF(names.names()[i]);
+                out.writeByte(names.kinds()[i]);
+                out.writeInt(detailIds.get(names.details()[i]));
+            }
+        }
+        try {
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Read-only viewer for files too big to load into an editor. Only the lines
+// in the viewport are decoded from the MappedTextFile; go-to-line and search
+// never need the whole file in memory.
+public final class LargeFileView extends BorderPane {
+
+    private final MappedTextFile file;
+    private final Label statusLabel = new Label();
+    private final TextField goToField = new TextField();
+    private final TextField searchField = new TextField();
+    private final Pane viewport = new Pane();
+    private final Rectangle viewportClip = new Rectangle();
+    private final Rectangle matchHighlight = new Rectangle();
+    private final Text measure = new Text("X");
+    private final ScrollBar vbar = new ScrollBar();
+    private final ScrollBar hbar = new ScrollBar();
+    private final List<Text> rows = new ArrayList<>();
+    private final List<Text> numbers = new ArrayList<>();
+    private final ExecutorService worker; // Runs searches
+
+    private double lineHeight = 17;
+    private double maxRowWidth;
+    private long matchOffset = -1; // Byte offset of the current search hit
+    private long matchLine = -1;
+    private AtomicBoolean searchCancelled = new AtomicBoolean();
+
+    public LargeFileView(MappedTextFile file) {
+        this.file = file;
+        getStyleClass().addAll("code-editor", "large-file-view");
+
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "large-file-search " + file.getPath().getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Toolbar: status, go to line and search
+        goToField.setPromptText("Go to line");
+        goToField.setPrefColumnCount(8);
+        goToField.setOnAction(e -> goToLine());
+        searchField.setPromptText("Find");
+        searchField.setPrefColumnCount(18);
+        searchField.setOnAction(e -> findNext());
+        Button findButton = new Button("Find Next");
+        findButton.setOnAction(e -> findNext());
+        HBox toolbar = new HBox(8, statusLabel, goToField, searchField, findButton);
+        toolbar.getStyleClass().add("large-file-bar");
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(4, 8, 4, 8));
+        HBox.setHgrow(statusLabel, Priority.ALWAYS);
+        statusLabel.setMaxWidth(Double.MAX_VALUE);
+
+        measure.getStyleClass().add("text");
+        measure.setVisible(false);
+        matchHighlight.getStyleClass().add("match-line");
+        matchHighlight.setVisible(false);
+        viewport.getChildren().addAll(measure, matchHighlight);
+        viewport.setClip(viewportClip);
+        viewport.setMinSize(0, 0);
+        viewport.widthProperty().addListener((obs, oldValue, newValue) -> refresh());
+        viewport.heightProperty().addListener((obs, oldValue, newValue) -> refresh());
+        measure.fontProperty().addListener((obs, oldFont, newFont) -> refresh());
+
+        vbar.setOrientation(Orientation.VERTICAL);
+        vbar.valueProperty().addListener((obs, oldValue, newValue) -> refresh());
+        hbar.valueProperty().addListener((obs, oldValue, newValue) -> refresh());
+
+        setTop(toolbar);
+        setCenter(viewport);
+        setRight(vbar);
+        setBottom(hbar);
+
+        viewport.addEventHandler(ScrollEvent.SCROLL, e -> {
+            scrollToLine(vbar.getValue() - e.getDeltaY() / lineHeight);
+            hbar.setValue(Math.max(0, Math.min(hbar.getMax(), hbar.getValue() - e.getDeltaX())));
+            e.consume();
+        });
+        viewport.setOnMouseClicked(e -> viewport.requestFocus());
+        viewport.setFocusTraversable(true);
+        addEventFilter(KeyEvent.KEY_PRESSED, this::handleKey);
+
+        updateStatus();
+    }
+
+    // Start building the line index in the background
+    public void start() {
+        Thread indexer = new Thread(() -> file.buildIndex(() -> Platform.runLater(() -> {
+            updateStatus();
+            refresh();
+        })), "large-file-index " + file.getPath().getFileName());
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    public MappedTextFile getFile() {
+        return file;
+    }
+
+    private void handleKey(KeyEvent event) {
+        if (event.isShortcutDown() && event.getCode() == KeyCode.F) {
+            searchField.requestFocus();
+        } else if (event.isShortcutDown() && event.getCode() == KeyCode.G) {
+            goToField.requestFocus();
+        } else if (event.getTarget() == viewport) {
+            double page = Math.max(1, visibleRows() - 1);
+            switch (event.getCode()) {
+                case UP -> scrollToLine(vbar.getValue() - 1);
+                case DOWN -> scrollToLine(vbar.getValue() + 1);
+                case PAGE_UP -> scrollToLine(vbar.getValue() - page);
+                case PAGE_DOWN -> scrollToLine(vbar.getValue() + page);
+                case HOME -> scrollToLine(0);
+                case END -> scrollToLine(vbar.getMax());
+                default -> {
+                    return;
+                }
+            }
+        } else {
+            return;
+        }
+        event.consume();
+    }
+
+    private void updateStatus() {
+        String size = String.format("%.1f MB", file.size() / (1024.0 * 1024.0));
+        String lines = file.isIndexComplete()
+                ? String.format("%,d lines", file.getLineCount())
+                : String.format("indexing… %,d lines", file.getLineCount());
+        statusLabel.setText("🔒 Large file mode (read-only) · " + size + " · " + lines);
+    }
+
+    private int visibleRows() {
+        return (int) Math.ceil(viewport.getHeight() / lineHeight) + 1;
+    }
+
+    private void scrollToLine(double line) {
+        vbar.setValue(Math.max(0, Math.min(vbar.getMax(), line)));
+    }
+
+    // Page the visible window of lines in from the mapped file
+    private void refresh() {
+        lineHeight = Math.ceil(measure.getLayoutBounds().getHeight());
+        double width = viewport.getWidth();
+        double height = viewport.getHeight();
+        viewportClip.setWidth(width);
+        viewportClip.setHeight(height);
+
+        long lineCount = file.getLineCount();
+        int visible = visibleRows();
+        vbar.setMax(Math.max(0, lineCount - visible + 2));
+        vbar.setVisibleAmount(Math.max(1, visible));
+        vbar.setUnitIncrement(1);
+        vbar.setBlockIncrement(Math.max(1, visible - 1));
+
+        long first = (long) vbar.getValue();
+        double gutterWidth = (String.valueOf(lineCount).length() + 2) * measure.getLayoutBounds().getWidth();
+        while (rows.size() < visible) {
+            Text row = new Text();
+            row.getStyleClass().add("text");
+            Text number = new Text();
+            number.getStyleClass().add("lineno-text");
+            rows.add(row);
+            numbers.add(number);
+            viewport.getChildren().addAll(row, number);
+        }
+
+        matchHighlight.setVisible(false);
+        for (int i = 0; i < rows.size(); i++) {
+            Text row = rows.get(i);
+            Text number = numbers.get(i);
+            long line = first + i;
+            boolean shown = i < visible && line < lineCount;
+            row.setVisible(shown);
+            number.setVisible(shown);
+            if (!shown) {
+                continue;
+            }
+            double y = i * lineHeight;
+            row.setFont(measure.getFont());
+            row.setText(file.readLine(line));
+            row.relocate(gutterWidth - hbar.getValue(), y);
+            number.setFont(measure.getFont());
+            number.setText(String.valueOf(line + 1));
+            number.relocate(0, y);
+            maxRowWidth = Math.max(maxRowWidth, row.getLayoutBounds().getWidth());
+
+            if (line == matchLine) {
+                matchHighlight.setX(0);
+                matchHighlight.setY(y);
+                matchHighlight.setWidth(width);
+                matchHighlight.setHeight(lineHeight);
+                matchHighlight.setVisible(true);
+            }
+        }
+        hbar.setMax(Math.max(0, maxRowWidth + gutterWidth - width));
+        hbar.setVisibleAmount(width);
+    }
+
+    private void goToLine() {
+        try {
+            long line = Long.parseLong(goToField.getText().trim().replace(",", "")) - 1;
+            matchLine = Math.max(0, line);
+            scrollToLine(matchLine - visibleRows() / 2.0);
+            refresh();
+            if (line >= file.getLineCount() && !file.isIndexComplete()) {
+                statusLabel.setText("Line " + (line + 1) + " is not indexed yet, it will show once indexing reaches it");
+            }
+        } catch (NumberFormatException e) {
+            statusLabel.setText("Not a line number: " + goToField.getText());
+        }
+    }
+
+    // Search forward from the last hit (or the top of the view) in the background
+    private void findNext() {
+        String query = searchField.getText();
+        if (query.isEmpty()) {
+            return;
+        }
+        searchCancelled.set(true);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        searchCancelled = cancelled;
+
+        byte[] pattern = query.getBytes(StandardCharsets.UTF_8);
+        long from = matchOffset >= 0 ? matchOffset + 1 : Math.max(0, file.getLineStart((long) vbar.getValue()));
+        statusLabel.setText("Searching for \"" + query + "\"…");
+
+        worker.execute(() -> {
+            long found = file.find(pattern, from, cancelled);
+            if (found < 0 && from > 0 && !cancelled.get()) {
+                found = file.find(pattern, 0, cancelled); // Wrap around
+            }
+            long line = found >= 0 ? file.getLineOfOffset(found) : -1;
+            long offset = found;
+            Platform.runLater(() -> {
+                if (cancelled.get()) {
+                    return;
+                }
+                if (offset < 0) {
+                    statusLabel.setText("\"" + query + "\" not found");
+                    return;
+                }
+                matchOffset = offset;
+                matchLine = line;
+                scrollToLine(line - visibleRows() / 2.0);
+                refresh();
+                statusLabel.setText("Match at line " + String.format("%,d", line + 1));
+            });
+        });
+    }
+
+    // Release the mapping and stop background work (tab closed)
+    public void close() {
+        searchCancelled.set(true);
+        worker.shutdownNow();
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+// Splits one line into styled tokens. Lexing a line starts from the state
+// the line before ended in (0 at the top of the file), which is how block
+// comments and multi-line strings carry over; the Highlighter keeps that
+// state for every line, so an edit only re-lexes from the changed line.
+public interface Lexer {
+
+    int KEYWORD = 0;
+    int STRING = 1;
+    int COMMENT = 2;
+    int NUMBER = 3;
+    int ANNOTATION = 4;
+    String[] STYLE_CLASSES = { "keyword", "string", "comment", "number", "annotation" };
+
+    // Lex chars [0, length) of a line starting in state; returns the state
+    // at the end of the line. Tokens is null when only the state is wanted.
+    int lex(char[] line, int length, int state, Tokens tokens);
+
+    // Lexer for a file name, or null if the language is not known
+    static Lexer forFileName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".java")) {
+            return CLikeLexer.JAVA;
+        } else if (lower.endsWith(".js") || lower.endsWith(".mjs") || lower.endsWith(".cjs")) {
+            return CLikeLexer.JAVASCRIPT;
+        } else if (lower.endsWith(".py") || lower.endsWith(".pyw")) {
+            return new PythonLexer();
+        } else if (lower.endsWith(".css")) {
+            return new CssLexer();
+        }
+        return null;
+    }
+
+    // Tokens of one line as (start, length, style) triples
+    final class Tokens {
+        private int[] values = new int[48];
+        private int size;
+
+        public void add(int start, int end, int style) {
+            if (end <= start) {
+                return;
+            }
+            if (size + 3 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = start;
+            values[size++] = end - start;
+            values[size++] = style;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Helpers shared by the lexers
+
+    static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    // End of a number starting at i: digits, letters (hex, suffixes, exponents), '_' and '.'
+    static int numberEnd(char[] line, int length, int i) {
+        while (i < length && (Character.isLetterOrDigit(line[i]) || line[i] == '_' || line[i] == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    // Position just past the closing quote of a string starting after its
+    // opening quote at i, or -1 if the line ends first
+    static int stringEnd(char[] line, int length, int i, char quote) {
+        while (i < length) {
+            char c = line[i++];
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Position just past the next occurrence of a delimiter from i, or -1;
+    // with escapes, a backslash hides the char after it (strings, not comments)
+    static int find(char[] line, int length, int i, String delimiter, boolean escapes) {
+        for (; i + delimiter.length() <= length; i++) {
+            if (escapes && line[i] == '\\') {
+                i++;
+                continue;
+            }
+            if (startsWith(line, length, i, delimiter)) {
+                return i + delimiter.length();
+            }
+        }
+        return -1;
+    }
+
+    static boolean startsWith(char[] line, int length, int i, String text) {
+        if (i + text.length() > length) {
+            return false;
+        }
+        for (int k = 0; k < text.length(); k++) {
+            if (line[i + k] != text.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
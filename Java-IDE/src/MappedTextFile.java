@@ -0,0 +1,200 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Read-only view of a file that may be far larger than the heap. The file is
+// memory mapped in 1 GB regions and a sparse line index (the offset of every
+// INDEX_STRIDE-th line) is built on a background thread, so any line can be
+// found by jumping to the nearest checkpoint and scanning a few lines.
+public class MappedTextFile implements Closeable {
+
+    private static final int REGION_BITS = 30; // 1 GB per mapping
+    private static final long REGION_MASK = (1L << REGION_BITS) - 1;
+    private static final int INDEX_STRIDE = 1024; // Lines between checkpoints
+    public static final int MAX_LINE_CHARS = 10_000; // Longer lines are cut when shown
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long size;
+
+    // Checkpoints are appended by the index thread and read by the FX thread
+    private volatile long[] checkpoints = new long[1024];
+    private volatile int checkpointCount;
+    private volatile long indexedLines; // Complete lines seen so far
+    private volatile boolean indexComplete;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public MappedTextFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+
+        int regionCount = (int) ((size + REGION_MASK) >>> REGION_BITS);
+        regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            long start = (long) i << REGION_BITS;
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << REGION_BITS, size - start));
+        }
+        checkpoints[0] = 0;
+        checkpointCount = 1;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    // Build the line index on the calling thread; progress is visible as it goes
+    public void buildIndex(Runnable onProgress) {
+        long lines = 0;
+        long lastReport = System.nanoTime();
+        for (long position = 0; position < size && !closed.get(); position++) {
+            if (byteAt(position) == '\n') {
+                lines++;
+                if (lines % INDEX_STRIDE == 0) {
+                    addCheckpoint(position + 1);
+                }
+                indexedLines = lines;
+
+                if ((lines & 0xFFFF) == 0 && System.nanoTime() - lastReport > 200_000_000L) {
+                    lastReport = System.nanoTime();
+                    onProgress.run();
+                }
+            }
+        }
+        indexComplete = true;
+        onProgress.run();
+    }
+
+    private void addCheckpoint(long offset) {
+        int count = checkpointCount;
+        long[] array = checkpoints;
+        if (count == array.length) {
+            long[] grown = new long[array.length * 2];
+            System.arraycopy(array, 0, grown, 0, count);
+            checkpoints = grown;
+            array = grown;
+        }
+        array[count] = offset;
+        checkpointCount = count + 1;
+    }
+
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    // Lines known so far (the last line has no line feed, so +1 when done)
+    public long getLineCount() {
+        return indexComplete ? indexedLines + 1 : Math.max(1, indexedLines);
+    }
+
+    public byte byteAt(long position) {
+        return regions[(int) (position >>> REGION_BITS)].get((int) (position & REGION_MASK));
+    }
+
+    // Offset of the first byte of a line, or -1 if the index has not reached it
+    public long getLineStart(long line) {
+        if (line == 0) {
+            return 0;
+        }
+        if (line > indexedLines) {
+            return -1;
+        }
+        int checkpoint = (int) Math.min(line / INDEX_STRIDE, checkpointCount - 1);
+        long position = checkpoints[checkpoint];
+        long current = (long) checkpoint * INDEX_STRIDE;
+        while (current < line && position < size) {
+            if (byteAt(position++) == '\n') {
+                current++;
+            }
+        }
+        return position;
+    }
+
+    // Line that contains a byte offset (binary search over checkpoints, then scan)
+    public long getLineOfOffset(long offset) {
+        int count = checkpointCount; // Read before the array, which only grows
+        long[] array = checkpoints;
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (array[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long line = (long) low * INDEX_STRIDE;
+        for (long position = array[low]; position < offset; position++) {
+            if (byteAt(position) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    // Decoded text of a line (UTF-8), cut at MAX_LINE_CHARS
+    public String readLine(long line) {
+        long start = getLineStart(line);
+        if (start < 0) {
+            return "";
+        }
+        long end = start;
+        long limit = Math.min(size, start + MAX_LINE_CHARS * 4L);
+        while (end < limit && byteAt(end) != '\n') {
+            end++;
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = byteAt(start + i);
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.length() > MAX_LINE_CHARS ? text.substring(0, MAX_LINE_CHARS) + " …" : text;
+    }
+
+    // Offset of the next occurrence of pattern at or after from, or -1.
+    // Runs on the caller's thread; stops early when cancelled is set.
+    public long find(byte[] pattern, long from, AtomicBoolean cancelled) {
+        if (pattern.length == 0) {
+            return -1;
+        }
+        byte first = pattern[0];
+        long last = size - pattern.length;
+        for (long position = Math.max(0, from); position <= last; position++) {
+            if ((position & 0xFFFFF) == 0 && (cancelled.get() || closed.get())) {
+                return -1;
+            }
+            if (byteAt(position) != first) {
+                continue;
+            }
+            int i = 1;
+            while (i < pattern.length && byteAt(position + i) == pattern[i]) {
+                i++;
+            }
+            if (i == pattern.length) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            channel.close(); // Mappings are released once the buffers are collected
+        }
+    }
+}
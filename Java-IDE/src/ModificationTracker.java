@@ -0,0 +1,59 @@
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+// Tracks whether a document differs from what is on disk. Instead of keeping
+// a copy of the saved text, it remembers the version, length and hash of the
+// document at the last save; an edit only compares those numbers, so typing
+// back to the saved text clears the dirty flag without touching the text.
+public final class ModificationTracker {
+
+    private final PieceTable document;
+    private final ReadOnlyBooleanWrapper dirty = new ReadOnlyBooleanWrapper(false);
+    private long savedVersion;
+    private long savedHash;
+    private int savedLength;
+
+    public ModificationTracker(PieceTable document) {
+        this.document = document;
+        document.addListener((offset, removed, inserted) -> update());
+        markSaved();
+    }
+
+    public ReadOnlyBooleanProperty dirtyProperty() {
+        return dirty.getReadOnlyProperty();
+    }
+
+    public boolean isDirty() {
+        return dirty.get();
+    }
+
+    // Hash and length of the text on disk, as of the last save
+    public long getSavedHash() {
+        return savedHash;
+    }
+
+    public int getSavedLength() {
+        return savedLength;
+    }
+
+    // The current text is what is on disk now
+    public void markSaved() {
+        markSaved(document.getVersion(), document.getHash(), document.length());
+    }
+
+    // A snapshot of the document was written; edits made since stay dirty
+    public void markSaved(long version, long hash, int length) {
+        savedVersion = version;
+        savedHash = hash;
+        savedLength = length;
+        update();
+    }
+
+    private void update() {
+        if (document.getVersion() == savedVersion) {
+            dirty.set(false);
+        } else {
+            dirty.set(document.length() != savedLength || document.getHash() != savedHash);
+        }
+    }
+}
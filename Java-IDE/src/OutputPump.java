@@ -0,0 +1,215 @@
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// Moves process output to the terminal. One thread per stream reads blocks
+// of chars into a shared lock-free queue (so stdout and stderr are drained
+// at the same time and keep their arrival order), and an AnimationTimer
+// hands everything queued to the sink once per frame, merging chunks of the
+// same color. If the process writes faster than the UI takes it, output
+// past the high watermark is dropped and a marker says how much was lost.
+public class OutputPump {
+
+    public static final char MARKER = '\037'; // Starts a control line that is not shown
+
+    private static final int READ_CHARS = 8192;
+    private static final long HIGH_WATERMARK = 4L << 20; // Queued chars before output is dropped
+    private static final long LOW_WATERMARK = 1L << 20; // Queued chars before it is taken again
+    private static final int FRAME_BUDGET = 1 << 20; // Chars handed to the sink per frame
+
+    // Gets the text of every MARKER line, on the thread draining that stream
+    public interface MarkerListener {
+        void marker(boolean errorStream, String text);
+    }
+
+    // Output to show, or an action to run once the output before it is shown
+    private record Chunk(String text, String color, Runnable action) {
+    }
+
+    private final BiConsumer<String, String> sink; // (text, color), called on the FX thread
+    private final ThreadFactory threadFactory;
+    private final MarkerListener markerListener;
+    private final ConcurrentLinkedQueue<Chunk> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedChars = new AtomicLong();
+    private final AtomicLong droppedChars = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean(); // Timer started or about to be
+    private final AnimationTimer timer;
+    private volatile boolean dropping;
+    private Runnable onFinished;
+
+    public OutputPump(BiConsumer<String, String> sink, ThreadFactory threadFactory) {
+        this(sink, threadFactory, null);
+    }
+
+    public OutputPump(BiConsumer<String, String> sink, ThreadFactory threadFactory, MarkerListener markerListener) {
+        this.sink = sink;
+        this.threadFactory = threadFactory;
+        this.markerListener = markerListener;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                flush();
+            }
+        };
+    }
+
+    // Start draining the streams; onFinished (may be null) runs on the FX thread after the last chunk
+    public void start(InputStream stdout, String stdoutColor, InputStream stderr, String stderrColor,
+            Runnable onFinished) {
+        this.onFinished = onFinished;
+        openStreams.set(2);
+        threadFactory.newThread(() -> drain(stdout, stdoutColor, false)).start();
+        threadFactory.newThread(() -> drain(stderr, stderrColor, true)).start();
+    }
+
+    // Run an action on the FX thread right after everything queued so far is shown
+    public void runInOrder(Runnable action) {
+        queue.add(new Chunk(null, null, action));
+        schedule();
+    }
+
+    // Read a stream to its end in blocks (not lines, so long lines cost nothing extra)
+    private void drain(InputStream stream, String color, boolean errorStream) {
+        char[] chars = new char[READ_CHARS];
+        StringBuilder marker = null; // MARKER line being read
+        try (Reader reader = new InputStreamReader(stream)) {
+            int count;
+            while ((count = reader.read(chars)) >= 0) {
+                int start = 0;
+                for (int i = 0; i < count && markerListener != null; i++) {
+                    if (marker != null) {
+                        if (chars[i] == '\n') {
+                            markerListener.marker(errorStream, marker.toString());
+                            marker = null;
+                            start = i + 1;
+                        } else {
+                            marker.append(chars[i]);
+                        }
+                    } else if (chars[i] == MARKER) {
+                        offer(chars, start, i - start, color); // Output before the marker goes first
+                        marker = new StringBuilder();
+                    }
+                }
+                if (marker == null) {
+                    offer(chars, start, count - start, color);
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed because the process was stopped
+        } finally {
+            if (openStreams.decrementAndGet() == 0) {
+                schedule();
+            }
+        }
+    }
+
+    // Queue text unless the UI is too far behind; \r is dropped so \r\n reads as \n
+    private void offer(char[] chars, int from, int count, String color) {
+        if (count <= 0) {
+            return;
+        }
+        if (dropping && queuedChars.get() < LOW_WATERMARK) {
+            dropping = false;
+            queueDroppedMarker(); // Marker goes where the lost output was
+        }
+        if (dropping || queuedChars.get() > HIGH_WATERMARK) {
+            dropping = true;
+            droppedChars.addAndGet(count);
+            droppedLines.addAndGet(countLineFeeds(chars, from, count));
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(count);
+        for (int i = from; i < from + count; i++) {
+            if (chars[i] != '\r') {
+                text.append(chars[i]);
+            }
+        }
+        queue.add(new Chunk(text.toString(), color, null));
+        queuedChars.addAndGet(text.length());
+        schedule();
+    }
+
+    private void queueDroppedMarker() {
+        long chars = droppedChars.getAndSet(0);
+        long lines = droppedLines.getAndSet(0);
+        if (chars > 0) {
+            queue.add(new Chunk("\n… output too fast, dropped " + lines + " lines (" + chars + " chars) …\n",
+                    "#ffa657", null));
+        }
+    }
+
+    private static int countLineFeeds(char[] chars, int from, int count) {
+        int lineFeeds = 0;
+        for (int i = from; i < from + count; i++) {
+            if (chars[i] == '\n') {
+                lineFeeds++;
+            }
+        }
+        return lineFeeds;
+    }
+
+    // The timer only runs while there is something to show, so an idle pump costs no frames
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(timer::start);
+        }
+    }
+
+    // Hand up to FRAME_BUDGET queued chars to the sink (on the FX thread)
+    private void flush() {
+        boolean finished = openStreams.get() == 0; // Read first: no chunk can arrive after this
+        if (finished) {
+            queueDroppedMarker(); // Streams ended while dropping
+        }
+
+        StringBuilder batch = new StringBuilder();
+        String batchColor = null;
+        int taken = 0;
+        Chunk chunk;
+        while (taken < FRAME_BUDGET && (chunk = queue.poll()) != null) {
+            if (chunk.action() != null) {
+                if (batch.length() > 0) {
+                    sink.accept(batch.toString(), batchColor);
+                    batch.setLength(0);
+                }
+                chunk.action().run();
+                continue;
+            }
+            queuedChars.addAndGet(-chunk.text().length());
+            taken += chunk.text().length();
+            if (batchColor != null && !batchColor.equals(chunk.color())) {
+                sink.accept(batch.toString(), batchColor);
+                batch.setLength(0);
+            }
+            batch.append(chunk.text());
+            batchColor = chunk.color();
+        }
+        if (batch.length() > 0) {
+            sink.accept(batch.toString(), batchColor);
+        }
+
+        if (queue.isEmpty()) {
+            timer.stop();
+            scheduled.set(false);
+            if (!queue.isEmpty()) {
+                schedule(); // Something arrived while stopping
+            } else if (finished && onFinished != null) {
+                Runnable done = onFinished;
+                onFinished = null;
+                done.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,500 @@
+import javafx.application.Platform;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Every file path of the project for Quick Open, kept compact: folder paths
+// are stored once and files only hold their folder's id and their name in a
+// shared char array. Each file also has a 64-bit mask of the chars in its
+// path, so most files are rejected by one AND before any char is compared.
+// Built on a background thread; queries and updates run on the FX thread.
+public class PathIndex {
+
+    // Results returned per query (-Dide.quickOpen.results=n)
+    private static final int MAX_RESULTS = Integer.getInteger("ide.quickOpen.results", 50);
+    private static final char[] NONE = new char[0];
+    private static final int CHUNK = 1 << 15; // Files per parallel task
+    private static final int NAME_MATCH = 1 << 20; // Added to the score of a match within the name
+    private static final int NO_MATCH = Integer.MIN_VALUE;
+    private static final int UNRANKED = Integer.MIN_VALUE + 1;
+    private static final int COMPACT_REMOVED = 1024; // Removed files kept before a quarter of the index is dead
+
+    // A match; path is relative to the root, with / separators
+    public record Result(String path) {
+    }
+
+    // The index itself; files are removed by setting their folder to -1 and
+    // stay in their folder's list until compacted() drops them
+    private static final class Data {
+        final List<String> folders = new ArrayList<>(); // "" for the root, else "a/b/"
+        final Map<String, Integer> folderIds = new HashMap<>();
+        char[][] folderChars = new char[64][];
+        long[] folderMasks = new long[64];
+        int[] folderFirst = new int[64]; // Files of a folder are linked through fileNext
+        int[] fileNext = new int[1024];
+        int[] fileFolder = new int[1024];
+        int[] nameStart = new int[1024];
+        int[] nameLength = new int[1024];
+        long[] fileMasks = new long[1024]; // Chars of the whole path
+        long[] nameMasks = new long[1024]; // Chars of the name alone
+        char[] names = new char[1 << 16];
+        int nameChars;
+        int count;
+        int removed;
+
+        int folder(String path) {
+            Integer id = folderIds.get(path);
+            if (id == null) {
+                id = folders.size();
+                folders.add(path);
+                folderIds.put(path, id);
+                if (id == folderMasks.length) {
+                    folderMasks = Arrays.copyOf(folderMasks, id * 2);
+                    folderFirst = Arrays.copyOf(folderFirst, id * 2);
+                    folderChars = Arrays.copyOf(folderChars, id * 2);
+                }
+                folderFirst[id] = -1;
+                folderChars[id] = path.toCharArray();
+                folderMasks[id] = mask(path);
+            }
+            return id;
+        }
+
+        // The file with this name in the folder, or -1
+        int find(String folderPath, String name) {
+            Integer folder = folderIds.get(folderPath);
+            for (int i = folder == null ? -1 : folderFirst[folder]; i >= 0; i = fileNext[i]) {
+                if (fileFolder[i] == folder && nameLength[i] == name.length()
+                        && name.contentEquals(CharBuffer.wrap(names, nameStart[i], name.length()))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void add(String folderPath, String name) {
+            if (count == fileFolder.length) {
+                int size = count * 2;
+                fileFolder = Arrays.copyOf(fileFolder, size);
+                fileNext = Arrays.copyOf(fileNext, size);
+                nameStart = Arrays.copyOf(nameStart, size);
+                nameLength = Arrays.copyOf(nameLength, size);
+                fileMasks = Arrays.copyOf(fileMasks, size);
+                nameMasks = Arrays.copyOf(nameMasks, size);
+            }
+            if (nameChars + name.length() > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameChars + name.length()));
+            }
+            int folder = folder(folderPath);
+            name.getChars(0, name.length(), names, nameChars);
+            fileFolder[count] = folder;
+            fileNext[count] = folderFirst[folder];
+            folderFirst[folder] = count;
+            nameStart[count] = nameChars;
+            nameLength[count] = name.length();
+            nameMasks[count] = mask(name);
+            fileMasks[count] = folderMasks[folder] | nameMasks[count];
+            nameChars += name.length();
+            count++;
+        }
+
+        String path(int file) {
+            return folders.get(fileFolder[file]) + new String(names, nameStart[file], nameLength[file]);
+        }
+
+        // The live files alone, in the same order; folders left empty go too
+        Data compacted() {
+            Data live = new Data();
+            for (int i = 0; i < count; i++) {
+                if (fileFolder[i] >= 0) {
+                    live.add(folders.get(fileFolder[i]), new String(names, nameStart[i], nameLength[i]));
+                }
+            }
+            return live;
+        }
+    }
+
+    private Data data = new Data();
+    private List<String[]> pendingUpdates; // Updates that arrive while building: {folder, name, "+" or "-"}
+    private Path root;
+    private int generation;
+    private String lastQuery = ""; // Files that may match the last query, rescanned while it is typed on
+    private int[] lastCandidates;
+
+    // Index a project on a background thread; onReady runs on the FX thread
+    // with the file count. Opening the same project again rebuilds the index
+    // while the old one still answers queries.
+    public void open(Path projectRoot, IntConsumer onReady) {
+        Path newRoot = projectRoot.toAbsolutePath().normalize();
+        if (!newRoot.equals(root)) {
+            data = new Data();
+            lastCandidates = null;
+        }
+        root = newRoot;
+        int buildGeneration = ++generation;
+        pendingUpdates = new ArrayList<>();
+        Path buildRoot = root;
+        Thread builder = new Thread(() -> {
+            Data built = new Data();
+            try {
+                ProjectFiles.visit(buildRoot, (file, attrs) -> {
+                    String[] parts = split(buildRoot.relativize(file));
+                    built.add(parts[0], parts[1]);
+                });
+            } catch (IOException e) {
+                // Whatever was listed is still useful
+            }
+            Platform.runLater(() -> {
+                if (buildGeneration != generation) {
+                    return;
+                }
+                data = built;
+                lastCandidates = null;
+                for (String[] update : pendingUpdates) {
+                    apply(update[0], update[1], update[2].equals("+"));
+                }
+                pendingUpdates = null;
+                onReady.accept(size());
+            });
+        }, "path-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    public int size() {
+        return data.count - data.removed;
+    }
+
+    // A file was created or deleted (FX thread)
+    public void fileAdded(Path file) {
+        update(file, true);
+    }
+
+    public void fileRemoved(Path file) {
+        update(file, false);
+    }
+
+    // Something changed in a folder: list it off the FX thread, then apply the difference
+    public void folderChanged(Path folder) {
+        if (root == null || !folder.toAbsolutePath().normalize().startsWith(root)) {
+            return;
+        }
+        int currentGeneration = generation;
+        Thread lister = new Thread(() -> {
+            List<Path> files = new ArrayList<>();
+            try (Stream<Path> children = Files.list(folder)) {
+                children.filter(Files::isRegularFile).forEach(files::add);
+            } catch (IOException e) {
+                // Deleted: everything in it goes
+            }
+            Platform.runLater(() -> {
+                if (currentGeneration == generation) {
+                    syncFolder(folder, files);
+                }
+            });
+        }, "path-index");
+        lister.setDaemon(true);
+        lister.start();
+    }
+
+    private void syncFolder(Path folder, List<Path> files) {
+        String folderPath = folderPath(root.relativize(folder.toAbsolutePath().normalize()));
+        if (isIgnored(folderPath)) {
+            return;
+        }
+        Data current = data;
+        Integer id = current.folderIds.get(folderPath);
+        Map<String, Boolean> listed = new HashMap<>();
+        for (Path file : files) {
+            listed.put(file.getFileName().toString(), Boolean.TRUE);
+        }
+        if (id != null) {
+            for (int i = current.folderFirst[id]; i >= 0; i = current.fileNext[i]) {
+                if (current.fileFolder[i] == id) {
+                    String name = new String(current.names, current.nameStart[i], current.nameLength[i]);
+                    if (listed.remove(name) == null) {
+                        update(folder.resolve(name), false);
+                    }
+                }
+            }
+        }
+        for (String name : listed.keySet()) {
+            update(folder.resolve(name), true);
+        }
+    }
+
+    private void update(Path file, boolean added) {
+        if (root == null) {
+            return;
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        if (!absolute.startsWith(root)) {
+            return;
+        }
+        String[] parts = split(root.relativize(absolute));
+        if (isIgnored(parts[0])) {
+            return;
+        }
+        if (pendingUpdates != null) {
+            pendingUpdates.add(new String[] { parts[0], parts[1], added ? "+" : "-" });
+        } else {
+            apply(parts[0], parts[1], added);
+        }
+    }
+
+    private void apply(String folderPath, String name, boolean added) {
+        Data current = data;
+        int existing = current.find(folderPath, name);
+        if (added && existing < 0) {
+            current.add(folderPath, name);
+        } else if (!added && existing >= 0) {
+            current.fileFolder[existing] = -1;
+            current.removed++;
+            if (current.removed > COMPACT_REMOVED && current.removed * 4L > current.count) {
+                data = current.compacted(); // File ids change: lastCandidates goes below
+            }
+        }
+        lastCandidates = null;
+    }
+
+    // The best MAX_RESULTS paths for a query, best first; empty query gives nothing
+    public List<Result> query(String query) {
+        String needle = query.replace('\\', '/').replace(" ", "").toLowerCase(Locale.ROOT);
+        if (needle.isEmpty()) {
+            lastQuery = "";
+            lastCandidates = null;
+            return List.of();
+        }
+        Data current = data;
+        long needleMask = mask(needle);
+        char[] chars = needle.toCharArray();
+
+        // Typing on narrows the last query's files; anything else scans them all
+        int[] files = lastCandidates != null && needle.startsWith(lastQuery) ? lastCandidates : null;
+        int scan = files != null ? files.length : current.count;
+
+        // Chunks are scored in parallel, each keeping its own best; merging keeps the file order
+        List<Best> chunks = IntStream.range(0, (scan + CHUNK - 1) / CHUNK).parallel()
+                .mapToObj(chunk -> scoreChunk(current, files, chunk * CHUNK, Math.min(scan, chunk * CHUNK + CHUNK),
+                        chars, needleMask))
+                .toList();
+        Best best = new Best(MAX_RESULTS);
+        int candidateCount = 0;
+        for (Best chunk : chunks) {
+            candidateCount += chunk.candidateCount;
+        }
+        int[] candidates = new int[candidateCount];
+        candidateCount = 0;
+        for (Best chunk : chunks) {
+            System.arraycopy(chunk.candidates, 0, candidates, candidateCount, chunk.candidateCount);
+            candidateCount += chunk.candidateCount;
+            for (int i = 0; i < chunk.count; i++) {
+                best.offer(current, chunk.files[i], chunk.scores[i]);
+            }
+        }
+        lastQuery = needle;
+        lastCandidates = candidates;
+
+        List<Result> results = new ArrayList<>(best.count);
+        for (int i = 0; i < best.count; i++) {
+            results.add(new Result(current.path(best.files[i])));
+        }
+        return results;
+    }
+
+    private static Best scoreChunk(Data data, int[] files, int from, int to, char[] query, long queryMask) {
+        Best best = new Best(MAX_RESULTS);
+        best.candidates = new int[Math.min(to - from, 1024)];
+        for (int n = from; n < to; n++) {
+            int file = files != null ? files[n] : n;
+            if (data.fileFolder[file] < 0 || (data.fileMasks[file] & queryMask) != queryMask) {
+                continue;
+            }
+            boolean rankFolders = best.count < best.files.length || best.scores[best.count - 1] < NAME_MATCH;
+            int score = score(data, file, query, queryMask, rankFolders);
+            if (score == NO_MATCH) {
+                continue;
+            }
+            if (best.candidateCount == best.candidates.length) {
+                best.candidates = Arrays.copyOf(best.candidates, best.candidateCount * 2);
+            }
+            best.candidates[best.candidateCount++] = file;
+            if (score != UNRANKED) {
+                best.offer(data, file, score);
+            }
+        }
+        return best;
+    }
+
+    // The best few files so far, sorted; plus every file that may match, for narrowing
+    private static final class Best {
+        final int[] files;
+        final int[] scores;
+        int count;
+        int[] candidates;
+        int candidateCount;
+
+        Best(int size) {
+            files = new int[size];
+            scores = new int[size];
+        }
+
+        void offer(Data data, int file, int score) {
+            if (count == files.length && !better(data, score, file, scores[count - 1], files[count - 1])) {
+                return;
+            }
+            int at = Math.min(count, files.length - 1);
+            while (at > 0 && better(data, score, file, scores[at - 1], files[at - 1])) {
+                scores[at] = scores[at - 1];
+                files[at] = files[at - 1];
+                at--;
+            }
+            scores[at] = score;
+            files[at] = file;
+            count = Math.min(count + 1, files.length);
+        }
+    }
+
+    public Path resolve(Result result) {
+        return root.resolve(result.path());
+    }
+
+    private static boolean better(Data data, int score, int file, int otherScore, int otherFile) {
+        if (score != otherScore) {
+            return score > otherScore;
+        }
+        return length(data, file) < length(data, otherFile);
+    }
+
+    private static int length(Data data, int file) {
+        return data.folderChars[data.fileFolder[file]].length + data.nameLength[file];
+    }
+
+    // A file's score: the name alone if it holds the whole query, which always
+    // ranks above a match that needs the folder too. When folder matches are
+    // not wanted, a file whose name doesn't match is UNRANKED: it may match,
+    // and the next, longer query will tell.
+    private static int score(Data data, int file, char[] query, long queryMask, boolean rankFolders) {
+        if ((data.nameMasks[file] & queryMask) == queryMask) {
+            int nameScore = score(NONE, data.names, data.nameStart[file], data.nameLength[file], query);
+            if (nameScore != NO_MATCH) {
+                return NAME_MATCH + nameScore;
+            }
+        }
+        if (!rankFolders) {
+            return UNRANKED;
+        }
+        return Math.min(score(data.folderChars[data.fileFolder[file]], data.names, data.nameStart[file],
+                data.nameLength[file], query), NAME_MATCH - 1);
+    }
+
+    // Score of a query (lower case) in any text, for lists other than paths
+    public static int score(String text, String query) {
+        return score(NONE, text.toCharArray(), 0, text.length(), query.toLowerCase(Locale.ROOT).toCharArray());
+    }
+
+    // Fuzzy subsequence score of query in the folder chars followed by the
+    // name chars; NO_MATCH if it is not a subsequence. Forward to where the
+    // first match ends, then back from there matching each query char as
+    // late as possible, which gives the tightest window. Matches at word
+    // starts, runs of matches and the first char of the name count most;
+    // the chars skipped inside the window cost.
+    private static int score(char[] folder, char[] names, int nameStart, int nameLength, char[] query) {
+        int offset = nameStart - folder.length; // names[offset + i] is char i of the path, past the folder
+        int end = folder.length + nameLength;
+        int q = 0;
+        int i = 0;
+        while (i < end && q < query.length) {
+            if (fold(i < folder.length ? folder[i] : names[offset + i]) == query[q]) {
+                q++;
+            }
+            i++;
+        }
+        if (q < query.length) {
+            return NO_MATCH;
+        }
+        int windowEnd = i;
+        int score = 0;
+        int next = -2; // Where the following query char matched
+        q = query.length - 1;
+        for (i = windowEnd - 1; q >= 0; i--) {
+            char c = i < folder.length ? folder[i] : names[offset + i];
+            if (fold(c) != query[q]) {
+                continue;
+            }
+            int points = 1;
+            if (i == 0 || isBoundary(i - 1 < folder.length ? folder[i - 1] : names[offset + i - 1], c)) {
+                points += 8;
+            }
+            if (i + 1 == next) {
+                points += 5;
+            }
+            if (i == folder.length) {
+                points += 10;
+            }
+            score += points;
+            next = i;
+            q--;
+        }
+        return score - Math.min(windowEnd - next - query.length, 20);
+    }
+
+    // Start of a word: after a separator, or a capital after a lower case letter
+    private static boolean isBoundary(char before, char c) {
+        return before == '/' || before == '_' || before == '-' || before == '.' || before == ' '
+                || (Character.isUpperCase(c) && Character.isLowerCase(before));
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    // Bits for a-z and 0-9; any other char shares one of the remaining bits
+    private static long mask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (c >= '0' && c <= '9') {
+                mask |= 1L << (26 + c - '0');
+            } else {
+                mask |= 1L << (36 + c % 28);
+            }
+        }
+        return mask;
+    }
+
+    // {"a/b/", "Name.java"} for a relative path
+    private static String[] split(Path relative) {
+        Path parent = relative.getParent();
+        return new String[] { parent == null ? "" : folderPath(parent), relative.getFileName().toString() };
+    }
+
+    private static String folderPath(Path relative) {
+        String path = relative.toString().replace('\\', '/');
+        return path.isEmpty() ? "" : path + "/";
+    }
+
+    private static boolean isIgnored(String folderPath) {
+        for (String name : folderPath.split("/")) {
+            if (ProjectFiles.IGNORED_FOLDERS.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,255 @@
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Measures what the UI waits for. Each Operation has a latency histogram and
+// is also emitted as a JFR event (ide.Operation), so a recording shows it
+// next to GC and I/O. A watchdog thread posts a heartbeat to the FX thread;
+// if it has not run after the stall threshold, the FX thread's stack is
+// sampled (what it is stuck in) and the stall is counted, kept for the
+// overlay and emitted as ide.FxStall. Keystroke latency runs from a typed
+// key to the layout of the next pulse, which is painted in the same pulse;
+// a key with no pulse soon after changed nothing on screen and is not counted.
+public class PerfMonitor {
+
+    // FX thread blocked longer than this is a stall (-Dide.perf.stallMillis=ms)
+    private static final long STALL_MILLIS = Math.max(10, Long.getLong("ide.perf.stallMillis", 200));
+    // A typed key whose pulse comes later than this painted nothing (-Dide.perf.keystrokeMaxMillis=ms)
+    // Print each stall's stack to stderr as well (-Dide.perf.printStalls=true)
+    private static final boolean PRINT_STALLS = Boolean.getBoolean("ide.perf.printStalls");
+    private static final long KEYSTROKE_MAX_NANOS = Long.getLong("ide.perf.keystrokeMaxMillis", 2000) * 1_000_000;
+
+    public enum Operation {
+        KEYSTROKE("Keystroke → paint"),
+        FILE_OPEN("File open"),
+        SAVE("Save"),
+        TREE_EXPAND("Tree expand"),
+        COMMAND_SPAWN("Command spawn");
+
+        public final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    @Name("ide.Operation")
+    @Label("IDE Operation")
+    @Category("IDE")
+    @StackTrace(false)
+    static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Detail")
+        String detail;
+    }
+
+    @Name("ide.FxStall")
+    @Label("FX Thread Stall")
+    @Category("IDE")
+    @StackTrace(false)
+    static class StallEvent extends Event {
+        @Label("Blocked")
+        @Timespan
+        long blocked;
+
+        @Label("FX Thread Stack")
+        String stack;
+    }
+
+    // One operation in progress; end() records it (once)
+    public final class Timer {
+        private final Operation operation;
+        private final long start = System.nanoTime();
+        private final OperationEvent event = new OperationEvent();
+        private boolean ended;
+
+        private Timer(Operation operation, String detail) {
+            this.operation = operation;
+            event.operation = operation.label;
+            event.detail = detail;
+            event.begin();
+        }
+
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            histograms.get(operation).record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    // Log-linear buckets from 1 µs: 8 per power of two, so a percentile is
+    // within 12.5% of the true value. Recorded from any thread
+    public static final class Histogram {
+        private static final int SUB_BUCKETS = 8;
+        private static final int BUCKETS = 40 * SUB_BUCKETS; // Up to about 12 days
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (exponent >= 3 ? micros >> (exponent - 3) : micros << (3 - exponent)) & (SUB_BUCKETS - 1);
+            counts.incrementAndGet(Math.min(BUCKETS - 1, exponent * SUB_BUCKETS + sub));
+            count.incrementAndGet();
+            max.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        // The upper bound of the bucket holding the given percentile (0-100), in nanoseconds
+        public long percentileNanos(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(1, rank)) {
+                    int exponent = i / SUB_BUCKETS;
+                    long upperMicros = ((long) (SUB_BUCKETS + i % SUB_BUCKETS + 1) << exponent) / SUB_BUCKETS;
+                    return Math.min(Math.max(1, upperMicros) * 1000, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Histogram stalls = new Histogram();
+    private volatile String lastStallStack = "";
+    private volatile Thread fxThread;
+    private volatile boolean running;
+    private Timer keystroke; // FX thread: the key event waiting for its pulse
+
+    public PerfMonitor() {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new Histogram());
+        }
+    }
+
+    // FX thread: start the watchdog and time keystrokes in scene
+    public void install(Scene scene) {
+        fxThread = Thread.currentThread();
+        // Typed keys only: modifiers, arrows and shortcuts are presses without text,
+        // and a press with its typed event would count twice
+        EventHandler<KeyEvent> keyTyped = e -> {
+            if (keystroke == null && !e.getCharacter().isEmpty() && !e.isControlDown() && !e.isMetaDown()) {
+                keystroke = start(Operation.KEYSTROKE, e.getCharacter());
+            }
+        };
+        scene.addEventFilter(KeyEvent.KEY_TYPED, keyTyped);
+        scene.addPostLayoutPulseListener(() -> {
+            if (keystroke != null) {
+                if (System.nanoTime() - keystroke.start <= KEYSTROKE_MAX_NANOS) {
+                    keystroke.end();
+                } // Else the pulse is for something else: the key changed nothing
+                keystroke = null;
+            }
+        });
+
+        running = true;
+        Thread watchdog = new Thread(this::watch, "fx-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    public Timer start(Operation operation, String detail) {
+        return new Timer(operation, detail);
+    }
+
+    public Histogram getHistogram(Operation operation) {
+        return histograms.get(operation);
+    }
+
+    public Histogram getStalls() {
+        return stalls;
+    }
+
+    // Top frames of the FX thread during the last stall
+    public String getLastStallStack() {
+        return lastStallStack;
+    }
+
+    public void close() {
+        running = false;
+    }
+
+    // Post a heartbeat and see how long the FX thread takes to run it; sample
+    // its stack once per stall while it is blocked
+    private void watch() {
+        AtomicLong answered = new AtomicLong();
+        long interval = Math.max(5, STALL_MILLIS / 4);
+        while (running) {
+            long posted = System.nanoTime();
+            answered.set(0);
+            Platform.runLater(() -> answered.set(System.nanoTime()));
+            String stack = null;
+            try {
+                while (running && answered.get() == 0) {
+                    Thread.sleep(interval);
+                    if (stack == null && System.nanoTime() - posted > STALL_MILLIS * 1_000_000) {
+                        stack = sample(); // While it is still stuck
+                    }
+                }
+                long blocked = answered.get() - posted;
+                if (stack != null && blocked > STALL_MILLIS * 1_000_000) {
+                    stalled(blocked, stack);
+                }
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private String sample() {
+        Thread thread = fxThread;
+        StringBuilder stack = new StringBuilder();
+        StackTraceElement[] frames = thread == null ? new StackTraceElement[0] : thread.getStackTrace();
+        for (int i = 0; i < Math.min(frames.length, 24); i++) {
+            stack.append("    at ").append(frames[i]).append('\n');
+        }
+        return stack.toString();
+    }
+
+    private void stalled(long blocked, String stack) {
+        stalls.record(blocked);
+        lastStallStack = stack;
+        if (PRINT_STALLS) {
+            System.err.printf("FX thread blocked for %d ms%n%s", blocked / 1_000_000, stack);
+        }
+        StallEvent event = new StallEvent();
+        event.blocked = blocked;
+        event.stack = stack;
+        event.commit();
+    }
+}
@@ -0,0 +1,69 @@
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+// The PerfMonitor's numbers over the window: count and p50 / p95 / p99 / max
+// of each operation, and the FX thread stalls with where the last one was
+// stuck. Refreshed twice a second while shown; clicks go through to the IDE.
+public final class PerfOverlay extends VBox {
+
+    private static final int STACK_LINES = 6; // Of the last stall
+
+    private final PerfMonitor monitor;
+    private final Label table = new Label();
+    private final Label stack = new Label();
+    private final Timeline refresh;
+
+    public PerfOverlay(PerfMonitor monitor) {
+        this.monitor = monitor;
+        getStyleClass().add("perf-overlay");
+        stack.getStyleClass().add("perf-stack");
+        getChildren().addAll(table, stack);
+        setMouseTransparent(true);
+        setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        setVisible(false);
+        refresh = new Timeline(new KeyFrame(Duration.millis(500), e -> update()));
+        refresh.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    public void toggle() {
+        setVisible(!isVisible());
+        if (isVisible()) {
+            update();
+            refresh.play();
+        } else {
+            refresh.stop();
+        }
+    }
+
+    private void update() {
+        StringBuilder text = new StringBuilder(String.format("%-18s %6s %9s %9s %9s %9s%n",
+                "", "n", "p50", "p95", "p99", "max"));
+        for (PerfMonitor.Operation operation : PerfMonitor.Operation.values()) {
+            text.append(row(operation.label, monitor.getHistogram(operation))).append('\n');
+        }
+        text.append(row("FX stalls", monitor.getStalls()));
+        table.setText(text.toString());
+
+        String lastStack = monitor.getLastStallStack();
+        String[] lines = lastStack.split("\n");
+        StringBuilder top = new StringBuilder();
+        for (int i = 0; i < Math.min(lines.length, STACK_LINES); i++) {
+            top.append(lines[i].trim()).append('\n');
+        }
+        stack.setText(lastStack.isEmpty() ? "" : "Last stall:\n" + top.toString().trim());
+    }
+
+    private static String row(String name, PerfMonitor.Histogram histogram) {
+        return String.format("%-18s %6d %9s %9s %9s %9s", name, histogram.getCount(),
+                millis(histogram.percentileNanos(50)), millis(histogram.percentileNanos(95)),
+                millis(histogram.percentileNanos(99)), millis(histogram.getMaxNanos()));
+    }
+
+    private static String millis(long nanos) {
+        return nanos == 0 ? "-" : String.format("%.1f ms", nanos / 1_000_000.0);
+    }
+}
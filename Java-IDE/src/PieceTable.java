@@ -0,0 +1,676 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Text document stored as a piece table: the original file content plus an
+// append-only buffer of inserted text, stitched together by a balanced tree
+// (treap) of pieces. Edits split and join pieces in O(log n) and never copy
+// the document. Each subtree also counts its chars and line feeds, so line
+// lookups are O(log n) as well.
+//
+// The tree also keeps a polynomial hash (mod 2^61-1) of every subtree, so the
+// hash of the whole document is updated in O(log n + edit size) per edit and
+// can be compared against the hash taken when the file was saved.
+public class PieceTable {
+
+    private static final long MOD = (1L << 61) - 1;
+    private static final long BASE = 0x1F3D5B79A3C4E5L; // Fixed so hashes stay comparable across runs
+    private static final int HASH_STRIDE_BITS = 6; // Buffer prefix hash every 64 chars
+
+    // Called after every edit with what was removed and what was inserted
+    public interface Listener {
+        void changed(int offset, String removed, String inserted);
+    }
+
+    // Chars of one buffer plus the positions of its line feeds and a sparse
+    // table of prefix hashes, so the hash of any range costs < 128 chars
+    private static final class Buffer {
+        private char[] chars;
+        private int length;
+        private int[] lineFeeds;
+        private int lineFeedCount;
+        private long[] prefixHashes;
+        private long runningHash;
+
+        Buffer(int capacity) {
+            chars = new char[Math.max(16, capacity)];
+            lineFeeds = new int[16];
+            prefixHashes = new long[(chars.length >> HASH_STRIDE_BITS) + 1];
+        }
+
+        void append(CharSequence text) {
+            int needed = length + text.length();
+            if (needed > chars.length) {
+                char[] grown = new char[Math.max(needed, chars.length * 2)];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                chars[length] = c;
+                if (c == '\n') {
+                    if (lineFeedCount == lineFeeds.length) {
+                        int[] grown = new int[lineFeeds.length * 2];
+                        System.arraycopy(lineFeeds, 0, grown, 0, lineFeedCount);
+                        lineFeeds = grown;
+                    }
+                    lineFeeds[lineFeedCount++] = length;
+                }
+                length++;
+                runningHash = addMod(mulMod(runningHash, BASE), c);
+                if ((length & ((1 << HASH_STRIDE_BITS) - 1)) == 0) {
+                    int slot = length >> HASH_STRIDE_BITS;
+                    if (slot == prefixHashes.length) {
+                        long[] grown = new long[prefixHashes.length * 2];
+                        System.arraycopy(prefixHashes, 0, grown, 0, prefixHashes.length);
+                        prefixHashes = grown;
+                    }
+                    prefixHashes[slot] = runningHash;
+                }
+            }
+        }
+
+        // Hash of chars [0, position)
+        long prefixHash(int position) {
+            int slot = position >> HASH_STRIDE_BITS;
+            long hash = prefixHashes[slot];
+            for (int i = slot << HASH_STRIDE_BITS; i < position; i++) {
+                hash = addMod(mulMod(hash, BASE), chars[i]);
+            }
+            return hash;
+        }
+
+        // Hash of chars [start, end)
+        long rangeHash(int start, int end) {
+            return subMod(prefixHash(end), mulMod(prefixHash(start), power(end - start)));
+        }
+
+        // Number of line feeds before a position of this buffer
+        int lineFeedsBefore(int position) {
+            int low = 0;
+            int high = lineFeedCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lineFeeds[mid] < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // One piece of text (a range of a buffer) and the totals of its subtree
+    private static final class Node {
+        final Buffer buffer;
+        final int start;
+        int length;
+        int lineFeeds;
+        long pieceHash;
+        long piecePower; // BASE^length
+        final int priority;
+        Node left;
+        Node right;
+        int size; // Chars in this subtree
+        int lines; // Line feeds in this subtree
+        long hash; // Hash of this subtree's text
+        long power; // BASE^size
+
+        Node(Buffer buffer, int start, int length, int priority) {
+            this.buffer = buffer;
+            this.start = start;
+            this.priority = priority;
+            setLength(length);
+        }
+
+        void setLength(int length) {
+            this.length = length;
+            this.lineFeeds = buffer.lineFeedsBefore(start + length) - buffer.lineFeedsBefore(start);
+            this.pieceHash = buffer.rangeHash(start, start + length);
+            this.piecePower = power(length);
+        }
+    }
+
+    private Buffer original;
+    private Buffer added = new Buffer(1024);
+    private Node root;
+    private long version; // Bumped on every edit
+    private int seed = 0x2545F491;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    // Typing appends to the same piece instead of creating one per char
+    private Node lastInsert;
+    private int lastInsertEnd = -1;
+
+    public PieceTable() {
+        this("");
+    }
+
+    public PieceTable(String text) {
+        load(text);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int length() {
+        return size(root);
+    }
+
+    public int getLineCount() {
+        return lines(root) + 1;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Hash of the whole text, equal to hashOf(getText()) but O(1)
+    public long getHash() {
+        return root == null ? 0 : root.hash;
+    }
+
+    // Same hash as getHash() for text that is not in a PieceTable
+    public static long hashOf(CharSequence text) {
+        long hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = addMod(mulMod(hash, BASE), text.charAt(i));
+        }
+        return hash;
+    }
+
+    // Replace the whole content (drops all edit history of the pieces)
+    public void setText(String text) {
+        String removed = getText();
+        load(text);
+        version++;
+        fireChanged(0, removed, text);
+    }
+
+    private void load(String text) {
+        original = new Buffer(text.length());
+        original.append(text);
+        added = new Buffer(1024);
+        root = text.isEmpty() ? null : new Node(original, 0, text.length(), nextPriority());
+        update(root);
+        lastInsert = null;
+        lastInsertEnd = -1;
+    }
+
+    public void insert(int offset, String text) {
+        checkOffset(offset);
+        if (text.isEmpty()) {
+            return;
+        }
+
+        int start = added.length;
+        added.append(text);
+
+        if (!(offset == lastInsertEnd && lastInsert.start + lastInsert.length == start
+                && extendLastInsert(offset, text.length()))) {
+            Node piece = new Node(added, start, text.length(), nextPriority());
+            update(piece);
+            Node[] parts = split(root, offset);
+            root = merge(merge(parts[0], piece), parts[1]);
+            lastInsert = piece;
+        }
+        lastInsertEnd = offset + text.length();
+        version++;
+        fireChanged(offset, "", text);
+    }
+
+    public void delete(int offset, int length) {
+        checkOffset(offset);
+        checkOffset(offset + length);
+        if (length == 0) {
+            return;
+        }
+
+        String removed = getText(offset, offset + length);
+        Node[] head = split(root, offset);
+        Node[] tail = split(head[1], length);
+        root = merge(head[0], tail[1]);
+        lastInsert = null;
+        lastInsertEnd = -1;
+        version++;
+        fireChanged(offset, removed, "");
+    }
+
+    // Replace a range with new text (two listener calls at most)
+    public void replace(int start, int end, String text) {
+        if (end > start) {
+            delete(start, end - start);
+        }
+        insert(start, text);
+    }
+
+    public char charAt(int offset) {
+        if (offset < 0 || offset >= length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length());
+        }
+        Node t = root;
+        while (true) {
+            int leftSize = size(t.left);
+            if (offset < leftSize) {
+                t = t.left;
+            } else if (offset < leftSize + t.length) {
+                return t.buffer.chars[t.start + offset - leftSize];
+            } else {
+                offset -= leftSize + t.length;
+                t = t.right;
+            }
+        }
+    }
+
+    public String getText() {
+        return getText(0, length());
+    }
+
+    public String getText(int start, int end) {
+        checkOffset(start);
+        checkOffset(end);
+        StringBuilder builder = new StringBuilder(Math.max(0, end - start));
+        appendRange(root, 0, start, end, builder);
+        return builder.toString();
+    }
+
+    // Copy the chars of [start, end) that fall in this subtree
+    private void appendRange(Node t, int base, int start, int end, StringBuilder builder) {
+        if (t == null || start >= end) {
+            return;
+        }
+        int leftSize = size(t.left);
+        int pieceStart = base + leftSize;
+        int pieceEnd = pieceStart + t.length;
+        if (start < pieceStart) {
+            appendRange(t.left, base, start, Math.min(end, pieceStart), builder);
+        }
+        int from = Math.max(start, pieceStart);
+        int to = Math.min(end, pieceEnd);
+        if (from < to) {
+            builder.append(t.buffer.chars, t.start + from - pieceStart, to - from);
+        }
+        if (end > pieceEnd) {
+            appendRange(t.right, pieceEnd, Math.max(start, pieceEnd), end, builder);
+        }
+    }
+
+    // True if the document holds exactly this text (no copy is made)
+    public boolean contentEquals(CharSequence text) {
+        if (text.length() != length()) {
+            return false;
+        }
+        int[] position = { 0 };
+        return compareRange(root, text, position);
+    }
+
+    private boolean compareRange(Node t, CharSequence text, int[] position) {
+        if (t == null) {
+            return true;
+        }
+        if (!compareRange(t.left, text, position)) {
+            return false;
+        }
+        char[] chars = t.buffer.chars;
+        for (int i = 0; i < t.length; i++) {
+            if (chars[t.start + i] != text.charAt(position[0]++)) {
+                return false;
+            }
+        }
+        return compareRange(t.right, text, position);
+    }
+
+    // Immutable view of the text at one version. Buffers are append-only, so
+    // the pieces stay valid while the document keeps changing; taking one
+    // costs O(pieces) and copies no text.
+    public static final class Snapshot {
+        private final char[][] arrays;
+        private final int[] starts;
+        private final int[] lengths;
+        private final int[][] lineFeeds; // The buffer's line feed positions, also append-only
+        private final int[] firstLineFeeds; // Index of the piece's first line feed in lineFeeds[i]
+        private final int[] linesBefore; // Line feeds in the pieces before
+        private final int[] offsetsBefore; // Chars in the pieces before
+        private final long version;
+        private final long hash;
+        private final int length;
+
+        private Snapshot(List<Node> pieces, long version, long hash, int length) {
+            arrays = new char[pieces.size()][];
+            starts = new int[pieces.size()];
+            lengths = new int[pieces.size()];
+            lineFeeds = new int[pieces.size()][];
+            firstLineFeeds = new int[pieces.size()];
+            linesBefore = new int[pieces.size() + 1];
+            offsetsBefore = new int[pieces.size() + 1];
+            for (int i = 0; i < pieces.size(); i++) {
+                Node piece = pieces.get(i);
+                arrays[i] = piece.buffer.chars;
+                starts[i] = piece.start;
+                lengths[i] = piece.length;
+                lineFeeds[i] = piece.buffer.lineFeeds;
+                firstLineFeeds[i] = piece.buffer.lineFeedsBefore(piece.start);
+                linesBefore[i + 1] = linesBefore[i] + piece.lineFeeds;
+                offsetsBefore[i + 1] = offsetsBefore[i] + piece.length;
+            }
+            this.version = version;
+            this.hash = hash;
+            this.length = length;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public int getPieceCount() {
+            return arrays.length;
+        }
+
+        public int getLineCount() {
+            return linesBefore[arrays.length] + 1;
+        }
+
+        // Offset of the first char of a line, like PieceTable.getLineStart; O(log pieces)
+        public int getLineStart(int line) {
+            if (line <= 0) {
+                return 0;
+            }
+            if (line >= getLineCount()) {
+                return length;
+            }
+            int low = 0; // Last piece with fewer than line line feeds before it
+            int high = arrays.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (linesBefore[mid] < line) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            int position = lineFeeds[low][firstLineFeeds[low] + line - linesBefore[low] - 1];
+            return offsetsBefore[low] + position - starts[low] + 1;
+        }
+
+        // Offset where piece i starts in the text
+        public int pieceOffset(int index) {
+            return offsetsBefore[index];
+        }
+
+        // Chars of a piece are pieceChars(i)[pieceStart(i) .. pieceStart(i) + pieceLength(i))
+        public char[] pieceChars(int index) {
+            return arrays[index];
+        }
+
+        public int pieceStart(int index) {
+            return starts[index];
+        }
+
+        public int pieceLength(int index) {
+            return lengths[index];
+        }
+
+        // Copy of the text; safe on any thread
+        public String getText() {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < arrays.length; i++) {
+                builder.append(arrays[i], starts[i], lengths[i]);
+            }
+            return builder.toString();
+        }
+    }
+
+    public Snapshot snapshot() {
+        List<Node> pieces = new ArrayList<>();
+        collectPieces(root, pieces);
+        return new Snapshot(pieces, version, getHash(), length());
+    }
+
+    private static void collectPieces(Node t, List<Node> pieces) {
+        while (t != null) {
+            collectPieces(t.left, pieces);
+            pieces.add(t);
+            t = t.right;
+        }
+    }
+
+    // Offset of the first char of a line (0 based)
+    public int getLineStart(int line) {
+        if (line <= 0) {
+            return 0;
+        }
+        if (line >= getLineCount()) {
+            return length();
+        }
+        return offsetOfLineFeed(line) + 1;
+    }
+
+    // Offset just past the last char of a line, before its line feed
+    public int getLineEnd(int line) {
+        if (line + 1 >= getLineCount()) {
+            return length();
+        }
+        return offsetOfLineFeed(line + 1);
+    }
+
+    public String getLine(int line) {
+        return getText(getLineStart(line), getLineEnd(line));
+    }
+
+    // Line (0 based) that contains an offset
+    public int getLineOfOffset(int offset) {
+        checkOffset(offset);
+        Node t = root;
+        int lineCount = 0;
+        while (t != null) {
+            int leftSize = size(t.left);
+            if (offset < leftSize) {
+                t = t.left;
+            } else if (offset <= leftSize + t.length) {
+                int local = offset - leftSize;
+                return lineCount + lines(t.left)
+                        + t.buffer.lineFeedsBefore(t.start + local) - t.buffer.lineFeedsBefore(t.start);
+            } else {
+                lineCount += lines(t.left) + t.lineFeeds;
+                offset -= leftSize + t.length;
+                t = t.right;
+            }
+        }
+        return lineCount;
+    }
+
+    // Offset of the k-th line feed (1 based)
+    private int offsetOfLineFeed(int k) {
+        Node t = root;
+        int base = 0;
+        while (t != null) {
+            int leftLines = lines(t.left);
+            if (k <= leftLines) {
+                t = t.left;
+                continue;
+            }
+            k -= leftLines;
+            int leftSize = size(t.left);
+            if (k <= t.lineFeeds) {
+                int position = t.buffer.lineFeeds[t.buffer.lineFeedsBefore(t.start) + k - 1];
+                return base + leftSize + position - t.start;
+            }
+            k -= t.lineFeeds;
+            base += leftSize + t.length;
+            t = t.right;
+        }
+        throw new IllegalStateException("line feed " + k + " not found");
+    }
+
+    // Grow the piece that ends at offset in place, if it is the last insert
+    private boolean extendLastInsert(int offset, int count) {
+        Node t = root;
+        int base = 0;
+        while (t != null) {
+            int leftSize = size(t.left);
+            if (offset - 1 < base + leftSize) {
+                t = t.left;
+            } else if (offset - 1 >= base + leftSize + t.length) {
+                base += leftSize + t.length;
+                t = t.right;
+            } else {
+                break;
+            }
+        }
+        if (t != lastInsert || base + size(t.left) + t.length != offset) {
+            return false;
+        }
+
+        // Same path again, then grow the piece and fix the totals bottom up
+        List<Node> path = new ArrayList<>();
+        t = root;
+        base = 0;
+        while (t != lastInsert) {
+            path.add(t);
+            int leftSize = size(t.left);
+            if (offset - 1 < base + leftSize) {
+                t = t.left;
+            } else {
+                base += leftSize + t.length;
+                t = t.right;
+            }
+        }
+        t.setLength(t.length + count);
+        update(t);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            update(path.get(i));
+        }
+        return true;
+    }
+
+    // Split a subtree into the first offset chars and the rest
+    private Node[] split(Node t, int offset) {
+        if (t == null) {
+            return new Node[] { null, null };
+        }
+        int leftSize = size(t.left);
+        if (offset <= leftSize) {
+            Node[] parts = split(t.left, offset);
+            t.left = parts[1];
+            update(t);
+            return new Node[] { parts[0], t };
+        }
+        if (offset >= leftSize + t.length) {
+            Node[] parts = split(t.right, offset - leftSize - t.length);
+            t.right = parts[0];
+            update(t);
+            return new Node[] { t, parts[1] };
+        }
+
+        // Offset falls inside this piece: cut it in two
+        int cut = offset - leftSize;
+        Node head = new Node(t.buffer, t.start, cut, t.priority);
+        Node tail = new Node(t.buffer, t.start + cut, t.length - cut, t.priority);
+        head.left = t.left;
+        tail.right = t.right;
+        update(head);
+        update(tail);
+        return new Node[] { head, tail };
+    }
+
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static void update(Node t) {
+        if (t != null) {
+            t.size = t.length + size(t.left) + size(t.right);
+            t.lines = t.lineFeeds + lines(t.left) + lines(t.right);
+            long leftHash = t.left == null ? 0 : t.left.hash;
+            long rightHash = t.right == null ? 0 : t.right.hash;
+            long rightPower = t.right == null ? 1 : t.right.power;
+            long hash = addMod(mulMod(leftHash, t.piecePower), t.pieceHash);
+            t.hash = addMod(mulMod(hash, rightPower), rightHash);
+            t.power = mulMod(mulMod(t.left == null ? 1 : t.left.power, t.piecePower), rightPower);
+        }
+    }
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static int lines(Node t) {
+        return t == null ? 0 : t.lines;
+    }
+
+    private static long mulMod(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        long result = (low & MOD) + ((low >>> 61) | (high << 3));
+        return result >= MOD ? result - MOD : result;
+    }
+
+    private static long addMod(long a, long b) {
+        long result = a + b;
+        return result >= MOD ? result - MOD : result;
+    }
+
+    private static long subMod(long a, long b) {
+        long result = a - b;
+        return result < 0 ? result + MOD : result;
+    }
+
+    // BASE^exponent by squaring
+    private static long power(int exponent) {
+        long result = 1;
+        long factor = BASE;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = mulMod(result, factor);
+            }
+            factor = mulMod(factor, factor);
+            exponent >>= 1;
+        }
+        return result;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length());
+        }
+    }
+
+    private void fireChanged(int offset, String removed, String inserted) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.changed(offset, removed, inserted);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+
+// Starts and tracks every child process of the IDE. Each one is kept by its
+// ProcessHandle so it (and everything it started) can be stopped, its output
+// is drained on virtual threads, and at most MAX_CONCURRENT limited runs are
+// alive at once; more wait for a free slot. When a run ends it reports exit
+// code, wall time and CPU time.
+public class ProcessManager {
+
+    // Limited runs alive at the same time (-Dide.process.maxConcurrent=n)
+    private static final int MAX_CONCURRENT = Math.max(1, Integer.getInteger("ide.process.maxConcurrent", 4));
+    private static final long KILL_GRACE_MILLIS = 2000; // Between destroy() and destroyForcibly()
+    private static final long CPU_SAMPLE_MILLIS = 200;
+    private static final String STDOUT_COLOR = "#a5d6ff";
+    private static final String STDERR_COLOR = "#ff7b72";
+
+    private final Semaphore slots = new Semaphore(MAX_CONCURRENT);
+    private final List<Run> runs = new CopyOnWriteArrayList<>();
+    private final ThreadFactory ioThreads = Thread.ofVirtual().name("process-io-", 0).factory();
+    private volatile boolean shutDown;
+
+    // How a run ended; cpuMillis sums the samples of the whole process tree
+    public record Result(String name, int exitCode, long wallMillis, long cpuMillis, boolean cancelled) {
+        public String describe() {
+            return (cancelled ? "stopped" : "exit " + exitCode)
+                    + String.format(" · %.2f s wall · %.2f s cpu", wallMillis / 1000.0, cpuMillis / 1000.0);
+        }
+    }
+
+    // One process started through the manager
+    public final class Run {
+        private final String name;
+        private final boolean limited;
+        private final OutputPump pump;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+        private volatile Process process;
+        private volatile boolean cancelled;
+        private CpuSampler sampler;
+        private long startNanos;
+
+        private Run(String name, boolean limited, OutputPump pump) {
+            this.name = name;
+            this.limited = limited;
+            this.pump = pump;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Completes (off the FX thread) after the process exited and its output was shown
+        public CompletableFuture<Result> result() {
+            return result;
+        }
+
+        public OutputPump pump() {
+            return pump;
+        }
+
+        // Null while waiting for a slot
+        public Process process() {
+            return process;
+        }
+
+        public boolean isAlive() {
+            Process current = process;
+            return current != null && current.isAlive();
+        }
+
+        // Stop the process and all its descendants: politely first, then by force
+        public void cancel() {
+            cancelled = true;
+            Process current = process;
+            if (current != null) {
+                killTree(current.toHandle());
+            }
+        }
+
+        // Start the process (a limited run already holds its slot)
+        private void launch(ProcessBuilder builder) throws IOException {
+            if (cancelled || shutDown) {
+                releaseSlot();
+                finish(-1);
+                return;
+            }
+            try {
+                startNanos = System.nanoTime();
+                process = builder.start();
+            } catch (IOException e) {
+                releaseSlot();
+                runs.remove(this);
+                result.completeExceptionally(e);
+                throw e;
+            }
+            Process started = process;
+            if (cancelled) {
+                killTree(started.toHandle());
+            }
+            sampler = new CpuSampler(started.toHandle(), true);
+            sampler.start();
+            pump.start(started.getInputStream(), STDOUT_COLOR, started.getErrorStream(), STDERR_COLOR,
+                    () -> started.onExit().thenRun(() -> {
+                        releaseSlot();
+                        finish(started.exitValue());
+                    }));
+        }
+
+        private void releaseSlot() {
+            if (limited) {
+                slots.release();
+            }
+        }
+
+        private void finish(int exitCode) {
+            runs.remove(this);
+            long wall = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000;
+            long cpu = sampler == null ? 0 : sampler.stop().toMillis();
+            result.complete(new Result(name, exitCode, wall, cpu, cancelled));
+        }
+    }
+
+    // Start a process; output goes to sink (text, color) on the FX thread. A
+    // limited run waits for a free slot first; the session shell is not limited.
+    public Run start(String name, ProcessBuilder builder, BiConsumer<String, String> sink,
+            OutputPump.MarkerListener markers, boolean limited) throws IOException {
+        if (shutDown) {
+            throw new IOException("Shutting down");
+        }
+        Run run = new Run(name, limited, new OutputPump(sink, ioThreads, markers));
+        runs.add(run);
+        if (!limited || slots.tryAcquire()) {
+            run.launch(builder);
+        } else {
+            sink.accept("⏳ Waiting for a free process slot (limit " + MAX_CONCURRENT + ")\n", "#ffa657");
+            ioThreads.newThread(() -> {
+                try {
+                    slots.acquire();
+                } catch (InterruptedException e) {
+                    run.finish(-1);
+                    return;
+                }
+                try {
+                    run.launch(builder);
+                } catch (IOException e) {
+                    // Start failures complete the run's result
+                }
+            }).start();
+        }
+        return run;
+    }
+
+    public List<Run> getRuns() {
+        return List.copyOf(runs);
+    }
+
+    // Stop every limited run (the Stop action)
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Run run : runs) {
+            if (run.limited) {
+                run.cancel();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    // Kill everything, including sessions, right away (the IDE is closing)
+    public void shutdown() {
+        shutDown = true;
+        for (Run run : runs) {
+            run.cancelled = true;
+            Process process = run.process;
+            if (process != null) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    // Descendants before the root, so nothing is reparented and left running
+    public void killTree(ProcessHandle root) {
+        List<ProcessHandle> tree = root.descendants().toList();
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+        }
+        root.destroy();
+        ioThreads.newThread(() -> {
+            try {
+                Thread.sleep(KILL_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (ProcessHandle handle : tree) {
+                handle.destroyForcibly();
+            }
+            root.destroyForcibly();
+        }).start();
+    }
+
+    // Sums the CPU time of a process tree. Processes that exit keep their
+    // last sample, so short-lived children are counted up to the last tick.
+    public final class CpuSampler {
+        private final ProcessHandle root;
+        private final boolean includeRoot;
+        private final Map<Long, Duration> samples = new ConcurrentHashMap<>();
+        private volatile boolean running;
+
+        public CpuSampler(ProcessHandle root, boolean includeRoot) {
+            this.root = root;
+            this.includeRoot = includeRoot;
+        }
+
+        public void start() {
+            running = true;
+            ioThreads.newThread(() -> {
+                while (running && root.isAlive()) {
+                    sample();
+                    try {
+                        Thread.sleep(CPU_SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }).start();
+        }
+
+        private void sample() {
+            if (includeRoot) {
+                root.info().totalCpuDuration().ifPresent(cpu -> samples.put(root.pid(), cpu));
+            }
+            root.descendants().forEach(handle ->
+                    handle.info().totalCpuDuration().ifPresent(cpu -> samples.merge(handle.pid(), cpu,
+                            (old, current) -> current.compareTo(old) > 0 ? current : old)));
+        }
+
+        // Take a last sample and return the total
+        public Duration stop() {
+            sample();
+            running = false;
+            Duration total = Duration.ZERO;
+            for (Duration cpu : samples.values()) {
+                total = total.plus(cpu);
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+// Walks the files of a project for indexing and compiling, skipping folders
+// that hold tools' output or dependencies rather than the project's sources.
+public final class ProjectFiles {
+
+    // Folder names that are never walked into
+    public static final Set<String> IGNORED_FOLDERS = Set.of(
+            ".git", ".svn", ".hg", ".idea", ".vscode", ".ide", "node_modules", "build", "target", "bin", "out");
+
+    // Where the IDE keeps its own data inside a project
+    public static final String IDE_FOLDER = ".ide";
+
+    private ProjectFiles() {
+    }
+
+    public static boolean isIgnored(Path folder) {
+        Path name = folder.getFileName();
+        return name != null && IGNORED_FOLDERS.contains(name.toString());
+    }
+
+    // All regular files under root that pass the filter; unreadable folders are skipped
+    public static List<Path> walk(Path root, Predicate<Path> filter) throws IOException {
+        List<Path> files = new ArrayList<>();
+        visit(root, (file, attrs) -> {
+            if (filter.test(file)) {
+                files.add(file);
+            }
+        });
+        return files;
+    }
+
+    // Hand every regular file under root to the visitor with its attributes (no extra stat per file)
+    public static void visit(Path root, BiConsumer<Path, BasicFileAttributes> visitor) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && isIgnored(dir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    visitor.accept(file, attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
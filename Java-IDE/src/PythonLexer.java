@@ -0,0 +1,111 @@
+import java.util.Set;
+
+// Lexer for Python: # comments, strings with their r/b/f/u prefixes,
+// '''triple quoted''' strings that can span lines, @decorators, numbers
+// and keywords.
+public final class PythonLexer implements Lexer {
+
+    private static final int SINGLE_TRIPLE = 1; // Inside '''
+    private static final int DOUBLE_TRIPLE = 2; // Inside """
+
+    private static final Set<String> KEYWORDS = Set.of(
+            "False", "None", "True", "and", "as", "assert", "async", "await", "break", "class", "continue",
+            "def", "del", "elif", "else", "except", "finally", "for", "from", "global", "if", "import", "in",
+            "is", "lambda", "match", "case", "nonlocal", "not", "or", "pass", "raise", "return", "try",
+            "while", "with", "yield", "self");
+
+    @Override
+    public int lex(char[] line, int length, int state, Tokens tokens) {
+        int i = 0;
+        if (state != 0) {
+            int end = Lexer.find(line, length, 0, state == SINGLE_TRIPLE ? "'''" : "\"\"\"", true);
+            if (end < 0) {
+                add(tokens, 0, length, STRING);
+                return state;
+            }
+            add(tokens, 0, end, STRING);
+            i = end;
+        }
+
+        while (i < length) {
+            char c = line[i];
+            if (c == '#') {
+                add(tokens, i, length, COMMENT);
+                return 0;
+            } else if (c == '"' || c == '\'') {
+                int[] string = string(line, length, i, i);
+                add(tokens, i, string[0], STRING);
+                if (string[1] != 0) {
+                    return string[1];
+                }
+                i = string[0];
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(line[i + 1]))) {
+                int end = Lexer.numberEnd(line, length, i);
+                add(tokens, i, end, NUMBER);
+                i = end;
+            } else if (c == '@' && i + 1 < length && Lexer.isIdentifierStart(line[i + 1])) {
+                int end = i + 1;
+                while (end < length && (Lexer.isIdentifierPart(line[end]) || line[end] == '.')) {
+                    end++;
+                }
+                add(tokens, i, end, ANNOTATION);
+                i = end;
+            } else if (Lexer.isIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < length && Lexer.isIdentifierPart(line[end])) {
+                    end++;
+                }
+                if (end < length && (line[end] == '"' || line[end] == '\'') && isStringPrefix(line, i, end)) {
+                    int[] string = string(line, length, end, i);
+                    add(tokens, i, string[0], STRING);
+                    if (string[1] != 0) {
+                        return string[1];
+                    }
+                    i = string[0];
+                    continue;
+                }
+                if (tokens != null && KEYWORDS.contains(new String(line, i, end - i))) {
+                    tokens.add(i, end, KEYWORD);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return 0;
+    }
+
+    // {end, state} of a string whose quote is at i (prefix from start); state is 0 unless it spans lines
+    private static int[] string(char[] line, int length, int i, int start) {
+        char quote = line[i];
+        String triple = quote == '"' ? "\"\"\"" : "'''";
+        if (Lexer.startsWith(line, length, i, triple)) {
+            int end = Lexer.find(line, length, i + 3, triple, true);
+            if (end < 0) {
+                return new int[] { length, quote == '"' ? DOUBLE_TRIPLE : SINGLE_TRIPLE };
+            }
+            return new int[] { end, 0 };
+        }
+        int end = Lexer.stringEnd(line, length, i + 1, quote);
+        return new int[] { end < 0 ? length : end, 0 };
+    }
+
+    // r, b, f, u and their pairs like rb or Rf
+    private static boolean isStringPrefix(char[] line, int start, int end) {
+        if (end - start > 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if ("rRbBfFuU".indexOf(line[i]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void add(Tokens tokens, int start, int end, int style) {
+        if (tokens != null) {
+            tokens.add(start, end, style);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Popup;
+import javafx.stage.Window;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Quick Open (Ctrl+P) and the command palette (Ctrl+Shift+P) in one popup:
+// typed text is matched fuzzily against every project path in the
+// PathIndex, or against the command names when it starts with ">".
+public class QuickOpen {
+
+    private static final String COMMANDS = ">";
+
+    // A project file (path set) or a command (command set)
+    private record Item(PathIndex.Result path, String command) {
+    }
+
+    private final PathIndex index;
+    private final Consumer<Path> onOpen;
+    private final Map<String, Runnable> commands = new LinkedHashMap<>();
+    private final Popup popup = new Popup();
+    private final TextField queryField = new TextField();
+    private final ListView<Item> results = new ListView<>();
+    private final Label placeholder = new Label();
+
+    public QuickOpen(PathIndex index, Consumer<Path> onOpen) {
+        this.index = index;
+        this.onOpen = onOpen;
+
+        queryField.getStyleClass().add("quick-open-query");
+        results.getStyleClass().add("quick-open-results");
+        results.setPlaceholder(placeholder);
+        results.setPrefHeight(360);
+        results.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Item item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(null);
+                if (empty || item == null) {
+                    setGraphic(null);
+                } else if (item.command() != null) {
+                    setGraphic(new Label("⚡ " + item.command()));
+                } else {
+                    String path = item.path().path();
+                    int slash = path.lastIndexOf('/');
+                    Label name = new Label("📄 " + path.substring(slash + 1));
+                    Label folder = new Label(slash < 0 ? "" : path.substring(0, slash));
+                    folder.getStyleClass().add("quick-open-folder");
+                    setGraphic(new HBox(10, name, folder));
+                }
+            }
+        });
+        results.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                accept();
+            }
+        });
+
+        queryField.textProperty().addListener((obs, oldText, newText) -> update());
+        queryField.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                accept();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                popup.hide();
+            } else if (e.getCode() == KeyCode.DOWN) {
+                move(1);
+            } else if (e.getCode() == KeyCode.UP) {
+                move(-1);
+            } else {
+                return;
+            }
+            e.consume();
+        });
+
+        VBox box = new VBox(6, queryField, results);
+        box.getStyleClass().add("quick-open");
+        box.setPadding(new Insets(8));
+        box.setPrefWidth(640);
+        popup.getContent().add(box);
+        popup.setAutoHide(true);
+    }
+
+    // A command listed when the text starts with ">"
+    public void addCommand(String name, Runnable action) {
+        commands.put(name, action);
+    }
+
+    // Show near the top of the window; ">" opens the command palette
+    public void show(Window owner, String text) {
+        VBox box = (VBox) popup.getContent().get(0);
+        box.getStylesheets().setAll(owner.getScene().getStylesheets());
+        queryField.setText(text);
+        update();
+        popup.show(owner, owner.getX() + (owner.getWidth() - box.getPrefWidth()) / 2, owner.getY() + 70);
+        queryField.requestFocus();
+        queryField.end();
+    }
+
+    private void update() {
+        String text = queryField.getText();
+        List<Item> items = new ArrayList<>();
+        if (text.startsWith(COMMANDS)) {
+            String query = text.substring(COMMANDS.length()).strip();
+            List<Map.Entry<String, Integer>> scored = new ArrayList<>();
+            for (String name : commands.keySet()) {
+                int score = query.isEmpty() ? 0 : PathIndex.score(name, query.replace(" ", ""));
+                if (score != Integer.MIN_VALUE) {
+                    scored.add(Map.entry(name, score));
+                }
+            }
+            scored.sort(Comparator.comparing((Map.Entry<String, Integer> entry) -> entry.getValue()).reversed());
+            for (Map.Entry<String, Integer> entry : scored) {
+                items.add(new Item(null, entry.getKey()));
+            }
+            placeholder.setText("No matching commands");
+        } else {
+            for (PathIndex.Result result : index.query(text)) {
+                items.add(new Item(result, null));
+            }
+            placeholder.setText(text.isBlank() ? "Type to search " + index.size() + " files, > for commands"
+                    : "No matching files");
+        }
+        results.getItems().setAll(items);
+        results.getSelectionModel().selectFirst();
+        results.scrollTo(0);
+    }
+
+    private void move(int delta) {
+        int count = results.getItems().size();
+        if (count > 0) {
+            int next = Math.floorMod(results.getSelectionModel().getSelectedIndex() + delta, count);
+            results.getSelectionModel().select(next);
+            results.scrollTo(Math.max(0, next - 4));
+        }
+    }
+
+    private void accept() {
+        Item item = results.getSelectionModel().getSelectedItem();
+        if (item == null) {
+            return;
+        }
+        popup.hide();
+        if (item.command() != null) {
+            commands.get(item.command()).run();
+        } else {
+            onOpen.accept(index.resolve(item.path()));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+// Keeps a few JVMs (RunnerWorker) started ahead of time, so running a
+// program does not wait for a JVM to start and load its classes. The class
+// bytes of a compile are sent to a ready worker through its stdin and its
+// output reaches the terminal through the process manager like any other
+// process. A worker is reused while its programs end cleanly; after a crash,
+// System.exit, Stop or threads left running it is replaced by a new one.
+public class RunnerPool {
+
+    // Warm workers kept ready (-Dide.runner.poolSize=n, 0 turns warm runs off)
+    private static final int POOL_SIZE = Math.max(0, Integer.getInteger("ide.runner.poolSize", 2));
+
+    private final ProcessManager processManager;
+    private final BiConsumer<String, String> output;
+    private final List<Worker> workers = new CopyOnWriteArrayList<>();
+    private final Deque<Worker> ready = new ArrayDeque<>(); // Guarded by this
+    private int starting; // Guarded by this
+    private boolean broken; // A worker died before it was ready: stop starting more
+    private boolean shutDown;
+
+    public RunnerPool(ProcessManager processManager, BiConsumer<String, String> output) {
+        this.processManager = processManager;
+        this.output = output;
+    }
+
+    // A program running on a worker
+    public final class Job {
+        private final String name;
+        private final Worker worker;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<ProcessManager.Result> result = new CompletableFuture<>();
+        private volatile boolean cancelled;
+
+        private Job(String name, Worker worker) {
+            this.name = name;
+            this.worker = worker;
+        }
+
+        // Completes after the program ended and its output was shown
+        public CompletableFuture<ProcessManager.Result> result() {
+            return result;
+        }
+
+        public boolean isRunning() {
+            return !result.isDone();
+        }
+
+        // Send a line to the program's System.in
+        public void sendInput(String line) throws IOException {
+            worker.input(line + "\n");
+        }
+
+        // Stop the program by stopping its worker
+        public void cancel() {
+            cancelled = true;
+            worker.run.cancel();
+        }
+
+        private void finish(int exitCode, long cpuNanos) {
+            long wall = (System.nanoTime() - startNanos) / 1_000_000;
+            result.complete(new ProcessManager.Result(name, exitCode, wall, cpuNanos / 1_000_000, cancelled));
+        }
+    }
+
+    // One warm JVM; runs one job at a time
+    private final class Worker {
+        private ProcessManager.Run run;
+        private DataOutputStream stdin;
+        private volatile Job job;
+        private boolean isReady; // Guarded by RunnerPool.this
+        private boolean retired;
+        private boolean stdoutDone; // Guarded by this
+        private boolean stderrDone;
+        private String doneLine;
+        private volatile long exitCpuNanos;
+
+        private void start() throws IOException {
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+                    System.getProperty("java.class.path"), RunnerWorker.class.getName());
+            run = processManager.start("runner", builder, output, this::marker, false);
+            stdin = new DataOutputStream(new BufferedOutputStream(run.process().getOutputStream()));
+            run.result().thenAccept(result -> exited(result.exitCode()));
+        }
+
+        // Job frame: main class, library jars, then every class as name and bytes
+        private synchronized void send(Job job, String mainClass, List<String> libraries,
+                Map<String, byte[]> classes) throws IOException {
+            this.job = job;
+            stdin.writeByte(RunnerWorker.JOB);
+            stdin.writeUTF(mainClass);
+            stdin.writeInt(libraries.size());
+            for (String library : libraries) {
+                stdin.writeUTF(library);
+            }
+            stdin.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                stdin.writeUTF(entry.getKey());
+                stdin.writeInt(entry.getValue().length);
+                stdin.write(entry.getValue());
+            }
+            stdin.flush();
+        }
+
+        private synchronized void input(String text) throws IOException {
+            byte[] bytes = text.getBytes(Charset.defaultCharset());
+            stdin.writeByte(RunnerWorker.INPUT);
+            stdin.writeInt(bytes.length);
+            stdin.write(bytes);
+            stdin.flush();
+        }
+
+        // A marker line from the worker (drainer thread)
+        private void marker(boolean errorStream, String text) {
+            if (text.equals(RunnerWorker.READY)) {
+                synchronized (RunnerPool.this) {
+                    starting--;
+                    isReady = true;
+                    if (!shutDown) {
+                        ready.add(this);
+                    }
+                }
+                return;
+            }
+            if (text.startsWith(RunnerWorker.EXIT)) {
+                exitCpuNanos = Long.parseLong(text.substring(RunnerWorker.EXIT.length()).trim());
+                return;
+            }
+            if (!text.startsWith(RunnerWorker.DONE)) {
+                return;
+            }
+            String line;
+            synchronized (this) {
+                if (errorStream) {
+                    stderrDone = true;
+                } else {
+                    doneLine = text;
+                    stdoutDone = true;
+                }
+                if (!(stdoutDone && stderrDone)) {
+                    return;
+                }
+                stdoutDone = false;
+                stderrDone = false;
+                line = doneLine;
+            }
+            String[] parts = line.split(" ");
+            int status = Integer.parseInt(parts[1]);
+            long cpu = Long.parseLong(parts[2]);
+            boolean reusable = parts[3].equals("1");
+            // Queued behind the program's output, so the result shows after its last line
+            run.pump().runInOrder(() -> {
+                Job finished = job;
+                job = null;
+                if (finished != null) {
+                    finished.finish(status, cpu);
+                }
+                if (reusable && (finished == null || !finished.cancelled)) {
+                    release(this);
+                } else {
+                    retire();
+                }
+            });
+        }
+
+        // Closing stdin ends the worker
+        private void retire() {
+            synchronized (RunnerPool.this) {
+                retired = true;
+                ready.remove(this);
+            }
+            try {
+                stdin.close();
+            } catch (IOException e) {
+                run.cancel();
+            }
+        }
+
+        // The JVM is gone: retired, stopped, crashed or the program called System.exit
+        private void exited(int exitCode) {
+            workers.remove(this);
+            synchronized (RunnerPool.this) {
+                ready.remove(this);
+                if (!isReady) {
+                    starting--;
+                    if (!shutDown && !retired) {
+                        broken = true; // Failed to start; its stderr is in the terminal
+                    }
+                }
+            }
+            Job current = job;
+            job = null;
+            if (current != null) {
+                current.finish(exitCode, exitCpuNanos);
+            }
+            warmUp();
+        }
+    }
+
+    // Start workers until POOL_SIZE are ready or on their way
+    public synchronized void warmUp() {
+        while (!broken && !shutDown && ready.size() + starting < POOL_SIZE) {
+            Worker worker = new Worker();
+            try {
+                worker.start();
+            } catch (IOException e) {
+                broken = true;
+                return;
+            }
+            workers.add(worker);
+            starting++;
+        }
+    }
+
+    // Run a main class on a ready worker; null when none is ready, so the
+    // caller starts a JVM of its own. classpath is the compile's, for its jars.
+    public Job run(String mainClass, Map<String, byte[]> classes, String classpath) {
+        Worker worker;
+        synchronized (this) {
+            worker = ready.poll();
+        }
+        if (worker == null) {
+            warmUp();
+            return null;
+        }
+        Job job = new Job(mainClass, worker);
+        try {
+            worker.send(job, mainClass, libraries(classpath), classes);
+        } catch (IOException e) {
+            worker.job = null;
+            worker.retire();
+            warmUp();
+            return null;
+        }
+        warmUp(); // Replace the worker taken
+        return job;
+    }
+
+    private synchronized void release(Worker worker) {
+        if (shutDown) {
+            worker.retire();
+        } else {
+            ready.add(worker);
+        }
+    }
+
+    // Stop every running job (the Stop action)
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Worker worker : workers) {
+            Job job = worker.job;
+            if (job != null) {
+                job.cancel();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    // The process manager kills the workers themselves on shutdown
+    public synchronized void shutdown() {
+        shutDown = true;
+        ready.clear();
+    }
+
+    // The jars of a compile's classpath; its classes come from memory
+    private static List<String> libraries(String classpath) {
+        List<String> libraries = new ArrayList<>();
+        if (classpath != null) {
+            for (String entry : classpath.split(File.pathSeparator)) {
+                if (entry.endsWith(".jar")) {
+                    libraries.add(entry);
+                }
+            }
+        }
+        return libraries;
+    }
+}
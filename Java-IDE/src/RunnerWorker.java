@@ -0,0 +1,223 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// A JVM started ahead of time by RunnerPool. It reads jobs from stdin (the
+// main class, library jars and the bytes of every compiled class) and runs
+// each in a fresh class loader, so nothing of one run is left for the next.
+// The program writes to this process's stdout and stderr; when it is over,
+// a marker line on both says how it ended. Lines the user types arrive as
+// INPUT frames and are the program's System.in.
+public final class RunnerWorker {
+
+    static final int JOB = 'R';
+    static final int INPUT = 'I';
+    static final String READY = "IDE_RUN_READY";
+    static final String DONE = "IDE_RUN_DONE"; // status, cpu nanos, 1 if the worker can be reused
+    static final String EXIT = "IDE_RUN_EXIT"; // cpu nanos, the program called System.exit
+
+    private static final char MARKER = '\037'; // OutputPump.MARKER
+    private static final PrintStream out = System.out;
+    private static final PrintStream err = System.err;
+    private static final InputStream in = System.in;
+
+    private static volatile boolean running;
+    private static volatile long jobCpuStart;
+    private static PipedOutputStream programInput; // Main thread only
+
+    private RunnerWorker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream frames = new DataInputStream(new BufferedInputStream(in));
+        Runtime.getRuntime().addShutdownHook(new Thread(RunnerWorker::exiting));
+        marker(out, READY);
+
+        while (true) {
+            int type;
+            try {
+                type = frames.readUnsignedByte();
+            } catch (EOFException e) {
+                break; // The pool retired this worker
+            }
+            if (type == JOB) {
+                startJob(frames);
+            } else if (type == INPUT) {
+                byte[] bytes = frames.readNBytes(frames.readInt());
+                if (programInput != null) {
+                    try {
+                        programInput.write(bytes);
+                        programInput.flush();
+                    } catch (IOException e) {
+                        // The program closed its input
+                    }
+                }
+            }
+        }
+        Runtime.getRuntime().halt(0);
+    }
+
+    private static void startJob(DataInputStream frames) throws IOException {
+        String mainClass = frames.readUTF();
+        URL[] libraries = new URL[frames.readInt()];
+        for (int i = 0; i < libraries.length; i++) {
+            libraries[i] = Path.of(frames.readUTF()).toUri().toURL();
+        }
+        Map<String, byte[]> classes = new HashMap<>();
+        int count = frames.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = frames.readUTF();
+            classes.put(name, frames.readNBytes(frames.readInt()));
+        }
+
+        PipedInputStream input = new PipedInputStream(1 << 16);
+        programInput = new PipedOutputStream(input);
+        Thread runner = new Thread(() -> run(mainClass, libraries, classes, input), "runner");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    // Run main like the java launcher would, then wait for the program's other threads
+    private static void run(String mainClass, URL[] libraries, Map<String, byte[]> classes, InputStream input) {
+        Properties properties = (Properties) System.getProperties().clone();
+        System.setIn(input);
+        jobCpuStart = cpuNanos();
+        running = true;
+
+        ClassLoader loader = new MemoryClassLoader(classes,
+                new URLClassLoader(libraries, ClassLoader.getPlatformClassLoader()));
+        ThreadGroup group = new ThreadGroup("program");
+        int[] status = new int[1];
+        Thread main = new Thread(group, () -> status[0] = invokeMain(loader, mainClass), "main");
+        main.setContextClassLoader(loader);
+        main.start();
+
+        boolean reusable;
+        try {
+            main.join();
+            reusable = awaitThreads(group) && status[0] == 0;
+        } catch (InterruptedException e) {
+            reusable = false;
+        }
+
+        running = false;
+        long cpu = cpuNanos() - jobCpuStart;
+        System.out.flush();
+        System.err.flush();
+        System.setOut(out);
+        System.setErr(err);
+        System.setIn(in);
+        System.setProperties(properties);
+        marker(out, DONE + " " + status[0] + " " + cpu + " " + (reusable ? 1 : 0));
+        marker(err, DONE);
+    }
+
+    private static int invokeMain(ClassLoader loader, String mainClass) {
+        try {
+            Method main = Class.forName(mainClass, true, loader).getMethod("main", String[].class);
+            if (!Modifier.isStatic(main.getModifiers())) {
+                System.err.println("Error: main method is not static in class " + mainClass);
+                return 1;
+            }
+            main.setAccessible(true); // The class itself may not be public
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            trimStackTrace(e.getCause());
+            e.getCause().printStackTrace();
+            return 1;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Error: could not run " + mainClass + ": " + e);
+            return 1;
+        }
+    }
+
+    // Cut the frames of the worker and the reflective call, so the trace ends at main
+    private static void trimStackTrace(Throwable thrown) {
+        StackTraceElement[] trace = thrown.getStackTrace();
+        int end = trace.length;
+        while (end > 0 && !trace[end - 1].getClassName().equals(RunnerWorker.class.getName())) {
+            end--;
+        }
+        while (end > 0 && (trace[end - 1].getClassName().equals(RunnerWorker.class.getName())
+                || trace[end - 1].getClassName().equals(Method.class.getName())
+                || trace[end - 1].getClassName().startsWith("jdk.internal.reflect."))) {
+            end--;
+        }
+        if (end > 0) {
+            thrown.setStackTrace(Arrays.copyOf(trace, end));
+        }
+    }
+
+    // Wait for the program's non-daemon threads; false if any thread is left running
+    private static boolean awaitThreads(ThreadGroup group) throws InterruptedException {
+        while (true) {
+            Thread[] threads = new Thread[group.activeCount() + 16];
+            int count = group.enumerate(threads, true);
+            Thread next = null;
+            for (int i = 0; i < count && next == null; i++) {
+                if (!threads[i].isDaemon()) {
+                    next = threads[i];
+                }
+            }
+            if (next == null) {
+                return count == 0;
+            }
+            next.join();
+        }
+    }
+
+    // System.exit from the program: let the pool know what the run cost before the JVM goes
+    private static void exiting() {
+        if (running) {
+            System.out.flush();
+            System.err.flush();
+            marker(out, EXIT + " " + (cpuNanos() - jobCpuStart));
+        }
+    }
+
+    private static void marker(PrintStream stream, String text) {
+        stream.print(MARKER + text + "\n");
+        stream.flush();
+    }
+
+    private static long cpuNanos() {
+        return ProcessHandle.current().info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+    }
+
+    // Defines the compiled classes of one run; libraries come from the parent
+    private static final class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super("program", parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Writes document snapshots to disk on background threads. Every save goes
+// to a temp file in the same folder, is forced to the device and then moved
+// over the original, so a crash leaves either the old or the new file but
+// never a truncated one. Text is written back in the file's own charset,
+// BOM and line separator. Saves of the same file run one after the other,
+// in the order they were asked for, so an older snapshot never lands last.
+public class SaveService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Files written at the same time by Save All (-Dide.save.parallelism=n)
+    private static final int PARALLELISM = Math.max(1, Integer.getInteger("ide.save.parallelism", 4));
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "file-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Path, CompletableFuture<Result>> lastSaves = new HashMap<>(); // Per file, while in flight
+
+    // Outcome of one file of a save; error is null on success
+    public record Result(Path path, PieceTable.Snapshot snapshot, long bytes, IOException error) {
+        public boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    // One file to save: where, what and how it is encoded
+    public record Request(Path path, PieceTable.Snapshot snapshot, TextEncoding encoding) {
+    }
+
+    // Save one file in the background, after the saves of it asked for
+    // earlier; the future never completes exceptionally
+    public CompletableFuture<Result> save(Request request) {
+        Path key = request.path().toAbsolutePath().normalize();
+        synchronized (lastSaves) {
+            CompletableFuture<Result> previous = lastSaves.get(key);
+            CompletableFuture<Result> future = previous == null
+                    ? CompletableFuture.supplyAsync(() -> writeResult(request), executor)
+                    : previous.thenApplyAsync(done -> writeResult(request), executor);
+            lastSaves.put(key, future);
+            future.whenComplete((result, error) -> {
+                synchronized (lastSaves) {
+                    lastSaves.remove(key, future);
+                }
+            });
+            return future;
+        }
+    }
+
+    private static Result writeResult(Request request) {
+        try {
+            long bytes = write(request.path(), request.snapshot(), request.encoding());
+            return new Result(request.path(), request.snapshot(), bytes, null);
+        } catch (IOException e) {
+            return new Result(request.path(), request.snapshot(), 0, e);
+        }
+    }
+
+    // Save many files, at most PARALLELISM at a time; completes when all are done
+    public CompletableFuture<List<Result>> saveAll(List<Request> requests) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>();
+        for (Request request : requests) {
+            futures.add(save(request));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<Result> results = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    // Encode a snapshot into a temp file and atomically replace the target
+    public static long write(Path path, PieceTable.Snapshot snapshot, TextEncoding encoding) throws IOException {
+        Path target = Files.isSymbolicLink(path) ? path.toRealPath() : path; // Keep the link, replace what it points to
+        Path folder = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(folder, "." + target.getFileName(), ".tmp");
+        try {
+            long bytes;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                bytes = encode(snapshot, encoding, channel);
+                channel.force(true);
+            }
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Stream the pieces through the encoder, turning \n into the file's separator
+    private static long encode(PieceTable.Snapshot snapshot, TextEncoding encoding, FileChannel channel) throws IOException {
+        CharsetEncoder encoder = encoding.charset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 4);
+        String separator = encoding.lineSeparator();
+        long written = 0;
+
+        byte[] bom = encoding.bomBytes();
+        bytes.put(bom);
+
+        for (int piece = 0; piece < snapshot.getPieceCount(); piece++) {
+            char[] source = snapshot.pieceChars(piece);
+            int end = snapshot.pieceStart(piece) + snapshot.pieceLength(piece);
+            for (int i = snapshot.pieceStart(piece); i < end; i++) {
+                if (chars.remaining() < separator.length()) {
+                    written += encodeBuffer(encoder, encoding, chars, bytes, channel, false);
+                }
+                char c = source[i];
+                if (c == '\n') {
+                    chars.put(separator);
+                } else {
+                    chars.put(c);
+                }
+            }
+        }
+        written += encodeBuffer(encoder, encoding, chars, bytes, channel, true);
+
+        bytes.clear();
+        checkResult(encoder.flush(bytes), encoding);
+        bytes.flip();
+        written += writeFully(bytes, channel);
+        return written;
+    }
+
+    private static long encodeBuffer(CharsetEncoder encoder, TextEncoding encoding, CharBuffer chars,
+            ByteBuffer bytes, FileChannel channel, boolean endOfInput) throws IOException {
+        long written = 0;
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            bytes.flip();
+            written += writeFully(bytes, channel);
+            bytes.clear();
+            if (!result.isOverflow()) {
+                checkResult(result, encoding);
+                break;
+            }
+        }
+        chars.compact(); // Keeps a high surrogate that waits for its pair
+        return written;
+    }
+
+    private static void checkResult(CoderResult result, TextEncoding encoding) throws IOException {
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new IOException("Text contains characters that cannot be saved as "
+                        + encoding.charset().name(), e);
+            }
+        }
+    }
+
+    private static long writeFully(ByteBuffer bytes, FileChannel channel) throws IOException {
+        long written = 0;
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes);
+        }
+        return written;
+    }
+
+    // The temp file is new, so give it the permissions of the file it replaces
+    private static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from, LinkOption.NOFOLLOW_LINKS)) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (UnsupportedOperationException | IOException e) {
+            // Not a POSIX file system, the defaults are fine
+        }
+    }
+
+    // Let saves in flight finish before the JVM exits
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import javafx.animation.PauseTransition;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
+
+// The "Find in Files" side panel. Searches while typing (after a short
+// pause) through the TrigramIndex and lists matches grouped by file, in a
+// ListView so only the visible rows have cells however many matches come.
+public final class SearchView extends BorderPane {
+
+    private static final Duration TYPING_PAUSE = Duration.millis(150);
+
+    // A file heading (match is null) or one match under it
+    private record Row(Path file, TrigramIndex.Match match) {
+    }
+
+    private final TrigramIndex index;
+    private final Supplier<Map<Path, PieceTable.Snapshot>> buffers; // Open files, searched as edited
+    private final Consumer<TrigramIndex.Match> onOpen;
+    private final TextField queryField = new TextField();
+    private final ToggleButton regexButton = new ToggleButton(".*");
+    private final ToggleButton caseButton = new ToggleButton("Aa");
+    private final Label summaryLabel = new Label();
+    private final ListView<Row> results = new ListView<>();
+    private final PauseTransition typingPause = new PauseTransition(TYPING_PAUSE);
+    private TrigramIndex.Search search;
+    private Path root;
+    private Path lastFile;
+
+    public SearchView(TrigramIndex index, Supplier<Map<Path, PieceTable.Snapshot>> buffers,
+            Consumer<TrigramIndex.Match> onOpen) {
+        this.index = index;
+        this.buffers = buffers;
+        this.onOpen = onOpen;
+        getStyleClass().add("search-view");
+
+        Label title = new Label("SEARCH");
+        title.getStyleClass().add("explorer-title");
+        queryField.setPromptText("Search in files");
+        HBox.setHgrow(queryField, Priority.ALWAYS);
+        regexButton.setTooltip(new Tooltip("Regular expression"));
+        caseButton.setTooltip(new Tooltip("Match case"));
+        HBox queryBar = new HBox(4, queryField, caseButton, regexButton);
+        queryBar.setAlignment(Pos.CENTER_LEFT);
+        summaryLabel.getStyleClass().add("search-summary");
+        VBox top = new VBox(6, title, queryBar, summaryLabel);
+        top.setPadding(new Insets(0, 8, 6, 8));
+        setTop(top);
+
+        results.getStyleClass().add("search-results");
+        results.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Row row, boolean empty) {
+                super.updateItem(row, empty);
+                getStyleClass().removeAll("search-file", "search-match");
+                if (empty || row == null) {
+                    setText(null);
+                } else if (row.match() == null) {
+                    getStyleClass().add("search-file");
+                    setText("📄 " + displayPath(row.file()));
+                } else {
+                    getStyleClass().add("search-match");
+                    setText("    " + (row.match().line() + 1) + ":  " + row.match().preview().strip());
+                }
+            }
+        });
+        results.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+        results.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                openSelected();
+            }
+        });
+        setCenter(results);
+
+        typingPause.setOnFinished(e -> runSearch());
+        queryField.textProperty().addListener((obs, oldText, newText) -> typingPause.playFromStart());
+        regexButton.selectedProperty().addListener((obs, was, is) -> runSearch());
+        caseButton.selectedProperty().addListener((obs, was, is) -> runSearch());
+        queryField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                typingPause.stop();
+                runSearch();
+            } else if (e.getCode() == KeyCode.DOWN && !results.getItems().isEmpty()) {
+                results.requestFocus();
+                results.getSelectionModel().selectFirst();
+            }
+        });
+    }
+
+    // The project whose files are searched; clears the results
+    public void setRoot(Path root) {
+        this.root = root;
+        cancel();
+        results.getItems().clear();
+        summaryLabel.setText("");
+    }
+
+    // Focus the query, optionally filled in (the editor's selection)
+    public void focusQuery(String text) {
+        if (text != null && !text.isEmpty() && !text.contains("\n")) {
+            queryField.setText(text);
+        }
+        queryField.requestFocus();
+        queryField.selectAll();
+    }
+
+    private void runSearch() {
+        cancel();
+        results.getItems().clear();
+        lastFile = null;
+        String query = queryField.getText();
+        if (query.isEmpty() || root == null) {
+            summaryLabel.setText("");
+            return;
+        }
+        summaryLabel.setText("Searching…");
+        try {
+            search = index.search(query, regexButton.isSelected(), caseButton.isSelected(), buffers.get(),
+                    this::addMatches, this::showSummary);
+        } catch (PatternSyntaxException e) {
+            summaryLabel.setText("⚠ " + e.getDescription());
+        }
+    }
+
+    private void cancel() {
+        if (search != null) {
+            search.cancel();
+            search = null;
+        }
+    }
+
+    // Matches of one file arrive together, so a heading starts each new file
+    private void addMatches(List<TrigramIndex.Match> matches) {
+        List<Row> rows = new ArrayList<>(matches.size() + 8);
+        for (TrigramIndex.Match match : matches) {
+            if (!match.file().equals(lastFile)) {
+                lastFile = match.file();
+                rows.add(new Row(match.file(), null));
+            }
+            rows.add(new Row(match.file(), match));
+        }
+        results.getItems().addAll(rows);
+    }
+
+    private void showSummary(TrigramIndex.Summary summary) {
+        summaryLabel.setText(summary.matches() + (summary.truncated() ? "+" : "") + " results in "
+                + summary.files() + " files · " + summary.searched() + " of " + summary.indexed()
+                + " files read · " + summary.millis() + " ms");
+    }
+
+    private void openSelected() {
+        Row row = results.getSelectionModel().getSelectedItem();
+        if (row != null && row.match() != null) {
+            onOpen.accept(row.match());
+        }
+    }
+
+    private String displayPath(Path file) {
+        return root != null && file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+    }
+}
@@ -0,0 +1,213 @@
+import javafx.application.Platform;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// One long-lived bash process behind the terminal. Commands are written to
+// its stdin, so the working directory, variables, functions and aliases
+// carry over from one command to the next and no shell starts per command.
+// Each command is followed by a marker line on stdout (exit status and
+// directory) and one on stderr; when both have been read, all output of the
+// command is in and the command is finished. While a command runs, lines
+// typed into the terminal go to its stdin. A command that will not stop
+// (a loop in the shell itself has no process to kill) takes the shell down
+// with it; the session is then dead and a new one has to be started.
+public class ShellSession implements Closeable {
+
+    private static final String DONE = "IDE_DONE";
+
+    // Time a command has to finish after its processes are killed, before
+    // the shell is killed too (-Dide.shell.interruptMillis=ms)
+    private static final long INTERRUPT_MILLIS = Long.getLong("ide.shell.interruptMillis", 1000);
+
+    // Called on the FX thread
+    public interface Listener {
+        void commandFinished(ProcessManager.Result result, String directory);
+
+        void shellExited(int exitCode);
+    }
+
+    private final ProcessManager processManager;
+    private final ProcessManager.Run run;
+    private final Process process;
+    private final Writer stdin;
+    private final Listener listener;
+    private volatile boolean busy;
+    private volatile boolean interrupted;
+    private volatile boolean killed; // The shell was killed to stop a command
+    private String command; // Running command, its start time and CPU usage
+    private long commandStart;
+    private ProcessManager.CpuSampler commandCpu;
+    private long commandNumber; // Guarded by this
+    private boolean commandDone; // Reported, by its markers or the kill
+    private boolean stdoutDone; // Guarded by this
+    private boolean stderrDone;
+    private int markerStatus;
+    private String markerDirectory;
+
+    public ShellSession(ProcessManager processManager, File directory, BiConsumer<String, String> output,
+            Listener listener) throws IOException {
+        this.processManager = processManager;
+        this.listener = listener;
+        ProcessBuilder builder = new ProcessBuilder(shellCommand());
+        if (directory != null) {
+            builder.directory(directory);
+        }
+        builder.environment().put("TERM", "dumb"); // No tty: ask programs for plain output
+
+        // The shell lives as long as the terminal, so it takes no process slot
+        run = processManager.start("shell", builder, output, this::marker, false);
+        process = run.process();
+        stdin = new OutputStreamWriter(process.getOutputStream(), Charset.defaultCharset());
+        run.result().thenAccept(result -> Platform.runLater(() -> listener.shellExited(result.exitCode())));
+
+        // Aliases are off in a shell that reads commands from a pipe
+        write("shopt -s expand_aliases 2>/dev/null\n");
+    }
+
+    // bash on Linux and macOS; Git Bash or WSL on Windows
+    static List<String> shellCommand() {
+        List<String> command = new ArrayList<>();
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("win")) {
+            File gitBash = new File("C:\\Program Files\\Git\\bin\\bash.exe");
+            if (gitBash.exists()) {
+                command.add(gitBash.getAbsolutePath());
+            } else {
+                command.add("wsl");
+                command.add("bash");
+            }
+        } else {
+            command.add("bash");
+        }
+        return command;
+    }
+
+    public boolean isBusy() {
+        return busy;
+    }
+
+    public boolean isAlive() {
+        return !killed && process.isAlive();
+    }
+
+    // The shell was killed because a command did not stop
+    public boolean wasKilled() {
+        return killed;
+    }
+
+    // Run a command line in the shell. It is passed through eval in quotes, so a
+    // syntax error or an unclosed quote fails the command instead of leaving the
+    // shell waiting for more input, and the markers are always written.
+    public void run(String command) throws IOException {
+        synchronized (this) {
+            stdoutDone = false;
+            stderrDone = false;
+            commandNumber++;
+            commandDone = false;
+            this.command = command;
+            commandStart = System.nanoTime();
+            commandCpu = processManager.new CpuSampler(process.toHandle(), false);
+            commandCpu.start();
+        }
+        interrupted = false;
+        busy = true;
+        String quoted = "'" + command.replace("'", "'\\''") + "'";
+        // One line: bash reads it whole, so a command reading stdin cannot eat the marker
+        write("eval " + quoted + "; "
+                + "__ide_status=$?; printf '\\037" + DONE + " %d %s\\n' \"$__ide_status\" \"$PWD\"; "
+                + "printf '\\037" + DONE + "\\n' >&2\n");
+    }
+
+    // Send a line to the running command's stdin
+    public void sendInput(String line) throws IOException {
+        write(line + "\n");
+    }
+
+    // Stop the running command: its process trees, or the shell itself if
+    // the command runs in it or is still not done a moment later
+    public void interrupt() {
+        interrupted = true;
+        long number;
+        synchronized (this) {
+            number = commandNumber;
+        }
+        List<ProcessHandle> children = process.children().toList();
+        if (children.isEmpty()) {
+            kill(number);
+            return;
+        }
+        children.forEach(processManager::killTree);
+        CompletableFuture.delayedExecutor(INTERRUPT_MILLIS, TimeUnit.MILLISECONDS).execute(() -> kill(number));
+    }
+
+    // Kill the shell and report the command as interrupted, unless it finished meanwhile
+    private void kill(long number) {
+        ProcessManager.Result result;
+        synchronized (this) {
+            if (commandDone || number != commandNumber) {
+                return;
+            }
+            commandDone = true;
+            killed = true;
+            long wall = (System.nanoTime() - commandStart) / 1_000_000;
+            result = new ProcessManager.Result(command, -1, wall, commandCpu.stop().toMillis(), true);
+        }
+        run.cancel();
+        run.pump().runInOrder(() -> {
+            busy = false;
+            listener.commandFinished(result, null);
+        });
+    }
+
+    private void write(String text) throws IOException {
+        stdin.write(text);
+        stdin.flush();
+    }
+
+    // A marker line from one of the streams (drainer thread)
+    private void marker(boolean errorStream, String text) {
+        if (!text.startsWith(DONE)) {
+            return;
+        }
+        ProcessManager.Result result;
+        String finishedDirectory;
+        synchronized (this) {
+            if (errorStream) {
+                stderrDone = true;
+            } else {
+                String[] parts = text.split(" ", 3);
+                markerStatus = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+                markerDirectory = parts.length > 2 ? parts[2] : null;
+                stdoutDone = true;
+            }
+            if (!(stdoutDone && stderrDone) || commandDone) {
+                return;
+            }
+            commandDone = true;
+            stdoutDone = false;
+            stderrDone = false;
+            long wall = (System.nanoTime() - commandStart) / 1_000_000;
+            result = new ProcessManager.Result(command, markerStatus, wall, commandCpu.stop().toMillis(), interrupted);
+            finishedDirectory = markerDirectory;
+        }
+        // Queued behind the command's output, so it shows after the last line
+        run.pump().runInOrder(() -> {
+            busy = false;
+            listener.commandFinished(result, finishedDirectory);
+        });
+    }
+
+    @Override
+    public void close() {
+        run.cancel();
+    }
+}
@@ -0,0 +1,970 @@
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import javafx.application.Platform;
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Declarations and references of every Java file in the project, for the
+// outline, go to definition (F12) and find usages (Shift+F12). Files are
+// parsed (syntax only, no type checking) in parallel on a fork-join pool,
+// a batch of files per JavacTask; what they declare and reference is kept
+// as packed int arrays with interned names, so a query is a scan over ints
+// and never parses. Like the TrigramIndex, one thread owns the index, it
+// is stored in .ide/symbols.idx and only changed files are parsed again.
+// Open buffers are parsed a moment after the last edit.
+//
+// Without types, references are matched by name: usages of a method are
+// all the places that name is used. Locals and parameters are the
+// exception; they are looked up within their method only.
+public class SymbolIndex {
+
+    // Threads parsing Java files (-Dide.symbols.parallelism=n)
+    private static final int PARALLELISM = Math.max(1,
+            Integer.getInteger("ide.symbols.parallelism", Runtime.getRuntime().availableProcessors()));
+    private static final int BATCH = 32; // Files parsed by one JavacTask
+    private static final long BUFFER_DELAY_MILLIS = 400; // Typing pause before an open buffer is parsed
+    private static final long PERSIST_DELAY_SECONDS = 5;
+    private static final long PUBLISH_DELAY_MILLIS = 300; // Declarations handed to completion after changes
+    private static final int MAX_USAGES = 5000;
+    private static final int MAGIC = 0x53594D31; // "SYM1"
+    private static final String INDEX_FILE = "symbols.idx";
+
+    // Declarations: name, kind, line, column, depth, parent declaration, last line
+    private static final int DECL_STRIDE = 7;
+    // References: name, line, column, enclosing declaration
+    private static final int REF_STRIDE = 4;
+
+    public enum Kind {
+        CLASS("🅲"), INTERFACE("🅸"), ENUM("🅴"), RECORD("🆁"), ANNOTATION("@"), METHOD("ƒ"), CONSTRUCTOR("ƒ"),
+        FIELD("▪"), CONSTANT("▫"), VARIABLE("·");
+
+        public final String icon;
+
+        Kind(String icon) {
+            this.icon = icon;
+        }
+
+        boolean isType() {
+            return ordinal() <= ANNOTATION.ordinal();
+        }
+    }
+
+    // A declaration; line and column are 0 based, container is the enclosing declaration's name
+    public record Symbol(String name, Kind kind, Path file, int line, int column, int depth, String container) {
+    }
+
+    // A place a name is used (or declared)
+    public record Usage(Path file, int line, int column, int length, String container, boolean declaration) {
+    }
+
+    // Names declared in the project, once per name and kind: kinds are Kind
+    // ordinals, details the enclosing declaration. Used for completion.
+    public record Declarations(String[] names, byte[] kinds, String[] details) {
+    }
+
+    // What one file declares and references, names as ids into the name table
+    private static final class FileSymbols {
+        final String path;
+        final long modified; // -1 when parsed from an unsaved buffer
+        final long size;
+        final int[] decls;
+        final int[] refs;
+
+        FileSymbols(String path, long modified, long size, int[] decls, int[] refs) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.decls = decls;
+            this.refs = refs;
+        }
+    }
+
+    // A file to parse: from disk when text is null
+    private record Source(String path, Path file, long modified, long size, String text, int version) {
+    }
+
+    // A declaration found by a query: offset d into the file's declarations
+    private record Found(FileSymbols symbols, int decl) {
+    }
+
+    // Parsed file with its own name list; names are interned on the index thread
+    private record Parsed(Source source, List<String> names, int[] decls, int[] refs) {
+    }
+
+    private final Consumer<String> status; // Progress messages, called on the FX thread
+    private final ScheduledExecutorService indexThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "symbol-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ForkJoinPool parsers = new ForkJoinPool(PARALLELISM, pool -> {
+        var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("symbol-parser-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    // Index thread only from here on
+    private Path root;
+    private int generation; // Parses started for an earlier root are dropped
+    private final Map<String, FileSymbols> files = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final Map<String, Integer> versions = new HashMap<>(); // Latest parse started per path
+    private final Map<String, ScheduledFuture<?>> bufferParses = new HashMap<>();
+    private int parsing;
+    private boolean dirty;
+    private boolean persistScheduled;
+    private boolean publishScheduled;
+    private long buildStart;
+    private volatile Declarations declarations = new Declarations(new String[0], new byte[0], new String[0]);
+
+    public SymbolIndex(Consumer<String> status) {
+        this.status = status;
+    }
+
+    // Index the Java files of a project: load the stored index, then parse what changed since
+    public void open(Path projectRoot) {
+        indexThread.execute(() -> {
+            persist();
+            generation++;
+            files.clear();
+            names.clear();
+            nameIds.clear();
+            versions.clear();
+            bufferParses.values().forEach(future -> future.cancel(false));
+            bufferParses.clear();
+            parsing = 0;
+            dirty = false;
+            root = projectRoot.toAbsolutePath().normalize();
+            declarations = new Declarations(new String[0], new byte[0], new String[0]);
+            if (ToolProvider.getSystemJavaCompiler() == null) {
+                report("⚠ No Java compiler (JDK) found: code navigation is off");
+                root = null;
+                return;
+            }
+            buildStart = System.nanoTime();
+            boolean loaded = load();
+            schedulePublish();
+            List<Source> sources = new ArrayList<>();
+            try {
+                Set<String> seen = new HashSet<>();
+                ProjectFiles.visit(root, (file, attrs) -> {
+                    if (!isJava(file)) {
+                        return;
+                    }
+                    String path = root.relativize(file).toString();
+                    seen.add(path);
+                    FileSymbols known = files.get(path);
+                    if (known == null || known.modified != attrs.lastModifiedTime().toMillis()
+                            || known.size != attrs.size()) {
+                        sources.add(source(path, file, attrs, null));
+                    }
+                });
+                if (files.keySet().retainAll(seen)) {
+                    dirty = true;
+                }
+            } catch (IOException e) {
+                report("⚠ Symbol index: " + e.getMessage());
+            }
+            if (sources.isEmpty()) {
+                report("🧭 Symbols " + (loaded ? "loaded" : "indexed") + ": " + files.size() + " Java files in "
+                        + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+                persist();
+            } else {
+                report("🧭 Indexing symbols of " + sources.size() + " Java files…");
+                parse(sources);
+            }
+        });
+    }
+
+    // A file was saved, or its unsaved buffer closed: index it as it is on disk
+    public void fileSaved(Path file) {
+        indexThread.execute(() -> {
+            String path = relative(file);
+            if (path != null && isJava(file)) {
+                cancelBufferParse(path);
+                refresh(path, file);
+            }
+        });
+    }
+
+    // An open buffer changed; it is parsed once typing pauses
+    public void bufferChanged(Path file, PieceTable.Snapshot snapshot) {
+        indexThread.execute(() -> {
+            String path = relative(file);
+            if (path == null || !isJava(file)) {
+                return;
+            }
+            cancelBufferParse(path);
+            bufferParses.put(path, indexThread.schedule(() -> {
+                bufferParses.remove(path);
+                parse(List.of(new Source(path, file, -1, snapshot.length(), snapshot.getText(), nextVersion(path))));
+            }, BUFFER_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    // Something changed in a folder (the directory watcher): look at the Java files directly in it
+    public void folderChanged(Path folder) {
+        indexThread.execute(() -> {
+            String prefix = relative(folder);
+            if (prefix == null) {
+                return;
+            }
+            Set<String> present = new HashSet<>();
+            try (Stream<Path> children = Files.list(folder)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    String path = relative(child);
+                    if (path != null && isJava(child) && Files.isRegularFile(child)) {
+                        present.add(path);
+                        refresh(path, child);
+                    }
+                }
+            } catch (IOException e) {
+                // Folder deleted: its files go below
+            }
+            for (String path : new ArrayList<>(files.keySet())) {
+                Path parent = Path.of(path).getParent();
+                if ((parent == null ? "" : parent.toString()).equals(prefix) && !present.contains(path)) {
+                    files.remove(path);
+                    changed();
+                }
+            }
+        });
+    }
+
+    // Store the index and stop; waits a few seconds for the write
+    public void close() {
+        indexThread.execute(this::persist);
+        indexThread.shutdown();
+        parsers.shutdownNow();
+        try {
+            indexThread.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The names declared in the project, as of a moment ago; any thread
+    public Declarations getDeclarations() {
+        return declarations;
+    }
+
+    // Queries: answered on the index thread from the arrays, results on the FX thread
+
+    // Types and members of a file, in source order
+    public void outline(Path file, Consumer<List<Symbol>> onResult) {
+        query(onResult, () -> {
+            List<Symbol> symbols = new ArrayList<>();
+            FileSymbols inFile = symbolsOf(file);
+            if (inFile != null) {
+                for (int d = 0; d < inFile.decls.length; d += DECL_STRIDE) {
+                    if (kindOf(inFile, d) != Kind.VARIABLE) {
+                        symbols.add(symbol(inFile, d));
+                    }
+                }
+            }
+            return symbols;
+        });
+    }
+
+    // Declarations a name used at line of file can refer to, best first
+    public void definitions(Path file, String name, int line, Consumer<List<Symbol>> onResult) {
+        query(onResult, () -> {
+            List<Symbol> symbols = new ArrayList<>();
+            for (Found found : resolve(file, name, line)) {
+                symbols.add(symbol(found.symbols(), found.decl()));
+            }
+            return symbols;
+        });
+    }
+
+    // Usages of a name used at line of file; a local is only looked for in its method
+    public void usages(Path file, String name, int line, Consumer<List<Usage>> onResult) {
+        query(onResult, () -> {
+            Integer id = nameIds.get(name);
+            List<Usage> usages = new ArrayList<>();
+            if (id == null) {
+                return usages;
+            }
+            List<Found> definitions = resolve(file, name, line);
+            int[] local = null; // {first line, last line} of the local's method
+            String localPath = null;
+            if (!definitions.isEmpty()) {
+                FileSymbols owner = definitions.get(0).symbols();
+                int d = definitions.get(0).decl();
+                if (kindOf(owner, d) == Kind.VARIABLE && owner.decls[d + 5] >= 0) {
+                    int parent = owner.decls[d + 5] * DECL_STRIDE;
+                    local = new int[] { owner.decls[parent + 2], owner.decls[parent + 6] };
+                    localPath = owner.path;
+                }
+            }
+            List<FileSymbols> scope = new ArrayList<>(localPath != null ? List.of(files.get(localPath)) : files.values());
+            scope.sort(Comparator.comparing(symbols -> symbols.path));
+            for (FileSymbols symbols : scope) {
+                Path path = root.resolve(symbols.path);
+                List<Usage> inFile = new ArrayList<>();
+                for (int d = 0; d < symbols.decls.length; d += DECL_STRIDE) {
+                    if (symbols.decls[d] == id && within(symbols.decls[d + 2], local)) {
+                        inFile.add(new Usage(path, symbols.decls[d + 2], symbols.decls[d + 3], name.length(),
+                                containerName(symbols, symbols.decls[d + 5]), true));
+                    }
+                }
+                for (int r = 0; r < symbols.refs.length; r += REF_STRIDE) {
+                    if (symbols.refs[r] == id && within(symbols.refs[r + 1], local)) {
+                        inFile.add(new Usage(path, symbols.refs[r + 1], symbols.refs[r + 2], name.length(),
+                                containerName(symbols, symbols.refs[r + 3]), false));
+                    }
+                }
+                inFile.sort(Comparator.comparingInt(Usage::line).thenComparingInt(Usage::column));
+                usages.addAll(inFile);
+                if (usages.size() >= MAX_USAGES) {
+                    return usages.subList(0, MAX_USAGES);
+                }
+            }
+            return usages;
+        });
+    }
+
+    private <T> void query(Consumer<T> onResult, Supplier<T> query) {
+        indexThread.execute(() -> {
+            T result = query.get();
+            Platform.runLater(() -> onResult.accept(result));
+        });
+    }
+
+    // Index thread: the rest of the file works on the index state
+
+    // Candidates for a name used at line of file: a local of the enclosing
+    // method, else members of the file, else types and members anywhere
+    private List<Found> resolve(Path file, String name, int line) {
+        List<Found> found = new ArrayList<>();
+        Integer id = nameIds.get(name);
+        FileSymbols current = symbolsOf(file);
+        if (id == null) {
+            return found;
+        }
+        if (current != null) {
+            int best = -1;
+            for (int d = 0; d < current.decls.length; d += DECL_STRIDE) {
+                if (current.decls[d] == id && kindOf(current, d) == Kind.VARIABLE && current.decls[d + 2] <= line
+                        && current.decls[d + 5] >= 0) {
+                    int parent = current.decls[d + 5] * DECL_STRIDE;
+                    if (line <= current.decls[parent + 6] && (best < 0 || current.decls[d + 2] >= current.decls[best + 2])) {
+                        best = d;
+                    }
+                }
+            }
+            if (best >= 0) {
+                found.add(new Found(current, best));
+                return found;
+            }
+            for (int d = 0; d < current.decls.length; d += DECL_STRIDE) {
+                if (current.decls[d] == id && kindOf(current, d) != Kind.VARIABLE) {
+                    found.add(new Found(current, d));
+                }
+            }
+            if (!found.isEmpty()) {
+                return found;
+            }
+        }
+        List<FileSymbols> all = new ArrayList<>(files.values());
+        all.sort(Comparator.comparing(symbols -> symbols.path));
+        for (FileSymbols symbols : all) {
+            for (int d = 0; d < symbols.decls.length; d += DECL_STRIDE) {
+                if (symbols.decls[d] == id && kindOf(symbols, d) != Kind.VARIABLE) {
+                    found.add(new Found(symbols, d));
+                }
+            }
+        }
+        found.sort(Comparator.comparing((Found candidate) -> !kindOf(candidate.symbols(), candidate.decl()).isType()));
+        return found;
+    }
+
+    private static boolean within(int line, int[] range) {
+        return range == null || (line >= range[0] && line <= range[1]);
+    }
+
+    private FileSymbols symbolsOf(Path file) {
+        String path = relative(file);
+        return path == null ? null : files.get(path);
+    }
+
+    private static Kind kindOf(FileSymbols symbols, int d) {
+        return Kind.values()[symbols.decls[d + 1]];
+    }
+
+    private Symbol symbol(FileSymbols symbols, int d) {
+        int[] decls = symbols.decls;
+        return new Symbol(names.get(decls[d]), kindOf(symbols, d), root.resolve(symbols.path), decls[d + 2],
+                decls[d + 3], decls[d + 4], containerName(symbols, decls[d + 5]));
+    }
+
+    private String containerName(FileSymbols symbols, int decl) {
+        return decl < 0 ? "" : names.get(symbols.decls[decl * DECL_STRIDE]);
+    }
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private int nextVersion(String path) {
+        return versions.merge(path, 1, Integer::sum);
+    }
+
+    private void cancelBufferParse(String path) {
+        ScheduledFuture<?> pending = bufferParses.remove(path);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    // Parse a file again if it changed on disk (or drop it if it is gone)
+    private void refresh(String path, Path file) {
+        FileSymbols known = files.get(path);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (known == null || known.modified != attrs.lastModifiedTime().toMillis() || known.size != attrs.size()) {
+                parse(List.of(source(path, file, attrs, null)));
+            }
+        } catch (IOException e) {
+            if (files.remove(path) != null) {
+                changed();
+            }
+        }
+    }
+
+    private Source source(String path, Path file, BasicFileAttributes attrs, String text) {
+        return new Source(path, file, attrs.lastModifiedTime().toMillis(), attrs.size(), text, nextVersion(path));
+    }
+
+    private void parse(List<Source> sources) {
+        parsing += sources.size();
+        parsers.execute(new ParseTask(sources, generation));
+    }
+
+    // A parse is back: keep it unless a newer one of the file was started
+    private void parsed(Parsed parsed, int parseGeneration) {
+        if (parseGeneration != generation) {
+            return;
+        }
+        parsing--;
+        Source source = parsed.source();
+        if (parsed.decls() != null && versions.getOrDefault(source.path(), 0) == source.version()) {
+            int[] ids = new int[parsed.names().size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = intern(parsed.names().get(i));
+            }
+            int[] decls = parsed.decls();
+            for (int d = 0; d < decls.length; d += DECL_STRIDE) {
+                decls[d] = ids[decls[d]];
+            }
+            int[] refs = parsed.refs();
+            for (int r = 0; r < refs.length; r += REF_STRIDE) {
+                refs[r] = ids[refs[r]];
+            }
+            files.put(source.path(), new FileSymbols(source.path(), source.modified(), source.size(), decls, refs));
+            changed();
+        }
+        if (parsing == 0 && buildStart != 0) {
+            report("🧭 Symbols ready: " + files.size() + " Java files in "
+                    + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+            buildStart = 0;
+            persist();
+        }
+    }
+
+    private void changed() {
+        dirty = true;
+        schedulePublish();
+        if (!persistScheduled) {
+            persistScheduled = true;
+            indexThread.schedule(() -> {
+                persistScheduled = false;
+                persist();
+            }, PERSIST_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Hand the declared names to other threads once changes settle
+    private void schedulePublish() {
+        if (publishScheduled) {
+            return;
+        }
+        publishScheduled = true;
+        indexThread.schedule(() -> {
+            publishScheduled = false;
+            Map<Long, String> seen = new HashMap<>(); // name id << 8 | kind -> detail
+            for (FileSymbols symbols : files.values()) {
+                for (int d = 0; d < symbols.decls.length; d += DECL_STRIDE) {
+                    if (kindOf(symbols, d) != Kind.VARIABLE) {
+                        seen.putIfAbsent((long) symbols.decls[d] << 8 | symbols.decls[d + 1],
+                                containerName(symbols, symbols.decls[d + 5]));
+                    }
+                }
+            }
+            String[] declared = new String[seen.size()];
+            byte[] kinds = new byte[seen.size()];
+            String[] details = new String[seen.size()];
+            int i = 0;
+            for (Map.Entry<Long, String> entry : seen.entrySet()) {
+                declared[i] = names.get((int) (entry.getKey() >>> 8));
+                kinds[i] = (byte) (entry.getKey() & 0xFF);
+                details[i++] = entry.getValue();
+            }
+            declarations = new Declarations(declared, kinds, details);
+        }, PUBLISH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Path relative to the root, or null if outside it or in an ignored folder
+    private String relative(Path file) {
+        if (root == null) {
+            return null;
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        if (!absolute.startsWith(root)) {
+            return null;
+        }
+        Path relative = root.relativize(absolute);
+        for (Path name : relative) {
+            if (ProjectFiles.IGNORED_FOLDERS.contains(name.toString())) {
+                return null;
+            }
+        }
+        return relative.toString();
+    }
+
+    private static boolean isJava(Path file) {
+        return file.getFileName() != null && file.getFileName().toString().endsWith(".java");
+    }
+
+    // Write .ide/symbols.idx with only the names still in use (temp file first, like the trigram index)
+    private void persist() {
+        if (root == null || !dirty) {
+            return;
+        }
+        Path folder = root.resolve(ProjectFiles.IDE_FOLDER);
+        Path target = folder.resolve(INDEX_FILE);
+        Path temp = folder.resolve(INDEX_FILE + ".tmp");
+        try {
+            Files.createDirectories(folder);
+            int[] remap = new int[names.size()];
+            Arrays.fill(remap, -1);
+            List<String> used = new ArrayList<>();
+            for (FileSymbols symbols : files.values()) {
+                for (int d = 0; d < symbols.decls.length; d += DECL_STRIDE) {
+                    use(symbols.decls[d], remap, used);
+                }
+                for (int r = 0; r < symbols.refs.length; r += REF_STRIDE) {
+                    use(symbols.refs[r], remap, used);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(used.size());
+                for (String name : used) {
+                    out.writeUTF(name);
+                }
+                out.writeInt(files.size());
+                for (FileSymbols symbols : files.values()) {
+                    out.writeUTF(symbols.path);
+                    out.writeLong(symbols.modified);
+                    out.writeLong(symbols.size);
+                    writeInts(out, symbols.decls, DECL_STRIDE, remap);
+                    writeInts(out, symbols.refs, REF_STRIDE, remap);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Nothing more to do
+            }
+            report("⚠ Could not store the symbol index: " + e.getMessage());
+        }
+    }
+
+    private void use(int id, int[] remap, List<String> used) {
+        if (remap[id] < 0) {
+            remap[id] = used.size();
+            used.add(names.get(id));
+        }
+    }
+
+    // Ints of a file, the name of each record (its first int) remapped
+    private static void writeInts(DataOutputStream out, int[] values, int stride, int[] remap) throws IOException {
+        out.writeInt(values.length);
+        for (int i = 0; i < values.length; i++) {
+            out.writeInt(i % stride == 0 ? remap[values[i]] : values[i]);
+        }
+    }
+
+    // Read .ide/symbols.idx; false (and an empty index) if it is missing or unreadable
+    private boolean load() {
+        Path file = root.resolve(ProjectFiles.IDE_FOLDER).resolve(INDEX_FILE);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return false;
+            }
+            int nameCount = in.readInt();
+            for (int i = 0; i < nameCount; i++) {
+                intern(in.readUTF());
+            }
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                String path = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                files.put(path, new FileSymbols(path, modified, size, readInts(in), readInts(in)));
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            files.clear();
+            names.clear();
+            nameIds.clear();
+            return false;
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private void report(String message) {
+        Platform.runLater(() -> status.accept(message));
+    }
+
+    // Parser threads
+
+    // Splits the files into batches; each batch is parsed by one JavacTask.
+    // Serializable only through ForkJoinTask, it is never serialized
+    @SuppressWarnings("serial")
+    private final class ParseTask extends RecursiveAction {
+        private final List<Source> sources;
+        private final int parseGeneration;
+
+        ParseTask(List<Source> sources, int parseGeneration) {
+            this.sources = sources;
+            this.parseGeneration = parseGeneration;
+        }
+
+        @Override
+        protected void compute() {
+            if (sources.size() > BATCH) {
+                int middle = sources.size() / 2;
+                invokeAll(new ParseTask(sources.subList(0, middle), parseGeneration),
+                        new ParseTask(sources.subList(middle, sources.size()), parseGeneration));
+                return;
+            }
+            List<Parsed> results = parseBatch(sources);
+            indexThread.execute(() -> results.forEach(parsed -> parsed(parsed, parseGeneration)));
+        }
+    }
+
+    private static List<Parsed> parseBatch(List<Source> sources) {
+        // By URI: javac hands back its own wrappers of the file objects
+        Map<URI, Source> sourcesByUri = new HashMap<>();
+        List<JavaFileObject> objects = new ArrayList<>();
+        Map<Source, String> texts = new HashMap<>();
+        List<Parsed> results = new ArrayList<>();
+        for (Source source : sources) {
+            try {
+                String text = source.text() != null ? source.text() : readText(source.file());
+                texts.put(source, text);
+                URI uri = source.file().toUri();
+                sourcesByUri.put(uri, source);
+                objects.add(new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return text;
+                    }
+                });
+            } catch (IOException e) {
+                results.add(new Parsed(source, null, null, null));
+            }
+        }
+        if (objects.isEmpty()) {
+            return results;
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavacTask task = (JavacTask) compiler.getTask(null, null, (Diagnostic<? extends JavaFileObject> d) -> {
+        }, List.of("-proc:none"), null, objects);
+        SourcePositions positions = Trees.instance(task).getSourcePositions();
+        Set<Source> done = new HashSet<>();
+        try {
+            for (CompilationUnitTree unit : task.parse()) {
+                Source source = sourcesByUri.get(unit.getSourceFile().toUri());
+                if (source != null && done.add(source)) {
+                    Collector collector = new Collector(unit, positions, texts.get(source));
+                    collector.scan(unit, null);
+                    results.add(new Parsed(source, collector.names, collector.decls.toArray(), collector.refs.toArray()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A file javac could not cope with keeps its previous symbols
+        }
+        for (Source source : sourcesByUri.values()) {
+            if (!done.contains(source)) {
+                results.add(new Parsed(source, null, null, null));
+            }
+        }
+        return results;
+    }
+
+    private static String readText(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        FileLoader.read(file, new FileLoader.Load(), text::append);
+        return text.toString();
+    }
+
+    // Walks one syntax tree and records declarations and references
+    private static final class Collector extends TreeScanner<Void, Void> {
+        final List<String> names = new ArrayList<>();
+        final Map<String, Integer> nameIndex = new HashMap<>();
+        final Ints decls = new Ints();
+        final Ints refs = new Ints();
+        private final CompilationUnitTree unit;
+        private final SourcePositions positions;
+        private final String text;
+        private final LineMap lines;
+        private int parent = -1; // Index of the enclosing declaration
+        private int depth;
+        private final List<String> typeNames = new ArrayList<>(); // For constructors, named <init>
+        private final List<Kind> typeKinds = new ArrayList<>();
+
+        Collector(CompilationUnitTree unit, SourcePositions positions, String text) {
+            this.unit = unit;
+            this.positions = positions;
+            this.text = text;
+            this.lines = unit.getLineMap();
+        }
+
+        @Override
+        public Void visitClass(ClassTree tree, Void unused) {
+            String name = tree.getSimpleName().toString();
+            if (name.isEmpty()) {
+                return super.visitClass(tree, unused); // Anonymous class body
+            }
+            Kind kind = switch (tree.getKind()) {
+                case INTERFACE -> Kind.INTERFACE;
+                case ENUM -> Kind.ENUM;
+                case RECORD -> Kind.RECORD;
+                case ANNOTATION_TYPE -> Kind.ANNOTATION;
+                default -> Kind.CLASS;
+            };
+            int saved = declare(name, kind, tree, after(tree.getModifiers(), tree));
+            typeNames.add(name);
+            typeKinds.add(kind);
+            super.visitClass(tree, unused);
+            typeNames.remove(typeNames.size() - 1);
+            typeKinds.remove(typeKinds.size() - 1);
+            end(saved);
+            return null;
+        }
+
+        @Override
+        public Void visitMethod(MethodTree tree, Void unused) {
+            boolean constructor = tree.getName().contentEquals("<init>");
+            String name = constructor && !typeNames.isEmpty() ? typeNames.get(typeNames.size() - 1)
+                    : tree.getName().toString();
+            Tree before = tree.getReturnType() != null ? tree.getReturnType()
+                    : !tree.getTypeParameters().isEmpty() ? tree.getTypeParameters().get(tree.getTypeParameters().size() - 1)
+                    : tree.getModifiers();
+            int saved = declare(name, constructor ? Kind.CONSTRUCTOR : Kind.METHOD, tree, after(before, tree));
+            super.visitMethod(tree, unused);
+            end(saved);
+            return null;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree tree, Void unused) {
+            String name = tree.getName().toString();
+            boolean member = parent >= 0 && isTypeDecl(parent);
+            Kind kind = !member ? Kind.VARIABLE
+                    : typeKinds.get(typeKinds.size() - 1) == Kind.ENUM && startsWithName(tree, name) ? Kind.CONSTANT
+                    : Kind.FIELD;
+            int start = kind == Kind.CONSTANT ? start(tree) : after(tree.getType(), tree);
+            int saved = declare(name, kind, tree, start);
+            super.visitVariable(tree, unused);
+            end(saved);
+            return null;
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree tree, Void unused) {
+            String name = tree.getName().toString();
+            if (!name.equals("this") && !name.equals("super")) {
+                reference(name, start(tree));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+            super.visitMemberSelect(tree, unused);
+            String name = tree.getIdentifier().toString();
+            long end = positions.getEndPosition(unit, tree);
+            if (end > 0 && !name.equals("class") && !name.equals("this") && !name.equals("*")) {
+                reference(name, (int) end - name.length());
+            }
+            return null;
+        }
+
+        private boolean isTypeDecl(int decl) {
+            return Kind.values()[decls.values[decl * DECL_STRIDE + 1]].isType();
+        }
+
+        // An enum constant's tree starts at its name
+        private boolean startsWithName(VariableTree tree, String name) {
+            int start = start(tree);
+            return start >= 0 && text.startsWith(name, start);
+        }
+
+        // Record a declaration and make it the parent of what is inside; returns the old parent
+        private int declare(String name, Kind kind, Tree tree, int searchFrom) {
+            int position = nameOffset(name, searchFrom);
+            int line = (int) lines.getLineNumber(position) - 1;
+            decls.add(nameIndex(name), kind.ordinal(), line, column(position, line), depth, parent,
+                    (int) lines.getLineNumber(Math.max(position, endOf(tree))) - 1);
+            int saved = parent;
+            parent = decls.size / DECL_STRIDE - 1;
+            depth++;
+            return saved;
+        }
+
+        private void end(int savedParent) {
+            parent = savedParent;
+            depth--;
+        }
+
+        private void reference(String name, int position) {
+            if (position < 0) {
+                return;
+            }
+            int line = (int) lines.getLineNumber(position) - 1;
+            refs.add(nameIndex(name), line, column(position, line), parent);
+        }
+
+        private int nameIndex(String name) {
+            Integer index = nameIndex.get(name);
+            if (index == null) {
+                index = names.size();
+                names.add(name);
+                nameIndex.put(name, index);
+            }
+            return index;
+        }
+
+        private int column(int position, int line) {
+            return position - (int) lines.getStartPosition(line + 1);
+        }
+
+        private int start(Tree tree) {
+            return (int) positions.getStartPosition(unit, tree);
+        }
+
+        private int endOf(Tree tree) {
+            return (int) positions.getEndPosition(unit, tree);
+        }
+
+        // Where to look for a declaration's name: after the given part (modifiers, type), else at its start
+        private int after(Tree part, Tree tree) {
+            long end = part == null ? -1 : positions.getEndPosition(unit, part);
+            return end >= 0 ? (int) end : Math.max(0, start(tree));
+        }
+
+        // First whole-word occurrence of name from a position, or the position
+        private int nameOffset(String name, int from) {
+            int at = from;
+            while ((at = text.indexOf(name, at)) >= 0) {
+                boolean before = at == 0 || !Character.isJavaIdentifierPart(text.charAt(at - 1));
+                int end = at + name.length();
+                boolean after = end >= text.length() || !Character.isJavaIdentifierPart(text.charAt(end));
+                if (before && after) {
+                    return at;
+                }
+                at = end;
+            }
+            return Math.min(from, Math.max(0, text.length() - 1));
+        }
+    }
+
+    // Growable int array
+    private static final class Ints {
+        int[] values = new int[64];
+        int size;
+
+        void add(int... more) {
+            if (size + more.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + more.length));
+            }
+            System.arraycopy(more, 0, values, size, more.length);
+            size += more.length;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.VBox;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The side panel for the SymbolIndex: the outline of a file (Ctrl+Shift+O),
+// the candidates when a definition is ambiguous (F12) and the usages of a
+// name (Shift+F12), grouped by file like the search results.
+public final class SymbolView extends BorderPane {
+
+    // A file heading (usage is null) or one place in it
+    private record Row(Path file, SymbolIndex.Usage usage, String text) {
+    }
+
+    private final Consumer<SymbolIndex.Usage> onOpen;
+    private final Label title = new Label("OUTLINE");
+    private final Label summaryLabel = new Label();
+    private final ListView<Row> results = new ListView<>();
+    private Path root;
+
+    public SymbolView(Consumer<SymbolIndex.Usage> onOpen) {
+        this.onOpen = onOpen;
+        getStyleClass().add("search-view");
+
+        title.getStyleClass().add("explorer-title");
+        summaryLabel.getStyleClass().add("search-summary");
+        VBox top = new VBox(6, title, summaryLabel);
+        top.setPadding(new Insets(0, 8, 6, 8));
+        setTop(top);
+
+        results.getStyleClass().add("search-results");
+        results.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(Row row, boolean empty) {
+                super.updateItem(row, empty);
+                getStyleClass().removeAll("search-file", "search-match");
+                if (empty || row == null) {
+                    setText(null);
+                } else {
+                    getStyleClass().add(row.usage() == null ? "search-file" : "search-match");
+                    setText(row.text());
+                }
+            }
+        });
+        results.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) {
+                openSelected();
+            }
+        });
+        results.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                openSelected();
+            }
+        });
+        setCenter(results);
+    }
+
+    // The project, for showing paths relative to it
+    public void setRoot(Path root) {
+        this.root = root;
+        results.getItems().clear();
+        summaryLabel.setText("");
+    }
+
+    // Types and members of a file, indented by nesting
+    public void showOutline(Path file, List<SymbolIndex.Symbol> symbols) {
+        title.setText("OUTLINE");
+        summaryLabel.setText(file.getFileName() + (symbols.isEmpty() ? ": nothing indexed yet" : ""));
+        List<Row> rows = new ArrayList<>();
+        for (SymbolIndex.Symbol symbol : symbols) {
+            rows.add(new Row(file, place(symbol),
+                    "  ".repeat(symbol.depth()) + symbol.kind().icon + " " + symbol.name()));
+        }
+        show(rows);
+    }
+
+    // Declarations a name may refer to, when there is more than one
+    public void showDefinitions(String name, List<SymbolIndex.Symbol> symbols) {
+        title.setText("DEFINITIONS");
+        summaryLabel.setText(symbols.size() + " declarations of " + name);
+        List<Row> rows = new ArrayList<>();
+        Path lastFile = null;
+        for (SymbolIndex.Symbol symbol : symbols) {
+            if (!symbol.file().equals(lastFile)) {
+                lastFile = symbol.file();
+                rows.add(new Row(lastFile, null, "📄 " + displayPath(lastFile)));
+            }
+            rows.add(new Row(symbol.file(), place(symbol), "    " + (symbol.line() + 1) + ":  "
+                    + symbol.kind().icon + " " + symbol.name() + inContainer(symbol.container())));
+        }
+        show(rows);
+    }
+
+    // Where a name is used, the declaration marked
+    public void showUsages(String name, List<SymbolIndex.Usage> usages) {
+        title.setText("USAGES");
+        long files = usages.stream().map(SymbolIndex.Usage::file).distinct().count();
+        summaryLabel.setText(usages.size() + " usages of " + name + " in " + files + " files");
+        List<Row> rows = new ArrayList<>();
+        Path lastFile = null;
+        for (SymbolIndex.Usage usage : usages) {
+            if (!usage.file().equals(lastFile)) {
+                lastFile = usage.file();
+                rows.add(new Row(lastFile, null, "📄 " + displayPath(lastFile)));
+            }
+            rows.add(new Row(usage.file(), usage, "    " + (usage.line() + 1) + ":" + (usage.column() + 1)
+                    + (usage.declaration() ? "  ◆ declared" : "") + inContainer(usage.container())));
+        }
+        show(rows);
+    }
+
+    private void show(List<Row> rows) {
+        results.getItems().setAll(rows);
+        results.scrollTo(0);
+    }
+
+    private static SymbolIndex.Usage place(SymbolIndex.Symbol symbol) {
+        return new SymbolIndex.Usage(symbol.file(), symbol.line(), symbol.column(), symbol.name().length(),
+                symbol.container(), true);
+    }
+
+    private static String inContainer(String container) {
+        return container.isEmpty() ? "" : "  in " + container;
+    }
+
+    private String displayPath(Path file) {
+        return root != null && file.startsWith(root) ? root.relativize(file).toString() : file.toString();
+    }
+
+    private void openSelected() {
+        Row row = results.getSelectionModel().getSelectedItem();
+        if (row != null && row.usage() != null) {
+            onOpen.accept(row.usage());
+        }
+    }
+}
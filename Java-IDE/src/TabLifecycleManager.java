@@ -0,0 +1,193 @@
+import javafx.scene.control.Tab;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps the text of open tabs within a heap budget. Tabs are ordered by when
+// they were last selected; past the budget the least recently selected ones
+// are hibernated: their editor and text are dropped and only the file, view
+// and a hash of the text are kept (plus the undo history, which is small).
+// The text of a tab with unsaved edits is spilled to a temp file first, on a
+// background thread; the tab is hibernated once the spill is written.
+// Selecting a hibernated tab wakes it: from the file if it was clean, from
+// the spill otherwise. Only the FX thread uses it, except for the spills.
+public class TabLifecycleManager {
+
+    // Heap for the text of open tabs (-Dide.tabs.heapBytes=bytes)
+    private static final long HEAP_BYTES = Long.getLong("ide.tabs.heapBytes", 128L * 1024 * 1024);
+
+    // A hibernated tab. savedHash and savedLength describe the file on disk;
+    // hash and length the tab's text, which is in spill if it had unsaved edits
+    public record Hibernated(Path file, int caret, int topLine, double scrollLeft, long hash, int length,
+            long savedHash, int savedLength, UndoManager history, Path spill) {
+
+        public boolean dirty() {
+            return spill != null;
+        }
+
+        // From the stored workspace, not read yet: view and history are checked against the text when it is
+        public boolean restored() {
+            return length < 0;
+        }
+    }
+
+    private final LinkedHashMap<Tab, Long> live = new LinkedHashMap<>(16, 0.75f, true); // Bytes, least recent first
+    private final Map<Tab, Hibernated> hibernated = new HashMap<>();
+    private final Map<Tab, Hibernated> waking = new HashMap<>(); // Woken, until the file is back in the tab
+    private final Set<Tab> spilling = new HashSet<>(); // Live, their text being written to a spill
+    private final ExecutorService spiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tab-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path spillFolder; // Spill thread only
+
+    // The tab was selected, or its text loaded; bytes is about what its text takes
+    public void touched(Tab tab, long bytes) {
+        live.put(tab, bytes);
+    }
+
+    // The least recently selected live tabs to hibernate to get within the
+    // budget, never keep; tabs being spilled are on their way out already
+    public List<Tab> overBudget(Tab keep) {
+        long total = 0;
+        for (Map.Entry<Tab, Long> entry : live.entrySet()) {
+            if (!spilling.contains(entry.getKey())) {
+                total += entry.getValue();
+            }
+        }
+        List<Tab> evict = new ArrayList<>();
+        for (Map.Entry<Tab, Long> entry : live.entrySet()) {
+            if (total <= HEAP_BYTES) {
+                break;
+            }
+            if (entry.getKey() != keep && !spilling.contains(entry.getKey())) {
+                evict.add(entry.getKey());
+                total -= entry.getValue();
+            }
+        }
+        return evict;
+    }
+
+    // Write the text of a tab with unsaved edits to a new spill file in the
+    // background; hibernate the tab with it once written (or discard it)
+    public CompletableFuture<Path> spill(Tab tab, PieceTable.Snapshot text) {
+        spilling.add(tab);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (spillFolder == null) {
+                    spillFolder = Files.createTempDirectory("ide-spill");
+                    spillFolder.toFile().deleteOnExit();
+                }
+                Path spill = Files.createTempFile(spillFolder, "tab", ".txt");
+                spill.toFile().deleteOnExit();
+                Files.writeString(spill, text.getText(), StandardCharsets.UTF_8);
+                return spill;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, spiller);
+    }
+
+    public boolean isSpilling(Tab tab) {
+        return spilling.contains(tab);
+    }
+
+    // A spill that was not used: the tab changed, was selected or closed meanwhile
+    public void discardSpill(Tab tab, Path spill) {
+        spilling.remove(tab);
+        if (spill != null) {
+            deleteSpill(spill);
+        }
+    }
+
+    // Record the tab as hibernated; spill holds its text if it has unsaved edits
+    public Hibernated hibernate(Tab tab, Path file, int caret, int topLine, double scrollLeft,
+            PieceTable.Snapshot text, long savedHash, int savedLength, UndoManager history, Path spill) {
+        spilling.remove(tab);
+        Hibernated state = new Hibernated(file, caret, topLine, scrollLeft, text.getHash(), text.length(),
+                savedHash, savedLength, history, spill);
+        live.remove(tab);
+        hibernated.put(tab, state);
+        return state;
+    }
+
+    // A tab of the stored workspace: hibernated from the start, read when first selected
+    public Hibernated restored(Tab tab, Path file, int caret, int topLine, double scrollLeft) {
+        Hibernated state = new Hibernated(file, caret, topLine, scrollLeft, 0, -1, 0, -1, new UndoManager(), null);
+        hibernated.put(tab, state);
+        return state;
+    }
+
+    public boolean isHibernated(Tab tab) {
+        return hibernated.containsKey(tab);
+    }
+
+    public Hibernated get(Tab tab) {
+        return hibernated.get(tab);
+    }
+
+    // Take the tab out of hibernation; finishWake hands the state back once its text is loaded
+    public Hibernated wake(Tab tab) {
+        Hibernated state = hibernated.remove(tab);
+        if (state != null) {
+            waking.put(tab, state);
+        }
+        return state;
+    }
+
+    public Hibernated finishWake(Tab tab) {
+        return waking.remove(tab);
+    }
+
+    // The spilled text of a dirty tab, deleting the spill when it is no longer needed
+    public String readSpill(Hibernated state, boolean delete) throws IOException {
+        String text = Files.readString(state.spill(), StandardCharsets.UTF_8);
+        if (delete) {
+            Files.deleteIfExists(state.spill());
+        }
+        return text;
+    }
+
+    // The tab was closed
+    public void removed(Tab tab) {
+        live.remove(tab);
+        waking.remove(tab);
+        spilling.remove(tab);
+        Hibernated state = hibernated.remove(tab);
+        if (state != null && state.spill() != null) {
+            deleteSpill(state.spill());
+        }
+    }
+
+    private static void deleteSpill(Path spill) {
+        try {
+            Files.deleteIfExists(spill);
+        } catch (IOException e) {
+            // Deleted on exit
+        }
+    }
+
+    // Hibernated tabs whose unsaved edits are in a spill
+    public List<Tab> dirtyTabs() {
+        List<Tab> dirty = new ArrayList<>();
+        for (Map.Entry<Tab, Hibernated> entry : hibernated.entrySet()) {
+            if (entry.getValue().dirty()) {
+                dirty.add(entry.getKey());
+            }
+        }
+        return dirty;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Locale;
+
+// Fixed-capacity scrollback for the terminal: a ring of lines, each with one
+// color. When full, the oldest line is dropped, so memory stays bounded no
+// matter how much a process prints. Lines are numbered from the start of the
+// session; numbers of dropped lines are never reused, so a view can hold on
+// to a line number while older lines scroll out.
+public class TerminalBuffer {
+
+    public static final int MAX_LINE_CHARS = 10_000; // Longer output is wrapped onto new lines
+
+    private final String[] texts;
+    private final String[] colors;
+    private final int capacity;
+    private int head; // Slot of the oldest line
+    private int size;
+    private long firstLine; // Number of the oldest line kept
+    private boolean lastLineOpen; // Last line has no line feed yet
+    private long version; // Bumped on every change
+
+    public TerminalBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        texts = new String[this.capacity];
+        colors = new String[this.capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getFirstLine() {
+        return firstLine;
+    }
+
+    // Number one past the newest line
+    public long getEndLine() {
+        return firstLine + size;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getText(long line) {
+        return texts[slot(line)];
+    }
+
+    public String getColor(long line) {
+        return colors[slot(line)];
+    }
+
+    // Add output; text after the last \n stays open and later output joins it
+    public void append(String text, String color) {
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            boolean lineFeed = end >= 0;
+            if (!lineFeed) {
+                end = text.length();
+                if (start == end) {
+                    break; // Nothing after the last line feed
+                }
+            }
+            appendToLine(text.substring(start, end), color);
+            lastLineOpen = !lineFeed;
+            start = end + 1;
+        }
+        version++;
+    }
+
+    private void appendToLine(String text, String color) {
+        if (lastLineOpen && size > 0) {
+            int last = (head + size - 1) % capacity;
+            String joined = texts[last] + text;
+            if (joined.length() <= MAX_LINE_CHARS) {
+                texts[last] = joined;
+                return;
+            }
+            texts[last] = joined.substring(0, MAX_LINE_CHARS);
+            text = joined.substring(MAX_LINE_CHARS);
+            color = colors[last];
+        }
+        while (text.length() > MAX_LINE_CHARS) {
+            addLine(text.substring(0, MAX_LINE_CHARS), color);
+            text = text.substring(MAX_LINE_CHARS);
+        }
+        addLine(text, color);
+    }
+
+    private void addLine(String text, String color) {
+        if (size == capacity) {
+            head = (head + 1) % capacity; // Overwrite the oldest line
+            firstLine++;
+            size--;
+        }
+        int slot = (head + size) % capacity;
+        texts[slot] = text;
+        colors[slot] = color;
+        size++;
+    }
+
+    // Drop everything in O(1); line numbers keep counting up. The slots are
+    // reused as they are: old lines stay referenced until overwritten, within
+    // the capacity the buffer holds anyway
+    public void clear() {
+        firstLine += size;
+        head = 0;
+        size = 0;
+        lastLineOpen = false;
+        version++;
+    }
+
+    // Next line at or after from (before it when backwards) containing the
+    // query ignoring case, wrapping around once; -1 if there is none
+    public long find(String query, long from, boolean forward) {
+        if (query.isEmpty() || size == 0) {
+            return -1;
+        }
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        long start = Math.max(firstLine, Math.min(getEndLine() - 1, from));
+        for (int i = 0; i < size; i++) {
+            long line = forward
+                    ? firstLine + Math.floorMod(start - firstLine + i, size)
+                    : firstLine + Math.floorMod(start - firstLine - i, size);
+            if (containsIgnoreCase(texts[slot(line)], lowerQuery)) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsIgnoreCase(String text, String lowerQuery) {
+        int last = text.length() - lowerQuery.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, lowerQuery, 0, lowerQuery.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slot(long line) {
+        if (line < firstLine || line >= getEndLine()) {
+            throw new IndexOutOfBoundsException("line " + line + " not in [" + firstLine + ", " + getEndLine() + ")");
+        }
+        return (int) ((head + (line - firstLine)) % capacity);
+    }
+}
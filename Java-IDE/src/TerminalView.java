@@ -0,0 +1,270 @@
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Text;
+import java.util.ArrayList;
+import java.util.List;
+
+// Terminal output backed by a TerminalBuffer. Only the rows in the viewport
+// have Text nodes, so the scene graph stays the same size however much
+// output there is. Appends just mark the view dirty; the rows are refreshed
+// once per layout pass. While scrolled to the bottom the view follows new
+// output, otherwise it stays on the lines being read.
+public final class TerminalView extends BorderPane {
+
+    private final TerminalBuffer buffer;
+    private final Pane viewport = new Pane() {
+        @Override
+        protected void layoutChildren() {
+            refresh();
+        }
+    };
+    private final Rectangle viewportClip = new Rectangle();
+    private final Rectangle matchHighlight = new Rectangle();
+    private final Text measure = new Text("X");
+    private final ScrollBar vbar = new ScrollBar();
+    private final ScrollBar hbar = new ScrollBar();
+    private final List<Text> rows = new ArrayList<>();
+
+    // Search bar, shown with Ctrl+F
+    private final HBox searchBar = new HBox(6);
+    private final TextField searchField = new TextField();
+    private final Label searchStatus = new Label();
+
+    private double lineHeight = 17;
+    private double maxRowWidth;
+    private long topLine; // Line shown in the first row
+    private boolean following = true; // Scrolled to the bottom
+    private long matchLine = -1;
+    private boolean refreshing;
+
+    public TerminalView(int scrollback) {
+        buffer = new TerminalBuffer(scrollback);
+        getStyleClass().add("terminal-output");
+
+        measure.getStyleClass().add("terminal-text");
+        measure.setVisible(false);
+        matchHighlight.getStyleClass().add("terminal-match");
+        matchHighlight.setVisible(false);
+        viewport.getChildren().addAll(measure, matchHighlight);
+        viewport.setClip(viewportClip);
+        viewport.setMinSize(0, 0);
+        viewport.setFocusTraversable(true);
+        viewport.setOnMouseClicked(e -> viewport.requestFocus());
+        viewport.addEventHandler(ScrollEvent.SCROLL, e -> {
+            scrollToLine(topLine - Math.round(e.getDeltaY() / lineHeight));
+            hbar.setValue(Math.max(0, Math.min(hbar.getMax(), hbar.getValue() - e.getDeltaX())));
+            e.consume();
+        });
+
+        vbar.setOrientation(Orientation.VERTICAL);
+        vbar.setUnitIncrement(1);
+        vbar.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (!refreshing) {
+                scrollToLine(buffer.getFirstLine() + Math.round(newValue.doubleValue()));
+            }
+        });
+        hbar.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (!refreshing) {
+                viewport.requestLayout();
+            }
+        });
+
+        // Search bar
+        searchField.setPromptText("Find in terminal");
+        searchField.setPrefColumnCount(20);
+        searchField.setOnAction(e -> find(true));
+        searchField.textProperty().addListener((obs, oldText, newText) -> searchStatus.setText(""));
+        Button previousButton = new Button("▲");
+        previousButton.setOnAction(e -> find(false));
+        Button nextButton = new Button("▼");
+        nextButton.setOnAction(e -> find(true));
+        Button closeButton = new Button("✕");
+        closeButton.setOnAction(e -> hideSearch());
+        searchBar.getChildren().addAll(searchField, previousButton, nextButton, searchStatus, closeButton);
+        searchBar.getStyleClass().add("terminal-search-bar");
+        searchBar.setAlignment(Pos.CENTER_LEFT);
+        searchBar.setPadding(new Insets(4, 8, 4, 8));
+        searchBar.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.ESCAPE) {
+                hideSearch();
+                e.consume();
+            } else if (e.getCode() == KeyCode.ENTER && e.isShiftDown()) {
+                find(false);
+                e.consume();
+            }
+        });
+
+        setCenter(viewport);
+        setRight(vbar);
+        setBottom(hbar);
+        addEventFilter(KeyEvent.KEY_PRESSED, this::handleKey);
+    }
+
+    public TerminalBuffer getBuffer() {
+        return buffer;
+    }
+
+    // Add output; rows are redrawn on the next layout pass
+    public void append(String text, String color) {
+        buffer.append(text, color);
+        viewport.requestLayout();
+    }
+
+    public void clear() {
+        buffer.clear();
+        matchLine = -1;
+        maxRowWidth = 0;
+        following = true;
+        hbar.setValue(0);
+        viewport.requestLayout();
+    }
+
+    public void showSearch() {
+        if (getTop() != searchBar) {
+            setTop(searchBar);
+        }
+        searchField.requestFocus();
+        searchField.selectAll();
+    }
+
+    public void hideSearch() {
+        setTop(null);
+        matchLine = -1;
+        viewport.requestLayout();
+    }
+
+    private void handleKey(KeyEvent event) {
+        if (event.isShortcutDown() && event.getCode() == KeyCode.F) {
+            showSearch();
+        } else if (event.getTarget() == viewport) {
+            int page = Math.max(1, visibleRows() - 1);
+            switch (event.getCode()) {
+                case UP -> scrollToLine(topLine - 1);
+                case DOWN -> scrollToLine(topLine + 1);
+                case PAGE_UP -> scrollToLine(topLine - page);
+                case PAGE_DOWN -> scrollToLine(topLine + page);
+                case HOME -> scrollToLine(buffer.getFirstLine());
+                case END -> scrollToLine(Long.MAX_VALUE);
+                default -> {
+                    return;
+                }
+            }
+        } else {
+            return;
+        }
+        event.consume();
+    }
+
+    // Search from the current hit (or the top row) through the scrollback
+    private void find(boolean forward) {
+        String query = searchField.getText();
+        if (query.isEmpty()) {
+            return;
+        }
+        long from = matchLine >= buffer.getFirstLine() ? matchLine + (forward ? 1 : -1) : topLine;
+        if (from >= buffer.getEndLine()) {
+            from = buffer.getFirstLine();
+        } else if (from < buffer.getFirstLine()) {
+            from = buffer.getEndLine() - 1;
+        }
+        long line = buffer.find(query, from, forward);
+        if (line < 0) {
+            matchLine = -1;
+            searchStatus.setText("No results");
+        } else {
+            matchLine = line;
+            searchStatus.setText("Line " + (line - buffer.getFirstLine() + 1) + " of " + buffer.size());
+            scrollToLine(line - visibleRows() / 2);
+        }
+        viewport.requestLayout();
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (int) Math.floor(viewport.getHeight() / lineHeight));
+    }
+
+    private long lastTopLine() {
+        return Math.max(buffer.getFirstLine(), buffer.getEndLine() - visibleRows());
+    }
+
+    private void scrollToLine(long line) {
+        long last = lastTopLine();
+        topLine = Math.max(buffer.getFirstLine(), Math.min(last, line));
+        following = topLine >= last;
+        viewport.requestLayout();
+    }
+
+    // Bind the pooled rows to the lines in the viewport
+    private void refresh() {
+        refreshing = true;
+        lineHeight = Math.ceil(measure.getLayoutBounds().getHeight());
+        double width = viewport.getWidth();
+        double height = viewport.getHeight();
+        viewportClip.setWidth(width);
+        viewportClip.setHeight(height);
+
+        int visible = visibleRows();
+        if (following) {
+            topLine = lastTopLine();
+        } else {
+            topLine = Math.max(buffer.getFirstLine(), Math.min(lastTopLine(), topLine)); // Old lines may have dropped
+        }
+
+        while (rows.size() < visible + 1) {
+            Text row = new Text();
+            row.getStyleClass().add("terminal-text");
+            rows.add(row);
+            viewport.getChildren().add(row);
+        }
+
+        matchHighlight.setVisible(false);
+        for (int i = 0; i < rows.size(); i++) {
+            Text row = rows.get(i);
+            long line = topLine + i;
+            boolean shown = i <= visible && line < buffer.getEndLine();
+            row.setVisible(shown);
+            if (!shown) {
+                row.setText("");
+                continue;
+            }
+            double y = i * lineHeight;
+            String color = buffer.getColor(line);
+            if (!color.equals(row.getUserData())) {
+                row.setStyle("-fx-fill: " + color + ";");
+                row.setUserData(color);
+            }
+            row.setText(buffer.getText(line));
+            row.relocate(-hbar.getValue(), y);
+            maxRowWidth = Math.max(maxRowWidth, row.getLayoutBounds().getWidth());
+
+            if (line == matchLine) {
+                matchHighlight.setX(0);
+                matchHighlight.setY(y);
+                matchHighlight.setWidth(width);
+                matchHighlight.setHeight(lineHeight);
+                matchHighlight.setVisible(true);
+            }
+        }
+
+        vbar.setMin(0);
+        vbar.setMax(Math.max(0, lastTopLine() - buffer.getFirstLine()));
+        vbar.setVisibleAmount(Math.max(1, visible));
+        vbar.setBlockIncrement(Math.max(1, visible - 1));
+        vbar.setValue(topLine - buffer.getFirstLine());
+        hbar.setMax(Math.max(0, maxRowWidth - width));
+        hbar.setVisibleAmount(width);
+        refreshing = false;
+    }
+}
@@ -0,0 +1,141 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// How a text file is stored on disk: its charset, whether it starts with a
+// byte order mark and which line separator it uses. Detected when a file is
+// opened so saving can write it back the same way.
+public record TextEncoding(Charset charset, boolean bom, String lineSeparator) {
+
+    public static final TextEncoding DEFAULT = new TextEncoding(StandardCharsets.UTF_8, false, System.lineSeparator());
+
+    private static final Charset WINDOWS_1252 = Charset.isSupported("windows-1252")
+            ? Charset.forName("windows-1252")
+            : StandardCharsets.ISO_8859_1;
+
+    // Bytes of the byte order mark for this charset (empty without BOM)
+    public byte[] bomBytes() {
+        if (!bom) {
+            return new byte[0];
+        }
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+        } else if (charset.equals(StandardCharsets.UTF_16BE)) {
+            return new byte[] { (byte) 0xFE, (byte) 0xFF };
+        } else if (charset.equals(StandardCharsets.UTF_16LE)) {
+            return new byte[] { (byte) 0xFF, (byte) 0xFE };
+        }
+        return new byte[0];
+    }
+
+    // Guess the encoding from the first bytes of a file: BOM first, then
+    // UTF-8 validity, then UTF-16 zero byte patterns, else windows-1252
+    public static TextEncoding detect(byte[] sample, int length, boolean wholeFile) {
+        Charset charset;
+        boolean bom = false;
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF)) {
+            charset = StandardCharsets.UTF_8;
+            bom = true;
+        } else if (startsWith(sample, length, 0xFE, 0xFF)) {
+            charset = StandardCharsets.UTF_16BE;
+            bom = true;
+        } else if (startsWith(sample, length, 0xFF, 0xFE)) {
+            charset = StandardCharsets.UTF_16LE;
+            bom = true;
+        } else if (isValidUtf8(sample, length, wholeFile)) {
+            charset = StandardCharsets.UTF_8;
+        } else {
+            charset = guessUtf16(sample, length);
+            if (charset == null) {
+                charset = WINDOWS_1252;
+            }
+        }
+        return new TextEncoding(charset, bom, detectLineSeparator(sample, length, charset));
+    }
+
+    private static boolean startsWith(byte[] sample, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((sample[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A sequence cut at the end of the sample still counts as valid
+    private static boolean isValidUtf8(byte[] sample, int length, boolean wholeFile) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample, 0, length);
+        CharBuffer out = CharBuffer.allocate(length + 1);
+        CoderResult result = decoder.decode(in, out, wholeFile);
+        if (result.isError()) {
+            return false;
+        }
+        if (wholeFile) {
+            try {
+                return !decoder.flush(out).isError();
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        }
+        return in.remaining() < 4; // At most one incomplete char left over
+    }
+
+    // Text in UTF-16 without BOM has a zero byte in most ASCII chars
+    private static Charset guessUtf16(byte[] sample, int length) {
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            if (sample[i] == 0) {
+                evenZeros++;
+            }
+            if (sample[i + 1] == 0) {
+                oddZeros++;
+            }
+        }
+        int pairs = Math.max(1, length / 2);
+        if (evenZeros > pairs * 0.4 && oddZeros < pairs * 0.05) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (oddZeros > pairs * 0.4 && evenZeros < pairs * 0.05) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    // First line break of the sample decides: \r\n, \r or \n
+    private static String detectLineSeparator(byte[] sample, int length, Charset charset) {
+        String text;
+        try {
+            text = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(ByteBuffer.wrap(sample, 0, length))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return "\n";
+        }
+        int index = 0;
+        while (index < text.length()) {
+            char c = text.charAt(index);
+            if (c == '\n') {
+                return "\n";
+            }
+            if (c == '\r') {
+                return index + 1 < text.length() && text.charAt(index + 1) == '\n' ? "\r\n" : "\r";
+            }
+            index++;
+        }
+        return System.lineSeparator();
+    }
+}
@@ -0,0 +1,1082 @@
+import javafx.application.Platform;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Project-wide full-text search. Every file of the project is indexed by the
+// (case folded) three-char sequences it contains; a query is reduced to the
+// trigrams any match must contain, the posting lists of those give the few
+// files worth reading, and only those are searched, in parallel. Files are
+// read by a pool of threads, but the index itself is only touched by one
+// thread, so it needs no locks. It is stored in .ide/trigram.idx and on the
+// next open only files whose size or time changed are read again.
+public class TrigramIndex {
+
+    // Larger files are not indexed or searched (-Dide.search.maxFileSize=bytes)
+    private static final long MAX_FILE_SIZE = Long.getLong("ide.search.maxFileSize", 1L << 20);
+    // Threads reading files for the index and for queries (-Dide.search.parallelism=n)
+    private static final int PARALLELISM = Math.max(1,
+            Integer.getInteger("ide.search.parallelism", Runtime.getRuntime().availableProcessors()));
+    // Matches after which a search stops (-Dide.search.maxResults=n)
+    private static final int MAX_RESULTS = Integer.getInteger("ide.search.maxResults", 10_000);
+    private static final int MAX_PREVIEW = 200; // Chars of the line shown with a match
+    private static final int MAX_PENDING_READS = 256; // Files read but not yet added to the index
+    private static final long PERSIST_DELAY_SECONDS = 5;
+    private static final int MAGIC = 0x54524931; // "TRI1"
+    private static final String INDEX_FILE = "trigram.idx";
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x");
+
+    // One match; line and column are 0 based, preview is (part of) the line
+    public record Match(Path file, int line, int column, int length, String preview, int previewColumn) {
+    }
+
+    // How a search went; searched is the number of files the index let through
+    public record Summary(int matches, int files, int searched, int indexed, long millis, boolean truncated) {
+    }
+
+    // A file of the project as last indexed
+    private static final class Entry {
+        final String path; // Relative to the root
+        final long modified;
+        final long size;
+        int id = -1; // Position in byId once indexed
+        boolean skipped; // Binary or too large: never searched
+        boolean deleted;
+
+        Entry(String path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    private final Consumer<String> status; // Progress messages, called on the FX thread
+    private final ScheduledExecutorService indexThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trigram-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService readers = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "trigram-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService searchers = Executors.newFixedThreadPool(PARALLELISM, runnable -> {
+        Thread thread = new Thread(runnable, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Semaphore pendingReads = new Semaphore(MAX_PENDING_READS);
+
+    // Index thread only from here on
+    private Path root;
+    private int generation; // Reads started for an earlier root are dropped
+    private final Map<String, Entry> entries = new HashMap<>(); // Current entry of each path
+    private final List<Entry> byId = new ArrayList<>();
+    private PostingMap postings = new PostingMap();
+    private final Set<Entry> pending = new LinkedHashSet<>(); // Being read; always searched directly
+    private int deadIds;
+    private boolean dirty;
+    private boolean persistScheduled;
+    private boolean building;
+    private long buildStart;
+
+    public TrigramIndex(Consumer<String> status) {
+        this.status = status;
+    }
+
+    // Index a project: load the stored index, then read what changed since
+    public void open(Path projectRoot) {
+        indexThread.execute(() -> {
+            persist(); // The previous project's changes
+            reset();
+            root = projectRoot.toAbsolutePath().normalize();
+            buildStart = System.nanoTime();
+            boolean loaded = load();
+            try {
+                reconcile();
+            } catch (IOException e) {
+                report("⚠ Search index: " + e.getMessage());
+            }
+            if (pending.isEmpty()) {
+                report("🔎 Search index " + (loaded ? "loaded" : "built") + ": " + liveFiles() + " files in "
+                        + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+                persist();
+            } else {
+                building = true;
+                report("🔎 Indexing " + pending.size() + " files…");
+            }
+        });
+    }
+
+    // A file was saved from the editor
+    public void fileSaved(Path file) {
+        indexThread.execute(() -> {
+            String path = relative(file);
+            if (path != null) {
+                refresh(file, path);
+                changed();
+            }
+        });
+    }
+
+    // Something changed in a folder (the directory watcher): look at the files directly in it
+    public void folderChanged(Path folder) {
+        indexThread.execute(() -> {
+            String prefix = relative(folder);
+            if (prefix == null) {
+                return;
+            }
+            Set<String> present = new HashSet<>();
+            try (Stream<Path> children = Files.list(folder)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    if (Files.isRegularFile(child)) {
+                        String path = relative(child);
+                        if (path != null) {
+                            present.add(path);
+                            refresh(child, path);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Folder deleted: its entries go below
+            }
+            for (Entry entry : new ArrayList<>(entries.values())) {
+                Path parent = Path.of(entry.path).getParent();
+                String parentPath = parent == null ? "" : parent.toString();
+                if (parentPath.equals(prefix) && !present.contains(entry.path)) {
+                    remove(entry);
+                }
+            }
+            changed();
+        });
+    }
+
+    // Store the index and stop; waits a few seconds for the write
+    public void close() {
+        indexThread.execute(this::persist);
+        indexThread.shutdown();
+        readers.shutdownNow();
+        searchers.shutdownNow();
+        try {
+            indexThread.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A running search; matches arrive in batches on the FX thread
+    public final class Search {
+        private final Pattern pattern;
+        private final Consumer<List<Match>> onMatches;
+        private final Consumer<Summary> onDone;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger matchCount = new AtomicInteger();
+        private final AtomicInteger fileCount = new AtomicInteger();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final ConcurrentLinkedQueue<List<Match>> found = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private volatile boolean truncated;
+        private int searched;
+        private int indexed;
+
+        private Search(Pattern pattern, Consumer<List<Match>> onMatches, Consumer<Summary> onDone) {
+            this.pattern = pattern;
+            this.onMatches = onMatches;
+            this.onDone = onDone;
+        }
+
+        // Nothing more is reported after this
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        // Search the candidates; buffers replace the disk text of open files
+        private void verify(List<Path> files, Map<Path, PieceTable.Snapshot> buffers) {
+            searched = files.size() + buffers.size();
+            remaining.set(searched);
+            if (searched == 0) {
+                Platform.runLater(this::finish);
+                return;
+            }
+            for (Map.Entry<Path, PieceTable.Snapshot> buffer : buffers.entrySet()) {
+                searchers.execute(() -> verify(buffer.getKey(), buffer.getValue()));
+            }
+            for (Path file : files) {
+                searchers.execute(() -> verify(file, null));
+            }
+        }
+
+        private void verify(Path file, PieceTable.Snapshot buffer) {
+            try {
+                if (!cancelled.get() && !truncated) {
+                    CharSequence text = buffer != null ? buffer.getText() : readText(file);
+                    List<Match> matches = find(file, text);
+                    if (!matches.isEmpty()) {
+                        fileCount.incrementAndGet();
+                        found.add(matches);
+                        scheduleFlush();
+                    }
+                }
+            } catch (IOException e) {
+                // Deleted or unreadable since it was indexed
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    Platform.runLater(this::finish);
+                }
+            }
+        }
+
+        private List<Match> find(Path file, CharSequence text) {
+            List<Match> matches = new ArrayList<>();
+            Matcher matcher = pattern.matcher(text);
+            int line = 0;
+            int lineStart = 0;
+            int scanned = 0;
+            while (matcher.find()) {
+                if (matcher.end() == matcher.start()) {
+                    continue; // Empty matches show nothing
+                }
+                for (; scanned < matcher.start(); scanned++) {
+                    if (text.charAt(scanned) == '\n') {
+                        line++;
+                        lineStart = scanned + 1;
+                    }
+                }
+                int lineEnd = lineStart;
+                while (lineEnd < text.length() && text.charAt(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int column = matcher.start() - lineStart;
+                int previewStart = column > MAX_PREVIEW / 2 ? matcher.start() - MAX_PREVIEW / 4 : lineStart;
+                String preview = text.subSequence(previewStart, Math.min(lineEnd, previewStart + MAX_PREVIEW))
+                        .toString();
+                matches.add(new Match(file, line, column, Math.min(matcher.end(), lineEnd) - matcher.start(),
+                        preview, matcher.start() - previewStart));
+                if (matchCount.incrementAndGet() >= MAX_RESULTS) {
+                    truncated = true;
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        // Hand everything found so far to the UI in one runLater
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::flush);
+            }
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+            List<Match> batch = new ArrayList<>();
+            List<Match> matches;
+            while ((matches = found.poll()) != null) {
+                batch.addAll(matches);
+            }
+            if (!batch.isEmpty() && !cancelled.get()) {
+                onMatches.accept(batch);
+            }
+        }
+
+        private void finish() {
+            flush();
+            if (!cancelled.get()) {
+                onDone.accept(new Summary(matchCount.get(), fileCount.get(), searched, indexed,
+                        (System.nanoTime() - startNanos) / 1_000_000, truncated));
+            }
+        }
+    }
+
+    // Search the project; throws PatternSyntaxException for a bad regex.
+    // Open files are searched in their buffers, unsaved changes included.
+    public Search search(String query, boolean regex, boolean caseSensitive, Map<Path, PieceTable.Snapshot> buffers,
+            Consumer<List<Match>> onMatches, Consumer<Summary> onDone) {
+        int flags = (regex ? Pattern.MULTILINE : Pattern.LITERAL)
+                | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        Search search = new Search(Pattern.compile(query, flags), onMatches, onDone);
+        indexThread.execute(() -> {
+            if (search.cancelled.get()) {
+                return;
+            }
+            Map<Path, PieceTable.Snapshot> openBuffers = new HashMap<>();
+            for (Map.Entry<Path, PieceTable.Snapshot> buffer : buffers.entrySet()) {
+                if (relative(buffer.getKey()) != null) {
+                    openBuffers.put(buffer.getKey().toAbsolutePath().normalize(), buffer.getValue());
+                }
+            }
+            List<Path> files = new ArrayList<>();
+            for (Entry entry : candidates(requiredLiterals(query, regex))) {
+                Path file = root.resolve(entry.path);
+                if (!openBuffers.containsKey(file)) {
+                    files.add(file);
+                }
+            }
+            search.indexed = liveFiles();
+            search.verify(files, openBuffers);
+        });
+        return search;
+    }
+
+    // Files that may match: those holding every trigram of some alternative, plus files being read
+    private List<Entry> candidates(List<List<String>> literals) {
+        List<Entry> candidates = new ArrayList<>();
+        if (root == null) {
+            return candidates;
+        }
+        if (literals == null) {
+            for (Entry entry : byId) {
+                if (!entry.deleted && !entry.skipped) {
+                    candidates.add(entry);
+                }
+            }
+        } else {
+            Set<Integer> ids = new HashSet<>();
+            for (List<String> branch : literals) {
+                for (int id : intersect(trigramsOf(branch))) {
+                    ids.add(id);
+                }
+            }
+            for (int id : ids) {
+                Entry entry = byId.get(id);
+                if (!entry.deleted && !entry.skipped) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        candidates.addAll(pending);
+        return candidates;
+    }
+
+    // Ids in every posting list, starting from the shortest
+    private int[] intersect(int[] trigrams) {
+        List<Posting> lists = new ArrayList<>();
+        for (int trigram : trigrams) {
+            Posting posting = postings.get(trigram);
+            if (posting == null) {
+                return new int[0];
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(posting -> posting.count));
+        int[] ids = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && ids.length > 0; i++) {
+            int[] other = lists.get(i).decode();
+            int count = 0;
+            for (int a = 0, b = 0; a < ids.length && b < other.length;) {
+                if (ids[a] < other[b]) {
+                    a++;
+                } else if (ids[a] > other[b]) {
+                    b++;
+                } else {
+                    ids[count++] = ids[a];
+                    a++;
+                    b++;
+                }
+            }
+            ids = Arrays.copyOf(ids, count);
+        }
+        return ids;
+    }
+
+    private static int[] trigramsOf(List<String> literals) {
+        IntSet set = new IntSet();
+        for (String literal : literals) {
+            for (int i = 2; i < literal.length(); i++) {
+                set.add(trigram(fold(literal.charAt(i - 2)), fold(literal.charAt(i - 1)), fold(literal.charAt(i))));
+            }
+        }
+        return set.toSortedArray();
+    }
+
+    // Literal runs (3+ chars) every match must contain, one list per top level
+    // alternative; null when some alternative has none, then every file is a
+    // candidate. Anything not understood ends a run, so a run is never wrong.
+    static List<List<String>> requiredLiterals(String query, boolean regex) {
+        if (!regex) {
+            return query.length() >= 3 ? List.of(List.of(query)) : null;
+        }
+        if (COMMENTS_FLAG.matcher(query).find()) {
+            return null; // With (?x) spaces in the pattern mean nothing
+        }
+        List<List<String>> branches = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            Character literal = null;
+            if (c == '|') {
+                endRun(run, literals);
+                branches.add(literals);
+                literals = new ArrayList<>();
+                i++;
+                continue;
+            } else if (c == '\\' && i + 1 < query.length()) {
+                char escaped = query.charAt(i + 1);
+                if (escaped == 'Q') {
+                    return null;
+                }
+                if (escaped >= '1' && escaped <= '9' && i + 2 < query.length()
+                        && Character.isDigit(query.charAt(i + 2))) {
+                    return null; // \12 is group 12 or group 1 then '2', depending on the groups
+                }
+                if (!Character.isLetterOrDigit(escaped)) {
+                    literal = escaped; // \. \( and the like; letters are classes or anchors
+                }
+                i = skipEscapeOperand(query, i + 2, escaped); // Hex, octal, control and named escapes are no text
+                if (i < 0) {
+                    return null;
+                }
+            } else if (c == '[') {
+                i = skipClass(query, i);
+                if (i < 0) {
+                    return null;
+                }
+            } else if (c == '(') {
+                i = skipGroup(query, i);
+                if (i < 0) {
+                    return null;
+                }
+            } else if (c == '.' || c == '^' || c == '$' || c == '{' || c == '*' || c == '+' || c == '?'
+                    || c == ')') {
+                i++;
+            } else {
+                literal = c;
+                i++;
+            }
+
+            // A quantifier decides whether the atom is required
+            char next = i < query.length() ? query.charAt(i) : 0;
+            if (next == '*' || next == '?' || next == '{') {
+                endRun(run, literals); // Optional (or counted, taken as optional)
+                i = next == '{' ? query.indexOf('}', i) + 1 : i + 1;
+                if (i == 0) {
+                    return null;
+                }
+                i = skipQuantifierMode(query, i);
+            } else if (next == '+') {
+                if (literal != null) {
+                    run.append(literal);
+                }
+                endRun(run, literals);
+                i = skipQuantifierMode(query, i + 1);
+            } else if (literal != null) {
+                run.append(literal);
+            } else {
+                endRun(run, literals);
+            }
+        }
+        endRun(run, literals);
+        branches.add(literals);
+        for (List<String> branch : branches) {
+            if (branch.isEmpty()) {
+                return null;
+            }
+        }
+        return branches;
+    }
+
+    private static void endRun(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    // Index after the operand of the escape letter at i - 1: x hh or {h..h}, u hhhh, 0 ooo,
+    // c X, k <name>, p and P L or {name}, N {name}; i for escapes without one; -1 if malformed
+    private static int skipEscapeOperand(String query, int i, char escaped) {
+        switch (escaped) {
+            case 'x':
+                if (query.startsWith("{", i)) {
+                    int end = query.indexOf('}', i);
+                    return end < 0 ? -1 : end + 1;
+                }
+                return i + 2 <= query.length() ? i + 2 : -1;
+            case 'u':
+                return i + 4 <= query.length() ? i + 4 : -1;
+            case '0': {
+                int digits = 0;
+                int max = i < query.length() && query.charAt(i) <= '3' ? 3 : 2; // \0mnn needs m <= 3
+                while (digits < max && i + digits < query.length()
+                        && query.charAt(i + digits) >= '0' && query.charAt(i + digits) <= '7') {
+                    digits++;
+                }
+                return digits == 0 ? -1 : i + digits;
+            }
+            case 'c':
+                return i < query.length() ? i + 1 : -1;
+            case 'k': {
+                int end = query.startsWith("<", i) ? query.indexOf('>', i) : -1;
+                return end < 0 ? -1 : end + 1;
+            }
+            case 'p':
+            case 'P':
+            case 'N':
+                if (query.startsWith("{", i)) {
+                    int end = query.indexOf('}', i);
+                    return end < 0 ? -1 : end + 1;
+                }
+                return escaped != 'N' && i < query.length() ? i + 1 : -1;
+            default:
+                return i;
+        }
+    }
+
+    // Lazy and possessive quantifiers: a? a?? a?+
+    private static int skipQuantifierMode(String query, int i) {
+        return i < query.length() && (query.charAt(i) == '?' || query.charAt(i) == '+') ? i + 1 : i;
+    }
+
+    // Index after the class starting at i; -1 for forms not worth the risk
+    private static int skipClass(String query, int i) {
+        if (query.startsWith("[]", i) || query.startsWith("[^]", i)) {
+            return -1;
+        }
+        int depth = 0;
+        for (; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Index after the group starting at i
+    private static int skipGroup(String query, int i) {
+        int depth = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[') {
+                i = skipClass(query, i);
+                if (i < 0) {
+                    return -1;
+                }
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return i + 1;
+                }
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    // Case folding shared by indexing and queries (toUpperCase first catches ſ, K and the like)
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Exact for ASCII; other trigrams are hashed with the top bit set, a
+    // collision only costs reading a file that does not match. Never 0.
+    private static int trigram(char a, char b, char c) {
+        if ((a | b | c) < 0x80) {
+            int key = a << 14 | b << 7 | c;
+            return key == 0 ? 1 : key;
+        }
+        int hash = ((a * 0x01000193) ^ b) * 0x01000193 ^ c;
+        return (hash * 0x9E3779B1) | Integer.MIN_VALUE;
+    }
+
+    // Index thread: the rest of the file works on the index state
+
+    private void reset() {
+        generation++;
+        root = null;
+        entries.clear();
+        byId.clear();
+        postings = new PostingMap();
+        pending.clear();
+        deadIds = 0;
+        dirty = false;
+        building = false;
+    }
+
+    private int liveFiles() {
+        return byId.size() - deadIds;
+    }
+
+    // Path relative to the root, or null if outside it or in an ignored folder
+    private String relative(Path file) {
+        if (root == null) {
+            return null;
+        }
+        Path absolute = file.toAbsolutePath().normalize();
+        if (!absolute.startsWith(root)) {
+            return null;
+        }
+        Path relative = root.relativize(absolute);
+        for (Path name : relative) {
+            if (ProjectFiles.IGNORED_FOLDERS.contains(name.toString())) {
+                return null;
+            }
+        }
+        return relative.toString();
+    }
+
+    // Compare the stored entries with the files on disk
+    private void reconcile() throws IOException {
+        Set<String> seen = new HashSet<>();
+        ProjectFiles.visit(root, (file, attrs) -> {
+            String path = root.relativize(file).toString();
+            seen.add(path);
+            Entry entry = entries.get(path);
+            if (entry == null || entry.modified != attrs.lastModifiedTime().toMillis() || entry.size != attrs.size()) {
+                add(path, file, attrs);
+            }
+        });
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            if (!seen.contains(entry.path)) {
+                remove(entry);
+            }
+        }
+    }
+
+    // Re-read a file if it changed (or remove it if it is gone)
+    private void refresh(Path file, String path) {
+        Entry entry = entries.get(path);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return;
+            }
+            if (entry == null || entry.modified != attrs.lastModifiedTime().toMillis() || entry.size != attrs.size()) {
+                add(path, file, attrs);
+            }
+        } catch (IOException e) {
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+    }
+
+    // A new version of a file: the old one's id goes dead and the file is read again
+    private void add(String path, Path file, BasicFileAttributes attrs) {
+        Entry old = entries.get(path);
+        if (old != null) {
+            remove(old);
+        }
+        Entry entry = new Entry(path, attrs.lastModifiedTime().toMillis(), attrs.size());
+        entries.put(path, entry);
+        if (entry.size > MAX_FILE_SIZE) {
+            indexed(entry, null);
+            return;
+        }
+        pending.add(entry);
+        int readGeneration = generation;
+        readers.execute(() -> {
+            int[] trigrams = readTrigrams(file);
+            pendingReads.acquireUninterruptibly(); // Readers wait when the index thread falls behind
+            indexThread.execute(() -> {
+                pendingReads.release();
+                if (readGeneration == generation && pending.remove(entry)) {
+                    indexed(entry, trigrams);
+                    if (building && pending.isEmpty()) {
+                        building = false;
+                        report("🔎 Search index ready: " + liveFiles() + " files in "
+                                + (System.nanoTime() - buildStart) / 1_000_000 + " ms");
+                        persist();
+                    }
+                }
+            });
+        });
+    }
+
+    // Give the entry the next id and add it to the posting lists (ids only grow, so lists stay sorted)
+    private void indexed(Entry entry, int[] trigrams) {
+        entry.id = byId.size();
+        byId.add(entry);
+        if (trigrams == null) {
+            entry.skipped = true;
+        } else {
+            for (int trigram : trigrams) {
+                postings.getOrCreate(trigram).add(entry.id);
+            }
+        }
+        dirty = true;
+    }
+
+    private void remove(Entry entry) {
+        if (entries.get(entry.path) == entry) {
+            entries.remove(entry.path);
+        }
+        pending.remove(entry);
+        if (!entry.deleted && entry.id >= 0) {
+            deadIds++;
+        }
+        entry.deleted = true;
+        dirty = true;
+    }
+
+    // After an incremental change: drop dead ids once they are most of the index, store later
+    private void changed() {
+        if (deadIds > 1000 && deadIds > byId.size() / 2) {
+            compact();
+        }
+        if (dirty && !persistScheduled) {
+            persistScheduled = true;
+            indexThread.schedule(() -> {
+                persistScheduled = false;
+                persist();
+            }, PERSIST_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Renumber the live entries and rewrite the posting lists without the dead ids
+    private void compact() {
+        if (deadIds == 0) {
+            return;
+        }
+        int[] newIds = new int[byId.size()];
+        List<Entry> live = new ArrayList<>(liveFiles());
+        for (Entry entry : byId) {
+            newIds[entry.id] = entry.deleted ? -1 : live.size();
+            if (!entry.deleted) {
+                live.add(entry);
+            }
+        }
+        for (int i = 0; i < live.size(); i++) {
+            live.get(i).id = i;
+        }
+        PostingMap compacted = new PostingMap();
+        postings.forEach((trigram, posting) -> {
+            Posting copy = null;
+            for (int id : posting.decode()) {
+                if (newIds[id] >= 0) {
+                    if (copy == null) {
+                        copy = compacted.getOrCreate(trigram);
+                    }
+                    copy.add(newIds[id]);
+                }
+            }
+        });
+        byId.clear();
+        byId.addAll(live);
+        postings = compacted;
+        deadIds = 0;
+    }
+
+    // Write .ide/trigram.idx (to a temp file first, so a crash leaves the old one)
+    private void persist() {
+        if (root == null || !dirty) {
+            return;
+        }
+        compact();
+        Path folder = root.resolve(ProjectFiles.IDE_FOLDER);
+        Path target = folder.resolve(INDEX_FILE);
+        Path temp = folder.resolve(INDEX_FILE + ".tmp");
+        try {
+            Files.createDirectories(folder);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(byId.size());
+                for (Entry entry : byId) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.size);
+                    out.writeBoolean(entry.skipped);
+                }
+                out.writeInt(postings.size);
+                IOException[] failure = new IOException[1];
+                postings.forEach((trigram, posting) -> {
+                    try {
+                        out.writeInt(trigram);
+                        out.writeInt(posting.count);
+                        out.writeInt(posting.last);
+                        out.writeInt(posting.length);
+                        out.write(posting.bytes, 0, posting.length);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Nothing more to do
+            }
+            report("⚠ Could not store the search index: " + e.getMessage());
+        }
+    }
+
+    // Read .ide/trigram.idx; false (and an empty index) if it is missing or unreadable
+    private boolean load() {
+        Path file = root.resolve(ProjectFiles.IDE_FOLDER).resolve(INDEX_FILE);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return false;
+            }
+            int files = in.readInt();
+            for (int i = 0; i < files; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong());
+                entry.skipped = in.readBoolean();
+                entry.id = i;
+                byId.add(entry);
+                entries.put(entry.path, entry);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Posting posting = postings.getOrCreate(in.readInt());
+                posting.count = in.readInt();
+                posting.last = in.readInt();
+                posting.length = in.readInt();
+                posting.bytes = in.readNBytes(posting.length);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+            byId.clear();
+            postings = new PostingMap();
+            return false;
+        }
+    }
+
+    private void report(String message) {
+        Platform.runLater(() -> status.accept(message));
+    }
+
+    // Reader threads
+
+    // The trigrams of a file, or null if it is binary or unreadable
+    private static int[] readTrigrams(Path file) {
+        FileLoader.Load load = new FileLoader.Load();
+        IntSet set = new IntSet();
+        char[] window = new char[2];
+        int[] seen = { 0 };
+        boolean[] binary = { false };
+        try {
+            FileLoader.read(file, load, chunk -> {
+                for (int i = 0; i < chunk.length() && !binary[0]; i++) {
+                    char c = chunk.charAt(i);
+                    if (c == 0) {
+                        binary[0] = true;
+                        load.cancel(); // Stop reading
+                        return;
+                    }
+                    c = fold(c);
+                    if (seen[0] >= 2) {
+                        set.add(trigram(window[0], window[1], c));
+                    }
+                    window[0] = window[1];
+                    window[1] = c;
+                    seen[0]++;
+                }
+            });
+        } catch (IOException e) {
+            return null;
+        }
+        return binary[0] ? null : set.toSortedArray();
+    }
+
+    private static CharSequence readText(Path file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        FileLoader.read(file, new FileLoader.Load(), text::append);
+        return text;
+    }
+
+    // Sorted file ids, delta and varint encoded
+    private static final class Posting {
+        byte[] bytes = new byte[8];
+        int length;
+        int count;
+        int last = -1;
+
+        void add(int id) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5)); // Loaded ones fit exactly
+            }
+            int delta = id - last;
+            last = id;
+            count++;
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            int id = -1;
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+    }
+
+    private interface PostingVisitor {
+        void visit(int trigram, Posting posting);
+    }
+
+    // Open addressing trigram -> posting list; 0 marks a free slot (trigram() is never 0)
+    private static final class PostingMap {
+        int[] keys = new int[1 << 12];
+        Posting[] values = new Posting[1 << 12];
+        int size;
+
+        Posting get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        Posting getOrCreate(int key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            Posting posting = new Posting();
+            keys[i] = key;
+            values[i] = posting;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return posting;
+        }
+
+        void forEach(PostingVisitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    visitor.visit(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Posting[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Posting[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = mix(oldKeys[j]) & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
+    // The distinct trigrams of one file
+    private static final class IntSet {
+        int[] table = new int[1 << 10];
+        int size;
+
+        void add(int key) {
+            int mask = table.length - 1;
+            int i = mix(key) & mask;
+            for (; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == key) {
+                    return;
+                }
+            }
+            table[i] = key;
+            if (++size * 2 > table.length) {
+                int[] old = table;
+                table = new int[old.length * 2];
+                size = 0;
+                for (int value : old) {
+                    if (value != 0) {
+                        add(value);
+                    }
+                }
+            }
+        }
+
+        int[] toSortedArray() {
+            int[] values = new int[size];
+            int count = 0;
+            for (int value : table) {
+                if (value != 0) {
+                    values[count++] = value;
+                }
+            }
+            Arrays.sort(values);
+            return values;
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
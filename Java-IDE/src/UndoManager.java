@@ -0,0 +1,317 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Undo and redo history of one document, kept as the edits themselves
+// (offset, removed text, inserted text) rather than copies of the text.
+// Typing is grouped by word, and runs of Backspace or Delete into one step.
+// The memory held is counted per history and across all of them; past
+// either limit the oldest steps are dropped, from whichever history has the
+// oldest. Only the FX thread uses it. A history is not tied to an editor, so
+// it can outlive one, and it can be stored to disk with the hash of the text
+// it applies to.
+public class UndoManager {
+
+    // Memory for one document's history (-Dide.undo.tabBytes=bytes)
+    private static final long TAB_BYTES = Long.getLong("ide.undo.tabBytes", 8L * 1024 * 1024);
+    // Memory for all histories together (-Dide.undo.totalBytes=bytes)
+    private static final long TOTAL_BYTES = Long.getLong("ide.undo.totalBytes", 64L * 1024 * 1024);
+    // A pause in typing longer than this starts a new step (-Dide.undo.groupMillis=ms)
+    private static final long GROUP_NANOS = Long.getLong("ide.undo.groupMillis", 1000) * 1_000_000;
+
+    // Where histories are kept between sessions, one file per document
+    public static final Path FOLDER = Path.of(System.getProperty("user.home"), ProjectFiles.IDE_FOLDER, "undo");
+
+    private static final int MAGIC = 0x554E4431; // "UND1"
+    private static final int DELTA_OVERHEAD = 64; // Object headers and fields of a delta and its strings
+
+    // Every history holding memory, for the global limit
+    private static final List<UndoManager> LIVE = new ArrayList<>();
+    private static long totalBytes;
+    private static long nextSequence;
+
+    // One edit: at offset, removed was replaced by inserted
+    private record Delta(int offset, String removed, String inserted) {
+        long bytes() {
+            return DELTA_OVERHEAD + 2L * (removed.length() + inserted.length());
+        }
+    }
+
+    // What one Ctrl+Z undoes; deltas in the order they were made
+    private static final class Group {
+        final long sequence = nextSequence++; // Age, across all histories
+        final List<Delta> deltas = new ArrayList<>(1);
+        long bytes;
+        long lastEdit = System.nanoTime();
+
+        Delta last() {
+            return deltas.get(deltas.size() - 1);
+        }
+    }
+
+    private final Deque<Group> undoStack = new ArrayDeque<>(); // Newest first
+    private final Deque<Group> redoStack = new ArrayDeque<>();
+    private long bytes;
+    private boolean sealed; // The next edit starts a new step
+
+    // Record an edit made to the document (not one made by undo or redo)
+    public void record(int offset, String removed, String inserted) {
+        clearRedo();
+        Group group = undoStack.peek();
+        if (group != null && !sealed && System.nanoTime() - group.lastEdit < GROUP_NANOS
+                && merge(group, offset, removed, inserted)) {
+            group.lastEdit = System.nanoTime();
+        } else {
+            group = new Group();
+            group.deltas.add(new Delta(offset, removed, inserted));
+            group.bytes = group.last().bytes();
+            undoStack.push(group);
+            grow(group.bytes);
+        }
+        sealed = false;
+        trim();
+    }
+
+    // The next edit starts a new undo step (the caret was moved, the file saved...)
+    public void seal() {
+        sealed = true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    // Undo the last step on document; the caret offset after it, or -1 if there was none
+    public int undo(PieceTable document) {
+        Group group = undoStack.poll();
+        if (group == null) {
+            return -1;
+        }
+        int caret = -1;
+        for (int i = group.deltas.size() - 1; i >= 0; i--) {
+            Delta delta = group.deltas.get(i);
+            document.replace(delta.offset(), delta.offset() + delta.inserted().length(), delta.removed());
+            caret = delta.offset() + delta.removed().length();
+        }
+        redoStack.push(group);
+        sealed = true;
+        return caret;
+    }
+
+    // Redo the last undone step on document; the caret offset after it, or -1 if there was none
+    public int redo(PieceTable document) {
+        Group group = redoStack.poll();
+        if (group == null) {
+            return -1;
+        }
+        int caret = -1;
+        for (Delta delta : group.deltas) {
+            document.replace(delta.offset(), delta.offset() + delta.removed().length(), delta.inserted());
+            caret = delta.offset() + delta.inserted().length();
+        }
+        undoStack.push(group);
+        sealed = true;
+        return caret;
+    }
+
+    // Forget every step and give the memory back
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        grow(-bytes);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Fold the edit into the open step: more of the same word, or one more
+    // Backspace or Delete next to the last one
+    private boolean merge(Group group, int offset, String removed, String inserted) {
+        Delta last = group.last();
+        Delta merged = null;
+        if (removed.isEmpty() && last.removed().isEmpty() && inserted.length() == 1
+                && offset == last.offset() + last.inserted().length()) {
+            char typed = inserted.charAt(0);
+            char previous = last.inserted().charAt(last.inserted().length() - 1);
+            boolean newWord = isWordChar(typed) && !isWordChar(previous);
+            if (typed != '\n' && previous != '\n' && !newWord) {
+                merged = new Delta(last.offset(), "", last.inserted() + inserted);
+            }
+        } else if (inserted.isEmpty() && last.inserted().isEmpty() && removed.length() == 1
+                && !last.removed().isEmpty()) {
+            if (offset + 1 == last.offset()) { // Backspace
+                merged = new Delta(offset, removed + last.removed(), "");
+            } else if (offset == last.offset()) { // Delete
+                merged = new Delta(offset, last.removed() + removed, "");
+            }
+        }
+        if (merged == null) {
+            return false;
+        }
+        group.deltas.set(group.deltas.size() - 1, merged);
+        long added = merged.bytes() - last.bytes();
+        group.bytes += added;
+        grow(added);
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private void clearRedo() {
+        long dropped = 0;
+        for (Group group : redoStack) {
+            dropped += group.bytes;
+        }
+        redoStack.clear();
+        grow(-dropped);
+    }
+
+    private void grow(long delta) {
+        bytes += delta;
+        totalBytes += delta;
+        if (bytes > 0 && delta > 0 && !LIVE.contains(this)) {
+            LIVE.add(this);
+        } else if (bytes == 0) {
+            LIVE.remove(this);
+        }
+    }
+
+    // Drop the oldest steps past this history's limit, then past the global
+    // one from whichever history has the oldest; the newest step always stays
+    private void trim() {
+        while (bytes > TAB_BYTES) {
+            if (!evictOldest()) {
+                break;
+            }
+        }
+        while (totalBytes > TOTAL_BYTES) {
+            UndoManager oldest = null;
+            for (UndoManager manager : LIVE) {
+                if (manager.oldestSequence() < (oldest == null ? Long.MAX_VALUE : oldest.oldestSequence())) {
+                    oldest = manager;
+                }
+            }
+            if (oldest == null || !oldest.evictOldest()) {
+                break;
+            }
+        }
+    }
+
+    private long oldestSequence() {
+        Group oldest = undoStack.size() > 1 ? undoStack.peekLast() : redoStack.peekLast();
+        return oldest == null ? Long.MAX_VALUE : oldest.sequence;
+    }
+
+    private boolean evictOldest() {
+        Group oldest = undoStack.size() > 1 ? undoStack.pollLast() : redoStack.pollLast();
+        if (oldest == null) {
+            return false;
+        }
+        grow(-oldest.bytes);
+        return true;
+    }
+
+    // The file in FOLDER for a document's history
+    public static Path storeFor(Path document) {
+        return FOLDER.resolve(Long.toHexString(PieceTable.hashOf(document.toAbsolutePath().toString())) + ".undo");
+    }
+
+    // Store the history for a document whose text has this hash and length
+    public void write(Path file, long textHash, int textLength) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(textHash);
+            out.writeInt(textLength);
+            writeGroups(out, undoStack);
+            writeGroups(out, redoStack);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // The stored history, or null if there is none, it cannot be read or it
+    // was stored for another text
+    public static UndoManager read(Path file, long textHash, int textLength) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readLong() != textHash || in.readInt() != textLength) {
+                return null;
+            }
+            UndoManager manager = new UndoManager();
+            manager.readGroups(in, manager.undoStack);
+            manager.readGroups(in, manager.redoStack);
+            manager.sealed = true;
+            manager.trim();
+            return manager;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Oldest first, so they are read back in age order
+    private static void writeGroups(DataOutputStream out, Deque<Group> stack) throws IOException {
+        out.writeInt(stack.size());
+        for (var groups = stack.descendingIterator(); groups.hasNext();) {
+            Group group = groups.next();
+            out.writeInt(group.deltas.size());
+            for (Delta delta : group.deltas) {
+                out.writeInt(delta.offset());
+                writeString(out, delta.removed());
+                writeString(out, delta.inserted());
+            }
+        }
+    }
+
+    private void readGroups(DataInputStream in, Deque<Group> stack) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Group group = new Group();
+            int deltas = in.readInt();
+            for (int d = 0; d < deltas; d++) {
+                Delta delta = new Delta(in.readInt(), readString(in), readString(in));
+                group.deltas.add(delta);
+                group.bytes += delta.bytes();
+            }
+            stack.push(group);
+            grow(group.bytes);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
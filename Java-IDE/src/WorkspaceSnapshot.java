@@ -0,0 +1,99 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// The workspace as it was left: the project folder, the expanded folders
+// with their listings, and the open tabs with caret and scroll positions.
+// Written to ~/.ide/workspace.bin on exit and read when the IDE starts, so
+// the window comes back as it was before anything is read from the project;
+// the folders are listed again in the background afterwards.
+public record WorkspaceSnapshot(Path directory, List<Folder> folders, List<OpenTab> tabs, int selectedTab) {
+
+    public static final Path FILE = Path.of(System.getProperty("user.home"), ProjectFiles.IDE_FOLDER,
+            "workspace.bin");
+
+    private static final int MAGIC = 0x57534E31; // "WSN1"
+    private static final int MAX_LISTING = 5_000; // Larger folders are listed from disk on restore
+
+    // An expanded folder and its entries, folders first
+    public record Folder(Path path, List<DirectoryLoader.Entry> entries) {
+    }
+
+    // A file open in a tab; topLine and scrollLeft are the editor's view
+    public record OpenTab(Path file, int caret, int topLine, double scrollLeft) {
+    }
+
+    // Paths inside the project are stored relative to it, which keeps the file small
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(directory.toString());
+            List<Folder> stored = folders.stream().filter(folder -> folder.entries().size() <= MAX_LISTING).toList();
+            out.writeInt(stored.size());
+            for (Folder folder : stored) {
+                out.writeUTF(directory.relativize(folder.path()).toString());
+                out.writeInt(folder.entries().size());
+                for (DirectoryLoader.Entry entry : folder.entries()) {
+                    out.writeUTF(entry.name());
+                    out.writeBoolean(entry.directory());
+                }
+            }
+            out.writeInt(tabs.size());
+            for (OpenTab tab : tabs) {
+                out.writeUTF(directory.relativize(tab.file()).toString());
+                out.writeInt(tab.caret());
+                out.writeInt(tab.topLine());
+                out.writeDouble(tab.scrollLeft());
+            }
+            out.writeInt(selectedTab);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // The stored workspace, or null if there is none or it cannot be read
+    public static WorkspaceSnapshot read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            Path directory = Path.of(in.readUTF());
+            int folderCount = in.readInt();
+            List<Folder> folders = new ArrayList<>(folderCount);
+            for (int i = 0; i < folderCount; i++) {
+                Path folder = directory.resolve(in.readUTF());
+                int entryCount = in.readInt();
+                List<DirectoryLoader.Entry> entries = new ArrayList<>(entryCount);
+                for (int e = 0; e < entryCount; e++) {
+                    entries.add(new DirectoryLoader.Entry(folder.resolve(in.readUTF()), in.readBoolean()));
+                }
+                folders.add(new Folder(folder, entries));
+            }
+            int tabCount = in.readInt();
+            List<OpenTab> tabs = new ArrayList<>(tabCount);
+            for (int i = 0; i < tabCount; i++) {
+                tabs.add(new OpenTab(directory.resolve(in.readUTF()), in.readInt(), in.readInt(), in.readDouble()));
+            }
+            return new WorkspaceSnapshot(directory, folders, tabs, in.readInt());
+        } catch (IOException | RuntimeException e) {
+            return null; // Start as if there were none
+        }
+    }
+}